@@ -14,6 +14,8 @@ import buildcraft.api.core.INBTStoreable;
 import buildcraft.api.core.ISerializable;
 import buildcraft.api.transport.IPipeTile;
 
+import io.netty.buffer.ByteBuf;
+
 /** An IPipePluggable MUST have an empty constructor for client-side rendering! */
 public abstract class PipePluggable implements INBTStoreable, ISerializable {
     public abstract ItemStack[] getDropItems(IPipeTile pipe);
@@ -57,4 +59,13 @@ public abstract class PipePluggable implements INBTStoreable, ISerializable {
     public boolean requiresRenderUpdate(PipePluggable old) {
         return true;
     }
+
+    /** Writes everything that changes the static model of this pluggable, so that pipes whose pluggables write the same
+     * data can share a single baked model.
+     * 
+     * @return False if the model can't be shared, which is the default. */
+    @SideOnly(Side.CLIENT)
+    public boolean writeRenderKey(ByteBuf data) {
+        return false;
+    }
 }
@@ -86,6 +86,7 @@ public class BuildCraftBuilders extends BuildCraftMod {
 
     public static boolean quarryLoadsChunks = true;
     public static boolean quarryOneTimeUse = false;
+    public static int quarryMaxMiningHeads = 1;
 
     private String oldBlueprintServerDir, blueprintClientDir;
 
@@ -137,12 +138,16 @@ public class BuildCraftBuilders extends BuildCraftMod {
                 ConfigManager.RestartRequirement.NONE);
         BuildCraftCore.mainConfigManager.register("general.quarry.doChunkLoading", true, "Should the quarry keep the chunks it is working on loaded?",
                 ConfigManager.RestartRequirement.NONE);
+        BuildCraftCore.mainConfigManager.register("general.quarry.maxMiningHeads", 1,
+                "How many blocks can a quarry mine at once, if it is given enough power? 1 only mines one block at a time with the arm.",
+                ConfigManager.RestartRequirement.NONE);
 
         BuildCraftCore.mainConfigManager.register("builders.dropBrokenBlocks", false, "Should the builder and filler drop the cleared blocks?",
                 ConfigManager.RestartRequirement.NONE);
 
         BuildCraftCore.mainConfigManager.get("blueprints.serverDatabaseDirectory").setShowInGui(false);
         BuildCraftCore.mainConfigManager.get("general.markerRange").setMinValue(8).setMaxValue(64);
+        BuildCraftCore.mainConfigManager.get("general.quarry.maxMiningHeads").setMinValue(1).setMaxValue(16);
 
         serverDB = new BlueprintServerDatabase();
         clientDB = new LibraryDatabase();
@@ -164,6 +169,7 @@ public class BuildCraftBuilders extends BuildCraftMod {
         } else {
             quarryOneTimeUse = BuildCraftCore.mainConfigManager.get("general.quarry.oneTimeUse").getBoolean();
             quarryLoadsChunks = BuildCraftCore.mainConfigManager.get("general.quarry.doChunkLoading").getBoolean();
+            quarryMaxMiningHeads = BuildCraftCore.mainConfigManager.get("general.quarry.maxMiningHeads").getInt();
 
             blueprintClientDir = BuildCraftCore.mainConfigManager.get("blueprints.clientDatabaseDirectory").getString();
             blueprintClientDir = JavaTools.stripSurroundingQuotes(replacePathVariables(blueprintClientDir));
@@ -73,6 +73,8 @@ import buildcraft.core.builders.patterns.*;
 import buildcraft.core.builders.schematics.SchematicIgnore;
 import buildcraft.core.client.CoreIconProvider;
 import buildcraft.core.command.SubCommandDeop;
+import buildcraft.core.command.SubCommandNetwork;
+import buildcraft.core.command.SubCommandSearches;
 import buildcraft.core.command.SubCommandOp;
 import buildcraft.core.config.ConfigManager;
 import buildcraft.core.crops.CropHandlerPlantable;
@@ -84,8 +86,10 @@ import buildcraft.core.lib.engines.TileEngineBase;
 import buildcraft.core.lib.items.ItemBuildCraft;
 import buildcraft.core.lib.network.base.ChannelHandler;
 import buildcraft.core.lib.network.base.PacketHandler;
+import buildcraft.core.lib.network.base.PacketOutbox;
 import buildcraft.core.lib.utils.ColorUtils;
 import buildcraft.core.lib.utils.NBTUtils;
+import buildcraft.core.lib.utils.SearchExecutor;
 import buildcraft.core.lib.utils.Utils;
 import buildcraft.core.lib.utils.XorShift128Random;
 import buildcraft.core.list.*;
@@ -202,6 +206,8 @@ public class BuildCraftCore extends BuildCraftMod {
         commandBuildcraft.addAlias("bc");
         commandBuildcraft.addChildCommand(new SubCommandDeop());
         commandBuildcraft.addChildCommand(new SubCommandOp());
+        commandBuildcraft.addChildCommand(new SubCommandNetwork());
+        commandBuildcraft.addChildCommand(new SubCommandSearches());
 
         BuildcraftRecipeRegistry.assemblyTable = AssemblyRecipeManager.INSTANCE;
         BuildcraftRecipeRegistry.integrationTable = IntegrationRecipeManager.INSTANCE;
@@ -254,6 +260,11 @@ public class BuildCraftCore extends BuildCraftMod {
         mainConfigManager.register("display.colorBlindMode", false, "Should I enable colorblind mode?", ConfigManager.RestartRequirement.GAME);
         mainConfigManager.register("worldgen.generateWaterSprings", true, "Should BuildCraft generate water springs?",
                 ConfigManager.RestartRequirement.GAME);
+        mainConfigManager.register("general.searchThreads", 0,
+                "How many threads should robots use to find paths and blocks? (0 = pick from the number of processors)",
+                ConfigManager.RestartRequirement.GAME).setMinValue(0).setMaxValue(32);
+        mainConfigManager.register("general.searchVirtualThreads", false,
+                "Should those threads be virtual threads, if Java supports them?", ConfigManager.RestartRequirement.GAME);
 
         mainConfigManager.register("debug.network.stats", false, "Should all network packets be tracked for statistical purposes?",
                 ConfigManager.RestartRequirement.NONE);
@@ -404,6 +415,8 @@ public class BuildCraftCore extends BuildCraftMod {
         MinecraftForge.EVENT_BUS.register(TabletManagerClient.INSTANCE);
         MinecraftForge.EVENT_BUS.register(TabletManagerServer.INSTANCE);
         MinecraftForge.EVENT_BUS.register(TickHandlerCore.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(PacketOutbox.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(SearchExecutor.INSTANCE);
 
         TabletAPI.registerProgram(new TabletProgramMenuFactory());
 
@@ -459,6 +472,7 @@ public class BuildCraftCore extends BuildCraftMod {
         CropManager.registerHandler(new CropHandlerReeds());
 
         BuildCraftAPI.registerWorldProperty("replaceable", new WorldPropertyIsReplaceable());
+        BuildCraftAPI.registerWorldProperty("solid", new WorldPropertyIsSolid());
         BuildCraftAPI.registerWorldProperty("soft", new WorldPropertyIsSoft());
         BuildCraftAPI.registerWorldProperty("wood", new WorldPropertyIsWood());
         BuildCraftAPI.registerWorldProperty("leaves", new WorldPropertyIsLeaf());
@@ -533,6 +547,8 @@ public class BuildCraftCore extends BuildCraftMod {
     public void serverStopping(FMLServerStoppingEvent event) {
         TabletManagerClient.INSTANCE.onServerStopping();
         TabletManagerServer.INSTANCE.onServerStopping();
+        PacketOutbox.INSTANCE.clear();
+        SearchExecutor.INSTANCE.clear();
     }
 
     public void reloadConfig(ConfigManager.RestartRequirement restartType) {
@@ -541,6 +557,8 @@ public class BuildCraftCore extends BuildCraftMod {
             updateFactor = mainConfigManager.get("network.updateFactor").getInt();
             longUpdateFactor = mainConfigManager.get("network.longUpdateFactor").getInt();
             colorBlindMode = mainConfigManager.get("display.colorBlindMode").getBoolean();
+            SearchExecutor.INSTANCE.configure(mainConfigManager.get("general.searchThreads").getInt(), mainConfigManager.get(
+                    "general.searchVirtualThreads").getBoolean());
 
             reloadConfig(ConfigManager.RestartRequirement.WORLD);
         } else if (restartType == ConfigManager.RestartRequirement.WORLD) {
@@ -122,6 +122,7 @@ public class BuildCraftFactory extends BuildCraftMod {
 
         MinecraftForge.EVENT_BUS.register(this);
         MinecraftForge.EVENT_BUS.register(this);
+        MinecraftForge.EVENT_BUS.register(FluidScanner.INSTANCE);
     }
 
     public static void loadRecipes() {
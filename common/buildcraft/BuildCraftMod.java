@@ -9,8 +9,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import com.google.common.collect.Maps;
 
@@ -28,132 +26,45 @@ import net.minecraftforge.common.config.Property;
 import net.minecraftforge.fml.common.network.FMLEmbeddedChannel;
 import net.minecraftforge.fml.common.network.FMLOutboundHandler;
 import net.minecraftforge.fml.common.network.FMLOutboundHandler.OutboundTarget;
-import net.minecraftforge.fml.common.network.NetworkRegistry.TargetPoint;
 import net.minecraftforge.fml.relauncher.Side;
 
 import buildcraft.api.core.BCLog;
 import buildcraft.api.core.IBuildCraftMod;
 import buildcraft.core.DefaultProps;
 import buildcraft.core.lib.network.base.Packet;
+import buildcraft.core.lib.network.base.PacketOutbox;
 import buildcraft.core.lib.utils.ThreadSafeUtils;
 import buildcraft.core.lib.utils.Utils;
 
 public class BuildCraftMod implements IBuildCraftMod {
-    private static final Executor packetSender;
-
     public EnumMap<Side, FMLEmbeddedChannel> channels;
     protected Map<String, Property> options = Maps.newHashMap();
 
-    abstract class SendRequest implements Runnable {
-        final Packet packet;
-        final BuildCraftMod source;
-
-        SendRequest(Packet packet) {
-            this.packet = packet;
-            this.source = BuildCraftMod.this;
-            if (packet.tempWorld == null) {
-                NullPointerException npe = new NullPointerException("The packet's world was null! Cannot send this!");
-                BCLog.logger.fatal("// Blame AlexIIL", npe);
-                throw npe;
-            }
-        }
-
-        @Override
-        public final void run() {
-            try {
-                FMLEmbeddedChannel channel = source.channels.get(Side.SERVER);
-                editAttributes(channel);
-                channel.writeOutbound(packet);
-            } catch (Throwable t) {
-                t.printStackTrace();
-            }
-        }
-
-        abstract void editAttributes(FMLEmbeddedChannel channel);
-    }
-
-    class PlayerSendRequest extends SendRequest {
-        EntityPlayer player;
-
-        PlayerSendRequest(Packet packet, EntityPlayer player) {
-            super(packet);
-            this.player = player;
-        }
-
-        @Override
-        void editAttributes(FMLEmbeddedChannel channel) {
-            channel.attr(FMLOutboundHandler.FML_MESSAGETARGET).set(OutboundTarget.PLAYER);
-            channel.attr(FMLOutboundHandler.FML_MESSAGETARGETARGS).set(player);
-        }
-    }
-
-    class EntitySendRequest extends LocationSendRequest {
-        Entity entity;
-
-        EntitySendRequest(Packet packet, Entity entity, int maxDistance) {
-            super(packet, entity.worldObj.provider.getDimensionId(), Utils.getVec(entity), maxDistance);
-            this.entity = entity;
-        }
-    }
-
-    class WorldSendRequest extends SendRequest {
-        final int dimensionId;
-
-        WorldSendRequest(Packet packet, int dimensionId) {
-            super(packet);
-            this.dimensionId = dimensionId;
-        }
-
-        @Override
-        void editAttributes(FMLEmbeddedChannel channel) {
-            channel.attr(FMLOutboundHandler.FML_MESSAGETARGET).set(OutboundTarget.DIMENSION);
-            channel.attr(FMLOutboundHandler.FML_MESSAGETARGETARGS).set(dimensionId);
-        }
+    /** Queues the packet in the {@link PacketOutbox} of the given player, to be sent at the end of the server tick. */
+    private void queue(Packet packet, EntityPlayerMP player) {
+        PacketOutbox.INSTANCE.queue(channels.get(Side.SERVER), player, packet);
     }
 
-    class LocationSendRequest extends SendRequest {
-        final int dimensionId;
-        final int maxDistance;
-        final Vec3 pos;
-
-        LocationSendRequest(Packet packet, int dimensionId, Vec3 pos, int distance) {
-            super(packet);
-            this.dimensionId = dimensionId;
-            this.pos = pos;
-            this.maxDistance = distance * distance;
-        }
-
-        @Override
-        void editAttributes(FMLEmbeddedChannel channel) {
-            TargetPoint point = new TargetPoint(dimensionId, pos.xCoord, pos.yCoord, pos.zCoord, maxDistance);
-            channel.attr(FMLOutboundHandler.FML_MESSAGETARGET).set(OutboundTarget.ALLAROUNDPOINT);
-            channel.attr(FMLOutboundHandler.FML_MESSAGETARGETARGS).set(point);
+    private static void checkWorld(Packet packet) {
+        if (packet.tempWorld == null) {
+            NullPointerException npe = new NullPointerException("The packet's world was null! Cannot send this!");
+            BCLog.logger.fatal("// Blame AlexIIL", npe);
+            throw npe;
         }
     }
 
-    class AllSendRequest extends SendRequest {
-        AllSendRequest(Packet packet) {
-            super(packet);
-        }
-
-        @Override
-        void editAttributes(FMLEmbeddedChannel channel) {
-            channel.attr(FMLOutboundHandler.FML_MESSAGETARGET).set(OutboundTarget.ALL);
+    private void sendToPlayersAround(Packet packet, World world, Vec3 pos, int maxDistance) {
+        checkWorld(packet);
+        double rangeSq = (double) maxDistance * maxDistance;
+        for (EntityPlayer player : world.playerEntities) {
+            if (player instanceof EntityPlayerMP && player.getDistanceSq(pos.xCoord, pos.yCoord, pos.zCoord) < rangeSq) {
+                queue(packet, (EntityPlayerMP) player);
+            }
         }
     }
 
-    static {
-        // Swap them when debugging
-        packetSender = Executors.newSingleThreadExecutor();
-        // packetSender = ImmediateExecutor.INSTANCE;
-    }
-
-    private static void addSendRequest(SendRequest request) {
-        packetSender.execute(request);
-    }
-
     public void sendToPlayers(Packet packet, World world, BlockPos pos, int maxDistance) {
-        addSendRequest(new LocationSendRequest(packet, world.provider.getDimensionId(), Utils.convertMiddle(pos), maxDistance));
+        sendToPlayersAround(packet, world, Utils.convertMiddle(pos), maxDistance);
     }
 
     public void sendToPlayersNear(Packet packet, TileEntity tile, int maxDistance) {
@@ -165,19 +76,30 @@ public class BuildCraftMod implements IBuildCraftMod {
     }
 
     public void sendToWorld(Packet packet, World world) {
-        addSendRequest(new WorldSendRequest(packet, world.provider.getDimensionId()));
+        checkWorld(packet);
+        for (EntityPlayer player : world.playerEntities) {
+            if (player instanceof EntityPlayerMP) {
+                queue(packet, (EntityPlayerMP) player);
+            }
+        }
     }
 
     public void sendToEntity(Packet packet, Entity entity) {
-        addSendRequest(new EntitySendRequest(packet, entity, DefaultProps.NETWORK_UPDATE_RANGE));
+        sendToPlayersAround(packet, entity.worldObj, Utils.getVec(entity), DefaultProps.NETWORK_UPDATE_RANGE);
     }
 
     public void sendToPlayer(EntityPlayer player, Packet packet) {
-        addSendRequest(new PlayerSendRequest(packet, player));
+        checkWorld(packet);
+        if (player instanceof EntityPlayerMP) {
+            queue(packet, (EntityPlayerMP) player);
+        }
     }
 
     public void sendToAll(Packet packet) {
-        addSendRequest(new AllSendRequest(packet));
+        checkWorld(packet);
+        for (EntityPlayerMP player : MinecraftServer.getServer().getConfigurationManager().playerEntityList) {
+            queue(packet, player);
+        }
     }
 
     public void sendToServer(Packet packet) {
@@ -168,10 +168,13 @@ public class BuildCraftTransport extends BuildCraftMod {
 
     public static boolean debugPrintFacadeList = false;
     public static boolean usePipeLoss = false;
+    public static boolean useNetworkSolver = false;
+    public static boolean predictItemMotion = false;
 
     public static float gateCostMultiplier = 1.0F;
 
     public static PipeExtensionListener pipeExtensionListener;
+    public static TravelerSyncBatcher travelerSyncBatcher;
 
     private static LinkedList<PipeRecipe> pipeRecipes = new LinkedList<PipeRecipe>();
     private static ChannelHandler transportChannelHandler;
@@ -198,7 +201,13 @@ public class BuildCraftTransport extends BuildCraftMod {
         try {
             BuildCraftCore.mainConfigManager.register("experimental.kinesisPowerLossOnTravel", false,
                     "Should kinesis pipes lose power over distance (think IC2 or BC pre-3.7)?", ConfigManager.RestartRequirement.WORLD);
+            BuildCraftCore.mainConfigManager.register("experimental.kinesisNetworkSolver", false,
+                    "Should connected kinesis pipes move power from engines to machines all at once, instead of one pipe per tick?",
+                    ConfigManager.RestartRequirement.WORLD);
 
+            BuildCraftCore.mainConfigManager.register("experimental.predictItemMotion", false,
+                    "Should clients move items between pipes by themselves, so the server only sends items that go somewhere unexpected?",
+                    ConfigManager.RestartRequirement.NONE);
             BuildCraftCore.mainConfigManager.register("general.pipes.hardness", DefaultProps.PIPES_DURABILITY, "How hard to break should a pipe be?",
                     ConfigManager.RestartRequirement.NONE);
             BuildCraftCore.mainConfigManager.register("general.pipes.baseFluidRate", DefaultProps.PIPES_FLUIDS_BASE_FLOW_RATE,
@@ -386,7 +395,7 @@ public class BuildCraftTransport extends BuildCraftMod {
         transportChannelHandler.registerPacketType(PacketFluidUpdate.class);
         transportChannelHandler.registerPacketType(PacketPipeTransportItemStack.class);
         transportChannelHandler.registerPacketType(PacketPipeTransportItemStackRequest.class);
-        transportChannelHandler.registerPacketType(PacketPipeTransportTraveler.class);
+        transportChannelHandler.registerPacketType(PacketPipeTransportTravelerBatch.class);
         transportChannelHandler.registerPacketType(PacketPowerUpdate.class);
 
         channels = NetworkRegistry.INSTANCE.newChannel(DefaultProps.NET_CHANNEL_NAME + "-TRANSPORT", transportChannelHandler, new PacketHandler());
@@ -522,10 +531,12 @@ public class BuildCraftTransport extends BuildCraftMod {
             reloadConfig(ConfigManager.RestartRequirement.WORLD);
         } else if (restartType == ConfigManager.RestartRequirement.WORLD) {
             usePipeLoss = BuildCraftCore.mainConfigManager.get("experimental.kinesisPowerLossOnTravel").getBoolean();
+            useNetworkSolver = BuildCraftCore.mainConfigManager.get("experimental.kinesisNetworkSolver").getBoolean();
 
             reloadConfig(ConfigManager.RestartRequirement.NONE);
         } else {
             pipeDurability = (float) BuildCraftCore.mainConfigManager.get("general.pipes.hardness").getDouble();
+            predictItemMotion = BuildCraftCore.mainConfigManager.get("experimental.predictItemMotion").getBoolean();
 
             if (BuildCraftCore.mainConfiguration.hasChanged()) {
                 BuildCraftCore.mainConfiguration.save();
@@ -572,6 +583,8 @@ public class BuildCraftTransport extends BuildCraftMod {
     public void serverLoading(FMLServerStartingEvent event) {
         pipeExtensionListener = new PipeExtensionListener();
         MinecraftForge.EVENT_BUS.register(pipeExtensionListener);
+        travelerSyncBatcher = new TravelerSyncBatcher();
+        MinecraftForge.EVENT_BUS.register(travelerSyncBatcher);
     }
 
     @Mod.EventHandler
@@ -582,6 +595,8 @@ public class BuildCraftTransport extends BuildCraftMod {
         }
         MinecraftForge.EVENT_BUS.unregister(pipeExtensionListener);
         pipeExtensionListener = null;
+        MinecraftForge.EVENT_BUS.unregister(travelerSyncBatcher);
+        travelerSyncBatcher = null;
     }
 
     public void loadRecipes() {
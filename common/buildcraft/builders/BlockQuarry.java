@@ -85,6 +85,11 @@ public class BlockQuarry extends BlockBuildCraft {
 
         BuildCraftBuilders.frameBlock.removeNeighboringFrames(world, pos);
 
+        TileEntity tile = world.getTileEntity(pos);
+        if (tile instanceof TileQuarry) {
+            ((TileQuarry) tile).dropOutput();
+        }
+
         super.breakBlock(world, pos, state);
     }
 
@@ -0,0 +1,297 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.builders;
+
+import java.util.Arrays;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.IWorldAccess;
+import net.minecraft.world.World;
+
+/** Keeps track of the highest block left to mine in every column of a quarry, so that finding the next block to mine
+ * doesn't need to look through the whole mining area. Blocks are handed out a layer at a time from the top down, going
+ * back and forth along each layer in the same order as the quarry always has.
+ * <p>
+ * The height of a column is only looked for below its old height once the block at its old height has gone, and is
+ * raised whenever a block is placed above it, as long as the index is attached to the world. The heights are saved with
+ * the quarry, so the mining area doesn't have to be looked through again when it is loaded. */
+public class QuarryColumnIndex implements IWorldAccess {
+    public enum ColumnBlock {
+        /** A block that should be mined. */
+        MINE,
+        /** A block that should be ignored, such as air or a fluid. */
+        SKIP,
+        /** A block that can't be mined, and so stops the quarry from going further down this column. */
+        STOP
+    }
+
+    public interface IColumnSource {
+        ColumnBlock getColumnBlock(int x, int y, int z);
+    }
+
+    private static final int NONE = -1;
+
+    private final IColumnSource source;
+    private final int minX, minZ, width, depth, top, bottom;
+    /** The height of the highest block left to mine in each column, or {@link #NONE}. */
+    private final int[] heights;
+    /** The number of columns whose highest block is at each height. */
+    private final int[] counts;
+    private boolean initialized;
+    /** The layer that blocks are being handed out from, and how far along it the next block is. */
+    private int layer, cursor;
+    private World world;
+
+    /** @param minX The lowest x coordinate of the mining area.
+     * @param top The highest y coordinate that will be mined.
+     * @param bottom The lowest y coordinate that will be mined. */
+    public QuarryColumnIndex(IColumnSource source, int minX, int minZ, int width, int depth, int top, int bottom) {
+        this.source = source;
+        this.minX = minX;
+        this.minZ = minZ;
+        this.width = width;
+        this.depth = depth;
+        this.top = top;
+        this.bottom = bottom;
+        this.heights = new int[width * depth];
+        this.counts = new int[top + 1];
+    }
+
+    /** Starts listening for blocks that change in the given world. */
+    public void attach(World world) {
+        detach();
+        this.world = world;
+        world.addWorldAccess(this);
+    }
+
+    public void detach() {
+        if (world != null) {
+            world.removeWorldAccess(this);
+            world = null;
+        }
+    }
+
+    /** @return The next block to mine, without moving on from it, or null if there are no blocks left. */
+    public BlockPos peek() {
+        initialize();
+        int area = width * depth;
+        while (layer >= bottom) {
+            if (counts[layer] == 0) {
+                layer--;
+                cursor = 0;
+                continue;
+            }
+
+            for (; cursor < area; cursor++) {
+                int column = columnAt(layer, cursor);
+                if (heights[column] != layer) {
+                    continue;
+                }
+                int x = minX + column / depth;
+                int z = minZ + column % depth;
+                if (source.getColumnBlock(x, layer, z) == ColumnBlock.MINE) {
+                    return new BlockPos(x, layer, z);
+                }
+                // Mined (or otherwise removed) since it was found
+                findHeight(column, layer - 1);
+            }
+
+            // Some columns in this layer were passed over before they were mined, so go along it again
+            cursor = 0;
+        }
+        return null;
+    }
+
+    /** @return The next block to mine, or null if there are no blocks left. The block after it is returned next time,
+     *         even if this one has not been mined yet. */
+    public BlockPos next() {
+        BlockPos next = peek();
+        if (next != null) {
+            cursor++;
+        }
+        return next;
+    }
+
+    /** Gives up on mining the given block, and moves the height of its column below it. */
+    public void skip(BlockPos pos) {
+        int column = getColumn(pos.getX(), pos.getZ());
+        if (column >= 0 && initialized && heights[column] == pos.getY()) {
+            findHeight(column, pos.getY() - 1);
+        }
+    }
+
+    /** Called whenever a block in the mining area changes. */
+    public void onBlockChanged(int x, int y, int z) {
+        int column = getColumn(x, z);
+        if (column < 0 || !initialized || y > top || y < bottom || y <= heights[column]) {
+            // A block at or below the highest block of a column is checked again when the quarry gets down to it
+            return;
+        }
+
+        ColumnBlock block = source.getColumnBlock(x, y, z);
+        if (block == ColumnBlock.MINE) {
+            setHeight(column, y);
+            if (y > layer) {
+                layer = y;
+                cursor = 0;
+            }
+        } else if (block == ColumnBlock.STOP) {
+            setHeight(column, NONE);
+        }
+    }
+
+    /** @return The number of columns that still have blocks to mine. */
+    public int getColumnsLeft() {
+        initialize();
+        int left = 0;
+        for (int y = bottom; y <= top; y++) {
+            left += counts[y];
+        }
+        return left;
+    }
+
+    public void writeToNBT(NBTTagCompound nbt) {
+        if (!initialized) {
+            return;
+        }
+        nbt.setInteger("minX", minX);
+        nbt.setInteger("minZ", minZ);
+        nbt.setInteger("width", width);
+        nbt.setInteger("depth", depth);
+        nbt.setInteger("top", top);
+        nbt.setInteger("bottom", bottom);
+        nbt.setIntArray("heights", heights);
+        nbt.setInteger("layer", layer);
+        nbt.setInteger("cursor", cursor);
+    }
+
+    /** Loads the heights of the columns, if they were saved for the same mining area. */
+    public void readFromNBT(NBTTagCompound nbt) {
+        int[] saved = nbt.getIntArray("heights");
+        if (saved.length != heights.length || nbt.getInteger("minX") != minX || nbt.getInteger("minZ") != minZ || nbt.getInteger(
+                "width") != width || nbt.getInteger("depth") != depth || nbt.getInteger("top") != top || nbt.getInteger("bottom") != bottom) {
+            return;
+        }
+
+        Arrays.fill(counts, 0);
+        for (int column = 0; column < heights.length; column++) {
+            int height = saved[column] > top || saved[column] < bottom ? NONE : saved[column];
+            heights[column] = height;
+            if (height != NONE) {
+                counts[height]++;
+            }
+        }
+        layer = Math.min(nbt.getInteger("layer"), top);
+        cursor = Math.max(0, Math.min(nbt.getInteger("cursor"), heights.length));
+        initialized = true;
+    }
+
+    private void initialize() {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        Arrays.fill(heights, NONE);
+        Arrays.fill(counts, 0);
+        for (int column = 0; column < heights.length; column++) {
+            findHeight(column, top);
+        }
+        layer = top;
+        cursor = 0;
+    }
+
+    /** Looks down the given column from the given height for the next block to mine. */
+    private void findHeight(int column, int from) {
+        int x = minX + column / depth;
+        int z = minZ + column % depth;
+        int height = NONE;
+        for (int y = from; y >= bottom; y--) {
+            ColumnBlock block = source.getColumnBlock(x, y, z);
+            if (block == ColumnBlock.MINE) {
+                height = y;
+                break;
+            } else if (block == ColumnBlock.STOP) {
+                break;
+            }
+        }
+        setHeight(column, height);
+    }
+
+    private void setHeight(int column, int height) {
+        int old = heights[column];
+        if (old != NONE) {
+            counts[old]--;
+        }
+        heights[column] = height;
+        if (height != NONE) {
+            counts[height]++;
+        }
+    }
+
+    private int getColumn(int x, int z) {
+        int dx = x - minX;
+        int dz = z - minZ;
+        if (dx < 0 || dz < 0 || dx >= width || dz >= depth) {
+            return -1;
+        }
+        return dx * depth + dz;
+    }
+
+    /** @return The column that is the given distance along the given layer. Each layer goes back and forth along x,
+     *         and each row of it back and forth along z, the other way around to the layer above. */
+    private int columnAt(int y, int index) {
+        int dx = index / depth;
+        int dz = index % depth;
+        if (y % 2 != 0) {
+            dx = width - 1 - dx;
+        }
+        if (dx % 2 != y % 2) {
+            dz = depth - 1 - dz;
+        }
+        return dx * depth + dz;
+    }
+
+    @Override
+    public void markBlockForUpdate(BlockPos pos) {
+        onBlockChanged(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2) {}
+
+    @Override
+    public void playSound(String var1, double var2, double var4, double var6, float var8, float var9) {}
+
+    @Override
+    public void playSoundToNearExcept(EntityPlayer var1, String var2, double var3, double var5, double var7, float var9, float var10) {}
+
+    @Override
+    public void notifyLightSet(BlockPos pos) {}
+
+    @Override
+    public void spawnParticle(int particleID, boolean p_180442_2_, double xCoord, double yCoord, double zCoord, double xOffset, double yOffset,
+            double zOffset, int... p_180442_15_) {}
+
+    @Override
+    public void onEntityAdded(Entity entityIn) {}
+
+    @Override
+    public void onEntityRemoved(Entity entityIn) {}
+
+    @Override
+    public void playRecord(String recordName, BlockPos blockPosIn) {}
+
+    @Override
+    public void broadcastSound(int p_180440_1_, BlockPos p_180440_2_, int p_180440_3_) {}
+
+    @Override
+    public void playAuxSFX(EntityPlayer player, int sfxType, BlockPos blockPosIn, int p_180439_4_) {}
+
+    @Override
+    public void sendBlockBreakProgress(int breakerId, BlockPos pos, int progress) {}
+}
@@ -4,7 +4,7 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.builders;
 
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -51,9 +51,11 @@ import buildcraft.core.blueprints.BptBuilderBlueprint;
 import buildcraft.core.builders.TileAbstractBuilder;
 import buildcraft.core.internal.IDropControlInventory;
 import buildcraft.core.lib.RFBattery;
+import buildcraft.core.lib.inventory.ItemOutputBuffer;
 import buildcraft.core.lib.utils.BCStringUtils;
 import buildcraft.core.lib.utils.BlockMiner;
 import buildcraft.core.lib.utils.BlockUtils;
+import buildcraft.core.lib.utils.MathUtils;
 import buildcraft.core.lib.utils.Utils;
 import buildcraft.core.lib.utils.Utils.EnumAxisOrder;
 import buildcraft.core.proxy.CoreProxy;
@@ -61,7 +63,7 @@ import buildcraft.core.proxy.CoreProxy;
 import io.netty.buffer.ByteBuf;
 
 public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedInventory, IDropControlInventory, IPipeConnection, IControllable,
-        IDebuggable {
+        IDebuggable, QuarryColumnIndex.IColumnSource {
 
     private static enum Stage {
         BUILDING,
@@ -90,7 +92,8 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
 
     private BptBuilderBase builder;
 
-    private final LinkedList<int[]> visitList = Lists.newLinkedList();
+    private QuarryColumnIndex columnIndex;
+    private NBTTagCompound columnNBT = null;
 
     private boolean loadDefaultBoundaries = false;
     private Ticket chunkTicket;
@@ -100,15 +103,24 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
     private NBTTagCompound initNBT = null;
 
     private BlockMiner miner;
+    /** The blocks being mined at once without the arm, when there is enough power for more than one. */
+    private final List<BlockMiner> miners = Lists.newArrayList();
+    private final ItemOutputBuffer output = new ItemOutputBuffer(this);
     private int ledState;
 
+    private long blocksMined;
+    private int blocksMinedThisSecond;
+    private float blocksPerSecond;
+    private int metricsTick;
+
     // TMP
     private int buildCallsS = 0, buildCallsF = 0;
 
     public TileQuarry() {
         box.kind = Kind.STRIPES;
-        this.setBattery(new RFBattery((int) (2 * 64 * BuilderAPI.BREAK_ENERGY * BuildCraftCore.miningMultiplier), (int) (1000
-            * BuildCraftCore.miningMultiplier), 0));
+        int heads = Math.max(1, BuildCraftBuilders.quarryMaxMiningHeads);
+        this.setBattery(new RFBattery((int) (2 * 64 * BuilderAPI.BREAK_ENERGY * BuildCraftCore.miningMultiplier * heads), (int) (1000
+            * BuildCraftCore.miningMultiplier * heads), 0));
     }
 
     public void createUtilsIfNeeded() {
@@ -185,6 +197,9 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
             return;
         }
 
+        // Items mined just before the quarry finished may still be waiting for room
+        output.flush();
+
         if (getStage() == Stage.DONE) {
             if (mode == Mode.Loop) {
                 setStage(Stage.IDLE);
@@ -193,6 +208,8 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
             }
         }
 
+        updateMetrics();
+
         if (!areChunksLoaded()) {
             return;
         }
@@ -209,6 +226,8 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
             } else {
                 setStage(Stage.IDLE);
             }
+        } else if (getMiningHeads() > 1 || !miners.isEmpty()) {
+            digParallel();
         } else if (getStage() == Stage.DIGGING) {
             dig();
         } else if (getStage() == Stage.IDLE) {
@@ -253,26 +272,18 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
             return;
         }
 
+        if (output.isBlocked()) {
+            // Wait for the inventories or pipes around us to take what has already been mined
+            return;
+        }
+
         int rfTaken = miner.acceptEnergy(getBattery().getEnergyStored());
         getBattery().useEnergy(rfTaken, rfTaken, false);
 
         if (miner.hasMined()) {
-            // Collect any lost items laying around.
             double[] head = getHead();
-            AxisAlignedBB axis = new AxisAlignedBB(head[0] - 2, head[1] - 2, head[2] - 2, head[0] + 3, head[1] + 3, head[2] + 3);
-            List<EntityItem> result = worldObj.getEntitiesWithinAABB(EntityItem.class, axis);
-            for (EntityItem entity : result) {
-                if (entity.isDead) {
-                    continue;
-                }
-
-                ItemStack mineable = entity.getEntityItem();
-                if (mineable.stackSize <= 0) {
-                    continue;
-                }
-                CoreProxy.proxy.removeEntity(entity);
-                miner.mineStack(mineable);
-            }
+            collectItems(miner, head[0], head[1], head[2]);
+            blocksMinedThisSecond++;
             setStage(Stage.IDLE);
             miner = null;
             return;
@@ -282,11 +293,141 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
             initializeBlueprintBuilder();
             stage = Stage.BUILDING;
         } else if (miner.hasFailed()) {
+            if (columnIndex != null) {
+                columnIndex.skip(target.down());
+            }
             setStage(Stage.IDLE);
             miner = null;
         }
     }
 
+    /** Collects any lost items laying around the given position. */
+    private void collectItems(BlockMiner miner, double x, double y, double z) {
+        AxisAlignedBB axis = new AxisAlignedBB(x - 2, y - 2, z - 2, x + 3, y + 3, z + 3);
+        List<EntityItem> result = worldObj.getEntitiesWithinAABB(EntityItem.class, axis);
+        for (EntityItem entity : result) {
+            if (entity.isDead) {
+                continue;
+            }
+
+            ItemStack mineable = entity.getEntityItem();
+            if (mineable.stackSize <= 0) {
+                continue;
+            }
+            CoreProxy.proxy.removeEntity(entity);
+            miner.mineStack(mineable);
+        }
+    }
+
+    /** @return The number of blocks that should be mined at once. This goes up as the battery fills, so that the quarry
+     *         mines faster the more power it is given, up to {@link BuildCraftBuilders#quarryMaxMiningHeads}. */
+    public int getMiningHeads() {
+        int max = BuildCraftBuilders.quarryMaxMiningHeads;
+        if (max <= 1) {
+            return 1;
+        }
+        return MathUtils.clamp(getBattery().getEnergyStored() * max / getBattery().getMaxEnergyStored(), 1, max);
+    }
+
+    /** Mines several blocks at once without moving the arm, taking as many targets from the column index as there is
+     * power for. The arm is just moved straight to the last block that was started, so that it can be seen where the
+     * quarry is working. */
+    private void digParallel() {
+        if (output.isBlocked()) {
+            return;
+        }
+
+        if (!findFrame()) {
+            for (BlockMiner m : miners) {
+                m.invalidate();
+            }
+            miners.clear();
+            initializeBlueprintBuilder();
+            stage = Stage.BUILDING;
+            return;
+        }
+
+        if (miner != null) {
+            miners.add(miner);
+            miner = null;
+        }
+
+        int heads = getMiningHeads();
+        QuarryColumnIndex index = getColumnIndex();
+        while (heads > 1 && miners.size() < heads) {
+            BlockPos next = index.peek();
+            if (next == null || isBeingMined(next)) {
+                // The rest of this layer is already being mined
+                break;
+            }
+            index.next();
+            miners.add(new BlockMiner(worldObj, this, next, output));
+            setTarget(next.up());
+            setHead(next.getX(), next.getY() + 1, next.getZ());
+            movingHorizontally = false;
+            movingVertically = false;
+            speed = 0;
+        }
+
+        if (miners.isEmpty()) {
+            idling();
+            return;
+        }
+
+        if (getStage() != Stage.DIGGING) {
+            setStage(Stage.DIGGING);
+        }
+
+        for (Iterator<BlockMiner> iterator = miners.iterator(); iterator.hasNext();) {
+            BlockMiner m = iterator.next();
+            int rfTaken = m.acceptEnergy(getBattery().getEnergyStored());
+            getBattery().useEnergy(rfTaken, rfTaken, false);
+
+            if (m.hasMined()) {
+                BlockPos minedPos = m.getPos();
+                collectItems(m, minedPos.getX(), minedPos.getY(), minedPos.getZ());
+                blocksMinedThisSecond++;
+                iterator.remove();
+            } else if (m.hasFailed()) {
+                index.skip(m.getPos());
+                iterator.remove();
+            }
+        }
+
+        if (miners.isEmpty()) {
+            setStage(Stage.IDLE);
+        }
+    }
+
+    private boolean isBeingMined(BlockPos pos) {
+        for (BlockMiner m : miners) {
+            if (m.getPos().equals(pos)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void updateMetrics() {
+        if (++metricsTick < 20) {
+            return;
+        }
+        metricsTick = 0;
+        blocksMined += blocksMinedThisSecond;
+        blocksPerSecond = blocksPerSecond * 0.8f + blocksMinedThisSecond * 0.2f;
+        blocksMinedThisSecond = 0;
+    }
+
+    /** @return The total number of blocks that this quarry has mined. */
+    public long getBlocksMined() {
+        return blocksMined + blocksMinedThisSecond;
+    }
+
+    /** @return A moving average of the number of blocks mined per second. */
+    public float getBlocksPerSecond() {
+        return blocksPerSecond;
+    }
+
     protected boolean findFrame() {
         for (EnumFacing face : EnumFacing.Plane.HORIZONTAL.facings()) {
             if (box.contains(getPos().offset(face))) {
@@ -324,103 +465,47 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
             return false;
         }
 
-        boolean columnVisitListIsUpdated = false;
-
-        if (visitList.isEmpty()) {
-            createColumnVisitList();
-            columnVisitListIsUpdated = true;
-        }
+        QuarryColumnIndex index = getColumnIndex();
 
         if (!doSet) {
-            return !visitList.isEmpty();
+            return index.peek() != null;
         }
 
-        if (visitList.isEmpty()) {
+        BlockPos nextTarget = index.next();
+        if (nextTarget == null) {
             return false;
         }
 
-        int[] nextTarget = visitList.removeFirst();
-
-        if (!columnVisitListIsUpdated) { // nextTarget may not be accurate, at least search the target column for
-                                         // changes
-            for (int y = nextTarget[1] + 1; y < getPos().getY() + 3; y++) {
-                if (isQuarriableBlock(new BlockPos(nextTarget[0], y, nextTarget[2]))) {
-                    createColumnVisitList();
-                    columnVisitListIsUpdated = true;
-                    nextTarget = null;
-                    break;
-                }
-            }
-        }
-
-        if (columnVisitListIsUpdated && nextTarget == null && !visitList.isEmpty()) {
-            nextTarget = visitList.removeFirst();
-        } else if (columnVisitListIsUpdated && nextTarget == null) {
-            return false;
-        }
-
-        setTarget(new BlockPos(nextTarget[0], nextTarget[1] + 1, nextTarget[2]));
+        setTarget(nextTarget.up());
 
         return true;
     }
 
-    /** Make the column visit list: called once per layer */
-    private void createColumnVisitList() {
-        visitList.clear();
-        boolean[][] blockedColumns = new boolean[builder.blueprint.size.getX() - 2][builder.blueprint.size.getZ() - 2];
-
-        for (int searchY = pos.getY() + 3; searchY >= 1; --searchY) {
-            int startX, endX, incX;
-
-            if (searchY % 2 == 0) {
-                startX = 0;
-                endX = builder.blueprint.size.getX() - 2;
-                incX = 1;
-            } else {
-                startX = builder.blueprint.size.getX() - 3;
-                endX = -1;
-                incX = -1;
-            }
-
-            for (int searchX = startX; searchX != endX; searchX += incX) {
-                int startZ, endZ, incZ;
-
-                if (searchX % 2 == searchY % 2) {
-                    startZ = 0;
-                    endZ = builder.blueprint.size.getZ() - 2;
-                    incZ = 1;
-                } else {
-                    startZ = builder.blueprint.size.getZ() - 3;
-                    endZ = -1;
-                    incZ = -1;
-                }
-
-                for (int searchZ = startZ; searchZ != endZ; searchZ += incZ) {
-                    if (!blockedColumns[searchX][searchZ]) {
-                        int bx = box.min().getX() + searchX + 1;
-                        int by = searchY;
-                        int bz = box.min().getZ() + searchZ + 1;
-
-                        BlockPos pos = new BlockPos(bx, by, bz);
-                        IBlockState state = worldObj.getBlockState(pos);
-                        Block block = state.getBlock();
-
-                        if (!BlockUtils.canChangeBlock(state, worldObj, pos)) {
-                            blockedColumns[searchX][searchZ] = true;
-                        } else if (!BuildCraftAPI.isSoftBlock(worldObj, pos) && !(block instanceof BlockLiquid) && !(block instanceof IFluidBlock)) {
-                            visitList.add(new int[] { bx, by, bz });
-                        }
-
-                        // Stop at two planes - generally any obstructions will have been found and will force a
-                        // recompute prior to this
-                        if (visitList.size() > builder.blueprint.size.getZ() * builder.blueprint.size.getX() * 2) {
-                            return;
-                        }
-                    }
-                }
+    private QuarryColumnIndex getColumnIndex() {
+        if (columnIndex == null) {
+            columnIndex = new QuarryColumnIndex(this, box.min().getX() + 1, box.min().getZ() + 1, box.size().getX() - 2, box.size().getZ() - 2, pos
+                    .getY() + 3, 1);
+            if (columnNBT != null) {
+                columnIndex.readFromNBT(columnNBT);
+                columnNBT = null;
             }
+            columnIndex.attach(worldObj);
         }
+        return columnIndex;
+    }
 
+    @Override
+    public QuarryColumnIndex.ColumnBlock getColumnBlock(int x, int y, int z) {
+        BlockPos pos = new BlockPos(x, y, z);
+        IBlockState state = worldObj.getBlockState(pos);
+        Block block = state.getBlock();
+        if (!BlockUtils.canChangeBlock(state, worldObj, pos)) {
+            return QuarryColumnIndex.ColumnBlock.STOP;
+        } else if (BuildCraftAPI.isSoftBlock(worldObj, pos) || block instanceof BlockLiquid || block instanceof IFluidBlock) {
+            return QuarryColumnIndex.ColumnBlock.SKIP;
+        } else {
+            return QuarryColumnIndex.ColumnBlock.MINE;
+        }
     }
 
     @Override
@@ -462,6 +547,13 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
         double headPosZ = nbttagcompound.getDouble("headPosZ");
         headPos = new Vec3(headPosX, headPosY, headPosZ);
 
+        blocksMined = nbttagcompound.getLong("blocksMined");
+        output.readFromNBT(nbttagcompound.getCompoundTag("output"));
+
+        if (nbttagcompound.hasKey("columns")) {
+            columnNBT = nbttagcompound.getCompoundTag("columns");
+        }
+
         // The rest of load has to be done upon initialize.
         initNBT = (NBTTagCompound) nbttagcompound.getCompoundTag("bpt").copy();
     }
@@ -490,6 +582,19 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
         }
 
         nbttagcompound.setTag("bpt", bptNBT);
+        nbttagcompound.setLong("blocksMined", getBlocksMined());
+
+        NBTTagCompound outputTag = new NBTTagCompound();
+        output.writeToNBT(outputTag);
+        nbttagcompound.setTag("output", outputTag);
+
+        if (columnIndex != null) {
+            NBTTagCompound columnTag = new NBTTagCompound();
+            columnIndex.writeToNBT(columnTag);
+            nbttagcompound.setTag("columns", columnTag);
+        } else if (columnNBT != null) {
+            nbttagcompound.setTag("columns", columnNBT);
+        }
     }
 
     public void positionReached() {
@@ -499,7 +604,7 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
 
         BlockPos pos = target.down();
         if (isQuarriableBlock(pos)) {
-            miner = new BlockMiner(worldObj, this, pos);
+            miner = new BlockMiner(worldObj, this, pos, output);
             setStage(Stage.DIGGING);
         } else {
             setStage(Stage.IDLE);
@@ -507,10 +612,7 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
     }
 
     private boolean isQuarriableBlock(BlockPos pos) {
-        IBlockState state = worldObj.getBlockState(pos);
-        Block block = state.getBlock();
-        return BlockUtils.canChangeBlock(state, worldObj, pos) && !BuildCraftAPI.isSoftBlock(worldObj, pos) && !(block instanceof BlockLiquid)
-            && !(block instanceof IFluidBlock);
+        return getColumnBlock(pos.getX(), pos.getY(), pos.getZ()) == QuarryColumnIndex.ColumnBlock.MINE;
     }
 
     @Override
@@ -523,6 +625,11 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
         destroy();
     }
 
+    /** Drops the items that have been mined but not sent out yet, for when the quarry is broken. */
+    public void dropOutput() {
+        output.dropAll();
+    }
+
     @Override
     public void onChunkUnload() {
         destroy();
@@ -541,6 +648,15 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
         if (miner != null) {
             miner.invalidate();
         }
+
+        for (BlockMiner m : miners) {
+            m.invalidate();
+        }
+        miners.clear();
+
+        if (columnIndex != null) {
+            columnIndex.detach();
+        }
     }
 
     @Override
@@ -607,6 +723,11 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
 
         box.initialize(a);
 
+        if (columnIndex != null) {
+            columnIndex.detach();
+            columnIndex = null;
+        }
+
         if (ySize < 5) {
             ySize = 5;
             box.setMax(Utils.withValue(box.max(), Axis.Y, box.min().getY() + ySize - 1));
@@ -978,5 +1099,11 @@ public class TileQuarry extends TileAbstractBuilder implements IHasWork, ISidedI
         }
         left.add("  - Head = " + BCStringUtils.vec3ToDispString(server.headPos));
         left.add("  - Target = " + BCStringUtils.vec3ToDispString(server.target));
+        left.add("  - Heads = " + Math.max(server.miners.size(), server.miner != null ? 1 : 0) + "/" + server.getMiningHeads());
+        left.add("  - Mined = " + server.getBlocksMined() + " (" + String.format("%.2f", server.getBlocksPerSecond()) + " blocks/s)");
+        left.add("  - Output = " + server.output.size() + " stacks waiting" + (server.output.isBlocked() ? " (blocked)" : ""));
+        if (server.columnIndex != null) {
+            left.add("  - Columns left = " + server.columnIndex.getColumnsLeft());
+        }
     }
 }
@@ -0,0 +1,24 @@
+package buildcraft.core.command;
+
+import net.minecraft.command.ICommandSender;
+
+import buildcraft.core.lib.commands.CommandHelpers;
+import buildcraft.core.lib.commands.SubCommand;
+import buildcraft.core.lib.network.base.PacketOutbox;
+
+public class SubCommandNetwork extends SubCommand {
+    public SubCommandNetwork() {
+        super("network");
+        setPermLevel(PermLevel.ADMIN);
+    }
+
+    @Override
+    public void processSubCommand(ICommandSender sender, String[] args) {
+        PacketOutbox outbox = PacketOutbox.INSTANCE;
+        CommandHelpers.sendChatMessage(sender, String.format("Queue depth: %d (peak %d)", outbox.getQueueDepth(), outbox.getPeakQueueDepth()));
+        CommandHelpers.sendChatMessage(sender, String.format("Flush time: %.3fms (average %.3fms, peak %.3fms)", outbox.getLastFlushNanos() / 1e6,
+                outbox.getAverageFlushNanos() / 1e6, outbox.getPeakFlushNanos() / 1e6));
+        CommandHelpers.sendChatMessage(sender, String.format("Packets: %d queued, %d sent in %d bundles, %d merged, %d dropped", outbox
+                .getPacketsQueued(), outbox.getPacketsSent(), outbox.getBundlesSent(), outbox.getPacketsMerged(), outbox.getPacketsDropped()));
+    }
+}
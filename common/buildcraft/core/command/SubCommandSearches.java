@@ -0,0 +1,27 @@
+package buildcraft.core.command;
+
+import net.minecraft.command.ICommandSender;
+
+import buildcraft.core.lib.commands.CommandHelpers;
+import buildcraft.core.lib.commands.SubCommand;
+import buildcraft.core.lib.utils.SearchExecutor;
+
+public class SubCommandSearches extends SubCommand {
+    public SubCommandSearches() {
+        super("searches");
+        setPermLevel(PermLevel.ADMIN);
+    }
+
+    @Override
+    public void processSubCommand(ICommandSender sender, String[] args) {
+        SearchExecutor executor = SearchExecutor.INSTANCE;
+        CommandHelpers.sendChatMessage(sender, String.format("Threads: %d%s, %d searches queued, %d running", executor.getThreadCount(), executor
+                .isVirtual() ? " (virtual)" : "", executor.getQueued(), executor.getRunning()));
+        CommandHelpers.sendChatMessage(sender, String.format("Searches: %d started, %d finished, %d iterations", executor.getSearchesStarted(),
+                executor.getSearchesFinished(), executor.getIterationsRun()));
+        CommandHelpers.sendChatMessage(sender, String.format("Wait time: %.3fms (peak %.3fms)", executor.getAverageWaitNanos() / 1e6, executor
+                .getPeakWaitNanos() / 1e6));
+        CommandHelpers.sendChatMessage(sender, String.format("Iteration time: %.3fms (peak %.3fms)", executor.getAverageRunNanos() / 1e6, executor
+                .getPeakRunNanos() / 1e6));
+    }
+}
@@ -1,14 +1,21 @@
 package buildcraft.core.lib.event;
 
-import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 public class EventBusASM<T> implements IEventBus<T> {
-    private final Multimap<Object, IEventHandler<T>> handlers = HashMultimap.create();
+    private static final Listener<?>[] NO_LISTENERS = new Listener<?>[0];
+    private static final IEventHandler<?>[] NO_HANDLERS = new IEventHandler<?>[0];
+
     private final EventBusProviderASM<T> provider;
+    /** Only modified while holding the lock on this map. */
+    private final Map<Object, List<Listener<T>>> handlers = Maps.newHashMap();
+    /** Replaced (never modified) whenever a handler is registered or unregistered. */
+    private volatile Snapshot<T> snapshot = new Snapshot<T>(EventBusASM.<Listener<T>> typed(NO_LISTENERS));
 
     public EventBusASM(EventBusProviderASM<T> provider) {
         this.provider = provider;
@@ -17,21 +24,93 @@ public class EventBusASM<T> implements IEventBus<T> {
     @Override
     public void registerHandler(Object handler) {
         EventProviderASM<T> eventProvider = provider.getProviderFor(handler.getClass());
-        handlers.putAll(handler, eventProvider.getNewHandlerSet(handler));
+        List<IEventHandler<T>> newHandlers = eventProvider.getNewHandlerSet(handler);
+        List<Class<?>> eventTypes = eventProvider.getEventTypes();
+        synchronized (handlers) {
+            List<Listener<T>> listeners = handlers.get(handler);
+            if (listeners == null) {
+                listeners = Lists.newArrayList();
+                handlers.put(handler, listeners);
+            }
+            for (int i = 0; i < newHandlers.size(); i++) {
+                listeners.add(new Listener<T>(eventTypes.get(i), newHandlers.get(i)));
+            }
+            publish();
+        }
     }
 
     @Override
     public void unregisterHandler(Object handler) {
-        handlers.removeAll(handler);
+        synchronized (handlers) {
+            if (handlers.remove(handler) != null) {
+                publish();
+            }
+        }
     }
 
     @Override
     public void handleEvent(T event) {
-        // This allows handlers to be registered and unregistered at any time, event during event firing.
-        Collection<IEventHandler<T>> handlers = this.handlers.values();
-        handlers = ImmutableList.copyOf(handlers);
+        // This allows handlers to be registered and unregistered at any time, event during event firing, as the array
+        // we iterate over is never changed after it has been published.
+        IEventHandler<T>[] handlers = snapshot.getHandlers(event.getClass());
         for (IEventHandler<T> handler : handlers) {
             handler.handle(event);
         }
     }
+
+    private void publish() {
+        List<Listener<T>> all = Lists.newArrayList();
+        for (List<Listener<T>> listeners : handlers.values()) {
+            all.addAll(listeners);
+        }
+        snapshot = new Snapshot<T>(all.toArray(EventBusASM.<Listener<T>> typed(NO_LISTENERS)));
+    }
+
+    /** Arrays of a generic type can't be created directly, so the empty arrays above are used as whichever type is
+     * needed. They are never written to, and toArray creates a new array of the same class when it needs room. */
+    @SuppressWarnings("unchecked")
+    private static <A> A[] typed(Object[] empty) {
+        return (A[]) empty;
+    }
+
+    private static final class Listener<T> {
+        private final Class<?> eventType;
+        private final IEventHandler<T> handler;
+
+        private Listener(Class<?> eventType, IEventHandler<T> handler) {
+            this.eventType = eventType;
+            this.handler = handler;
+        }
+    }
+
+    /** An immutable view of every handler registered at one point in time. The handlers that apply to each concrete
+     * event class are worked out the first time that an event of that class is fired, and then reused until the next
+     * snapshot is published. */
+    private static final class Snapshot<T> {
+        private final Listener<T>[] listeners;
+        private final Map<Class<?>, IEventHandler<T>[]> byEventClass = new ConcurrentHashMap<>();
+
+        private Snapshot(Listener<T>[] listeners) {
+            this.listeners = listeners;
+        }
+
+        private IEventHandler<T>[] getHandlers(Class<?> eventClass) {
+            IEventHandler<T>[] handlers = byEventClass.get(eventClass);
+            if (handlers == null) {
+                handlers = computeHandlers(eventClass);
+                byEventClass.put(eventClass, handlers);
+            }
+            return handlers;
+        }
+
+        private IEventHandler<T>[] computeHandlers(Class<?> eventClass) {
+            List<IEventHandler<T>> matching = Lists.newArrayList();
+            for (Listener<T> listener : listeners) {
+                if (listener.eventType.isAssignableFrom(eventClass)) {
+                    matching.add(listener.handler);
+                }
+            }
+            return matching.toArray(EventBusASM.<IEventHandler<T>> typed(NO_HANDLERS));
+        }
+    }
 }
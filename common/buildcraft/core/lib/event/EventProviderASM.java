@@ -7,9 +7,21 @@ import com.google.common.collect.Lists;
 
 public class EventProviderASM<T> {
     private final List<IEventHandlerProvider<T>> handlerProviders;
+    /** The event type that each handler provider listens to, in the same order as {@link #handlerProviders} */
+    private final List<Class<?>> eventTypes;
 
-    public EventProviderASM(List<IEventHandlerProvider<T>> handlerProviders) {
+    public EventProviderASM(List<IEventHandlerProvider<T>> handlerProviders, List<Class<?>> eventTypes) {
+        if (handlerProviders.size() != eventTypes.size()) {
+            throw new IllegalArgumentException("Every handler provider must have exactly one event type!");
+        }
         this.handlerProviders = ImmutableList.copyOf(handlerProviders);
+        this.eventTypes = ImmutableList.copyOf(eventTypes);
+    }
+
+    /** @return The event types that the handlers returned by {@link #getNewHandlerSet(Object)} listen to, in the same
+     *         order. */
+    public List<Class<?>> getEventTypes() {
+        return eventTypes;
     }
 
     public List<IEventHandler<T>> getNewHandlerSet(Object obj) {
@@ -1,5 +1,262 @@
 package buildcraft.core.lib.event;
 
-public class HandlerGenerator {
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.google.common.collect.Lists;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import buildcraft.api.core.BCLog;
+
+/** Generates classes that implement {@link IEventHandler} by calling a single listener method directly. This is shared
+ * between every event bus that wants to avoid {@link Method#invoke(Object, Object...)} when firing events. */
+public final class HandlerGenerator {
+    /** If true then every generated class is also written to ./asm/buildcraft/, to debug them. Set with
+     * -Dbuildcraft.dumpGeneratedHandlers=true */
+    private static final boolean DUMP_CLASSES = Boolean.getBoolean("buildcraft.dumpGeneratedHandlers");
+    private static final Map<Method, IEventHandlerProvider<?>> providerMap = new ConcurrentHashMap<>();
+
+    private HandlerGenerator() {}
+
+    /** Creates (or returns the already generated) provider that will create handlers which call the given method
+     * directly, without going through reflection. The method, and the class that declares it, must both be public. */
+    public static <T> IEventHandlerProvider<T> getProvider(Method meth, Class<?> parClass) {
+        IEventHandlerProvider<?> provider = providerMap.get(meth);
+        if (provider == null) {
+            synchronized (providerMap) {
+                provider = providerMap.get(meth);
+                if (provider == null) {
+                    provider = generateSingleProvider(meth, parClass);
+                    providerMap.put(meth, provider);
+                }
+            }
+        }
+        return forAnyEvent(provider);
+    }
+
+    /** Generated handlers check the class of every event themselves before calling the listener, so a generated
+     * provider can be used as a provider for any type of event. */
+    @SuppressWarnings("unchecked")
+    private static <T> IEventHandlerProvider<T> forAnyEvent(IEventHandlerProvider<?> provider) {
+        return (IEventHandlerProvider<T>) provider;
+    }
+
+    /** @return True if {@link #getProvider(Method, Class)} can generate a direct caller for the given method. */
+    public static boolean canGenerate(Method meth) {
+        return Modifier.isPublic(meth.getModifiers()) && Modifier.isPublic(meth.getDeclaringClass().getModifiers()) && !Modifier.isStatic(meth
+                .getModifiers());
+    }
+
+    private static IEventHandlerProvider<?> generateSingleProvider(Method meth, Class<?> parClass) {
+        String clsName = "buildcraft.core.lib.event._GENERATED_.";
+        clsName += meth.getDeclaringClass().getName() + "._METHOD_.";
+        clsName += meth.getName() + "._EVENT_." + parClass.getName();
+
+        String name = clsName + ".Caller";
+        byte[] bytecode = generateDirectHandler(meth, parClass, name);
+        Class<?> handler = writeAndLoadClass(bytecode, name, IEventHandler.class);
+
+        name = clsName + ".Generator";
+        bytecode = generateGenerator(handler, meth.getDeclaringClass(), name);
+        Class<?> provider = writeAndLoadClass(bytecode, name, IEventHandlerProvider.class);
+
+        try {
+            return (IEventHandlerProvider<?>) provider.newInstance();
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    private static byte[] generateGenerator(Class<?> handlerClass, Class<?> parClass, String clsName) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        ClassNode node = new ClassNode();
+        node.name = clsName.replace('.', '/');
+        node.version = Opcodes.V1_6;
+        node.access = Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL;
+        node.interfaces = Lists.newArrayList(IEventHandlerProvider.class.getName().replace('.', '/'));
+        node.superName = "java/lang/Object";
+
+        // Method:
+        // public ClassName() {
+        // super();
+        // }
+        {
+            MethodNode consturctorMethod = new MethodNode();
+            consturctorMethod.access = Opcodes.ACC_PUBLIC;
+            consturctorMethod.desc = "()V";
+            consturctorMethod.name = "<init>";
+            consturctorMethod.exceptions = Lists.newArrayList();
+
+            consturctorMethod.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            consturctorMethod.instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false));
+            consturctorMethod.instructions.add(new InsnNode(Opcodes.RETURN));
+
+            node.methods.add(consturctorMethod);
+        }
+
+        // Method:
+        // public IEventHandler createNewHandler(Object obj) {
+        // return new ClassHandler(obj);
+        // }
+        {
+            MethodNode generationMethod = new MethodNode();
+            // public final void handle(Object)
+            generationMethod.access = Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL;
+            generationMethod.desc = "(Ljava/lang/Object;)Lbuildcraft/core/lib/event/IEventHandler;";
+            generationMethod.name = "createNewHandler";
+            generationMethod.exceptions = Lists.newArrayList();
+
+            {
+                generationMethod.instructions.add(new TypeInsnNode(Opcodes.NEW, Type.getInternalName(handlerClass)));
+                generationMethod.instructions.add(new InsnNode(Opcodes.DUP));
+                generationMethod.instructions.add(new VarInsnNode(Opcodes.ALOAD, 1));
+                generationMethod.instructions.add(new TypeInsnNode(Opcodes.CHECKCAST, Type.getInternalName(parClass)));
+                generationMethod.instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, Type.getInternalName(handlerClass), "<init>", Type
+                        .getMethodDescriptor(Type.VOID_TYPE, Type.getType(parClass)), false));
+                generationMethod.instructions.add(new InsnNode(Opcodes.ARETURN));
+            }
+
+            node.methods.add(generationMethod);
+        }
+
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    private static byte[] generateDirectHandler(Method meth, Class<?> parClass, String clsName) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        ClassNode node = new ClassNode();
+        node.name = clsName.replace('.', '/');
+        node.access = Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL;
+        node.interfaces = Lists.newArrayList(IEventHandler.class.getName().replace('.', '/'));
+        node.version = Opcodes.V1_6;
+        node.superName = "java/lang/Object";
+
+        String fd = Type.getDescriptor(meth.getDeclaringClass());
+
+        node.fields.add(new FieldNode(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "listener", fd, null, null));
+
+        // This method does:
+        // public ClassName(ListenerObject obj) {
+        // super();
+        // this.listener = obj;
+        // }
+        {
+            MethodNode consturctorMethod = new MethodNode();
+            consturctorMethod.access = Opcodes.ACC_PUBLIC;
+            consturctorMethod.desc = Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(meth.getDeclaringClass()));
+            consturctorMethod.name = "<init>";
+            consturctorMethod.exceptions = Lists.newArrayList();
+
+            consturctorMethod.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            consturctorMethod.instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false));
+            consturctorMethod.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+            consturctorMethod.instructions.add(new VarInsnNode(Opcodes.ALOAD, 1));
+            consturctorMethod.instructions.add(new FieldInsnNode(Opcodes.PUTFIELD, node.name, "listener", fd));
+            consturctorMethod.instructions.add(new InsnNode(Opcodes.RETURN));
+
+            node.methods.add(consturctorMethod);
+        }
+
+        // This method does:
+        // public final void handle(Object event) {
+        // if (!(event instanceof EventClass)) return;
+        // listener.<method_name>((EventClass) event);
+        // }
+        {
+            MethodNode generationMethod = new MethodNode();
+            // public final void handle(Object)
+            generationMethod.access = Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL;
+            generationMethod.desc = Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object.class));
+            generationMethod.name = "handle";
+            generationMethod.exceptions = Lists.newArrayList();
+
+            // This block does:
+            // if (!(event instanceof EventClass)) return;
+            {
+                // ADD the first object (given as [this, event])
+                // -> event
+                generationMethod.instructions.add(new VarInsnNode(Opcodes.ALOAD, 1));
+                // event -> event instanceof PAR_CLASS -> boolean
+                generationMethod.instructions.add(new TypeInsnNode(Opcodes.INSTANCEOF, Type.getInternalName(parClass)));
+                LabelNode instanceLabel = new LabelNode();
+                // boolean -> if (boolean) GOTO instanceLabel ->
+                generationMethod.instructions.add(new JumpInsnNode(Opcodes.IFNE, instanceLabel));
+                // return;
+                generationMethod.instructions.add(new InsnNode(Opcodes.RETURN));
+                generationMethod.instructions.add(instanceLabel);
+            }
+            // This block does:
+            // listener.<method_name>(event);
+            {
+                generationMethod.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+                // -> ListenerObject
+                String desc = Type.getDescriptor(meth.getDeclaringClass());
+                generationMethod.instructions.add(new FieldInsnNode(Opcodes.GETFIELD, node.name, "listener", desc));
+                // -> Object
+                generationMethod.instructions.add(new VarInsnNode(Opcodes.ALOAD, 1));
+                // CheckCast
+                generationMethod.instructions.add(new TypeInsnNode(Opcodes.CHECKCAST, Type.getInternalName(parClass)));
+                // ListenerObject, EventObject -> <method_name> ->
+                generationMethod.instructions.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, Type.getInternalName(meth.getDeclaringClass()), meth
+                        .getName(), Type.getMethodDescriptor(meth), false));
+            }
+            // return;
+            generationMethod.instructions.add(new InsnNode(Opcodes.RETURN));
+
+            node.methods.add(generationMethod);
+        }
+
+        node.accept(writer);
+
+        byte[] bytecode = writer.toByteArray();
+        return bytecode;
+    }
+
+    /** Defines a generated class, and checks that it implements the given interface. */
+    private static Class<?> writeAndLoadClass(byte[] bytes, String clsName, Class<?> type) {
+        if (DUMP_CLASSES) {
+            File file = new File("./asm/buildcraft/" + clsName + ".class");
+            file.getParentFile().mkdirs();
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                fos.write(bytes);
+            } catch (IOException e) {
+                BCLog.logger.warn("Could not write the generated class " + clsName + " to " + file, e);
+            }
+        }
+
+        return ByteCodeLoader.INSTANCE.define(clsName, bytes).asSubclass(type);
+    }
+
+    static class ByteCodeLoader extends ClassLoader {
+        public static final ByteCodeLoader INSTANCE = new ByteCodeLoader();
+
+        private Map<String, Class<?>> classDefinitionMap = new HashMap<>();
+
+        private ByteCodeLoader() {
+            super(ByteCodeLoader.class.getClassLoader());
+        }
+
+        public Class<?> define(String name, byte[] data) {
+            // Synchronise around the map otherwise two different threads can try to define the same class at the same
+            // time
+            synchronized (classDefinitionMap) {
+                if (!classDefinitionMap.containsKey(name)) {
+                    BCLog.logger.debug("Defining the class " + name);
+                    classDefinitionMap.put(name, defineClass(name, data, 0, data.length));
+                }
+                return classDefinitionMap.get(name);
+            }
+        }
+    }
 }
@@ -0,0 +1,239 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.core.lib.inventory;
+
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import net.minecraft.entity.item.EntityItem;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.world.World;
+
+import buildcraft.BuildCraftCore;
+import buildcraft.api.power.IEngine;
+import buildcraft.api.transport.IInjectable;
+import buildcraft.core.CompatHooks;
+
+/** Holds the items that a machine has mined until they can be put into the inventories or pipes next to it, instead
+ * of looking through every neighbour for every single stack. Stacks of the same item are merged as they come in, and
+ * are all sent out in one go by {@link #flush()}, which the machine calls once per tick.
+ * <p>
+ * The neighbours that can take items are only looked for every {@link #RESOLVE_INTERVAL} ticks, or sooner if one of
+ * them is removed. Pipes only count if they accept items from this side. If there are none at all then the items are
+ * thrown out on top of the machine as they always have been. If there are some but they are full, the items are kept
+ * here and {@link #isBlocked()} becomes true once {@link #MAX_STACKS} are waiting, so the machine can stop mining until
+ * there is room again rather than filling the world with item entities. */
+public class ItemOutputBuffer {
+    public static final int MAX_STACKS = 27;
+    private static final int RESOLVE_INTERVAL = 20;
+
+    private final TileEntity owner;
+    private final List<ItemStack> stacks = Lists.newArrayList();
+
+    private final TileEntity[] tiles = new TileEntity[6];
+    private final ITransactor[] transactors = new ITransactor[6];
+    private final IInjectable[] injectables = new IInjectable[6];
+    private boolean hasTargets;
+    private long resolvedAt = Long.MIN_VALUE, flushedAt = Long.MIN_VALUE;
+    private int nextSide;
+
+    private long itemsOutput, itemsThrown, ticksBlocked;
+
+    public ItemOutputBuffer(TileEntity owner) {
+        this.owner = owner;
+    }
+
+    public void add(ItemStack stack) {
+        if (stack == null || stack.stackSize <= 0) {
+            return;
+        }
+        stack = stack.copy();
+        for (ItemStack held : stacks) {
+            stack.stackSize -= StackHelper.mergeStacks(stack, held, true);
+            if (stack.stackSize <= 0) {
+                return;
+            }
+        }
+        stacks.add(stack);
+    }
+
+    /** @return True if so many items are waiting that the machine should stop mining more. */
+    public boolean isBlocked() {
+        return stacks.size() >= MAX_STACKS;
+    }
+
+    public boolean isEmpty() {
+        return stacks.isEmpty();
+    }
+
+    /** @return The number of stacks waiting to be sent out. */
+    public int size() {
+        return stacks.size();
+    }
+
+    /** Sends out as many of the waiting items as the neighbours will take. Does nothing if it has already been called
+     * this tick. */
+    public void flush() {
+        World world = owner.getWorld();
+        if (world == null || world.isRemote || stacks.isEmpty()) {
+            return;
+        }
+        long now = world.getTotalWorldTime();
+        if (flushedAt == now) {
+            return;
+        }
+        flushedAt = now;
+
+        if (now - resolvedAt >= RESOLVE_INTERVAL || !isResolvedValid()) {
+            resolve(world, now);
+        }
+
+        if (!hasTargets) {
+            for (ItemStack stack : stacks) {
+                throwStack(world, owner.getPos(), stack);
+                itemsThrown += stack.stackSize;
+            }
+            stacks.clear();
+            return;
+        }
+
+        // Start from a different side each tick, so that items are spread between the neighbours
+        nextSide = (nextSide + 1) % 6;
+        for (Iterator<ItemStack> iterator = stacks.iterator(); iterator.hasNext();) {
+            ItemStack stack = iterator.next();
+            int before = stack.stackSize;
+            output(stack);
+            itemsOutput += before - stack.stackSize;
+            if (stack.stackSize <= 0) {
+                iterator.remove();
+            }
+        }
+
+        if (isBlocked()) {
+            ticksBlocked++;
+        }
+    }
+
+    private void output(ItemStack stack) {
+        for (int i = 0; i < 6 && stack.stackSize > 0; i++) {
+            int side = (nextSide + i) % 6;
+            ITransactor transactor = transactors[side];
+            if (transactor != null) {
+                stack.stackSize -= transactor.add(stack, EnumFacing.VALUES[side].getOpposite(), true).stackSize;
+            }
+        }
+        for (int i = 0; i < 6 && stack.stackSize > 0; i++) {
+            int side = (nextSide + i) % 6;
+            IInjectable injectable = injectables[side];
+            EnumFacing from = EnumFacing.VALUES[side].getOpposite();
+            if (injectable != null && injectable.canInjectItems(from)) {
+                stack.stackSize -= injectable.injectItem(stack, true, from, null);
+            }
+        }
+    }
+
+    private boolean isResolvedValid() {
+        for (TileEntity tile : tiles) {
+            if (tile != null && tile.isInvalid()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resolve(World world, long now) {
+        resolvedAt = now;
+        hasTargets = false;
+        for (EnumFacing side : EnumFacing.VALUES) {
+            int s = side.ordinal();
+            TileEntity tile = world.getTileEntity(owner.getPos().offset(side));
+            tiles[s] = tile;
+            transactors[s] = tile instanceof IEngine ? null : Transactor.getTransactorFor(tile);
+            IInjectable injectable;
+            if (tile instanceof IInjectable) {
+                injectable = (IInjectable) tile;
+            } else {
+                injectable = CompatHooks.INSTANCE.getInjectableWrapper(tile, side);
+            }
+            // Pipes that don't carry items (such as kinesis and fluid pipes) are not somewhere to put them
+            injectables[s] = injectable != null && injectable.canInjectItems(side.getOpposite()) ? injectable : null;
+            hasTargets |= transactors[s] != null || injectables[s] != null;
+        }
+    }
+
+    /** Forgets the neighbours, so that they are looked for again on the next flush. */
+    public void invalidate() {
+        resolvedAt = Long.MIN_VALUE;
+    }
+
+    /** Drops everything that is waiting, for when the machine is broken. */
+    public void dropAll() {
+        World world = owner.getWorld();
+        for (ItemStack stack : stacks) {
+            InvUtils.dropItems(world, stack, owner.getPos());
+        }
+        stacks.clear();
+    }
+
+    public long getItemsOutput() {
+        return itemsOutput;
+    }
+
+    /** @return The number of items that were thrown out because there was nowhere to put them. */
+    public long getItemsThrown() {
+        return itemsThrown;
+    }
+
+    /** @return The number of ticks that the machine has had to stop mining for. */
+    public long getTicksBlocked() {
+        return ticksBlocked;
+    }
+
+    public void writeToNBT(NBTTagCompound nbt) {
+        NBTTagList list = new NBTTagList();
+        for (ItemStack stack : stacks) {
+            NBTTagCompound stackNBT = new NBTTagCompound();
+            stack.writeToNBT(stackNBT);
+            list.appendTag(stackNBT);
+        }
+        nbt.setTag("items", list);
+    }
+
+    public void readFromNBT(NBTTagCompound nbt) {
+        stacks.clear();
+        NBTTagList list = nbt.getTagList("items", 10);
+        for (int i = 0; i < list.tagCount(); i++) {
+            ItemStack stack = ItemStack.loadItemStackFromNBT(list.getCompoundTagAt(i));
+            if (stack != null) {
+                stacks.add(stack);
+            }
+        }
+    }
+
+    /** Throws the given stack out of the top of the block at the given position. */
+    public static void throwStack(World world, BlockPos pos, ItemStack stack) {
+        float f = world.rand.nextFloat() * 0.8F + 0.1F;
+        float f1 = world.rand.nextFloat() * 0.8F + 0.1F;
+        float f2 = world.rand.nextFloat() * 0.8F + 0.1F;
+
+        EntityItem entityitem = new EntityItem(world, pos.getX() + f, pos.getY() + f1 + 0.5F, pos.getZ() + f2, stack);
+
+        entityitem.lifespan = BuildCraftCore.itemLifespan * 20;
+        entityitem.setDefaultPickupDelay();
+
+        float f3 = 0.05F;
+        entityitem.motionX = (float) world.rand.nextGaussian() * f3;
+        entityitem.motionY = (float) world.rand.nextGaussian() * f3 + 1.0F;
+        entityitem.motionZ = (float) world.rand.nextGaussian() * f3;
+        world.spawnEntityInWorld(entityitem);
+    }
+}
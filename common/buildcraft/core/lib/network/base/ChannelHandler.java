@@ -1,5 +1,11 @@
 package buildcraft.core.lib.network.base;
 
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import net.minecraft.network.INetHandler;
 
 import net.minecraftforge.fml.common.network.FMLIndexedMessageToMessageCodec;
@@ -16,11 +22,15 @@ import buildcraft.core.lib.network.command.PacketCommand;
 import buildcraft.core.proxy.CoreProxy;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 
 public final class ChannelHandler extends FMLIndexedMessageToMessageCodec<Packet> {
     private static boolean recordStats = false;
     private int index = 0;
+    /** The same discriminators as the ones given to FML, for the packets inside a {@link PacketBundle}. */
+    private final List<Class<? extends Packet>> types = Lists.newArrayList();
+    private final Map<Class<? extends Packet>, Integer> discriminators = Maps.newHashMap();
 
     public ChannelHandler() {
         // Packets common to buildcraft.core.network
@@ -31,9 +41,12 @@ public final class ChannelHandler extends FMLIndexedMessageToMessageCodec<Packet
         registerPacketType(PacketGuiWidget.class);
         registerPacketType(PacketCommand.class);
         registerPacketType(PacketEntityUpdate.class);
+        registerPacketType(PacketBundle.class);
     }
 
     public void registerPacketType(Class<? extends Packet> type) {
+        discriminators.put(type, index);
+        types.add(type);
         super.addDiscriminator(index++, type);
     }
 
@@ -56,6 +69,23 @@ public final class ChannelHandler extends FMLIndexedMessageToMessageCodec<Packet
 
     @Override
     public void encodeInto(ChannelHandlerContext ctx, Packet packet, ByteBuf data) throws Exception {
+        if (packet instanceof PacketBundle) {
+            List<Packet> packets = ((PacketBundle) packet).packets;
+            data.writeShort(packets.size());
+            for (Packet inner : packets) {
+                Integer discriminator = discriminators.get(inner.getClass());
+                if (discriminator == null) {
+                    throw new IllegalArgumentException("Unregistered packet type " + inner.getClass());
+                }
+                data.writeByte(discriminator);
+                int lengthIndex = data.writerIndex();
+                data.writeInt(0);
+                encodeInto(ctx, inner, data);
+                data.setInt(lengthIndex, data.writerIndex() - lengthIndex - 4);
+            }
+            return;
+        }
+
         int start = data.writerIndex();
 
         packet.writeData(data);
@@ -66,6 +96,25 @@ public final class ChannelHandler extends FMLIndexedMessageToMessageCodec<Packet
 
     @Override
     public void decodeInto(ChannelHandlerContext ctx, ByteBuf data, Packet packet) {
+        if (packet instanceof PacketBundle) {
+            List<Packet> packets = ((PacketBundle) packet).packets;
+            int count = data.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                Packet inner;
+                try {
+                    inner = types.get(data.readUnsignedByte()).newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Could not create a bundled packet", e);
+                }
+                // Some packets (such as PacketCommand) keep the buffer and read the rest of it when they are applied,
+                // so every packet is given a copy of just its own bytes
+                ByteBuf innerData = Unpooled.copiedBuffer(data.readSlice(data.readInt()));
+                decodeInto(ctx, innerData, inner);
+                packets.add(inner);
+            }
+            return;
+        }
+
         int start = data.readerIndex();
 
         INetHandler handler = ctx.channel().attr(NetworkRegistry.NET_HANDLER).get();
@@ -36,6 +36,19 @@ public abstract class Packet {
     /** Called in the main world tick to apply any data that cannot be applied in a different thread. So, everything. */
     public abstract void applyData(World world, EntityPlayer player);
 
+    /** @return An object that identifies what this packet is about, or null if every packet matters. If a packet of the
+     *         same type with an equal key is still waiting in a player's {@link PacketOutbox} then it is replaced by
+     *         this one, as only the latest one needs to be sent. */
+    public Object getMergeKey() {
+        return null;
+    }
+
+    /** @return True if this packet can be thrown away instead of sent when a player's {@link PacketOutbox} is backed
+     *         up. Only return true if a later packet will make up for it. */
+    public boolean isDroppable() {
+        return false;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
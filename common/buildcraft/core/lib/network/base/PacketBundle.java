@@ -0,0 +1,39 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ *
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.core.lib.network.base;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.world.World;
+
+/** Several packets for the same channel, sent together as a single custom payload. These are only created by the
+ * {@link PacketOutbox}: the {@link ChannelHandler} writes and reads the packets inside, and the {@link PacketHandler}
+ * queues each of them as if it had been sent by itself. Each packet inside is prefixed with its length, and is read
+ * from a copy of its own bytes. */
+public final class PacketBundle extends Packet {
+    final List<Packet> packets;
+
+    public PacketBundle() {
+        packets = Lists.newArrayList();
+    }
+
+    public PacketBundle(List<Packet> packets) {
+        this.packets = packets;
+    }
+
+    public List<Packet> getPackets() {
+        return packets;
+    }
+
+    @Override
+    public void applyData(World world, EntityPlayer player) {
+        for (Packet packet : packets) {
+            packet.applyData(world, player);
+        }
+    }
+}
@@ -61,10 +61,15 @@ public final class PacketHandler extends SimpleChannelInboundHandler<Packet> {
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Packet packet) {
         Side side = ctx.channel().attr(NetworkRegistry.CHANNEL_SOURCE).get();
-        if (side != null) {
-            getQueue(side, packet.dimensionId).add(packet);
-        } else {
+        if (side == null) {
             BCLog.logger.error("Found a message without a side! THIS IS VERY BAD, MAJOR ERRORS COULD OCCOUR!");
+        } else if (packet instanceof PacketBundle) {
+            // Each packet in a bundle may be for a different dimension
+            for (Packet inner : ((PacketBundle) packet).packets) {
+                getQueue(side, inner.dimensionId).add(inner);
+            }
+        } else {
+            getQueue(side, packet.dimensionId).add(packet);
         }
     }
 
@@ -0,0 +1,218 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ *
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.core.lib.network.base;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.common.network.FMLEmbeddedChannel;
+import net.minecraftforge.fml.common.network.FMLOutboundHandler;
+import net.minecraftforge.fml.common.network.FMLOutboundHandler.OutboundTarget;
+
+import buildcraft.api.core.BCLog;
+
+/** Holds every packet that the server sends to each player during a tick, and sends them all at the end of the server
+ * tick. Consecutive packets for the same channel are sent as a single {@link PacketBundle}, in the order that they were
+ * queued in.
+ * <p>
+ * A packet with a {@link Packet#getMergeKey()} replaces an earlier packet with an equal key that has not been sent yet.
+ * If a player has more than {@link #MAX_QUEUED_PACKETS} waiting then any {@link Packet#isDroppable()} packets are thrown
+ * away, and no more than {@link #MAX_PACKETS_PER_FLUSH} are sent to a player per tick, so a backlog is spread out over
+ * several ticks rather than growing without bound. */
+public enum PacketOutbox {
+    INSTANCE;
+
+    public static final int MAX_QUEUED_PACKETS = 4096;
+    public static final int MAX_PACKETS_PER_FLUSH = 1024;
+    private static final int MAX_BUNDLE_SIZE = 64;
+
+    /** Only accessed while holding the lock on this map. */
+    private final Map<EntityPlayerMP, PlayerOutbox> outboxes = new WeakHashMap<>();
+
+    private long packetsQueued, packetsSent, bundlesSent, packetsMerged, packetsDropped;
+    private int queueDepth, peakQueueDepth;
+    private long lastFlushNanos, averageFlushNanos, peakFlushNanos;
+
+    public void queue(FMLEmbeddedChannel channel, EntityPlayerMP player, Packet packet) {
+        synchronized (outboxes) {
+            PlayerOutbox outbox = outboxes.get(player);
+            if (outbox == null) {
+                outbox = new PlayerOutbox();
+                outboxes.put(player, outbox);
+            }
+            outbox.add(channel, packet);
+        }
+    }
+
+    @SubscribeEvent
+    public void serverTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        long start = System.nanoTime();
+        synchronized (outboxes) {
+            int depth = 0;
+            Iterator<Map.Entry<EntityPlayerMP, PlayerOutbox>> iterator = outboxes.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<EntityPlayerMP, PlayerOutbox> entry = iterator.next();
+                PlayerOutbox outbox = entry.getValue();
+                peakQueueDepth = Math.max(peakQueueDepth, outbox.queue.size());
+                outbox.flush(entry.getKey());
+                if (outbox.queue.isEmpty()) {
+                    iterator.remove();
+                } else {
+                    depth += outbox.queue.size();
+                }
+            }
+            queueDepth = depth;
+        }
+        lastFlushNanos = System.nanoTime() - start;
+        averageFlushNanos = averageFlushNanos == 0 ? lastFlushNanos : (averageFlushNanos * 15 + lastFlushNanos) / 16;
+        peakFlushNanos = Math.max(peakFlushNanos, lastFlushNanos);
+    }
+
+    /** Throws away everything that has not been sent yet, for when the server stops. */
+    public void clear() {
+        synchronized (outboxes) {
+            outboxes.clear();
+            queueDepth = 0;
+        }
+    }
+
+    /** @return The number of packets that were left waiting for a later tick after the last flush. */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /** @return The most packets that have been waiting for a single player at the start of a flush. */
+    public int getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+
+    /** @return A moving average of the time taken by each flush. */
+    public long getAverageFlushNanos() {
+        return averageFlushNanos;
+    }
+
+    public long getPeakFlushNanos() {
+        return peakFlushNanos;
+    }
+
+    public long getPacketsQueued() {
+        return packetsQueued;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    public long getBundlesSent() {
+        return bundlesSent;
+    }
+
+    public long getPacketsMerged() {
+        return packetsMerged;
+    }
+
+    public long getPacketsDropped() {
+        return packetsDropped;
+    }
+
+    private final class PlayerOutbox {
+        private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+        private final Map<List<Object>, Entry> merging = Maps.newHashMap();
+
+        private void add(FMLEmbeddedChannel channel, Packet packet) {
+            packetsQueued++;
+            Object key = packet.getMergeKey();
+            List<Object> mergeKey = null;
+            if (key != null) {
+                mergeKey = Arrays.asList(channel, packet.getClass(), packet.dimensionId, key);
+                Entry existing = merging.get(mergeKey);
+                if (existing != null) {
+                    existing.packet = packet;
+                    packetsMerged++;
+                    return;
+                }
+            }
+
+            if (queue.size() >= MAX_QUEUED_PACKETS && packet.isDroppable()) {
+                packetsDropped++;
+                return;
+            }
+
+            Entry entry = new Entry(channel, packet, mergeKey);
+            queue.add(entry);
+            if (mergeKey != null) {
+                merging.put(mergeKey, entry);
+            }
+        }
+
+        private void flush(EntityPlayerMP player) {
+            FMLEmbeddedChannel channel = null;
+            List<Packet> bundle = Lists.newArrayList();
+            int sent = 0;
+            Entry entry;
+            while (sent < MAX_PACKETS_PER_FLUSH && (entry = queue.poll()) != null) {
+                if (entry.mergeKey != null) {
+                    merging.remove(entry.mergeKey);
+                }
+                if (entry.channel != channel || bundle.size() >= MAX_BUNDLE_SIZE) {
+                    send(player, channel, bundle);
+                    bundle = Lists.newArrayList();
+                    channel = entry.channel;
+                }
+                bundle.add(entry.packet);
+                sent++;
+            }
+            send(player, channel, bundle);
+        }
+
+        private void send(EntityPlayerMP player, FMLEmbeddedChannel channel, List<Packet> packets) {
+            if (packets.isEmpty()) {
+                return;
+            }
+            try {
+                channel.attr(FMLOutboundHandler.FML_MESSAGETARGET).set(OutboundTarget.PLAYER);
+                channel.attr(FMLOutboundHandler.FML_MESSAGETARGETARGS).set(player);
+                channel.writeOutbound(packets.size() == 1 ? packets.get(0) : new PacketBundle(packets));
+                packetsSent += packets.size();
+                bundlesSent++;
+            } catch (Throwable t) {
+                BCLog.logger.warn("Failed to send " + packets.size() + " packets to " + player.getName(), t);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final FMLEmbeddedChannel channel;
+        private final List<Object> mergeKey;
+        private Packet packet;
+
+        private Entry(FMLEmbeddedChannel channel, Packet packet, List<Object> mergeKey) {
+            this.channel = channel;
+            this.packet = packet;
+            this.mergeKey = mergeKey;
+        }
+    }
+}
@@ -4,7 +4,6 @@ import java.util.List;
 
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
-import net.minecraft.entity.item.EntityItem;
 import net.minecraft.item.ItemStack;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.BlockPos;
@@ -14,21 +13,33 @@ import net.minecraft.world.WorldServer;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.world.BlockEvent;
 
-import buildcraft.BuildCraftCore;
+import buildcraft.core.lib.inventory.ItemOutputBuffer;
 import buildcraft.core.proxy.CoreProxy;
 
 public class BlockMiner {
     protected final World world;
     protected final TileEntity owner;
     protected final BlockPos pos;
+    protected final ItemOutputBuffer output;
 
     private boolean hasMined, hasFailed;
     private int energyRequired, energyAccepted;
 
     public BlockMiner(World world, TileEntity owner, BlockPos pos) {
+        this(world, owner, pos, null);
+    }
+
+    /** @param output The buffer to put the mined items into, or null to put them straight into the inventories or
+     *            pipes around the owner. */
+    public BlockMiner(World world, TileEntity owner, BlockPos pos, ItemOutputBuffer output) {
         this.world = world;
         this.owner = owner;
         this.pos = pos;
+        this.output = output;
+    }
+
+    public BlockPos getPos() {
+        return pos;
     }
 
     public boolean hasMined() {
@@ -40,6 +51,11 @@ public class BlockMiner {
     }
 
     public void mineStack(ItemStack stack) {
+        if (output != null) {
+            output.add(stack);
+            return;
+        }
+
         // First, try to add to a nearby chest
         stack.stackSize -= Utils.addToRandomInventoryAround(owner.getWorld(), owner.getPos(), stack);
 
@@ -50,21 +66,7 @@ public class BlockMiner {
 
         // Lastly, throw the object away
         if (stack.stackSize > 0) {
-            float f = world.rand.nextFloat() * 0.8F + 0.1F;
-            float f1 = world.rand.nextFloat() * 0.8F + 0.1F;
-            float f2 = world.rand.nextFloat() * 0.8F + 0.1F;
-
-            EntityItem entityitem = new EntityItem(owner.getWorld(), owner.getPos().getX() + f, owner.getPos().getY() + f1 + 0.5F, owner.getPos()
-                    .getZ() + f2, stack);
-
-            entityitem.lifespan = BuildCraftCore.itemLifespan * 20;
-            entityitem.setDefaultPickupDelay();
-
-            float f3 = 0.05F;
-            entityitem.motionX = (float) world.rand.nextGaussian() * f3;
-            entityitem.motionY = (float) world.rand.nextGaussian() * f3 + 1.0F;
-            entityitem.motionZ = (float) world.rand.nextGaussian() * f3;
-            owner.getWorld().spawnEntityInWorld(entityitem);
+            ItemOutputBuffer.throwStack(owner.getWorld(), owner.getPos(), stack);
         }
     }
 
@@ -0,0 +1,225 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.core.lib.utils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.World;
+
+import buildcraft.api.core.BuildCraftAPI;
+import buildcraft.api.core.IWorldProperty;
+import buildcraft.core.properties.WorldProperty;
+
+/** Some world properties (see {@link BuildCraftAPI#getWorldProperty(String)}) of every loaded chunk in an area, as they
+ * were when it was captured. The "soft" property is always captured, and is what decides if a block is passable.
+ * <p>
+ * Capturing doesn't copy anything: the bits of each chunk are shared with the world property, which copies them itself
+ * before they next change. So a snapshot never changes once it has been captured, and can be read from any thread
+ * without locking anything. {@link #refresh(World)} captures the same area again, which only gives new bits for the
+ * chunks that have changed since. Blocks outside of the area, or in chunks that were not loaded, have no properties.
+ * <p>
+ * A property that has never been worked out for a chunk has to look at every block in it, so each capture only works
+ * out {@link #MAX_LOADS} of those, starting from the middle of the area. Until the rest have been worked out by later
+ * refreshes the snapshot is not {@link #isComplete() complete}. Searches can still look at the chunks that are
+ * {@link #isReady(int, int) ready}, but should wait for the others rather than take them as empty. */
+public final class BlockSnapshot implements IBlockPassability {
+    /** How many chunk properties are worked out by each capture or refresh, if they haven't been already. */
+    public static final int MAX_LOADS = 2;
+
+    private static final String SOFT = "soft";
+
+    private final int minChunkX, minChunkZ, chunksX, chunksZ, height;
+    private final String[] properties;
+    /** The index of every chunk, closest to the middle of the area first. */
+    private final int[] order;
+    /** The bits of each property, then of each chunk. */
+    private final BitSet[][] chunks;
+    /** Whether each chunk was loaded, but not every property of it has been worked out yet. */
+    private final boolean[] missing;
+    private boolean complete = true;
+
+    private BlockSnapshot(int minChunkX, int minChunkZ, int chunksX, int chunksZ, int height, String[] properties, int[] order) {
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.chunksX = chunksX;
+        this.chunksZ = chunksZ;
+        this.height = height;
+        this.properties = properties;
+        this.order = order;
+        this.chunks = new BitSet[properties.length][chunksX * chunksZ];
+        this.missing = new boolean[chunksX * chunksZ];
+    }
+
+    /** Captures every chunk that the given area touches. Must be called from the thread that the world is ticked
+     * on.
+     *
+     * @param extraProperties The names of the world properties to capture as well as "soft". */
+    public static BlockSnapshot capture(World world, BlockPos min, BlockPos max, String... extraProperties) {
+        int minChunkX = Math.min(min.getX(), max.getX()) >> 4;
+        int minChunkZ = Math.min(min.getZ(), max.getZ()) >> 4;
+        final int chunksX = (Math.max(min.getX(), max.getX()) >> 4) - minChunkX + 1;
+        final int chunksZ = (Math.max(min.getZ(), max.getZ()) >> 4) - minChunkZ + 1;
+
+        List<String> names = Lists.newArrayList(SOFT);
+        for (String property : extraProperties) {
+            if (!names.contains(property)) {
+                names.add(property);
+            }
+        }
+        String[] properties = names.toArray(new String[names.size()]);
+
+        Integer[] sorted = new Integer[chunksX * chunksZ];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(distanceSq(a), distanceSq(b));
+            }
+
+            private int distanceSq(int index) {
+                // Doubled, so that the middle of an even number of chunks is a whole number
+                int dx = index / chunksZ * 2 + 1 - chunksX;
+                int dz = index % chunksZ * 2 + 1 - chunksZ;
+                return dx * dx + dz * dz;
+            }
+        });
+        int[] order = new int[sorted.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = sorted[i];
+        }
+
+        BlockSnapshot snapshot = new BlockSnapshot(minChunkX, minChunkZ, chunksX, chunksZ, world.getHeight(), properties, order);
+        snapshot.fill(world, null);
+        return snapshot;
+    }
+
+    /** Captures every chunk within the given distance of a position. */
+    public static BlockSnapshot capture(World world, BlockPos center, int radius, String... extraProperties) {
+        return capture(world, center.add(-radius, 0, -radius), center.add(radius, 0, radius), extraProperties);
+    }
+
+    /** Captures the same area and properties as this again, and works out more of the chunks that were missing if this
+     * isn't complete. Must be called from the thread that the world is ticked on. */
+    public BlockSnapshot refresh(World world) {
+        BlockSnapshot snapshot = new BlockSnapshot(minChunkX, minChunkZ, chunksX, chunksZ, height, properties, order);
+        snapshot.fill(world, this);
+        return snapshot;
+    }
+
+    /** @param previous The snapshot that this is refreshing, if any. Properties that someone has replaced are copied
+     *            from it rather than asked about every block again. */
+    private void fill(World world, BlockSnapshot previous) {
+        int loads = 0;
+        for (int index : order) {
+            int xChunk = minChunkX + index / chunksZ;
+            int zChunk = minChunkZ + index % chunksZ;
+            if (!world.getChunkProvider().chunkExists(xChunk, zChunk)) {
+                continue;
+            }
+            for (int p = 0; p < properties.length; p++) {
+                IWorldProperty property = BuildCraftAPI.getWorldProperty(properties[p]);
+                if (property == null) {
+                    continue;
+                }
+                BitSet bits;
+                if (property instanceof WorldProperty) {
+                    bits = ((WorldProperty) property).share(world, xChunk, zChunk, false);
+                    if (bits == null && loads < MAX_LOADS) {
+                        bits = ((WorldProperty) property).share(world, xChunk, zChunk, true);
+                        loads++;
+                    }
+                } else {
+                    // Someone has replaced the property, so ask it about every block
+                    bits = previous != null ? previous.chunks[p][index] : null;
+                    if (bits == null && loads < MAX_LOADS) {
+                        bits = copy(world, property, xChunk, zChunk, height);
+                        loads++;
+                    }
+                }
+                if (bits == null) {
+                    missing[index] = true;
+                    complete = false;
+                }
+                chunks[p][index] = bits;
+            }
+        }
+    }
+
+    private static BitSet copy(World world, IWorldProperty property, int xChunk, int zChunk, int height) {
+        BitSet bits = new BitSet(16 * 16 * height);
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < height; y++) {
+                for (int z = 0; z < 16; z++) {
+                    if (property.get(world, new BlockPos((xChunk << 4) + x, y, (zChunk << 4) + z))) {
+                        bits.set((x * height + y) * 16 + z);
+                    }
+                }
+            }
+        }
+        return bits;
+    }
+
+    /** @return True if every property of every chunk that was loaded has been captured. If not then this should be
+     *         {@link #refresh(World) refreshed} until it is before it is searched. */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /** @return True if the chunk holding the given block has been captured, or if there is nothing to capture as it is
+     *         outside of the area or was not loaded. */
+    public boolean isReady(int x, int z) {
+        int cx = (x >> 4) - minChunkX;
+        int cz = (z >> 4) - minChunkZ;
+        return cx < 0 || cz < 0 || cx >= chunksX || cz >= chunksZ || !missing[cx * chunksZ + cz];
+    }
+
+    /** @return True if the chunk holding the given block was loaded when this was captured. */
+    public boolean isLoaded(int x, int z) {
+        int cx = (x >> 4) - minChunkX;
+        int cz = (z >> 4) - minChunkZ;
+        return cx >= 0 && cz >= 0 && cx < chunksX && cz < chunksZ && chunks[0][cx * chunksZ + cz] != null;
+    }
+
+    @Override
+    public boolean isPassable(int x, int y, int z) {
+        return get(0, x, y, z);
+    }
+
+    /** @return The value of the given world property at the given block.
+     * @throws IllegalArgumentException If the property was not captured. */
+    public boolean get(String property, int x, int y, int z) {
+        for (int p = 0; p < properties.length; p++) {
+            if (properties[p].equals(property)) {
+                return get(p, x, y, z);
+            }
+        }
+        throw new IllegalArgumentException("The property " + property + " was not captured");
+    }
+
+    public boolean get(String property, BlockPos pos) {
+        return get(property, pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    private boolean get(int property, int x, int y, int z) {
+        if (y < 0 || y >= height) {
+            return false;
+        }
+        int cx = (x >> 4) - minChunkX;
+        int cz = (z >> 4) - minChunkZ;
+        if (cx < 0 || cz < 0 || cx >= chunksX || cz >= chunksZ) {
+            return false;
+        }
+        BitSet bits = chunks[property][cx * chunksZ + cz];
+        return bits != null && bits.get(((x & 0xF) * height + y) * 16 + (z & 0xF));
+    }
+}
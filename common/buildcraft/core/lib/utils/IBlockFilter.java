@@ -8,5 +8,13 @@ import net.minecraft.util.BlockPos;
 import net.minecraft.world.World;
 
 public interface IBlockFilter {
+    /** Called from the thread that the world is ticked on, even when the search that uses this is not. */
     boolean matches(World world, BlockPos pos);
+
+    /** @return The name of a world property (see {@link buildcraft.api.core.BuildCraftAPI#getWorldProperty(String)})
+     *         that every block this matches has, or null. Searches only ask about the blocks that have it, and can find
+     *         those without reading the world. */
+    default String getRequiredProperty() {
+        return null;
+    }
 }
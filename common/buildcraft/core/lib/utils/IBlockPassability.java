@@ -0,0 +1,11 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.core.lib.utils;
+
+/** Tells path finding which blocks can be moved through. Unlike the world, implementations must be safe to use from
+ * the threads that searches are run on. */
+public interface IBlockPassability {
+    boolean isPassable(int x, int y, int z);
+}
@@ -10,4 +10,10 @@ public interface IIterableAlgorithm {
 
     boolean isDone();
 
+    /** @return True if this can't do anything until something else is done on the thread that the world is ticked on,
+     *         so there is no point in running it yet. */
+    default boolean isWaiting() {
+        return false;
+    }
+
 }
@@ -4,52 +4,126 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.core.lib.utils;
 
-import java.util.Date;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.World;
 
-public class IterableAlgorithmRunner extends Thread {
+import buildcraft.api.core.BCLog;
+
+/** Runs an {@link IIterableAlgorithm} in the background, one iteration at a time, on the threads of the
+ * {@link SearchExecutor}. After each iteration it waits for half again as long as the iteration took before running the
+ * next one, so that a long search doesn't hog a thread. */
+public class IterableAlgorithmRunner {
+    /** The dimension of runners that were not given a world. */
+    static final int NO_DIMENSION = Integer.MIN_VALUE;
+
+    private static final long MIN_WAIT_NANOS = 1000000L;
+    private static final long MAX_WAIT_NANOS = 500000000L;
+    /** How long to wait before checking again on an algorithm that {@link IIterableAlgorithm#isWaiting() is
+     * waiting}. */
+    private static final long IDLE_WAIT_NANOS = 10000000L;
+    /** How long an algorithm can keep waiting before it is given up on, in case nothing is left to do what it is
+     * waiting for. */
+    private static final long MAX_IDLE_NANOS = 30000000000L;
 
     private IIterableAlgorithm pathFinding;
 
     private boolean stop = false;
     private int maxIterations;
+    private int iterations = 0;
+    /** When the algorithm started waiting, or 0 if it isn't. */
+    private long idleSince = 0;
 
     private boolean done = false;
 
+    final int dimension;
+    /** Runners with a lower priority are run first. */
+    final double priority;
+    /** When this can next be run, from {@link System#nanoTime()}. */
+    long readyAt;
+    long sequence;
+
     public IterableAlgorithmRunner(IIterableAlgorithm iPathFinding, int iMaxIterations) {
-        super("Path Finding");
         pathFinding = iPathFinding;
         maxIterations = iMaxIterations;
+        dimension = NO_DIMENSION;
+        priority = Double.MAX_VALUE;
     }
 
     public IterableAlgorithmRunner(IIterableAlgorithm iPathFinding) {
         this(iPathFinding, 1000);
     }
 
-    @Override
-    public void run() {
-        try {
-            for (int i = 0; i < maxIterations; ++i) {
-                if (isTerminated() || pathFinding.isDone()) {
-                    break;
-                }
+    /** Creates a runner for a search in the given world, that is run sooner the closer the given position is to a
+     * player. Must be called from the thread that the world is ticked on. */
+    public IterableAlgorithmRunner(IIterableAlgorithm iPathFinding, int iMaxIterations, World world, BlockPos pos) {
+        pathFinding = iPathFinding;
+        maxIterations = iMaxIterations;
+        dimension = world.provider.getDimensionId();
 
-                long startTime = new Date().getTime();
+        double closest = Double.MAX_VALUE;
+        for (EntityPlayer player : world.playerEntities) {
+            closest = Math.min(closest, player.getDistanceSq(pos));
+        }
+        priority = closest;
+    }
 
-                pathFinding.iterate();
+    public IterableAlgorithmRunner(IIterableAlgorithm iPathFinding, World world, BlockPos pos) {
+        this(iPathFinding, 1000, world, pos);
+    }
 
-                long elapsedTime = new Date().getTime() - startTime;
-                int timeToWait = (int) MathUtils.clamp((int) Math.ceil(elapsedTime * 1.5), 1, 500);
-                sleep(timeToWait);
+    /** Queues this to be run. */
+    public void start() {
+        SearchExecutor.INSTANCE.submit(this);
+    }
+
+    /** Runs the next iteration of the algorithm, if it isn't finished.
+     *
+     * @return True if there are more iterations to run. */
+    boolean iterate() {
+        if (isTerminated() || iterations >= maxIterations || pathFinding.isDone()) {
+            finish();
+            return false;
+        }
+        if (pathFinding.isWaiting()) {
+            // Doesn't count as an iteration, as nothing is done, but only waits for so long
+            long now = System.nanoTime();
+            if (idleSince == 0) {
+                idleSince = now;
+            } else if (now - idleSince > MAX_IDLE_NANOS) {
+                BCLog.logger.warn("Background search " + pathFinding + " was given up on after waiting for too long");
+                finish();
+                return false;
             }
+            readyAt = now + IDLE_WAIT_NANOS;
+            return true;
+        }
+        idleSince = 0;
+
+        long startTime = System.nanoTime();
+        try {
+            pathFinding.iterate();
         } catch (Throwable t) {
-            t.printStackTrace();
-        } finally {
-            done = true;
+            BCLog.logger.warn("Background search " + pathFinding + " failed", t);
+            finish();
+            return false;
         }
+        iterations++;
+
+        long elapsedTime = System.nanoTime() - startTime;
+        readyAt = System.nanoTime() + Math.max(MIN_WAIT_NANOS, Math.min(MAX_WAIT_NANOS, elapsedTime * 3 / 2));
+        return true;
+    }
+
+    synchronized void finish() {
+        done = true;
     }
 
-    public synchronized void terminate() {
-        stop = true;
+    public void terminate() {
+        synchronized (this) {
+            stop = true;
+        }
+        SearchExecutor.INSTANCE.cancel(this);
     }
 
     public synchronized boolean isTerminated() {
@@ -0,0 +1,92 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.core.lib.utils;
+
+import java.util.NoSuchElementException;
+
+/** A double ended queue of longs that doesn't box them, held in a circular array that doubles in size whenever it is
+ * full. The peek and poll methods throw a {@link NoSuchElementException} if the queue is empty, as there is no spare
+ * value to return instead. */
+public class LongArrayDeque {
+    private long[] elements;
+    private int head;
+    private int size;
+
+    public LongArrayDeque() {
+        this(16);
+    }
+
+    public LongArrayDeque(int initialCapacity) {
+        elements = new long[Integer.highestOneBit(Math.max(4, initialCapacity) - 1) << 1];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void addFirst(long value) {
+        ensureSpace();
+        head = (head - 1) & (elements.length - 1);
+        elements[head] = value;
+        size++;
+    }
+
+    public void addLast(long value) {
+        ensureSpace();
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+    }
+
+    public long peekFirst() {
+        checkNotEmpty();
+        return elements[head];
+    }
+
+    public long peekLast() {
+        checkNotEmpty();
+        return elements[(head + size - 1) & (elements.length - 1)];
+    }
+
+    public long pollFirst() {
+        checkNotEmpty();
+        long value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+
+    public long pollLast() {
+        checkNotEmpty();
+        size--;
+        return elements[(head + size) & (elements.length - 1)];
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    private void ensureSpace() {
+        if (size < elements.length) {
+            return;
+        }
+        long[] grown = new long[elements.length << 1];
+        int firstPart = elements.length - head;
+        System.arraycopy(elements, head, grown, 0, firstPart);
+        System.arraycopy(elements, 0, grown, firstPart, head);
+        elements = grown;
+        head = 0;
+    }
+}
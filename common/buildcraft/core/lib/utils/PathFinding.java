@@ -4,93 +4,198 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.core.lib.utils;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.LinkedList;
 
 import net.minecraft.util.BlockPos;
 import net.minecraft.world.World;
 
-import buildcraft.api.core.BuildCraftAPI;
-
 /** This class implements a 3D path finding based on the A* algorithm, following guidelines documented on
- * http://www.policyalmanac.org/games/aStarTutorial.htm . */
+ * http://www.policyalmanac.org/games/aStarTutorial.htm .
+ * <p>
+ * Nodes are kept in parallel arrays and looked up by their position packed into a long, the open list is a binary heap
+ * ordered by weight, and a node is closed by taking it out of the heap, so searching doesn't create an object per
+ * node. Blocks are only ever read from an {@link IBlockPassability}, never from the world, so that the search can be
+ * run on another thread. */
 public class PathFinding implements IIterableAlgorithm {
 
     public static int PATH_ITERATIONS = 1000;
 
+    /** How far past the start and the end the world is captured, if no {@link IBlockPassability} is given. */
+    public static final int SNAPSHOT_MARGIN = 16;
+
+    private static final int NONE = -1;
+    private static final int CLOSED = -1;
+
+    /** For every move in {@link #moves(int, int, int)} that is towards a face, the moves that it blocks if it is
+     * blocked itself. */
+    private static final int[] FACE_BLOCKS = new int[27];
+    /** For every move towards an edge, the two moves to corners that it blocks if it is blocked itself. */
+    private static final int[] EDGE_BLOCKS = new int[27];
+
+    static {
+        for (int i = 0; i < 27; i++) {
+            int[] move = { i / 9, i / 3 % 3, i % 3 };
+            int centred = (move[0] == 1 ? 1 : 0) + (move[1] == 1 ? 1 : 0) + (move[2] == 1 ? 1 : 0);
+            for (int j = 0; j < 27; j++) {
+                int[] other = { j / 9, j / 3 % 3, j % 3 };
+                if (centred == 2) {
+                    // A face blocks the whole plane on its side
+                    int axis = move[0] != 1 ? 0 : move[1] != 1 ? 1 : 2;
+                    if (other[axis] == move[axis]) {
+                        FACE_BLOCKS[i] |= 1 << j;
+                    }
+                } else if (centred == 1) {
+                    // An edge blocks the two corners at either end of it
+                    int axis = move[0] == 1 ? 0 : move[1] == 1 ? 1 : 2;
+                    int a = (axis + 1) % 3, b = (axis + 2) % 3;
+                    if (other[a] == move[a] && other[b] == move[b] && other[axis] != 1) {
+                        EDGE_BLOCKS[i] |= 1 << j;
+                    }
+                }
+            }
+        }
+    }
+
+    private IBlockPassability blocks;
+    /** The snapshot that this is waiting for, if it was captured here and wasn't complete. */
+    private volatile BlockSnapshot capturing;
     private World world;
-    private BlockPos start;
-    private BlockPos end;
+    private final BlockPos start;
+    private final BlockPos end;
     private double maxDistanceToEndSq = 0;
     private float maxTotalDistanceSq = 0;
 
-    private HashMap<BlockPos, Node> openList = new HashMap<BlockPos, PathFinding.Node>();
-    private HashMap<BlockPos, Node> closedList = new HashMap<BlockPos, PathFinding.Node>();
+    private final LongIntHashMap nodeIds = new LongIntHashMap(NONE);
+    private int[] nodeX = new int[64], nodeY = new int[64], nodeZ = new int[64];
+    private int[] nodeParent = new int[64];
+    private double[] nodeCost = new double[64], nodeWeight = new double[64];
+    /** Where each node is in the heap, or {@link #CLOSED}. */
+    private int[] nodeHeapIndex = new int[64];
+    private int nodeCount = 0;
+
+    private int[] heap = new int[64];
+    private int heapSize = 0;
 
-    private Node nextIteration;
+    /** The moves found by the last call to {@link #moves(int, int, int)} that reach the end. */
+    private int endMoves;
+
+    private int nextIteration;
+    private int nodesExpanded = 0;
 
     private LinkedList<BlockPos> result;
 
     private boolean endReached = false;
 
-    public PathFinding(World iWorld, BlockPos iStart, BlockPos iEnd) {
-        world = iWorld;
+    public PathFinding(IBlockPassability iBlocks, BlockPos iStart, BlockPos iEnd) {
+        blocks = iBlocks;
         start = iStart;
         end = iEnd;
 
-        Node startNode = new Node();
-        startNode.parent = null;
-        startNode.movementCost = 0;
-        startNode.destinationCost = distanceSq(start, end);
-        startNode.totalWeight = startNode.movementCost + startNode.destinationCost;
-        startNode.index = iStart;
-        openList.put(start, startNode);
+        int startNode = addNode(start.getX(), start.getY(), start.getZ(), NONE, 0, distanceSq(start.getX(), start.getY(), start.getZ()));
+        nodeIds.put(pack(start.getX(), start.getY(), start.getZ()), startNode);
+        push(startNode);
         nextIteration = startNode;
     }
 
-    public PathFinding(World iWorld, BlockPos iStart, BlockPos iEnd, double iMaxDistanceToEnd) {
-        this(iWorld, iStart, iEnd);
+    public PathFinding(IBlockPassability iBlocks, BlockPos iStart, BlockPos iEnd, double iMaxDistanceToEnd) {
+        this(iBlocks, iStart, iEnd);
 
         maxDistanceToEndSq = iMaxDistanceToEnd * iMaxDistanceToEnd;
     }
 
-    public PathFinding(World iWorld, BlockPos iStart, BlockPos iEnd, double iMaxDistanceToEnd, float iMaxTotalDistance) {
-        this(iWorld, iStart, iEnd, iMaxDistanceToEnd);
+    public PathFinding(IBlockPassability iBlocks, BlockPos iStart, BlockPos iEnd, double iMaxDistanceToEnd, float iMaxTotalDistance) {
+        this(iBlocks, iStart, iEnd, iMaxDistanceToEnd);
 
         maxTotalDistanceSq = iMaxTotalDistance * iMaxTotalDistance;
     }
 
+    /** Captures the soft blocks around the start and the end, so this must be called from the thread that the world is
+     * ticked on. If they couldn't all be captured at once then {@link #update()} must be called every tick until they
+     * have been. */
+    public PathFinding(World iWorld, BlockPos iStart, BlockPos iEnd) {
+        this(capture(iWorld, iStart, iEnd, 0), iStart, iEnd);
+        waitForCapture(iWorld);
+    }
+
+    public PathFinding(World iWorld, BlockPos iStart, BlockPos iEnd, double iMaxDistanceToEnd) {
+        this(capture(iWorld, iStart, iEnd, iMaxDistanceToEnd), iStart, iEnd, iMaxDistanceToEnd);
+        waitForCapture(iWorld);
+    }
+
+    public PathFinding(World iWorld, BlockPos iStart, BlockPos iEnd, double iMaxDistanceToEnd, float iMaxTotalDistance) {
+        this(capture(iWorld, iStart, iEnd, iMaxDistanceToEnd), iStart, iEnd, iMaxDistanceToEnd, iMaxTotalDistance);
+        waitForCapture(iWorld);
+    }
+
+    private void waitForCapture(World iWorld) {
+        BlockSnapshot snapshot = (BlockSnapshot) blocks;
+        if (!snapshot.isComplete()) {
+            world = iWorld;
+            capturing = snapshot;
+        }
+    }
+
+    private static BlockSnapshot capture(World world, BlockPos start, BlockPos end, double maxDistanceToEnd) {
+        int margin = SNAPSHOT_MARGIN + (int) Math.ceil(maxDistanceToEnd);
+        BlockPos min = new BlockPos(Math.min(start.getX(), end.getX()) - margin, 0, Math.min(start.getZ(), end.getZ()) - margin);
+        BlockPos max = new BlockPos(Math.max(start.getX(), end.getX()) + margin, 0, Math.max(start.getZ(), end.getZ()) + margin);
+        return BlockSnapshot.capture(world, min, max);
+    }
+
     @Override
     public void iterate() {
         iterate(PATH_ITERATIONS);
     }
 
     public void iterate(int itNumber) {
+        BlockSnapshot snapshot = capturing;
+        if (snapshot != null) {
+            if (!snapshot.isComplete()) {
+                return;
+            }
+            blocks = snapshot;
+            capturing = null;
+        }
+
         for (int i = 0; i < itNumber; ++i) {
-            if (nextIteration == null) {
+            if (nextIteration == NONE) {
                 return;
             }
 
             if (endReached) {
                 result = new LinkedList<BlockPos>();
 
-                while (nextIteration != null) {
-                    result.addFirst(nextIteration.index);
-                    nextIteration = nextIteration.parent;
+                for (int node = nextIteration; node != NONE; node = nodeParent[node]) {
+                    result.addFirst(new BlockPos(nodeX[node], nodeY[node], nodeZ[node]));
                 }
 
+                nextIteration = NONE;
                 return;
             } else {
-                nextIteration = iterate(nextIteration);
+                nextIteration = expand(nextIteration);
             }
         }
     }
 
     @Override
     public boolean isDone() {
-        return nextIteration == null;
+        return nextIteration == NONE;
+    }
+
+    @Override
+    public boolean isWaiting() {
+        BlockSnapshot snapshot = capturing;
+        return snapshot != null && !snapshot.isComplete();
+    }
+
+    /** Captures more of the world if it couldn't all be captured when this was created. Must be called from the thread
+     * that the world is ticked on. */
+    public void update() {
+        BlockSnapshot snapshot = capturing;
+        if (snapshot != null && !snapshot.isComplete()) {
+            capturing = snapshot.refresh(world);
+        }
     }
 
     public LinkedList<BlockPos> getResult() {
@@ -105,93 +210,157 @@ public class PathFinding implements IIterableAlgorithm {
         return end;
     }
 
-    private Node iterate(Node from) {
-        openList.remove(from.index);
-        closedList.put(from.index, from);
-
-        ArrayList<Node> nodes = new ArrayList<Node>();
-        byte[][][] resultMoves = movements(from);
+    /** @return The number of nodes that have been moved on from so far. */
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
 
-        for (int dx = -1; dx <= +1; ++dx) {
-            for (int dy = -1; dy <= +1; ++dy) {
-                for (int dz = -1; dz <= +1; ++dz) {
-                    if (resultMoves[dx + 1][dy + 1][dz + 1] == 0) {
-                        continue;
-                    }
+    /** Closes the given node and opens the nodes around it.
+     *
+     * @return The node to expand next, or the end if it has been reached. */
+    private int expand(int from) {
+        if (nodeHeapIndex[from] != CLOSED) {
+            remove(nodeHeapIndex[from]);
+        }
+        nodesExpanded++;
 
-                    int x = from.index.getX() + dx;
-                    int y = from.index.getY() + dy;
-                    int z = from.index.getZ() + dz;
+        int fromX = nodeX[from], fromY = nodeY[from], fromZ = nodeZ[from];
+        int moves = moves(fromX, fromY, fromZ);
 
-                    Node nextNode = new Node();
-                    nextNode.parent = from;
-                    nextNode.index = new BlockPos(x, y, z);
+        for (int move = 0; move < 27; move++) {
+            if ((moves & 1 << move) == 0) {
+                continue;
+            }
 
-                    if (resultMoves[dx + 1][dy + 1][dz + 1] == 2) {
-                        endReached = true;
-                        return nextNode;
-                    }
+            int dx = move / 9 - 1;
+            int dy = move / 3 % 3 - 1;
+            int dz = move % 3 - 1;
+            int x = fromX + dx;
+            int y = fromY + dy;
+            int z = fromZ + dz;
 
-                    nextNode.movementCost = from.movementCost + distanceSq(nextNode.index, from.index);
-                    nextNode.destinationCost = distanceSq(nextNode.index, end);
-                    nextNode.totalWeight = nextNode.movementCost + nextNode.destinationCost;
+            if ((endMoves & 1 << move) != 0) {
+                endReached = true;
+                return addNode(x, y, z, from, 0, 0);
+            }
 
-                    if (maxTotalDistanceSq > 0 && nextNode.totalWeight > maxTotalDistanceSq) {
-                        if (!closedList.containsKey(nextNode.index)) {
-                            closedList.put(nextNode.index, nextNode);
-                        }
-                        continue;
-                    }
-                    if (closedList.containsKey(nextNode.index)) {
-                        continue;
-                    } else if (openList.containsKey(nextNode.index)) {
-                        Node tentative = openList.get(nextNode.index);
-
-                        if (tentative.movementCost < nextNode.movementCost) {
-                            nextNode = tentative;
-                        } else {
-                            openList.put(nextNode.index, nextNode);
-                        }
-                    } else {
-                        openList.put(nextNode.index, nextNode);
-                    }
+            double movementCost = nodeCost[from] + dx * dx + dy * dy + dz * dz;
+            double totalWeight = movementCost + distanceSq(x, y, z);
+            long key = pack(x, y, z);
+            int node = nodeIds.get(key);
 
-                    nodes.add(nextNode);
+            if (maxTotalDistanceSq > 0 && totalWeight > maxTotalDistanceSq) {
+                if (node == NONE) {
+                    nodeIds.put(key, addNode(x, y, z, from, movementCost, totalWeight));
                 }
+                continue;
+            }
+
+            if (node == NONE) {
+                node = addNode(x, y, z, from, movementCost, totalWeight);
+                nodeIds.put(key, node);
+                push(node);
+            } else if (nodeHeapIndex[node] != CLOSED && nodeCost[node] >= movementCost) {
+                nodeParent[node] = from;
+                nodeCost[node] = movementCost;
+                nodeWeight[node] = totalWeight;
+                siftUp(nodeHeapIndex[node]);
             }
         }
 
-        nodes.addAll(openList.values());
+        return heapSize == 0 ? NONE : heap[0];
+    }
 
-        return findSmallerWeight(nodes);
+    /** Adds a node that is closed until it is pushed onto the heap. */
+    private int addNode(int x, int y, int z, int parent, double movementCost, double totalWeight) {
+        if (nodeCount == nodeX.length) {
+            int capacity = nodeCount * 2;
+            nodeX = Arrays.copyOf(nodeX, capacity);
+            nodeY = Arrays.copyOf(nodeY, capacity);
+            nodeZ = Arrays.copyOf(nodeZ, capacity);
+            nodeParent = Arrays.copyOf(nodeParent, capacity);
+            nodeCost = Arrays.copyOf(nodeCost, capacity);
+            nodeWeight = Arrays.copyOf(nodeWeight, capacity);
+            nodeHeapIndex = Arrays.copyOf(nodeHeapIndex, capacity);
+        }
+        int node = nodeCount++;
+        nodeX[node] = x;
+        nodeY[node] = y;
+        nodeZ[node] = z;
+        nodeParent[node] = parent;
+        nodeCost[node] = movementCost;
+        nodeWeight[node] = totalWeight;
+        nodeHeapIndex[node] = CLOSED;
+        return node;
     }
 
-    private Node findSmallerWeight(Collection<Node> collection) {
-        Node found = null;
+    private void push(int node) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        heap[heapSize] = node;
+        nodeHeapIndex[node] = heapSize;
+        siftUp(heapSize++);
+    }
 
-        for (Node n : collection) {
-            if (found == null) {
-                found = n;
-            } else if (n.totalWeight < found.totalWeight) {
-                found = n;
+    private void remove(int index) {
+        int node = heap[index];
+        nodeHeapIndex[node] = CLOSED;
+        int last = heap[--heapSize];
+        if (index == heapSize) {
+            return;
+        }
+        heap[index] = last;
+        nodeHeapIndex[last] = index;
+        siftDown(index);
+        siftUp(nodeHeapIndex[last]);
+    }
+
+    private void siftUp(int index) {
+        int node = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >> 1;
+            if (nodeWeight[heap[parent]] <= nodeWeight[node]) {
+                break;
             }
+            heap[index] = heap[parent];
+            nodeHeapIndex[heap[index]] = index;
+            index = parent;
         }
+        heap[index] = node;
+        nodeHeapIndex[node] = index;
+    }
 
-        return found;
+    private void siftDown(int index) {
+        int node = heap[index];
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && nodeWeight[heap[child + 1]] < nodeWeight[heap[child]]) {
+                child++;
+            }
+            if (nodeWeight[node] <= nodeWeight[heap[child]]) {
+                break;
+            }
+            heap[index] = heap[child];
+            nodeHeapIndex[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = node;
+        nodeHeapIndex[node] = index;
     }
 
-    private static class Node {
-        public Node parent;
-        public double movementCost;
-        public double destinationCost;
-        public double totalWeight;
-        public BlockPos index;
+    /** Packs a position into a long, in the same way as {@link BlockPos#toLong()}. */
+    private static long pack(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) y & 0xFFF) << 26 | (long) z & 0x3FFFFFF;
     }
 
-    private static double distanceSq(BlockPos i1, BlockPos i2) {
-        double dx = (double) i1.getX() - (double) i2.getX();
-        double dy = (double) i1.getY() - (double) i2.getY();
-        double dz = (double) i1.getZ() - (double) i2.getZ();
+    private double distanceSq(int x, int y, int z) {
+        double dx = (double) x - (double) end.getX();
+        double dy = (double) y - (double) end.getY();
+        double dz = (double) z - (double) end.getZ();
 
         return dx * dx + dy * dy + dz * dz;
     }
@@ -200,145 +369,51 @@ public class PathFinding implements IIterableAlgorithm {
         if (maxDistanceToEndSq == 0) {
             return end.getX() == x && end.getY() == y && end.getZ() == z;
         } else {
-            BlockPos pos = new BlockPos(x, y, z);
-            return BuildCraftAPI.isSoftBlock(world, pos) && distanceSq(new BlockPos(pos), end) <= maxDistanceToEndSq;
+            return blocks.isPassable(x, y, z) && distanceSq(x, y, z) <= maxDistanceToEndSq;
         }
     }
 
-    private byte[][][] movements(Node from) {
-        byte[][][] resultMoves = new byte[3][3][3];
-
-        for (int dx = -1; dx <= +1; ++dx) {
-            for (int dy = -1; dy <= +1; ++dy) {
-                for (int dz = -1; dz <= +1; ++dz) {
-                    int x = from.index.getX() + dx;
-                    int y = from.index.getY() + dy;
-                    int z = from.index.getZ() + dz;
-
-                    if (y < 0) {
-                        resultMoves[dx + 1][dy + 1][dz + 1] = 0;
-                    } else if (endReached(x, y, z)) {
-                        resultMoves[dx + 1][dy + 1][dz + 1] = 2;
-                    } else if (!BuildCraftAPI.isSoftBlock(world, new BlockPos(x, y, z))) {
-                        resultMoves[dx + 1][dy + 1][dz + 1] = 0;
-                    } else {
-                        resultMoves[dx + 1][dy + 1][dz + 1] = 1;
-                    }
-                }
-            }
-        }
-
-        resultMoves[1][1][1] = 0;
-
-        if (resultMoves[0][1][1] == 0) {
-            for (int i = 0; i <= 2; ++i) {
-                for (int j = 0; j <= 2; ++j) {
-                    resultMoves[0][i][j] = 0;
-                }
+    /** @return A bit for each of the 27 moves from the given block that can be made, indexed by {@code (dx + 1) * 9 +
+     *         (dy + 1) * 3 + (dz + 1)}. The moves that reach the end are put in {@link #endMoves}. Moving diagonally
+     *         is only possible if the blocks beside the diagonal can be moved through as well. */
+    private int moves(int fromX, int fromY, int fromZ) {
+        int moves = 0;
+        int ends = 0;
+
+        for (int move = 0; move < 27; move++) {
+            int x = fromX + move / 9 - 1;
+            int y = fromY + move / 3 % 3 - 1;
+            int z = fromZ + move % 3 - 1;
+
+            if (y < 0) {
+                continue;
+            } else if (endReached(x, y, z)) {
+                moves |= 1 << move;
+                ends |= 1 << move;
+            } else if (blocks.isPassable(x, y, z)) {
+                moves |= 1 << move;
             }
         }
 
-        if (resultMoves[2][1][1] == 0) {
-            for (int i = 0; i <= 2; ++i) {
-                for (int j = 0; j <= 2; ++j) {
-                    resultMoves[2][i][j] = 0;
-                }
-            }
-        }
+        moves &= ~(1 << 13);
 
-        if (resultMoves[1][0][1] == 0) {
-            for (int i = 0; i <= 2; ++i) {
-                for (int j = 0; j <= 2; ++j) {
-                    resultMoves[i][0][j] = 0;
-                }
-            }
-        }
-
-        if (resultMoves[1][2][1] == 0) {
-            for (int i = 0; i <= 2; ++i) {
-                for (int j = 0; j <= 2; ++j) {
-                    resultMoves[i][2][j] = 0;
-                }
-            }
-        }
-
-        if (resultMoves[1][1][0] == 0) {
-            for (int i = 0; i <= 2; ++i) {
-                for (int j = 0; j <= 2; ++j) {
-                    resultMoves[i][j][0] = 0;
-                }
+        int blocked = 0;
+        for (int move = 0; move < 27; move++) {
+            if ((moves & 1 << move) == 0) {
+                blocked |= FACE_BLOCKS[move];
             }
         }
+        moves &= ~blocked;
 
-        if (resultMoves[1][1][2] == 0) {
-            for (int i = 0; i <= 2; ++i) {
-                for (int j = 0; j <= 2; ++j) {
-                    resultMoves[i][j][2] = 0;
-                }
+        blocked = 0;
+        for (int move = 0; move < 27; move++) {
+            if ((moves & 1 << move) == 0) {
+                blocked |= EDGE_BLOCKS[move];
             }
         }
+        moves &= ~blocked;
 
-        if (resultMoves[0][0][1] == 0) {
-            resultMoves[0][0][0] = 0;
-            resultMoves[0][0][2] = 0;
-        }
-
-        if (resultMoves[0][2][1] == 0) {
-            resultMoves[0][2][0] = 0;
-            resultMoves[0][2][2] = 0;
-        }
-
-        if (resultMoves[2][0][1] == 0) {
-            resultMoves[2][0][0] = 0;
-            resultMoves[2][0][2] = 0;
-        }
-
-        if (resultMoves[2][2][1] == 0) {
-            resultMoves[2][2][0] = 0;
-            resultMoves[2][2][2] = 0;
-        }
-
-        if (resultMoves[0][1][0] == 0) {
-            resultMoves[0][0][0] = 0;
-            resultMoves[0][2][0] = 0;
-        }
-
-        if (resultMoves[0][1][2] == 0) {
-            resultMoves[0][0][2] = 0;
-            resultMoves[0][2][2] = 0;
-        }
-
-        if (resultMoves[2][1][0] == 0) {
-            resultMoves[2][0][0] = 0;
-            resultMoves[2][2][0] = 0;
-        }
-
-        if (resultMoves[2][1][2] == 0) {
-            resultMoves[2][0][2] = 0;
-            resultMoves[2][2][2] = 0;
-        }
-
-        if (resultMoves[1][0][0] == 0) {
-            resultMoves[0][0][0] = 0;
-            resultMoves[2][0][0] = 0;
-        }
-
-        if (resultMoves[1][0][2] == 0) {
-            resultMoves[0][0][2] = 0;
-            resultMoves[2][0][2] = 0;
-        }
-
-        if (resultMoves[1][2][0] == 0) {
-            resultMoves[0][2][0] = 0;
-            resultMoves[2][2][0] = 0;
-        }
-
-        if (resultMoves[1][2][2] == 0) {
-            resultMoves[0][2][2] = 0;
-            resultMoves[2][2][2] = 0;
-        }
-
-        return resultMoves;
+        endMoves = ends & moves;
+        return moves;
     }
-
 }
@@ -9,93 +9,174 @@ import java.util.*;
 import net.minecraft.util.BlockPos;
 import net.minecraft.world.World;
 
-import buildcraft.api.core.BuildCraftAPI;
 import buildcraft.api.core.IZone;
 
+/** Looks for the closest blocks that match a filter and that a robot can reach, and finds a path to the first of them.
+ * This is run in the background, by an {@link IterableAlgorithmRunner}, but never reads the world there: it looks at
+ * the blocks through a {@link BlockSnapshot} instead. Blocks that could match are handed to the thread that the world is
+ * ticked on, where {@link #update()} asks the filter about them, so it must be called every tick while this runs.
+ * Until the snapshot is {@link BlockSnapshot#isComplete() complete}, which {@link #update()} also takes care of, the
+ * search stops at the first block in a chunk that isn't {@link BlockSnapshot#isReady(int, int) ready} and waits for it.
+ * Chunks are captured closest first, so the nearest blocks can be searched straight away. */
 public class PathFindingSearch implements IIterableAlgorithm {
 
     public static final int PATH_ITERATIONS = 1000;
+    /** How many blocks can wait to be checked by the filter at once. */
+    private static final int MAX_CANDIDATES = 256;
+    /** How many ticks pass between each refresh of the snapshot. */
+    private static final int REFRESH_INTERVAL = 20;
 
     private static final HashMap<Integer, HashSet<BlockPos>> reservations = new HashMap<Integer, HashSet<BlockPos>>();
 
     private World world;
+    private int dimension;
+    private volatile BlockSnapshot blocks;
     private BlockPos start;
     private List<PathFinding> pathFinders;
     private IBlockFilter pathFound;
+    private String requiredProperty;
     private IZone zone;
     private float maxDistance;
     private Iterator<BlockPos> blockIter;
+    /** The next block to search, taken from {@link #blockIter} but in a chunk that wasn't ready yet. */
+    private BlockPos waitingFor;
+    private int ticksSinceRefresh = 0;
+
+    /** Blocks that the filter still has to be asked about, and those that it matched. Both are locked by
+     * {@link #candidates}. */
+    private final ArrayDeque<BlockPos> candidates = new ArrayDeque<BlockPos>();
+    private final ArrayDeque<BlockPos> targets = new ArrayDeque<BlockPos>();
 
     private double maxDistanceToEnd;
 
+    /** Must be called from the thread that the world is ticked on. */
     public PathFindingSearch(World iWorld, BlockPos iStart, Iterator<BlockPos> iBlockIter, IBlockFilter iPathFound, double iMaxDistanceToEnd,
             float iMaxDistance, IZone iZone) {
         world = iWorld;
+        dimension = world.provider.getDimensionId();
         start = iStart;
         pathFound = iPathFound;
+        requiredProperty = pathFound.getRequiredProperty();
 
         maxDistance = iMaxDistance;
         maxDistanceToEnd = iMaxDistanceToEnd;
         zone = iZone;
         blockIter = iBlockIter;
+        if (requiredProperty != null) {
+            blocks = BlockSnapshot.capture(world, start, (int) Math.ceil(maxDistance), requiredProperty);
+        } else {
+            blocks = BlockSnapshot.capture(world, start, (int) Math.ceil(maxDistance));
+        }
 
         pathFinders = new LinkedList<PathFinding>();
     }
 
+    /** Asks the filter about the blocks that have been found since the last call, and refreshes the snapshot every
+     * {@link #REFRESH_INTERVAL} ticks, or every tick until it is complete. Must be called from the thread that the
+     * world is ticked on. */
+    public void update() {
+        if (++ticksSinceRefresh >= REFRESH_INTERVAL || !blocks.isComplete()) {
+            ticksSinceRefresh = 0;
+            blocks = blocks.refresh(world);
+        }
+
+        List<BlockPos> toCheck;
+        synchronized (candidates) {
+            if (candidates.isEmpty() || targets.size() >= 5) {
+                return;
+            }
+            toCheck = new ArrayList<BlockPos>(candidates);
+            candidates.clear();
+        }
+
+        List<BlockPos> matched = new ArrayList<BlockPos>();
+        for (BlockPos block : toCheck) {
+            if (pathFound.matches(world, block)) {
+                matched.add(block);
+            }
+        }
+
+        synchronized (candidates) {
+            targets.addAll(matched);
+        }
+    }
+
     @Override
     public void iterate() {
-        if (pathFinders.size() < 5 && blockIter.hasNext()) {
+        takeTargets();
+        if (pathFinders.size() < 5 && hasMoreBlocks()) {
             iterateSearch(PATH_ITERATIONS * 10);
         }
         iteratePathFind(PATH_ITERATIONS);
     }
 
+    private void takeTargets() {
+        BlockSnapshot snapshot = blocks;
+        synchronized (candidates) {
+            while (pathFinders.size() < 5 && !targets.isEmpty()) {
+                pathFinders.add(new PathFinding(snapshot, start, targets.poll(), maxDistanceToEnd, maxDistance));
+            }
+        }
+    }
+
     private void iterateSearch(int itNumber) {
-        for (int i = 0; i < itNumber; ++i) {
-            if (!blockIter.hasNext()) {
-                return;
+        BlockSnapshot snapshot = blocks;
+        List<BlockPos> found = new ArrayList<BlockPos>();
+        int room;
+        synchronized (candidates) {
+            room = MAX_CANDIDATES - candidates.size();
+        }
+
+        for (int i = 0; i < itNumber && found.size() < room; ++i) {
+            BlockPos block;
+            if (waitingFor != null) {
+                block = waitingFor;
+                waitingFor = null;
+            } else if (blockIter.hasNext()) {
+                BlockPos delta = blockIter.next();
+                block = new BlockPos(start.getX() + delta.getX(), ((start.getY() + delta.getY()) > 0) ? start.getY() + delta.getY() : 0, start
+                        .getZ() + delta.getZ());
+            } else {
+                break;
             }
 
-            BlockPos delta = blockIter.next();
-            BlockPos block = new BlockPos(start.getX() + delta.getX(), ((start.getY() + delta.getY()) > 0) ? start.getY() + delta.getY() : 0, start
-                    .getZ() + delta.getZ());
-            if (isLoadedChunk(block.getX(), block.getZ())) {
-                if (isTarget(block)) {
-                    pathFinders.add(new PathFinding(world, start, block, maxDistanceToEnd, maxDistance));
+            if (!snapshot.isReady(block.getX(), block.getZ())) {
+                waitingFor = block;
+                break;
+            }
+            if (snapshot.isLoaded(block.getX(), block.getZ())) {
+                if (isCandidate(snapshot, block)) {
+                    found.add(block);
                 }
             }
+        }
 
-            if (pathFinders.size() >= 5) {
-                return;
+        if (!found.isEmpty()) {
+            synchronized (candidates) {
+                candidates.addAll(found);
             }
         }
     }
 
-    private boolean isTarget(BlockPos block) {
+    /** @return True if the block could be a target, going by everything that can be known without the world. */
+    private boolean isCandidate(BlockSnapshot snapshot, BlockPos block) {
         if (zone != null && !zone.contains(Utils.convert(block))) {
             return false;
         }
-        if (!pathFound.matches(world, block)) {
+        if (requiredProperty != null && !snapshot.get(requiredProperty, block)) {
             return false;
         }
         synchronized (reservations) {
-            if (reservations.containsKey(world.provider.getDimensionId())) {
-                HashSet<BlockPos> dimReservations = reservations.get(world.provider.getDimensionId());
+            if (reservations.containsKey(dimension)) {
+                HashSet<BlockPos> dimReservations = reservations.get(dimension);
                 if (dimReservations.contains(block)) {
                     return false;
                 }
             }
         }
-        if (!BuildCraftAPI.isSoftBlock(world, block.west()) && !BuildCraftAPI.isSoftBlock(world, block.east()) && !BuildCraftAPI.isSoftBlock(world,
-                block.north()) && !BuildCraftAPI.isSoftBlock(world, block.south()) && !BuildCraftAPI.isSoftBlock(world, block.down())
-            && !BuildCraftAPI.isSoftBlock(world, block.up())) {
-            return false;
-        }
-        return true;
-    }
-
-    private boolean isLoadedChunk(int x, int z) {
-        return world.getChunkProvider().chunkExists(x >> 4, z >> 4);
+        int x = block.getX(), y = block.getY(), z = block.getZ();
+        return snapshot.isPassable(x - 1, y, z) || snapshot.isPassable(x + 1, y, z) || snapshot.isPassable(x, y, z - 1) || snapshot.isPassable(x,
+                y, z + 1) || snapshot.isPassable(x, y - 1, z) || snapshot.isPassable(x, y + 1, z);
     }
 
     public void iteratePathFind(int itNumber) {
@@ -120,7 +201,32 @@ public class PathFindingSearch implements IIterableAlgorithm {
                 return true;
             }
         }
-        return !blockIter.hasNext();
+        if (!pathFinders.isEmpty() || hasMoreBlocks()) {
+            return false;
+        }
+        synchronized (candidates) {
+            return candidates.isEmpty() && targets.isEmpty();
+        }
+    }
+
+    @Override
+    public boolean isWaiting() {
+        if (!pathFinders.isEmpty()) {
+            return false;
+        }
+        synchronized (candidates) {
+            if (!targets.isEmpty()) {
+                return false;
+            }
+            if (waitingFor != null && !blocks.isReady(waitingFor.getX(), waitingFor.getZ())) {
+                return true;
+            }
+            return !candidates.isEmpty() && (candidates.size() >= MAX_CANDIDATES || !hasMoreBlocks());
+        }
+    }
+
+    private boolean hasMoreBlocks() {
+        return waitingFor != null || blockIter.hasNext();
     }
 
     public LinkedList<BlockPos> getResult() {
@@ -143,10 +249,10 @@ public class PathFindingSearch implements IIterableAlgorithm {
 
     private boolean reserve(BlockPos block) {
         synchronized (reservations) {
-            if (!reservations.containsKey(world.provider.getDimensionId())) {
-                reservations.put(world.provider.getDimensionId(), new HashSet<BlockPos>());
+            if (!reservations.containsKey(dimension)) {
+                reservations.put(dimension, new HashSet<BlockPos>());
             }
-            HashSet<BlockPos> dimReservations = reservations.get(world.provider.getDimensionId());
+            HashSet<BlockPos> dimReservations = reservations.get(dimension);
             if (dimReservations.contains(block)) {
                 return false;
             }
@@ -157,8 +263,8 @@ public class PathFindingSearch implements IIterableAlgorithm {
 
     public void unreserve(BlockPos block) {
         synchronized (reservations) {
-            if (reservations.containsKey(world.provider.getDimensionId())) {
-                reservations.get(world.provider.getDimensionId()).remove(block);
+            if (reservations.containsKey(dimension)) {
+                reservations.get(dimension).remove(block);
             }
         }
     }
@@ -0,0 +1,317 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.core.lib.utils;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+import buildcraft.api.core.BCLog;
+
+/** Runs every {@link IterableAlgorithmRunner} on a fixed number of threads, instead of starting a new thread for
+ * each search. A thread runs a single iteration of a search before putting it back, so any number of searches can share
+ * the threads.
+ * <p>
+ * Each world has its own queue. Each thread takes from the queue of one world first, and takes from the others when
+ * that one is empty. Within a queue, the searches that are ready to run are taken closest to a player first, and then
+ * in the order that they were started in. Searches that are terminated are taken out of their queue straight away. If
+ * it is enabled and the JVM supports them, the threads are virtual threads. */
+public enum SearchExecutor {
+    INSTANCE;
+
+    private static final Comparator<IterableAlgorithmRunner> BY_PRIORITY = new Comparator<IterableAlgorithmRunner>() {
+        @Override
+        public int compare(IterableAlgorithmRunner a, IterableAlgorithmRunner b) {
+            int compare = Double.compare(a.priority, b.priority);
+            return compare != 0 ? compare : Long.compare(a.sequence, b.sequence);
+        }
+    };
+
+    private static final Comparator<IterableAlgorithmRunner> BY_READY_TIME = new Comparator<IterableAlgorithmRunner>() {
+        @Override
+        public int compare(IterableAlgorithmRunner a, IterableAlgorithmRunner b) {
+            return Long.compare(a.readyAt, b.readyAt);
+        }
+    };
+
+    /** Only accessed while holding the lock on this map. */
+    private final Map<Integer, WorldQueue> queues = Maps.newHashMap();
+    private final List<WorldQueue> queueOrder = Lists.newArrayList();
+    private final List<Thread> workers = Lists.newArrayList();
+    private int threadCount = 0;
+    private boolean useVirtualThreads = false;
+    private boolean virtual = false;
+    private long nextSequence = 0;
+
+    private int queued, running;
+    private long searchesStarted, searchesFinished, iterationsRun;
+    private long averageWaitNanos, peakWaitNanos, averageRunNanos, peakRunNanos;
+
+    /** Sets how many threads to use, and whether to try to make them virtual threads. Only takes effect if no search
+     * has been started yet.
+     *
+     * @param threads The number of threads, or 0 to pick one from the number of processors. */
+    public void configure(int threads, boolean tryVirtualThreads) {
+        synchronized (queues) {
+            threadCount = threads > 0 ? threads : Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            useVirtualThreads = tryVirtualThreads;
+        }
+    }
+
+    void submit(IterableAlgorithmRunner runner) {
+        synchronized (queues) {
+            if (workers.isEmpty()) {
+                startWorkers();
+            }
+            runner.sequence = nextSequence++;
+            runner.readyAt = System.nanoTime();
+            getQueue(runner.dimension).ready.add(runner);
+            queued++;
+            searchesStarted++;
+            queues.notify();
+        }
+    }
+
+    void cancel(IterableAlgorithmRunner runner) {
+        synchronized (queues) {
+            WorldQueue queue = queues.get(runner.dimension);
+            if (queue != null && (queue.ready.remove(runner) || queue.waiting.remove(runner))) {
+                queued--;
+                searchesFinished++;
+                runner.finish();
+            }
+        }
+    }
+
+    /** Ends every search in the given world. */
+    public void clear(int dimension) {
+        synchronized (queues) {
+            WorldQueue queue = queues.remove(dimension);
+            if (queue != null) {
+                queueOrder.remove(queue);
+                clear(queue);
+            }
+        }
+    }
+
+    /** Ends every search that has not finished yet, for when the server stops. */
+    public void clear() {
+        synchronized (queues) {
+            for (WorldQueue queue : queueOrder) {
+                clear(queue);
+            }
+            queues.clear();
+            queueOrder.clear();
+        }
+    }
+
+    private void clear(WorldQueue queue) {
+        for (IterableAlgorithmRunner runner : queue.ready) {
+            runner.finish();
+        }
+        for (IterableAlgorithmRunner runner : queue.waiting) {
+            runner.finish();
+        }
+        int count = queue.ready.size() + queue.waiting.size();
+        queued -= count;
+        searchesFinished += count;
+        queue.ready.clear();
+        queue.waiting.clear();
+    }
+
+    @SubscribeEvent
+    public void worldUnload(WorldEvent.Unload event) {
+        if (!event.world.isRemote) {
+            clear(event.world.provider.getDimensionId());
+        }
+    }
+
+    private WorldQueue getQueue(int dimension) {
+        WorldQueue queue = queues.get(dimension);
+        if (queue == null) {
+            queue = new WorldQueue();
+            queues.put(dimension, queue);
+            queueOrder.add(queue);
+        }
+        return queue;
+    }
+
+    private void startWorkers() {
+        if (threadCount <= 0) {
+            configure(0, useVirtualThreads);
+        }
+        Method virtualBuilder = useVirtualThreads ? findVirtualThreadBuilder() : null;
+        virtual = virtualBuilder != null;
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = null;
+            Worker worker = new Worker(i);
+            if (virtualBuilder != null) {
+                try {
+                    thread = (Thread) virtualBuilder.invoke(Thread.class.getMethod("ofVirtual").invoke(null), worker);
+                } catch (Exception e) {
+                    BCLog.logger.warn("Failed to create a virtual thread for searches", e);
+                    virtual = false;
+                }
+            }
+            if (thread == null) {
+                thread = new Thread(worker);
+                thread.setDaemon(true);
+            }
+            thread.setName("BuildCraft Search #" + i);
+            thread.start();
+            workers.add(thread);
+        }
+    }
+
+    /** @return Thread.Builder.unstarted(Runnable), if this JVM has virtual threads. */
+    private static Method findVirtualThreadBuilder() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Waits for the next search that is ready to run, looking in the queue of the given index first. */
+    private IterableAlgorithmRunner take(int home) throws InterruptedException {
+        synchronized (queues) {
+            while (true) {
+                long now = System.nanoTime();
+                long nextReady = Long.MAX_VALUE;
+                int size = queueOrder.size();
+                for (int i = 0; i < size; i++) {
+                    WorldQueue queue = queueOrder.get((home + i) % size);
+                    while (!queue.waiting.isEmpty() && queue.waiting.peek().readyAt <= now) {
+                        queue.ready.add(queue.waiting.poll());
+                    }
+                    IterableAlgorithmRunner runner = queue.ready.poll();
+                    if (runner != null) {
+                        long wait = now - runner.readyAt;
+                        averageWaitNanos = (averageWaitNanos * 15 + wait) / 16;
+                        peakWaitNanos = Math.max(peakWaitNanos, wait);
+                        queued--;
+                        running++;
+                        return runner;
+                    }
+                    if (!queue.waiting.isEmpty()) {
+                        nextReady = Math.min(nextReady, queue.waiting.peek().readyAt);
+                    }
+                }
+
+                if (nextReady == Long.MAX_VALUE) {
+                    queues.wait();
+                } else {
+                    queues.wait(Math.max(1, (nextReady - now) / 1000000));
+                }
+            }
+        }
+    }
+
+    private void put(IterableAlgorithmRunner runner, boolean more, long runNanos) {
+        synchronized (queues) {
+            running--;
+            iterationsRun++;
+            averageRunNanos = (averageRunNanos * 15 + runNanos) / 16;
+            peakRunNanos = Math.max(peakRunNanos, runNanos);
+
+            WorldQueue queue = queues.get(runner.dimension);
+            if (more && queue != null) {
+                queue.waiting.add(runner);
+                queued++;
+                queues.notify();
+            } else {
+                if (more) {
+                    // Its world has been unloaded while it was running
+                    runner.finish();
+                }
+                searchesFinished++;
+            }
+        }
+    }
+
+    public int getThreadCount() {
+        return workers.size();
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /** @return The number of searches that are waiting for their next iteration. */
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getRunning() {
+        return running;
+    }
+
+    public long getSearchesStarted() {
+        return searchesStarted;
+    }
+
+    public long getSearchesFinished() {
+        return searchesFinished;
+    }
+
+    public long getIterationsRun() {
+        return iterationsRun;
+    }
+
+    /** @return A moving average of how long searches wait for a thread once they are ready to run. */
+    public long getAverageWaitNanos() {
+        return averageWaitNanos;
+    }
+
+    public long getPeakWaitNanos() {
+        return peakWaitNanos;
+    }
+
+    /** @return A moving average of how long each iteration of a search takes. */
+    public long getAverageRunNanos() {
+        return averageRunNanos;
+    }
+
+    public long getPeakRunNanos() {
+        return peakRunNanos;
+    }
+
+    private static final class WorldQueue {
+        private final PriorityQueue<IterableAlgorithmRunner> ready = new PriorityQueue<>(16, BY_PRIORITY);
+        private final PriorityQueue<IterableAlgorithmRunner> waiting = new PriorityQueue<>(16, BY_READY_TIME);
+    }
+
+    private final class Worker implements Runnable {
+        private final int home;
+
+        private Worker(int home) {
+            this.home = home;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                IterableAlgorithmRunner runner;
+                try {
+                    runner = take(home);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long start = System.nanoTime();
+                boolean more = runner.iterate();
+                put(runner, more, System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -11,6 +11,8 @@ import net.minecraft.world.IBlockAccess;
 public class ChunkProperty {
 
     private BitSet property;
+    /** True if {@link #property} has been handed out by {@link #share()}, so it must be copied before it is changed. */
+    private boolean shared;
     private int worldHeight;
     private int xPosition, zPosition;
     private IBlockAccess blockAccess;
@@ -28,6 +30,21 @@ public class ChunkProperty {
     }
 
     public void set(int xChunk, int y, int zChunk, boolean value) {
-        property.set(xChunk * worldHeight * 16 + y * 16 + zChunk, value);
+        int index = xChunk * worldHeight * 16 + y * 16 + zChunk;
+        if (shared) {
+            if (property.get(index) == value) {
+                return;
+            }
+            property = (BitSet) property.clone();
+            shared = false;
+        }
+        property.set(index, value);
+    }
+
+    /** @return The bits of this chunk as they are now, indexed by {@code (x * worldHeight + y) * 16 + z}. They will
+     *         never be changed afterwards, so they can be read by other threads. */
+    public BitSet share() {
+        shared = true;
+        return property;
     }
 }
@@ -4,6 +4,8 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.core.properties;
 
+import java.util.BitSet;
+
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
@@ -29,37 +31,49 @@ public class DimensionProperty implements IWorldAccess {
     }
 
     public synchronized boolean get(BlockPos pos) {
-        int xChunk = pos.getX() >> 4;
-        int zChunk = pos.getZ() >> 4;
+        ChunkProperty property = getChunk(pos.getX() >> 4, pos.getZ() >> 4);
+        return property != null && property.get(pos.getX() & 0xF, pos.getY(), pos.getZ() & 0xF);
+    }
 
-        if (world.getChunkProvider().chunkExists(xChunk, zChunk)) {
-            long chunkId = ChunkCoordIntPair.chunkXZ2Int(xChunk, zChunk);
-            ChunkProperty property;
-            if (!chunkMapping.containsItem(chunkId)) {
-                property = new ChunkProperty(world, world.getHeight(), xChunk, zChunk);
-                chunkMapping.add(chunkId, property);
-                load(world.getChunkFromChunkCoords(xChunk, zChunk), property);
-            } else {
-                property = (ChunkProperty) chunkMapping.getValueByKey(chunkId);
-            }
+    /** @param load If false then chunks that the property has not been worked out for yet are not worked out now,
+     *            which means asking about every block in the chunk.
+     * @return The property of every block in the given chunk, as it is now, or null if the chunk isn't loaded or it
+     *         would have had to be worked out. See {@link ChunkProperty#share()}. */
+    public synchronized BitSet share(int xChunk, int zChunk, boolean load) {
+        ChunkProperty property = getChunk(xChunk, zChunk, load);
+        return property == null ? null : property.share();
+    }
+
+    private ChunkProperty getChunk(int xChunk, int zChunk) {
+        return getChunk(xChunk, zChunk, true);
+    }
+
+    private ChunkProperty getChunk(int xChunk, int zChunk, boolean load) {
+        if (!world.getChunkProvider().chunkExists(xChunk, zChunk)) {
+            return null;
+        }
 
-            return property.get(pos.getX() & 0xF, pos.getY(), pos.getZ() & 0xF);
-        } else {
-            return false;
+        long chunkId = ChunkCoordIntPair.chunkXZ2Int(xChunk, zChunk);
+        ChunkProperty property = (ChunkProperty) chunkMapping.getValueByKey(chunkId);
+        if (property == null && load) {
+            property = new ChunkProperty(world, world.getHeight(), xChunk, zChunk);
+            chunkMapping.add(chunkId, property);
+            load(world.getChunkFromChunkCoords(xChunk, zChunk), property);
         }
+        return property;
     }
 
+    /** Only called from the thread that the world is ticked on: searches on other threads read a
+     * {@link buildcraft.core.lib.utils.BlockSnapshot} instead. */
     private void load(Chunk chunk, ChunkProperty property) {
-        synchronized (world) {
-            for (int x = 0; x < 16; ++x) {
-                for (int y = 0; y < worldHeight; ++y) {
-                    for (int z = 0; z < 16; ++z) {
-                        BlockPos pos = new BlockPos(chunk.xPosition * 16 + x, y, chunk.zPosition * 16 + z);
-                        IBlockState state = chunk.getBlockState(pos);
-
-                        boolean prop = worldProperty.get(world, state, pos);
-                        property.set(x, y, z, prop);
-                    }
+        for (int x = 0; x < 16; ++x) {
+            for (int y = 0; y < worldHeight; ++y) {
+                for (int z = 0; z < 16; ++z) {
+                    BlockPos pos = new BlockPos(chunk.xPosition * 16 + x, y, chunk.zPosition * 16 + z);
+                    IBlockState state = chunk.getBlockState(pos);
+
+                    boolean prop = worldProperty.get(world, state, pos);
+                    property.set(x, y, z, prop);
                 }
             }
         }
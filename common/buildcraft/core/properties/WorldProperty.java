@@ -4,6 +4,7 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.core.properties;
 
+import java.util.BitSet;
 import java.util.HashMap;
 
 import net.minecraft.block.state.IBlockState;
@@ -22,6 +23,14 @@ public abstract class WorldProperty implements IWorldProperty {
         return getDimension(world).get(pos);
     }
 
+    /** @param load If false then null is returned for chunks that this has not been worked out for yet, rather than
+     *            asking about every block in them.
+     * @return The property of every block in the given chunk, that will never change afterwards, or null if the chunk
+     *         isn't loaded. Must be called from the thread that the world is ticked on. */
+    public synchronized BitSet share(World world, int xChunk, int zChunk, boolean load) {
+        return getDimension(world).share(xChunk, zChunk, load);
+    }
+
     private DimensionProperty getDimension(World world) {
         int id = world.provider.getDimensionId() * 2;
 
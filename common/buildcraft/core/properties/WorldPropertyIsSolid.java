@@ -0,0 +1,20 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.core.properties;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
+
+/** The opposite of {@link WorldPropertyIsReplaceable}: blocks that something could be placed on top of. */
+public class WorldPropertyIsSolid extends WorldProperty {
+    @Override
+    public boolean get(IBlockAccess blockAccess, IBlockState state, BlockPos pos) {
+        Block block = state.getBlock();
+        return block != null && !block.isAir(blockAccess, pos) && !block.isReplaceable((World) blockAccess, pos);
+    }
+}
@@ -25,6 +25,11 @@ public class BlockMiningWell extends BlockBuildCraft {
 
     @Override
     public void breakBlock(World world, BlockPos pos, IBlockState state) {
+        TileEntity tile = world.getTileEntity(pos);
+        if (tile instanceof TileMiningWell) {
+            ((TileMiningWell) tile).dropOutput();
+        }
+
         super.breakBlock(world, pos, state);
         removePipes(world, pos);
     }
@@ -0,0 +1,111 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.factory;
+
+import java.util.List;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.world.World;
+
+import net.minecraftforge.fluids.Fluid;
+import net.minecraftforge.fluids.FluidRegistry;
+import net.minecraftforge.fluids.FluidStack;
+
+import buildcraft.BuildCraftCore;
+import buildcraft.BuildCraftFactory;
+import buildcraft.core.lib.utils.BlockUtils;
+
+/** A lake (or any other body of a single fluid) that is being pumped from, shared between every pump whose tube is in
+ * it, so that it is only scanned once however many pumps there are. Pumps get one with
+ * {@link FluidScanner#acquireBody(World, BlockPos, Fluid)} and give it back with {@link #release()}; the body is dropped
+ * once no pumps are using it.
+ * <p>
+ * A pump claims a block by polling it with {@link #pollHighest()}, after which no other pump will be handed it, so two
+ * pumps never drain the same block. Blocks are found within {@link FluidScan#RADIUS} of the first pump that used the
+ * body.
+ * <p>
+ * Pumps that start at the same time can each start a body of their own in the same lake, before any scan has reached
+ * the others. So as soon as the scan of one body finds fluid that another body has already found, the other is merged
+ * into it and stops scanning, and its pumps move over the next time they ask for {@link #resolve()}. */
+public class FluidBody extends FluidScan {
+    private static final EnumFacing[] DIRECTIONS = { EnumFacing.UP, EnumFacing.EAST, EnumFacing.WEST, EnumFacing.NORTH, EnumFacing.SOUTH };
+
+    private int users;
+    /** The body that this was merged into, if it has been. */
+    private FluidBody mergedInto;
+    /** The scans that this may meet, which are those of the same world. */
+    private final List<FluidScan> group;
+
+    /** @param group Every scan in the same world, which this can be merged with. */
+    protected FluidBody(World world, BlockPos origin, Fluid fluid, List<FluidScan> group) {
+        super(world, origin, fluid, DIRECTIONS);
+        this.group = group;
+    }
+
+    @Override
+    protected boolean canTake(BlockPos pos, IBlockState state) {
+        if (!BuildCraftFactory.pumpDimensionList.isFluidAllowed(fluid, world.provider.getDimensionId())) {
+            return false;
+        }
+
+        FluidStack fluidStack = BlockUtils.drainBlock(state, world, pos, false);
+        return fluidStack != null && fluidStack.amount > 0 && fluidStack.getFluid() == fluid;
+    }
+
+    @Override
+    protected boolean isComplete() {
+        // Large bodies of water are never drained, so there is no need to find all of them
+        return fluid == FluidRegistry.WATER && !BuildCraftCore.consumeWaterSources && getFound() >= 9;
+    }
+
+    /** @return True if the given block has been found to be part of this body. */
+    public boolean contains(BlockPos pos) {
+        return hasVisited(pos) && isFluid(pos, getBlockState(pos));
+    }
+
+    /** @return The body that this one has been merged into, or this if it hasn't been. */
+    public FluidBody resolve() {
+        FluidBody body = this;
+        while (body.mergedInto != null) {
+            body = body.mergedInto;
+        }
+        return body;
+    }
+
+    @Override
+    protected void onFluidFound(BlockPos pos) {
+        for (FluidScan scan : group) {
+            if (scan != this && scan instanceof FluidBody && !scan.isCancelled() && scan.getFluid() == fluid && scan.hasVisited(pos)) {
+                absorb((FluidBody) scan);
+            }
+        }
+    }
+
+    private void absorb(FluidBody other) {
+        users += other.users;
+        other.users = 0;
+        other.mergedInto = this;
+        other.cancel();
+    }
+
+    /** @return The number of pumps that are using this body. */
+    public int getUsers() {
+        return users;
+    }
+
+    protected void acquire() {
+        users++;
+    }
+
+    /** Called by a pump that no longer uses this body, or the one that it was merged into. */
+    public void release() {
+        FluidBody body = resolve();
+        if (--body.users <= 0) {
+            body.cancel();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.factory;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.world.World;
+
+import net.minecraftforge.fluids.Fluid;
+
+import buildcraft.core.lib.utils.BlockUtils;
+import buildcraft.core.lib.utils.LongArrayDeque;
+import buildcraft.core.lib.utils.LongHashSet;
+
+/** A flood fill through the blocks of a single fluid, that finds every block that a machine can work on (drain or fill)
+ * next to or inside the fluid, ordered by layer. The fill is done a few blocks at a time by the {@link FluidScanner},
+ * rather than all at once, and once it has finished the blocks are kept up to date by re-checking any block that
+ * changes instead of starting again.
+ * <p>
+ * Positions are held packed with {@link BlockPos#toLong()}, so a scan of a large lake doesn't create a {@link BlockPos}
+ * for every block in it. */
+public abstract class FluidScan {
+    public static final int RADIUS = 64;
+
+    protected final World world;
+    protected final BlockPos origin;
+    protected final Fluid fluid;
+    private final EnumFacing[] directions;
+
+    private final LongHashSet visited = new LongHashSet(256);
+    /** Blocks that are of the fluid, and so need their neighbours visited. */
+    private final LongArrayDeque frontier = new LongArrayDeque(256);
+    /** Blocks that changed after they were visited, and so need to be visited again. */
+    private final LongArrayDeque changed = new LongArrayDeque();
+    private final LongHashSet changedSet = new LongHashSet();
+    /** Every block in {@link #layers} that is still valid. Layers can hold stale entries, which are skipped. */
+    private final LongHashSet queued = new LongHashSet(256);
+    private final TreeMap<Integer, LongArrayDeque> layers = new TreeMap<>();
+    private int found;
+    private boolean cancelled;
+
+    /** @param origin The position of the machine, that the {@link #RADIUS} is measured from.
+     * @param directions The directions to spread through the fluid in. */
+    public FluidScan(World world, BlockPos origin, Fluid fluid, EnumFacing[] directions) {
+        this.world = world;
+        this.origin = origin;
+        this.fluid = fluid;
+        this.directions = directions;
+    }
+
+    /** @return True if the machine can work on the given block. */
+    protected abstract boolean canTake(BlockPos pos, IBlockState state);
+
+    /** @return True if the fill should spread through the given block. */
+    protected boolean isFluid(BlockPos pos, IBlockState state) {
+        return BlockUtils.getFluid(state.getBlock()) == fluid;
+    }
+
+    protected IBlockState getBlockState(BlockPos pos) {
+        return BlockUtils.getBlockState(world, pos);
+    }
+
+    /** @return True if the scan should stop looking for more blocks, even though it has not run out of fluid. */
+    protected boolean isComplete() {
+        return false;
+    }
+
+    protected boolean isInRange(BlockPos pos) {
+        int dx = pos.getX() - origin.getX();
+        int dz = pos.getZ() - origin.getZ();
+        return dx * dx + dz * dz <= RADIUS * RADIUS;
+    }
+
+    public Fluid getFluid() {
+        return fluid;
+    }
+
+    /** @return The number of blocks that have been found to work on, including any that have been taken since. */
+    public int getFound() {
+        return found;
+    }
+
+    /** @return True if there is nothing left for {@link #step(int)} to do. */
+    public boolean isDone() {
+        return cancelled || isComplete() || (frontier.isEmpty() && changed.isEmpty());
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Stops the scan, and removes it from the {@link FluidScanner} at the end of the tick. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    protected boolean hasVisited(BlockPos pos) {
+        return visited.contains(pos.toLong());
+    }
+
+    /** Looks at a single block, and adds it to the frontier or to the layers if necessary. */
+    protected void visit(BlockPos pos) {
+        long key = pos.toLong();
+        if (!visited.add(key) || !isInRange(pos)) {
+            return;
+        }
+
+        IBlockState state = getBlockState(pos);
+        if (isFluid(pos, state)) {
+            frontier.addLast(key);
+            onFluidFound(pos);
+        }
+
+        if (canTake(pos, state) && queued.add(key)) {
+            getLayer(pos.getY()).addLast(key);
+            found++;
+        }
+    }
+
+    /** Called for every block of the fluid that is visited. */
+    protected void onFluidFound(BlockPos pos) {}
+
+    /** Visits every neighbour of the given block in the directions of this scan. */
+    protected void visitAround(BlockPos pos) {
+        for (EnumFacing face : directions) {
+            visit(pos.offset(face));
+        }
+    }
+
+    /** Carries on the flood fill, visiting roughly the given number of blocks at most.
+     *
+     * @return The number of blocks that were visited. */
+    public int step(int maxBlocks) {
+        int count = 0;
+        while (count < maxBlocks && !isDone()) {
+            if (!changed.isEmpty()) {
+                long key = changed.pollFirst();
+                changedSet.remove(key);
+                visited.remove(key);
+                queued.remove(key);
+                visit(BlockPos.fromLong(key));
+                count++;
+            } else {
+                visitAround(BlockPos.fromLong(frontier.pollFirst()));
+                count += directions.length;
+            }
+        }
+        return count;
+    }
+
+    /** Called whenever a block changes in the world of this scan. The block is visited again by the next
+     * {@link #step(int)} if it was visited before, so that a block that has been drained or filled is no longer
+     * handed out, and the fill carries on through any new fluid. */
+    public void onBlockChanged(BlockPos pos) {
+        if (Math.abs(pos.getX() - origin.getX()) > RADIUS + 1 || Math.abs(pos.getZ() - origin.getZ()) > RADIUS + 1) {
+            return;
+        }
+        long key = pos.toLong();
+        if (visited.contains(key) && changedSet.add(key)) {
+            changed.addLast(key);
+        }
+    }
+
+    /** @return The last block found in the highest layer, or null if there are none left. */
+    public BlockPos peekHighest() {
+        return next(true, false);
+    }
+
+    public BlockPos pollHighest() {
+        return next(true, true);
+    }
+
+    /** @return The first block found in the lowest layer, or null if there are none left. */
+    public BlockPos peekLowest() {
+        return next(false, false);
+    }
+
+    public BlockPos pollLowest() {
+        return next(false, true);
+    }
+
+    private BlockPos next(boolean highest, boolean remove) {
+        while (!layers.isEmpty()) {
+            Map.Entry<Integer, LongArrayDeque> entry = highest ? layers.lastEntry() : layers.firstEntry();
+            LongArrayDeque layer = entry.getValue();
+            while (!layer.isEmpty()) {
+                long key = highest ? layer.peekLast() : layer.peekFirst();
+                boolean valid = queued.contains(key);
+                if (valid && !remove) {
+                    return BlockPos.fromLong(key);
+                }
+                if (highest) {
+                    layer.pollLast();
+                } else {
+                    layer.pollFirst();
+                }
+                if (valid) {
+                    queued.remove(key);
+                    return BlockPos.fromLong(key);
+                }
+            }
+            layers.remove(entry.getKey());
+        }
+        return null;
+    }
+
+    private LongArrayDeque getLayer(int y) {
+        LongArrayDeque layer = layers.get(y);
+        if (layer == null) {
+            layer = new LongArrayDeque();
+            layers.put(y, layer);
+        }
+        return layer;
+    }
+}
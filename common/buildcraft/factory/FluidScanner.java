@@ -0,0 +1,196 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.factory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.IWorldAccess;
+import net.minecraft.world.World;
+
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fluids.Fluid;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+/** Runs the {@link FluidScan}s of every pump and flood gate, a few at a time at the end of each server tick, so that
+ * finding a large lake is spread out over several ticks rather than holding up a single one. At most
+ * {@link #MAX_BLOCKS_PER_TICK} blocks are visited per tick, for no longer than {@link #MAX_NANOS_PER_TICK}, and the
+ * scans take turns so that a large one can't hold up the others.
+ * <p>
+ * Scans are kept until they are cancelled, and are told about every block that changes in their world, so that they
+ * stay up to date without starting over. The {@link FluidBody}s found by pumps are also looked up here, so that every
+ * pump in the same lake shares a single scan of it, and bodies whose scans meet are merged. Everything here happens on
+ * the server thread, as the world can't be read from any other. */
+public enum FluidScanner {
+    INSTANCE;
+
+    public static final int MAX_BLOCKS_PER_TICK = 16384;
+    public static final long MAX_NANOS_PER_TICK = 1000000;
+    private static final int BLOCKS_PER_STEP = 256;
+
+    private final List<FluidScan> scans = Lists.newArrayList();
+    private final Map<World, WorldListener> listeners = Maps.newHashMap();
+    private int next;
+
+    public void start(FluidScan scan) {
+        getListener(scan.world).scans.add(scan);
+        scans.add(scan);
+    }
+
+    private WorldListener getListener(World world) {
+        WorldListener listener = listeners.get(world);
+        if (listener == null) {
+            listener = new WorldListener(world);
+            listeners.put(world, listener);
+        }
+        return listener;
+    }
+
+    /** Finds the body of fluid that the given block is part of, or starts scanning a new one from the block if none of
+     * the known bodies in the world contain it. Every call must be matched by a call to {@link FluidBody#release()}. */
+    public FluidBody acquireBody(World world, BlockPos pos, Fluid fluid) {
+        WorldListener listener = getListener(world);
+        for (FluidScan scan : listener.scans) {
+            if (scan instanceof FluidBody && !scan.isCancelled() && scan.getFluid() == fluid && ((FluidBody) scan).contains(pos)) {
+                FluidBody body = (FluidBody) scan;
+                body.acquire();
+                return body;
+            }
+        }
+
+        FluidBody body = new FluidBody(world, pos, fluid, listener.scans);
+        body.visit(pos);
+        body.acquire();
+        start(body);
+        return body;
+    }
+
+    @SubscribeEvent
+    public void serverTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        removeCancelled();
+
+        long deadline = System.nanoTime() + MAX_NANOS_PER_TICK;
+        int budget = MAX_BLOCKS_PER_TICK;
+        int idle = 0;
+        while (budget > 0 && idle < scans.size() && System.nanoTime() < deadline) {
+            if (next >= scans.size()) {
+                next = 0;
+            }
+            FluidScan scan = scans.get(next++);
+            if (scan.isDone()) {
+                idle++;
+            } else {
+                idle = 0;
+                budget -= scan.step(Math.min(BLOCKS_PER_STEP, budget));
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public void worldUnload(WorldEvent.Unload event) {
+        WorldListener listener = listeners.remove(event.world);
+        if (listener != null) {
+            listener.clear();
+            for (FluidScan scan : listener.scans) {
+                scan.cancel();
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        for (Iterator<FluidScan> iterator = scans.iterator(); iterator.hasNext();) {
+            if (iterator.next().isCancelled()) {
+                iterator.remove();
+            }
+        }
+
+        for (Iterator<WorldListener> iterator = listeners.values().iterator(); iterator.hasNext();) {
+            WorldListener listener = iterator.next();
+            for (Iterator<FluidScan> scanIterator = listener.scans.iterator(); scanIterator.hasNext();) {
+                if (scanIterator.next().isCancelled()) {
+                    scanIterator.remove();
+                }
+            }
+            if (listener.scans.isEmpty()) {
+                listener.clear();
+                iterator.remove();
+            }
+        }
+    }
+
+    /** @return The number of scans that are still being kept up to date. */
+    public int getScanCount() {
+        return scans.size();
+    }
+
+    private static final class WorldListener implements IWorldAccess {
+        private final World world;
+        private final List<FluidScan> scans = Lists.newArrayList();
+
+        private WorldListener(World world) {
+            this.world = world;
+            world.addWorldAccess(this);
+        }
+
+        public void clear() {
+            world.removeWorldAccess(this);
+        }
+
+        @Override
+        public void markBlockForUpdate(BlockPos pos) {
+            for (FluidScan scan : scans) {
+                if (!scan.isCancelled()) {
+                    scan.onBlockChanged(pos);
+                }
+            }
+        }
+
+        @Override
+        public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2) {}
+
+        @Override
+        public void playSound(String var1, double var2, double var4, double var6, float var8, float var9) {}
+
+        @Override
+        public void playSoundToNearExcept(EntityPlayer var1, String var2, double var3, double var5, double var7, float var9, float var10) {}
+
+        @Override
+        public void notifyLightSet(BlockPos pos) {}
+
+        @Override
+        public void spawnParticle(int particleID, boolean p_180442_2_, double xCoord, double yCoord, double zCoord, double xOffset, double yOffset,
+                double zOffset, int... p_180442_15_) {}
+
+        @Override
+        public void onEntityAdded(Entity entityIn) {}
+
+        @Override
+        public void onEntityRemoved(Entity entityIn) {}
+
+        @Override
+        public void playRecord(String recordName, BlockPos blockPosIn) {}
+
+        @Override
+        public void broadcastSound(int p_180440_1_, BlockPos p_180440_2_, int p_180440_3_) {}
+
+        @Override
+        public void playAuxSFX(EntityPlayer player, int sfxType, BlockPos blockPosIn, int p_180439_4_) {}
+
+        @Override
+        public void sendBlockBreakProgress(int breakerId, BlockPos pos, int progress) {}
+    }
+}
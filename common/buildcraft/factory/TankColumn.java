@@ -0,0 +1,229 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.factory;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import net.minecraftforge.fluids.Fluid;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.FluidTankInfo;
+
+/** A vertical stack of {@link TileTank}s that holds its fluid as a single volume, so that filling, draining and looking
+ * at a stack doesn't have to walk through every tank in it. The fluid always sits at the bottom of the column: the level
+ * of each tank is worked out from the total whenever it is needed to render, sync or save that tank, rather than moving
+ * fluid down from one tank to the next every tick.
+ * <p>
+ * A column is found once, and kept until a tank is added to it or removed from it. A stack of tanks that hold different
+ * fluids (which can only happen when two stacks are joined) is split into a column for each fluid, which are joined up
+ * again once the lower one has been emptied. */
+public class TankColumn {
+    private final List<TileTank> tanks;
+    private final int capacity;
+    private FluidStack fluid;
+    /** The columns that the rest of the stack was split into, or null if this is the only one. */
+    private List<TankColumn> stack;
+    private boolean valid = true;
+    private int version;
+    private int comparator;
+
+    private TankColumn(List<TileTank> tanks, FluidStack fluid) {
+        this.tanks = tanks;
+        int total = 0;
+        for (int i = 0; i < tanks.size(); i++) {
+            TileTank tank = tanks.get(i);
+            tank.column = this;
+            tank.columnBase = total;
+            tank.columnVersion = -1;
+            total += tank.tank.getCapacity();
+        }
+        this.capacity = total;
+        this.fluid = fluid;
+        updateComparator();
+    }
+
+    /** Finds the stack of tanks that the given one is part of, and gives every tank in it a column from the fluid that
+     * they hold at the moment. */
+    public static void build(TileTank tile) {
+        TileTank bottom = tile;
+        TileTank below;
+        while ((below = TileTank.getTankBelow(bottom)) != null) {
+            bottom = below;
+        }
+
+        List<TankColumn> columns = Lists.newArrayList();
+        List<TileTank> tanks = Lists.newArrayList();
+        FluidStack fluid = null;
+        for (TileTank tank = bottom; tank != null; tank = TileTank.getTankAbove(tank)) {
+            FluidStack held = tank.tank.getFluid();
+            if (held != null && held.amount > 0) {
+                if (fluid == null) {
+                    fluid = held.copy();
+                } else if (fluid.isFluidEqual(held)) {
+                    fluid.amount += held.amount;
+                } else {
+                    columns.add(new TankColumn(tanks, fluid));
+                    tanks = Lists.newArrayList();
+                    fluid = held.copy();
+                }
+            }
+            tanks.add(tank);
+        }
+        columns.add(new TankColumn(tanks, fluid));
+
+        if (columns.size() > 1) {
+            for (TankColumn column : columns) {
+                column.stack = columns;
+            }
+        }
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /** Called whenever a tank is added to or removed from this column. On the server the level of every tank is written
+     * back to it first, so that the next column is found with the same amount of fluid. */
+    public void invalidate() {
+        if (!valid) {
+            return;
+        }
+        valid = false;
+        if (!tanks.get(0).getWorld().isRemote) {
+            for (TileTank tank : tanks) {
+                if (tank.column == this) {
+                    writeLevel(tank);
+                }
+            }
+        }
+        for (TileTank tank : tanks) {
+            if (tank.column == this) {
+                tank.column = null;
+            }
+        }
+    }
+
+    public int size() {
+        return tanks.size();
+    }
+
+    public TileTank getBottom() {
+        return tanks.get(0);
+    }
+
+    public TileTank getTop() {
+        return tanks.get(tanks.size() - 1);
+    }
+
+    public Fluid getFluidType() {
+        return fluid != null ? fluid.getFluid() : null;
+    }
+
+    public boolean isFluidEqual(FluidStack other) {
+        return fluid != null && fluid.isFluidEqual(other);
+    }
+
+    public int getFluidAmount() {
+        return fluid != null ? fluid.amount : 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public FluidTankInfo getInfo() {
+        return new FluidTankInfo(fluid != null ? fluid.copy() : null, capacity);
+    }
+
+    /** @return The comparator output of every tank in the column. */
+    public int getComparatorOutput() {
+        return comparator;
+    }
+
+    public int fill(FluidStack resource, boolean doFill) {
+        if (resource == null || resource.amount <= 0) {
+            return 0;
+        }
+        if (fluid != null && !fluid.isFluidEqual(resource)) {
+            return 0;
+        }
+
+        int used = Math.min(resource.amount, capacity - getFluidAmount());
+        if (doFill && used > 0) {
+            if (fluid == null) {
+                fluid = resource.copy();
+                fluid.amount = used;
+            } else {
+                fluid.amount += used;
+            }
+            changed();
+        }
+        return used;
+    }
+
+    public FluidStack drain(int maxDrain, boolean doDrain) {
+        if (fluid == null || maxDrain <= 0) {
+            return null;
+        }
+
+        FluidStack output = fluid.copy();
+        output.amount = Math.min(maxDrain, fluid.amount);
+        if (doDrain) {
+            fluid.amount -= output.amount;
+            if (fluid.amount <= 0) {
+                fluid = null;
+            }
+            changed();
+
+            if (fluid == null && stack != null) {
+                // Let the fluid in the rest of the stack flow down into this column
+                for (TankColumn column : stack) {
+                    column.invalidate();
+                }
+            }
+        }
+        return output;
+    }
+
+    /** Sets the level of the given tank from this column, if the column has changed since it was last set.
+     *
+     * @return True if the level of the tank changed. */
+    public boolean updateLevel(TileTank tank) {
+        if (tank.columnVersion == version) {
+            return false;
+        }
+        tank.columnVersion = version;
+        return writeLevel(tank);
+    }
+
+    private boolean writeLevel(TileTank tank) {
+        int amount = Math.max(0, Math.min(getFluidAmount() - tank.columnBase, tank.tank.getCapacity()));
+        FluidStack current = tank.tank.getFluid();
+        if (amount == 0) {
+            if (current == null) {
+                return false;
+            }
+            tank.tank.setFluid(null);
+            return true;
+        }
+        if (current != null && current.amount == amount && current.isFluidEqual(fluid)) {
+            return false;
+        }
+        FluidStack level = fluid.copy();
+        level.amount = amount;
+        tank.tank.setFluid(level);
+        return true;
+    }
+
+    private void changed() {
+        version++;
+        updateComparator();
+    }
+
+    private void updateComparator() {
+        comparator = capacity > 0 ? getFluidAmount() * 15 / capacity : 0;
+    }
+}
@@ -4,12 +4,14 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.factory;
 
-import java.util.*;
+import java.util.EnumSet;
 
 import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.BlockPos;
 import net.minecraft.util.EnumFacing;
+import net.minecraft.world.World;
 
 import net.minecraftforge.fluids.*;
 
@@ -23,28 +25,13 @@ import buildcraft.core.lib.utils.Utils;
 import io.netty.buffer.ByteBuf;
 
 public class TileFloodGate extends TileBuildCraft implements IFluidHandler {
-    public static final int[] REBUILD_DELAY = new int[8];
     public static final int MAX_LIQUID = FluidContainerRegistry.BUCKET_VOLUME * 2;
-    private final TreeMap<Integer, Deque<BlockPos>> pumpLayerQueues = new TreeMap<Integer, Deque<BlockPos>>();
-    private final Set<BlockPos> visitedBlocks = new HashSet<BlockPos>();
-    private Deque<BlockPos> fluidsFound = new LinkedList<BlockPos>();
     private final Tank tank = new Tank("tank", MAX_LIQUID, this);
-    private int rebuildDelay;
+    private FloodScan scan;
     private int tick = Utils.RANDOM.nextInt();
     private boolean powered = false;
     private EnumSet<EnumFacing> blockedSides = EnumSet.noneOf(EnumFacing.class);
 
-    static {
-        REBUILD_DELAY[0] = 128;
-        REBUILD_DELAY[1] = 256;
-        REBUILD_DELAY[2] = 512;
-        REBUILD_DELAY[3] = 1024;
-        REBUILD_DELAY[4] = 2048;
-        REBUILD_DELAY[5] = 4096;
-        REBUILD_DELAY[6] = 8192;
-        REBUILD_DELAY[7] = 16384;
-    }
-
     public TileFloodGate() {}
 
     @Override
@@ -73,18 +60,13 @@ public class TileFloodGate extends TileBuildCraft implements IFluidHandler {
                     return;
                 }
 
-                if (tick % REBUILD_DELAY[rebuildDelay] == 0) {
-                    rebuildDelay++;
-                    if (rebuildDelay >= REBUILD_DELAY.length) {
-                        rebuildDelay = REBUILD_DELAY.length - 1;
-                    }
+                if (scan == null || scan.getFluid() != fluid) {
                     rebuildQueue();
                 }
                 BlockPos index = getNextIndexToFill(true);
 
                 if (index != null && placeFluid(index, fluid)) {
                     tank.drain(FluidContainerRegistry.BUCKET_VOLUME, true);
-                    rebuildDelay = 0;
                 }
             }
         }
@@ -97,6 +79,7 @@ public class TileFloodGate extends TileBuildCraft implements IFluidHandler {
             boolean placed;
             Block b = TankUtils.getFluidBlock(fluid, true);
 
+            // The scan finds out about the new block by itself, and spreads out from it
             if (b instanceof BlockFluidBase) {
                 BlockFluidBase blockFluid = (BlockFluidBase) b;
                 placed = worldObj.setBlockState(pos, blockFluid.getDefaultState(), 3);
@@ -104,11 +87,6 @@ public class TileFloodGate extends TileBuildCraft implements IFluidHandler {
                 placed = worldObj.setBlockState(pos, b.getDefaultState());
             }
 
-            if (placed) {
-                queueAdjacent(pos);
-                expandQueue();
-            }
-
             return placed;
         }
 
@@ -116,88 +94,31 @@ public class TileFloodGate extends TileBuildCraft implements IFluidHandler {
     }
 
     private BlockPos getNextIndexToFill(boolean remove) {
-        if (pumpLayerQueues.isEmpty()) {
+        if (scan == null) {
             return null;
         }
-
-        Deque<BlockPos> bottomLayer = pumpLayerQueues.firstEntry().getValue();
-
-        if (bottomLayer != null) {
-            if (bottomLayer.isEmpty()) {
-                pumpLayerQueues.pollFirstEntry();
-            }
-            if (remove) {
-                BlockPos index = bottomLayer.pollFirst();
-                return index;
-            }
-            return bottomLayer.peekFirst();
-        }
-
-        return null;
+        return remove ? scan.pollLowest() : scan.peekLowest();
     }
 
-    private Deque<BlockPos> getLayerQueue(int layer) {
-        Deque<BlockPos> pumpQueue = pumpLayerQueues.get(layer);
-        if (pumpQueue == null) {
-            pumpQueue = new LinkedList<BlockPos>();
-            pumpLayerQueues.put(layer, pumpQueue);
-        }
-        return pumpQueue;
-    }
-
-    /** Nasty expensive function, don't call if you don't have to. */
+    /** Starts looking for places to put fluid again. The search itself is done over the next few ticks by the
+     * {@link FluidScanner}, and is then kept up to date as blocks change, so this only needs to be called if the sides
+     * or the fluid of this flood gate have changed. */
     public void rebuildQueue() {
-        pumpLayerQueues.clear();
-        visitedBlocks.clear();
-        fluidsFound.clear();
-
-        queueAdjacent(pos);
-
-        expandQueue();
-    }
-
-    private void expandQueue() {
-        if (tank.getFluidType() == null) {
+        cancelScan();
+        Fluid fluid = tank.getFluidType();
+        if (fluid == null) {
             return;
         }
-        while (!fluidsFound.isEmpty()) {
-            Deque<BlockPos> fluidsToExpand = fluidsFound;
-            fluidsFound = new LinkedList<BlockPos>();
 
-            for (BlockPos index : fluidsToExpand) {
-                queueAdjacent(index);
-            }
-        }
-    }
-
-    public void queueAdjacent(BlockPos pos) {
-        if (tank.getFluidType() == null) {
-            return;
-        }
-        for (EnumFacing face : EnumFacing.VALUES) {
-            if (face != EnumFacing.UP && !blockedSides.contains(face)) {
-                queueForFilling(pos.offset(face));
-            }
-        }
+        scan = new FloodScan(worldObj, fluid);
+        scan.visitAround(pos);
+        FluidScanner.INSTANCE.start(scan);
     }
 
-    public void queueForFilling(BlockPos pos) {
-        if (pos.getY() < 0 || pos.getY() > 255) {
-            return;
-        }
-        if (visitedBlocks.add(pos)) {
-            if ((pos.getX() - this.pos.getX()) * (pos.getX() - this.pos.getX()) + (pos.getZ() - this.pos.getZ()) * (pos.getZ() - this.pos.getZ()) > 64
-                * 64) {
-                return;
-            }
-
-            Block block = BlockUtils.getBlockState(worldObj, pos).getBlock();
-            if (BlockUtils.getFluid(block) == tank.getFluidType()) {
-                fluidsFound.add(pos);
-            }
-            if (canPlaceFluidAt(block, pos)) {
-                getLayerQueue(pos.getY()).addLast(pos);
-            }
+    private void cancelScan() {
+        if (scan != null) {
+            scan.cancel();
+            scan = null;
         }
     }
 
@@ -209,7 +130,9 @@ public class TileFloodGate extends TileBuildCraft implements IFluidHandler {
         boolean p = worldObj.isBlockIndirectlyGettingPowered(pos) > 0;
         if (powered != p) {
             powered = p;
-            if (!p) {
+            if (p) {
+                cancelScan();
+            } else {
                 rebuildQueue();
             }
         }
@@ -219,7 +142,6 @@ public class TileFloodGate extends TileBuildCraft implements IFluidHandler {
     public void readFromNBT(NBTTagCompound data) {
         super.readFromNBT(data);
         tank.readFromNBT(data);
-        rebuildDelay = data.getByte("rebuildDelay");
         powered = data.getBoolean("powered");
         blockedSides.clear();
         for (int i = 0; i < 6; i++) {
@@ -232,7 +154,6 @@ public class TileFloodGate extends TileBuildCraft implements IFluidHandler {
     public void writeToNBT(NBTTagCompound data) {
         super.writeToNBT(data);
         tank.writeToNBT(data);
-        data.setByte("rebuildDelay", (byte) rebuildDelay);
         data.setBoolean("powered", powered);
         for (int i = 0; i < 6; i++) {
             if (blockedSides.contains(EnumFacing.VALUES[i])) {
@@ -281,9 +202,15 @@ public class TileFloodGate extends TileBuildCraft implements IFluidHandler {
         destroy();
     }
 
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        cancelScan();
+    }
+
     @Override
     public void destroy() {
-        pumpLayerQueues.clear();
+        cancelScan();
     }
 
     // IFluidHandler implementation.
@@ -320,4 +247,26 @@ public class TileFloodGate extends TileBuildCraft implements IFluidHandler {
     public boolean isSideBlocked(EnumFacing face) {
         return blockedSides.contains(face);
     }
+
+    private final class FloodScan extends FluidScan {
+        private FloodScan(World world, Fluid fluid) {
+            super(world, pos, fluid, getFloodDirections());
+        }
+
+        @Override
+        protected boolean canTake(BlockPos pos, IBlockState state) {
+            return canPlaceFluidAt(state.getBlock(), pos);
+        }
+
+        @Override
+        protected boolean isInRange(BlockPos pos) {
+            return pos.getY() >= 0 && pos.getY() <= 255 && super.isInRange(pos);
+        }
+    }
+
+    private EnumFacing[] getFloodDirections() {
+        EnumSet<EnumFacing> directions = EnumSet.complementOf(blockedSides);
+        directions.remove(EnumFacing.UP);
+        return directions.toArray(new EnumFacing[directions.size()]);
+    }
 }
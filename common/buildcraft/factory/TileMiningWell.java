@@ -4,6 +4,7 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.factory;
 
+import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.BlockPos;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.world.World;
@@ -18,6 +19,7 @@ import buildcraft.api.transport.IPipeConnection;
 import buildcraft.api.transport.IPipeTile;
 import buildcraft.core.lib.RFBattery;
 import buildcraft.core.lib.block.TileBuildCraft;
+import buildcraft.core.lib.inventory.ItemOutputBuffer;
 import buildcraft.core.lib.utils.BlockMiner;
 import buildcraft.core.lib.utils.BlockUtils;
 
@@ -26,6 +28,7 @@ import io.netty.buffer.ByteBuf;
 public class TileMiningWell extends TileBuildCraft implements IHasWork, IPipeConnection, IControllable {
     private boolean isDigging = true;
     private BlockMiner miner;
+    private final ItemOutputBuffer output = new ItemOutputBuffer(this);
     private int ledState;
     private int ticksSinceAction = 9001;
 
@@ -51,6 +54,7 @@ public class TileMiningWell extends TileBuildCraft implements IHasWork, IPipeCon
         }
 
         ticksSinceAction++;
+        output.flush();
 
         if (mode == Mode.Off) {
             if (miner != null) {
@@ -65,6 +69,11 @@ public class TileMiningWell extends TileBuildCraft implements IHasWork, IPipeCon
             return;
         }
 
+        if (output.isBlocked()) {
+            // Wait for the inventories or pipes around us to take what has already been mined
+            return;
+        }
+
         if (miner == null) {
             World world = worldObj;
 
@@ -85,7 +94,7 @@ public class TileMiningWell extends TileBuildCraft implements IHasWork, IPipeCon
                 ticksSinceAction = 0;
                 world.setBlockState(search, BuildCraftFactory.plainPipeBlock.getDefaultState());
             } else {
-                miner = new BlockMiner(world, this, search);
+                miner = new BlockMiner(world, this, search, output);
             }
         }
 
@@ -117,6 +126,26 @@ public class TileMiningWell extends TileBuildCraft implements IHasWork, IPipeCon
         }
     }
 
+    /** Drops the items that have been mined but not sent out yet, for when the mining well is broken. */
+    public void dropOutput() {
+        output.dropAll();
+    }
+
+    @Override
+    public void writeToNBT(NBTTagCompound nbt) {
+        super.writeToNBT(nbt);
+
+        NBTTagCompound outputTag = new NBTTagCompound();
+        output.writeToNBT(outputTag);
+        nbt.setTag("output", outputTag);
+    }
+
+    @Override
+    public void readFromNBT(NBTTagCompound nbt) {
+        super.readFromNBT(nbt);
+        output.readFromNBT(nbt.getCompoundTag("output"));
+    }
+
     @Override
     public void writeData(ByteBuf stream) {
         super.writeData(stream);
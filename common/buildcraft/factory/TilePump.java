@@ -4,11 +4,8 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.factory;
 
-import java.util.*;
-
 import net.minecraft.block.Block;
 import net.minecraft.block.material.Material;
-import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.BlockPos;
 import net.minecraft.util.EnumFacing;
@@ -35,19 +32,16 @@ import io.netty.buffer.ByteBuf;
 
 public class TilePump extends TileBuildCraft implements IHasWork, IFluidHandler, IRedstoneEngineReceiver {
 
-    public static final int REBUID_DELAY = 512;
     public static int MAX_LIQUID = FluidContainerRegistry.BUCKET_VOLUME * 16;
     public SingleUseTank tank = new SingleUseTank("tank", MAX_LIQUID, this);
 
     private EntityResizableCuboid tube;
-    private TreeMap<Integer, Deque<BlockPos>> pumpLayerQueues = new TreeMap<Integer, Deque<BlockPos>>();
+    private FluidBody body;
     private double tubeY = Double.NaN;
     private int aimY = 0;
 
-    private SafeTimeTracker timer = new SafeTimeTracker(REBUID_DELAY);
     private int tick = Utils.RANDOM.nextInt(32);
     private int tickPumped = tick - 20;
-    private int numFluidBlocksFound = 0;
     private boolean powered = false;
 
     private int ledState;
@@ -64,7 +58,7 @@ public class TilePump extends TileBuildCraft implements IHasWork, IFluidHandler,
         super.update();
 
         if (powered) {
-            pumpLayerQueues.clear();
+            releaseBody();
             destroyTube();
         } else {
             createTube();
@@ -107,7 +101,7 @@ public class TilePump extends TileBuildCraft implements IHasWork, IFluidHandler,
         if (fluidToPump != null) {
             if (isFluidAllowed(fluidToPump.getFluid()) && tank.fill(fluidToPump, false) == fluidToPump.amount) {
                 if (getBattery().useEnergy(100, 100, false) > 0) {
-                    if (fluidToPump.getFluid() != FluidRegistry.WATER || BuildCraftCore.consumeWaterSources || numFluidBlocksFound < 9) {
+                    if (fluidToPump.getFluid() != FluidRegistry.WATER || BuildCraftCore.consumeWaterSources || body.getFound() < 9) {
                         index = getNextIndexToPump(true);
                         BlockUtils.drainBlock(worldObj, index, true);
                     }
@@ -116,12 +110,15 @@ public class TilePump extends TileBuildCraft implements IHasWork, IFluidHandler,
                     tickPumped = tick;
                 }
             }
+        } else if (index != null) {
+            // The block has been drained or replaced since it was found
+            getNextIndexToPump(true);
         } else {
-            if (tick % 128 == 0) {
+            if (tick % 128 == 0 && (body == null || body.isDone())) {
                 // TODO: improve that decision
                 rebuildQueue();
 
-                if (getNextIndexToPump(false) == null) {
+                if (body == null) {
                     for (int y = 1; y < pos.getY(); y++) {
                         BlockPos pos2 = pos.down(y);
                         if (isPumpableFluid(pos2)) {
@@ -197,106 +194,37 @@ public class TilePump extends TileBuildCraft implements IHasWork, IFluidHandler,
     }
 
     private BlockPos getNextIndexToPump(boolean remove) {
-        if (pumpLayerQueues.isEmpty()) {
-            if (timer.markTimeIfDelay(worldObj)) {
-                rebuildQueue();
-            }
-
+        if (body == null) {
             return null;
         }
-
-        Deque<BlockPos> topLayer = pumpLayerQueues.lastEntry().getValue();
-
-        if (topLayer != null) {
-            if (topLayer.isEmpty()) {
-                pumpLayerQueues.pollLastEntry();
-            }
-
-            if (remove) {
-                BlockPos index = topLayer.pollLast();
-                return index;
-            } else {
-                return topLayer.peekLast();
-            }
-        } else {
-            return null;
-        }
-    }
-
-    private Deque<BlockPos> getLayerQueue(int layer) {
-        Deque<BlockPos> pumpQueue = pumpLayerQueues.get(layer);
-
-        if (pumpQueue == null) {
-            pumpQueue = new LinkedList<BlockPos>();
-            pumpLayerQueues.put(layer, pumpQueue);
-        }
-
-        return pumpQueue;
+        // The body is merged into another if their scans meet
+        body = body.resolve();
+        return remove ? body.pollHighest() : body.peekHighest();
     }
 
+    /** Starts pumping again from the block that the tube is aimed at, sharing the {@link FluidBody} that it is part of
+     * with any other pumps in the same fluid. If no other pump knows about it then it is scanned over the next few ticks
+     * by the {@link FluidScanner}. */
     public void rebuildQueue() {
-        numFluidBlocksFound = 0;
-        pumpLayerQueues.clear();
-        int x = pos.getX();
-        int y = aimY;
-        int z = pos.getZ();
-        BlockPos pos = new BlockPos(x, y, z);
-        Fluid pumpingFluid = BlockUtils.getFluid(BlockUtils.getBlockState(worldObj, pos).getBlock());
-
-        if (pumpingFluid == null) {
-            return;
+        // Find the new body before letting go of the old one, so that it isn't thrown away if it is still the same
+        FluidBody previous = body;
+        body = null;
+        BlockPos aim = new BlockPos(pos.getX(), aimY, pos.getZ());
+        Fluid pumpingFluid = BlockUtils.getFluid(BlockUtils.getBlockState(worldObj, aim).getBlock());
+
+        if (pumpingFluid != null && (pumpingFluid == tank.getAcceptedFluid() || tank.getAcceptedFluid() == null)) {
+            body = FluidScanner.INSTANCE.acquireBody(worldObj, aim, pumpingFluid);
         }
 
-        if (pumpingFluid != tank.getAcceptedFluid() && tank.getAcceptedFluid() != null) {
-            return;
-        }
-
-        Set<BlockPos> visitedBlocks = new HashSet<BlockPos>();
-        Deque<BlockPos> fluidsFound = new LinkedList<BlockPos>();
-
-        queueForPumping(pos, visitedBlocks, fluidsFound, pumpingFluid);
-
-        // long timeoutTime = System.nanoTime() + 10000;
-
-        while (!fluidsFound.isEmpty()) {
-            Deque<BlockPos> fluidsToExpand = fluidsFound;
-            fluidsFound = new LinkedList<BlockPos>();
-
-            for (BlockPos index : fluidsToExpand) {
-                queueForPumping(index.up(), visitedBlocks, fluidsFound, pumpingFluid);
-                queueForPumping(index.east(), visitedBlocks, fluidsFound, pumpingFluid);
-                queueForPumping(index.west(), visitedBlocks, fluidsFound, pumpingFluid);
-                queueForPumping(index.north(), visitedBlocks, fluidsFound, pumpingFluid);
-                queueForPumping(index.south(), visitedBlocks, fluidsFound, pumpingFluid);
-
-                if (pumpingFluid == FluidRegistry.WATER && !BuildCraftCore.consumeWaterSources && numFluidBlocksFound >= 9) {
-                    return;
-                }
-
-                // if (System.nanoTime() > timeoutTime)
-                // return;
-            }
+        if (previous != null) {
+            previous.release();
         }
     }
 
-    public void queueForPumping(BlockPos pos, Set<BlockPos> visitedBlocks, Deque<BlockPos> fluidsFound, Fluid pumpingFluid) {
-        BlockPos index = new BlockPos(pos);
-        if (visitedBlocks.add(index)) {
-            if ((pos.getX() - this.pos.getX()) * (pos.getX() - this.pos.getX()) + (pos.getZ() - this.pos.getZ()) * (pos.getZ() - this.pos.getZ()) > 64
-                * 64) {
-                return;
-            }
-
-            IBlockState state = BlockUtils.getBlockState(worldObj, pos);
-
-            if (BlockUtils.getFluid(state.getBlock()) == pumpingFluid) {
-                fluidsFound.add(index);
-            }
-
-            if (canDrainBlock(state, pos, pumpingFluid)) {
-                getLayerQueue(pos.getY()).add(index);
-                numFluidBlocksFound++;
-            }
+    private void releaseBody() {
+        if (body != null) {
+            body.release();
+            body = null;
         }
     }
 
@@ -312,20 +240,6 @@ public class TilePump extends TileBuildCraft implements IHasWork, IFluidHandler,
         }
     }
 
-    private boolean canDrainBlock(IBlockState state, BlockPos pos, Fluid fluid) {
-        if (!isFluidAllowed(fluid)) {
-            return false;
-        }
-
-        FluidStack fluidStack = BlockUtils.drainBlock(state, worldObj, pos, false);
-
-        if (fluidStack == null || fluidStack.amount <= 0) {
-            return false;
-        } else {
-            return fluidStack.getFluid() == fluid;
-        }
-    }
-
     private boolean isFluidAllowed(Fluid fluid) {
         return BuildCraftFactory.pumpDimensionList.isFluidAllowed(fluid, worldObj.provider.getDimensionId());
     }
@@ -413,6 +327,7 @@ public class TilePump extends TileBuildCraft implements IHasWork, IFluidHandler,
     @Override
     public void onChunkUnload() {
         super.onChunkUnload();
+        releaseBody();
 
         if (tube != null) {
             // Remove the entity to stop it from piling up.
@@ -428,7 +343,7 @@ public class TilePump extends TileBuildCraft implements IHasWork, IFluidHandler,
 
     @Override
     public void destroy() {
-        pumpLayerQueues.clear();
+        releaseBody();
         destroyTube();
     }
 
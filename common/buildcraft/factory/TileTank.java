@@ -32,23 +32,47 @@ public class TileTank extends TileBuildCraft implements IFluidHandler, IDebuggab
     private int prevLightValue = 0;
     private int cachedComparatorOverride = 0;
 
+    /** The column that this tank is part of, or null if it has to be found again. Only set by the {@link TankColumn}. */
+    TankColumn column;
+    /** The amount of fluid that the column holds in the tanks below this one. */
+    int columnBase;
+    int columnVersion;
+
     @Override
     public void initialize() {
         super.initialize();
+        // This tank may have joined up two columns
+        TileTank below = getTankBelow(this);
+        if (below != null) {
+            below.updateComparators();
+        }
+        TileTank above = getTankAbove(this);
+        if (above != null) {
+            above.updateComparators();
+        }
         updateComparators();
     }
 
+    /** Called whenever a tank next to this one is placed or removed, so that the column of this tank is found again. */
     public void updateComparators() {
-        int co = calculateComparatorInputOverride();
-        TileTank uTank = getBottomTank();
-        while (uTank != null) {
-            uTank.cachedComparatorOverride = co;
-            uTank.hasUpdate = true;
-            uTank = getTankAbove(uTank);
+        if (column != null) {
+            column.invalidate();
         }
     }
 
+    /** @return The column that this tank is part of, finding it first if it was changed since it was last used. */
+    public TankColumn getColumn() {
+        if (column == null || !column.isValid()) {
+            TankColumn.build(this);
+        }
+        return column;
+    }
+
     public void onBlockBreak() {
+        if (column != null && !worldObj.isRemote) {
+            column.updateLevel(this);
+        }
+
         if (!tank.isEmpty()) {
             FluidEvent.fireEvent(new FluidEvent.FluidSpilledEvent(tank.getFluid(), worldObj, pos));
         }
@@ -70,9 +94,15 @@ public class TileTank extends TileBuildCraft implements IFluidHandler, IDebuggab
             return;
         }
 
-        // Have liquid flow down into tanks below if any.
-        if (tank.getFluid() != null) {
-            moveFluidBelow();
+        TankColumn column = getColumn();
+        if (column.updateLevel(this)) {
+            hasNetworkUpdate = true;
+        }
+
+        int comparator = column.getComparatorOutput();
+        if (comparator != cachedComparatorOverride) {
+            cachedComparatorOverride = comparator;
+            hasUpdate = true;
         }
 
         if (hasUpdate) {
@@ -96,6 +126,7 @@ public class TileTank extends TileBuildCraft implements IFluidHandler, IDebuggab
     @Override
     public void readData(ByteBuf stream) {
         tankManager.readData(stream);
+        updateComparators();
     }
 
     /* SAVING & LOADING */
@@ -108,6 +139,9 @@ public class TileTank extends TileBuildCraft implements IFluidHandler, IDebuggab
     @Override
     public void writeToNBT(NBTTagCompound data) {
         super.writeToNBT(data);
+        if (column != null && column.isValid() && worldObj != null && !worldObj.isRemote) {
+            column.updateLevel(this);
+        }
         tankManager.writeToNBT(data);
     }
 
@@ -115,34 +149,11 @@ public class TileTank extends TileBuildCraft implements IFluidHandler, IDebuggab
 
     /** @return Last tank block below this one or this one if it is the last. */
     public TileTank getBottomTank() {
-
-        TileTank lastTank = this;
-
-        while (true) {
-            TileTank below = getTankBelow(lastTank);
-            if (below != null) {
-                lastTank = below;
-            } else {
-                break;
-            }
-        }
-
-        return lastTank;
+        return getColumn().getBottom();
     }
 
     public TileTank getTopTank() {
-        TileTank lastTank = this;
-
-        while (true) {
-            TileTank above = getTankAbove(lastTank);
-            if (above != null) {
-                lastTank = above;
-            } else {
-                break;
-            }
-        }
-
-        return lastTank;
+        return getColumn().getTop();
     }
 
     public static TileTank getTankBelow(TileTank tile) {
@@ -165,75 +176,15 @@ public class TileTank extends TileBuildCraft implements IFluidHandler, IDebuggab
         }
     }
 
-    public void moveFluidBelow() {
-        TileTank below = getTankBelow(this);
-        if (below == null) {
-            return;
-        }
-
-        int oldComparator = getComparatorInputOverride();
-        int used = below.tank.fill(tank.getFluid(), true);
-
-        if (used > 0) {
-            hasNetworkUpdate = true; // not redundant because tank.drain operates on an IFluidTank, not a tile
-            below.hasNetworkUpdate = true; // redundant because below.fill sets hasUpdate
-
-            if (oldComparator != calculateComparatorInputOverride()) {
-                updateComparators();
-            }
-
-            tank.drain(used, true);
-        }
-    }
-
     /* ITANKCONTAINER */
     @Override
     public int fill(EnumFacing from, FluidStack resource, boolean doFill) {
-        if (resource == null) {
-            return 0;
-        }
-
-        FluidStack resourceCopy = resource.copy();
-        int totalUsed = 0;
-        TileTank tankToFill = getBottomTank();
-
-        FluidStack liquid = tankToFill.tank.getFluid();
-        if (liquid != null && liquid.amount > 0 && !liquid.isFluidEqual(resourceCopy)) {
-            return 0;
-        }
-
-        int oldComparator = getComparatorInputOverride();
-
-        while (tankToFill != null && resourceCopy.amount > 0) {
-            int used = tankToFill.tank.fill(resourceCopy, doFill);
-            resourceCopy.amount -= used;
-            if (used > 0) {
-                tankToFill.hasNetworkUpdate = true;
-            }
-
-            totalUsed += used;
-            tankToFill = getTankAbove(tankToFill);
-        }
-
-        if (oldComparator != calculateComparatorInputOverride()) {
-            updateComparators();
-        }
-
-        return totalUsed;
+        return getColumn().fill(resource, doFill);
     }
 
     @Override
     public FluidStack drain(EnumFacing from, int maxEmpty, boolean doDrain) {
-        TileTank bottom = getBottomTank();
-        bottom.hasNetworkUpdate = true;
-        int oldComparator = getComparatorInputOverride();
-        FluidStack output = bottom.tank.drain(maxEmpty, doDrain);
-
-        if (oldComparator != calculateComparatorInputOverride()) {
-            updateComparators();
-        }
-
-        return output;
+        return getColumn().drain(maxEmpty, doDrain);
     }
 
     @Override
@@ -241,55 +192,27 @@ public class TileTank extends TileBuildCraft implements IFluidHandler, IDebuggab
         if (resource == null) {
             return null;
         }
-        TileTank bottom = getBottomTank();
-        if (!resource.isFluidEqual(bottom.tank.getFluid())) {
+        TankColumn column = getColumn();
+        if (!column.isFluidEqual(resource)) {
             return null;
         }
-        return drain(from, resource.amount, doDrain);
+        return column.drain(resource.amount, doDrain);
     }
 
     @Override
     public FluidTankInfo[] getTankInfo(EnumFacing direction) {
-        FluidTank compositeTank = new FluidTank(tank.getCapacity());
-
-        TileTank tile = getBottomTank();
-
-        if (tile != null && tile.tank.getFluid() != null) {
-            compositeTank.setFluid(tile.tank.getFluid().copy());
-        } else {
-            return new FluidTankInfo[] { compositeTank.getInfo() };
-        }
-
-        int capacity = tile.tank.getCapacity();
-        tile = getTankAbove(tile);
-
-        while (tile != null) {
-            FluidStack liquid = tile.tank.getFluid();
-            if (liquid == null || liquid.amount == 0) {
-                // NOOP
-            } else if (!compositeTank.getFluid().isFluidEqual(liquid)) {
-                break;
-            } else {
-                compositeTank.getFluid().amount += liquid.amount;
-            }
-
-            capacity += tile.tank.getCapacity();
-            tile = getTankAbove(tile);
-        }
-
-        compositeTank.setCapacity(capacity);
-        return new FluidTankInfo[] { compositeTank.getInfo() };
+        return new FluidTankInfo[] { getColumn().getInfo() };
     }
 
     @Override
     public boolean canFill(EnumFacing from, Fluid fluid) {
-        Fluid tankFluid = getBottomTank().tank.getFluidType();
+        Fluid tankFluid = getColumn().getFluidType();
         return tankFluid == null || tankFluid == fluid;
     }
 
     @Override
     public boolean canDrain(EnumFacing from, Fluid fluid) {
-        Fluid tankFluid = getBottomTank().tank.getFluidType();
+        Fluid tankFluid = getColumn().getFluidType();
         return tankFluid != null && tankFluid == fluid;
     }
 
@@ -299,22 +222,31 @@ public class TileTank extends TileBuildCraft implements IFluidHandler, IDebuggab
     }
 
     public int calculateComparatorInputOverride() {
-        FluidTankInfo[] info = getTankInfo(null);
-        if (info.length > 0 && info[0] != null && info[0].fluid != null) {
-            return info[0].fluid.amount * 15 / info[0].capacity;
-        } else {
-            return 0;
-        }
+        return getColumn().getComparatorOutput();
     }
 
     public int getComparatorInputOverride() {
         return cachedComparatorOverride;
     }
 
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        updateComparators();
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        updateComparators();
+    }
+
     @Override
     public void getDebugInfo(List<String> left, List<String> right, EnumFacing side) {
         left.add("");
         left.add(tank.getFluidAmount() + "/" + tank.getCapacity() + "mB");
         left.add(tank.getFluid() == null ? "empty" : tank.getFluidType().getLocalizedName(tank.getFluid()));
+        TankColumn column = getColumn();
+        left.add("Column: " + column.getFluidAmount() + "/" + column.getCapacity() + "mB in " + column.size() + " tanks");
     }
 }
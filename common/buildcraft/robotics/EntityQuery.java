@@ -0,0 +1,162 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.robotics;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.util.ClassInheritanceMultiMap;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.World;
+
+import buildcraft.api.core.IZone;
+import buildcraft.core.lib.utils.IEntityFilter;
+import buildcraft.core.lib.utils.Utils;
+
+/** Finds the closest entity to a point by only looking in the chunks around it, rather than at every entity in the
+ * world. The chunks are looked at in rings around the point, closest first, and the search stops as soon as no entity
+ * in a further ring could be closer than the best one found so far, or could be in range. Chunks that are not loaded,
+ * that are not in the zone, or whose entities are all too far above or below the point are skipped, and so are the
+ * entities that are not of the type asked for.
+ * <p>
+ * Entities are only checked against the filter if they are closer than the best one found so far, so that an
+ * expensive filter is only run for a few of them. */
+public final class EntityQuery {
+    /** How far an entity can be outside of the chunk whose list it is in, as they are only moved between lists when
+     * they are updated. The same as {@link World#MAX_ENTITY_RADIUS}. */
+    private static final double MARGIN = 2;
+
+    private EntityQuery() {}
+
+    /** @return The closest entity of the given type to the given point, that is less than the range away, in the zone
+     *         (if there is one) and that the filter matches, or null. */
+    public static <T extends Entity> T findClosest(final World world, double x, double y, double z, double range, IZone zone, Class<T> type,
+            IEntityFilter filter) {
+        return findClosest(new IChunkSource() {
+            @Override
+            public ClassInheritanceMultiMap<Entity>[] getEntityLists(int chunkX, int chunkZ) {
+                if (!world.getChunkProvider().chunkExists(chunkX, chunkZ)) {
+                    return null;
+                }
+                return world.getChunkFromChunkCoords(chunkX, chunkZ).getEntityLists();
+            }
+        }, x, y, z, range, zone, type, filter);
+    }
+
+    /** The same as {@link #findClosest(World, double, double, double, double, IZone, Class, IEntityFilter)}, but with
+     * the entities of each chunk coming from the given source. */
+    public static <T extends Entity> T findClosest(IChunkSource chunks, double x, double y, double z, double range, IZone zone, Class<T> type,
+            IEntityFilter filter) {
+        int centerX = MathHelper.floor_double(x) >> 4;
+        int centerZ = MathHelper.floor_double(z) >> 4;
+        int minSection = MathHelper.clamp_int(MathHelper.floor_double((y - range - MARGIN) / 16), 0, 15);
+        int maxSection = MathHelper.clamp_int(MathHelper.floor_double((y + range + MARGIN) / 16), 0, 15);
+        int maxRing = MathHelper.floor_double((range + MARGIN) / 16) + 1;
+
+        Search<T> search = new Search<T>(chunks, x, y, z, range * range, zone, type, filter, minSection, maxSection);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // The closest that anything in this ring could be, horizontally
+            double closest = Math.max(0, (ring - 1) * 16 - MARGIN);
+            if (closest * closest >= search.bestDistance) {
+                break;
+            }
+            if (ring == 0) {
+                search.visit(centerX, centerZ);
+                continue;
+            }
+            for (int d = -ring; d <= ring; d++) {
+                search.visit(centerX + d, centerZ - ring);
+                search.visit(centerX + d, centerZ + ring);
+            }
+            for (int d = -ring + 1; d < ring; d++) {
+                search.visit(centerX - ring, centerZ + d);
+                search.visit(centerX + ring, centerZ + d);
+            }
+        }
+        return search.best;
+    }
+
+    /** @return True if the zone has any part of the given chunk, or of those next to it, which entities in the chunk
+     *         could have moved into. */
+    private static boolean isNearZone(ZonePlan zone, int chunkX, int chunkZ) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if (zone.hasChunk(chunkX + dx, chunkZ + dz)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Where the entities of each chunk come from. */
+    public interface IChunkSource {
+        /** @return The entities in each 16 block high section of the given chunk, or null if it is not loaded. */
+        ClassInheritanceMultiMap<Entity>[] getEntityLists(int chunkX, int chunkZ);
+    }
+
+    private static final class Search<T extends Entity> {
+        private final IChunkSource chunks;
+        private final double x, y, z;
+        private final IZone zone;
+        private final Class<T> type;
+        private final IEntityFilter filter;
+        private final int minSection, maxSection;
+
+        private T best;
+        /** Starts as the range, so that nothing further away than that is ever looked at. */
+        private double bestDistance;
+
+        private Search(IChunkSource chunks, double x, double y, double z, double rangeSq, IZone zone, Class<T> type, IEntityFilter filter,
+                int minSection, int maxSection) {
+            this.chunks = chunks;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.bestDistance = rangeSq;
+            this.zone = zone;
+            this.type = type;
+            this.filter = filter;
+            this.minSection = minSection;
+            this.maxSection = maxSection;
+        }
+
+        private void visit(int chunkX, int chunkZ) {
+            if (zone instanceof ZonePlan && !isNearZone((ZonePlan) zone, chunkX, chunkZ)) {
+                return;
+            }
+            // Skip the chunk if even its closest corner is too far away
+            double dx = Math.max(0, Math.max((chunkX << 4) - MARGIN - x, x - ((chunkX << 4) + 16 + MARGIN)));
+            double dz = Math.max(0, Math.max((chunkZ << 4) - MARGIN - z, z - ((chunkZ << 4) + 16 + MARGIN)));
+            if (dx * dx + dz * dz >= bestDistance) {
+                return;
+            }
+
+            ClassInheritanceMultiMap<Entity>[] sections = chunks.getEntityLists(chunkX, chunkZ);
+            if (sections == null) {
+                return;
+            }
+            for (int section = minSection; section <= maxSection && section < sections.length; section++) {
+                for (T entity : sections[section].getByClass(type)) {
+                    if (entity.isDead) {
+                        continue;
+                    }
+                    double ex = entity.posX - x;
+                    double ey = entity.posY - y;
+                    double ez = entity.posZ - z;
+                    double distance = ex * ex + ey * ey + ez * ez;
+                    if (distance >= bestDistance) {
+                        continue;
+                    }
+                    if (zone != null && !zone.contains(Utils.getVec(entity))) {
+                        continue;
+                    }
+                    if (filter.matches(entity)) {
+                        best = entity;
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+    }
+}
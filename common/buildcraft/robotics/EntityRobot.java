@@ -63,7 +63,9 @@ import buildcraft.core.lib.utils.NBTUtils;
 import buildcraft.core.lib.utils.NetworkUtils;
 import buildcraft.core.lib.utils.Utils;
 import buildcraft.core.proxy.CoreProxy;
+import buildcraft.robotics.ai.AIRobotGotoBlock;
 import buildcraft.robotics.ai.AIRobotMain;
+import buildcraft.robotics.ai.AIRobotSearchBlock;
 import buildcraft.robotics.ai.AIRobotShutdown;
 import buildcraft.robotics.ai.AIRobotSleep;
 import buildcraft.robotics.statements.ActionRobotWorkInArea;
@@ -1248,6 +1250,7 @@ public class EntityRobot extends EntityRobotBase implements IEntityAdditionalSpa
     private void convertToItems() {
         if (!worldObj.isRemote && !isDead) {
             if (mainAI != null) {
+                terminateSearches();
                 mainAI.abort();
             }
             List<ItemStack> drops = getDrops();
@@ -1270,6 +1273,19 @@ public class EntityRobot extends EntityRobotBase implements IEntityAdditionalSpa
     @Override
     public void onChunkUnload() {
         getRegistry().unloadRobot(this);
+        terminateSearches();
+    }
+
+    /** Stops the searches that the AI has running in the background, as it won't be updated to take their results. The
+     * AI itself is left alone, as it has already been saved. */
+    private void terminateSearches() {
+        for (AIRobot ai = mainAI; ai != null; ai = ai.getDelegateAI()) {
+            if (ai instanceof AIRobotSearchBlock) {
+                ((AIRobotSearchBlock) ai).terminateSearch();
+            } else if (ai instanceof AIRobotGotoBlock) {
+                ((AIRobotGotoBlock) ai).terminateSearch();
+            }
+        }
     }
 
     @Override
@@ -9,4 +9,10 @@ import buildcraft.api.robots.DockingStation;
 public interface IStationFilter {
 
     boolean matches(DockingStation station);
+
+    /** @return Something that every station this matches can do, or null. Searches skip the stations that can't
+     *         without asking this. */
+    default StationMap.Feature getRequiredFeature() {
+        return null;
+    }
 }
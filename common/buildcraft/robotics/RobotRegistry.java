@@ -26,6 +26,7 @@ public class RobotRegistry extends WorldSavedData implements IRobotRegistry {
 
     protected World world;
     protected final HashMap<StationIndex, DockingStation> stations = new HashMap<StationIndex, DockingStation>();
+    private final StationMap stationMap = new StationMap();
 
     private long nextRobotID = Long.MIN_VALUE;
 
@@ -248,6 +249,13 @@ public class RobotRegistry extends WorldSavedData implements IRobotRegistry {
         return stations.values();
     }
 
+    /** @param feature Something that the station must be able to do, or null.
+     * @return The closest station to the given position that can do the feature and that the filter matches, or null.
+     *         Only the stations near the closest match are looked at, see {@link StationMap}. */
+    public synchronized DockingStation findClosestStation(BlockPos pos, StationMap.Feature feature, IStationFilter filter) {
+        return stationMap.findClosest(pos, feature, filter);
+    }
+
     @Override
     public synchronized void registerStation(DockingStation station) {
         markDirty();
@@ -258,6 +266,7 @@ public class RobotRegistry extends WorldSavedData implements IRobotRegistry {
             throw new InvalidParameterException("Station " + index + " already registered");
         } else {
             stations.put(index, station);
+            stationMap.add(station);
         }
     }
 
@@ -281,6 +290,7 @@ public class RobotRegistry extends WorldSavedData implements IRobotRegistry {
             }
 
             stations.remove(index);
+            stationMap.remove(station);
         }
     }
 
@@ -291,6 +301,7 @@ public class RobotRegistry extends WorldSavedData implements IRobotRegistry {
         }
 
         getStationsTakenByRobot(robotId).add(new StationIndex(station));
+        stationMap.update(station);
     }
 
     @Override
@@ -298,6 +309,7 @@ public class RobotRegistry extends WorldSavedData implements IRobotRegistry {
         if (stationsTakenByRobot.containsItem(robotId)) {
             getStationsTakenByRobot(robotId).remove(new StationIndex(station));
         }
+        stationMap.update(station);
     }
 
     @Override
@@ -139,6 +139,12 @@ public class RobotStationPluggable extends PipePluggable implements IPipePluggab
         return getRenderState() != ((RobotStationPluggable) o).getRenderState();
     }
 
+    @Override
+    public boolean writeRenderKey(ByteBuf data) {
+        data.writeByte(getRenderState().ordinal());
+        return true;
+    }
+
     @Override
     public void readData(ByteBuf data) {
         try {
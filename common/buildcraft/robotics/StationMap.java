@@ -0,0 +1,245 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.robotics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.world.ChunkCoordIntPair;
+
+import buildcraft.api.robots.DockingStation;
+
+/** The docking stations of a world, by the chunk that they are in, so that a robot looking for a station only has to
+ * look at the stations around it. {@link #findClosest(BlockPos, Feature, IStationFilter)} goes through the chunks in
+ * rings around the robot, and stops as soon as no station in a further ring could be closer than the best one found so
+ * far. If there are only a few chunks with stations and they are far away, it goes through those chunks instead, from
+ * the closest to the furthest.
+ * <p>
+ * What each station can do (see {@link Feature}) is remembered as well, so that a search for stations that can take
+ * fluids doesn't have to ask every item station. It is worked out again whenever the station is taken or released. */
+public class StationMap {
+    public enum Feature {
+        /** The station can give items to robots, or take them. */
+        ITEMS,
+        /** The station can give fluids to robots, or take them. */
+        FLUIDS,
+        /** The station can recharge robots. */
+        POWER;
+
+        private final int mask = 1 << ordinal();
+
+        public static int of(DockingStation station) {
+            int features = 0;
+            if (station.getItemOutput() != null || station.getItemInput() != null) {
+                features |= ITEMS.mask;
+            }
+            if (station.getFluidOutput() != null || station.getFluidInput() != null) {
+                features |= FLUIDS.mask;
+            }
+            if (station.providesPower()) {
+                features |= POWER.mask;
+            }
+            return features;
+        }
+    }
+
+    private static final int UNKNOWN = -1;
+
+    private final LongHashMap chunks = new LongHashMap();
+    private final List<Bucket> buckets = new ArrayList<Bucket>();
+    private int size = 0;
+
+    public void add(DockingStation station) {
+        BlockPos pos = station.getPos();
+        long key = ChunkCoordIntPair.chunkXZ2Int(pos.getX() >> 4, pos.getZ() >> 4);
+        Bucket bucket = (Bucket) chunks.getValueByKey(key);
+        if (bucket == null) {
+            bucket = new Bucket(pos.getX() >> 4, pos.getZ() >> 4);
+            chunks.add(key, bucket);
+            buckets.add(bucket);
+        }
+        bucket.entries.add(new Entry(station));
+        size++;
+    }
+
+    public void remove(DockingStation station) {
+        BlockPos pos = station.getPos();
+        long key = ChunkCoordIntPair.chunkXZ2Int(pos.getX() >> 4, pos.getZ() >> 4);
+        Bucket bucket = (Bucket) chunks.getValueByKey(key);
+        if (bucket == null) {
+            return;
+        }
+        for (int i = 0; i < bucket.entries.size(); i++) {
+            if (bucket.entries.get(i).station == station) {
+                bucket.entries.remove(i);
+                size--;
+                break;
+            }
+        }
+        if (bucket.entries.isEmpty()) {
+            chunks.remove(key);
+            buckets.remove(bucket);
+        }
+    }
+
+    /** Works out what the given station can do again, for when something next to it might have changed. */
+    public void update(DockingStation station) {
+        Entry entry = getEntry(station);
+        if (entry != null) {
+            entry.features = UNKNOWN;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private Entry getEntry(DockingStation station) {
+        BlockPos pos = station.getPos();
+        Bucket bucket = (Bucket) chunks.getValueByKey(ChunkCoordIntPair.chunkXZ2Int(pos.getX() >> 4, pos.getZ() >> 4));
+        if (bucket != null) {
+            for (Entry entry : bucket.entries) {
+                if (entry.station == station) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** @param feature Something that the station must be able to do, or null.
+     * @return The closest initialised station to the given position that can do the feature and that the filter
+     *         matches, or null. The filter is only asked about stations that are closer than the best one so far. */
+    public DockingStation findClosest(BlockPos pos, Feature feature, IStationFilter filter) {
+        final int chunkX = pos.getX() >> 4;
+        final int chunkZ = pos.getZ() >> 4;
+        Search search = new Search(pos, feature, filter);
+
+        // Going through the rings costs more than going through every chunk with stations once there are more cells
+        // in them than there are of those chunks.
+        int cellLimit = buckets.size() * 4 + 64;
+        int cells = 0;
+        int ring = 0;
+        for (; cells < cellLimit; ring++) {
+            if (search.best != null && lowerBound(ring) > search.bestDistance) {
+                return search.best;
+            }
+            if (ring == 0) {
+                search.visit((Bucket) chunks.getValueByKey(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ)));
+                cells++;
+                continue;
+            }
+            for (int d = -ring; d <= ring; d++) {
+                search.visit((Bucket) chunks.getValueByKey(ChunkCoordIntPair.chunkXZ2Int(chunkX + d, chunkZ - ring)));
+                search.visit((Bucket) chunks.getValueByKey(ChunkCoordIntPair.chunkXZ2Int(chunkX + d, chunkZ + ring)));
+            }
+            for (int d = -ring + 1; d < ring; d++) {
+                search.visit((Bucket) chunks.getValueByKey(ChunkCoordIntPair.chunkXZ2Int(chunkX - ring, chunkZ + d)));
+                search.visit((Bucket) chunks.getValueByKey(ChunkCoordIntPair.chunkXZ2Int(chunkX + ring, chunkZ + d)));
+            }
+            cells += ring * 8;
+        }
+
+        // Every ring up to here has been looked at, so go through the chunks further out from the closest
+        final int firstRing = ring;
+        List<Bucket> remaining = new ArrayList<Bucket>();
+        for (Bucket bucket : buckets) {
+            if (bucket.ring(chunkX, chunkZ) >= firstRing) {
+                remaining.add(bucket);
+            }
+        }
+        Collections.sort(remaining, new Comparator<Bucket>() {
+            @Override
+            public int compare(Bucket a, Bucket b) {
+                return Integer.compare(a.ring(chunkX, chunkZ), b.ring(chunkX, chunkZ));
+            }
+        });
+        for (Bucket bucket : remaining) {
+            if (search.best != null && lowerBound(bucket.ring(chunkX, chunkZ)) > search.bestDistance) {
+                break;
+            }
+            search.visit(bucket);
+        }
+        return search.best;
+    }
+
+    /** @return The smallest squared distance that a block in a chunk in the given ring could be from a block in the
+     *         middle chunk. */
+    private static double lowerBound(int ring) {
+        double blocks = Math.max(0, ring - 1) * 16 + (ring > 0 ? 1 : 0);
+        return blocks * blocks;
+    }
+
+    private static final class Entry {
+        private final DockingStation station;
+        private int features = UNKNOWN;
+
+        private Entry(DockingStation station) {
+            this.station = station;
+        }
+    }
+
+    private static final class Bucket {
+        private final int chunkX, chunkZ;
+        private final List<Entry> entries = new ArrayList<Entry>(2);
+
+        private Bucket(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        private int ring(int x, int z) {
+            return Math.max(Math.abs(chunkX - x), Math.abs(chunkZ - z));
+        }
+    }
+
+    private static final class Search {
+        private final BlockPos pos;
+        private final Feature feature;
+        private final IStationFilter filter;
+        private DockingStation best;
+        private double bestDistance = Double.MAX_VALUE;
+
+        private Search(BlockPos pos, Feature feature, IStationFilter filter) {
+            this.pos = pos;
+            this.feature = feature;
+            this.filter = filter;
+        }
+
+        private void visit(Bucket bucket) {
+            if (bucket == null) {
+                return;
+            }
+            // Backwards, as a station that finds that its pipe is gone removes itself from the registry
+            for (int i = bucket.entries.size() - 1; i >= 0; i--) {
+                if (i >= bucket.entries.size()) {
+                    continue;
+                }
+                Entry entry = bucket.entries.get(i);
+                DockingStation station = entry.station;
+                double distance = pos.distanceSq(station.getPos());
+                if (distance >= bestDistance || !station.isInitialized()) {
+                    continue;
+                }
+                if (feature != null) {
+                    if (entry.features == UNKNOWN) {
+                        entry.features = Feature.of(station);
+                    }
+                    if ((entry.features & feature.mask) == 0) {
+                        continue;
+                    }
+                }
+                if (filter.matches(station)) {
+                    best = station;
+                    bestDistance = distance;
+                }
+            }
+        }
+    }
+}
@@ -68,6 +68,11 @@ public class TileZonePlan extends TileBuildCraft implements IInventory {
 
         chunkStartX = chunkX - RESOLUTION_CHUNKS / 2;
         chunkStartZ = chunkZ - RESOLUTION_CHUNKS / 2;
+
+        if (!worldObj.isRemote && BuildCraftRobotics.manager != null) {
+            // So that the map is ready by the time that someone opens it
+            BuildCraftRobotics.manager.getWorld(worldObj).prefetch(chunkStartX, chunkStartZ, RESOLUTION_CHUNKS, RESOLUTION_CHUNKS);
+        }
     }
 
     @Override
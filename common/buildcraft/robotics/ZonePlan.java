@@ -38,6 +38,11 @@ public class ZonePlan implements IZone, ISerializable {
         }
     }
 
+    /** @return True if any block of the given chunk is in this zone. */
+    public boolean hasChunk(int xChunk, int zChunk) {
+        return chunkMapping.containsKey(new ChunkCoordIntPair(xChunk, zChunk));
+    }
+
     public void set(int x, int z, boolean val) {
         int xChunk = x >> 4;
         int zChunk = z >> 4;
@@ -12,7 +12,9 @@ import buildcraft.api.core.IZone;
 import buildcraft.api.robots.AIRobot;
 import buildcraft.api.robots.EntityRobotBase;
 import buildcraft.core.lib.inventory.TransactorSimple;
+import buildcraft.core.lib.utils.IEntityFilter;
 import buildcraft.core.lib.utils.Utils;
+import buildcraft.robotics.EntityQuery;
 import buildcraft.robotics.boards.BoardRobotPicker;
 
 public class AIRobotFetchItem extends AIRobot {
@@ -92,42 +94,17 @@ public class AIRobotFetchItem extends AIRobot {
     }
 
     private void scanForItem() {
-        double previousDistance = Double.MAX_VALUE;
-        TransactorSimple inventoryInsert = new TransactorSimple(robot);
-
-        for (Object o : robot.worldObj.loadedEntityList) {
-            Entity e = (Entity) o;
-
-            if (!e.isDead && e instanceof EntityItem && !BoardRobotPicker.targettedItems.contains(e.getEntityId()) && !robot.isKnownUnreachable(e)
-                && (zone == null || zone.contains(Utils.getVec(e)))) {
-                double dx = e.posX - robot.posX;
-                double dy = e.posY - robot.posY;
-                double dz = e.posZ - robot.posZ;
-
-                double sqrDistance = dx * dx + dy * dy + dz * dz;
-                double maxDistance = maxRange * maxRange;
-
-                if (sqrDistance >= maxDistance) {
-                    continue;
-                } else if (stackFilter != null && !stackFilter.matches(((EntityItem) e).getEntityItem())) {
-                    continue;
-                } else {
-                    EntityItem item = (EntityItem) e;
-
-                    if (inventoryInsert.inject(item.getEntityItem(), null, false) > 0) {
-                        if (target == null) {
-                            previousDistance = sqrDistance;
-                            target = item;
-                        } else {
-                            if (sqrDistance < previousDistance) {
-                                previousDistance = sqrDistance;
-                                target = item;
-                            }
-                        }
-                    }
-                }
+        final TransactorSimple inventoryInsert = new TransactorSimple(robot);
+
+        target = EntityQuery.findClosest(robot.worldObj, robot.posX, robot.posY, robot.posZ, maxRange, zone, EntityItem.class, new IEntityFilter() {
+            @Override
+            public boolean matches(Entity entity) {
+                EntityItem item = (EntityItem) entity;
+                return !BoardRobotPicker.targettedItems.contains(item.getEntityId()) && !robot.isKnownUnreachable(item)
+                    && (stackFilter == null || stackFilter.matches(item.getEntityItem()))
+                    && inventoryInsert.inject(item.getEntityItem(), null, false) > 0;
             }
-        }
+        });
 
         if (target != null) {
             BoardRobotPicker.targettedItems.add(target.getEntityId());
@@ -66,10 +66,10 @@ public class AIRobotGotoBlock extends AIRobotGoto {
         }
 
         if (path == null && pathSearch == null) {
-            pathSearch = new PathFinding(robot.worldObj, new BlockPos((int) Math.floor(robot.posX), (int) Math.floor(robot.posY), (int) Math.floor(
-                    robot.posZ)), finalPos, maxDistance);
+            BlockPos start = new BlockPos((int) Math.floor(robot.posX), (int) Math.floor(robot.posY), (int) Math.floor(robot.posZ));
+            pathSearch = new PathFinding(robot.worldObj, start, finalPos, maxDistance);
 
-            pathSearchJob = new IterableAlgorithmRunner(pathSearch, 50);
+            pathSearchJob = new IterableAlgorithmRunner(pathSearch, 50, robot.worldObj, start);
             pathSearchJob.start();
         } else if (path != null && next != null) {
             double distance = robot.getDistance(next.xCoord, next.yCoord, next.zCoord);
@@ -84,6 +84,10 @@ public class AIRobotGotoBlock extends AIRobotGoto {
                 prevDistance = robot.getDistance(next.xCoord, next.yCoord, next.zCoord);
             }
         } else {
+            if (pathSearch != null) {
+                pathSearch.update();
+            }
+
             if (pathSearchJob.isDone()) {
                 path = pathSearch.getResult();
 
@@ -140,13 +144,20 @@ public class AIRobotGotoBlock extends AIRobotGoto {
     @Override
     public void end() {
         if (pathSearchJob != null) {
-            pathSearchJob.terminate();
+            terminateSearch();
             robot.motionX = 0;
             robot.motionY = 0;
             robot.motionZ = 0;
         }
     }
 
+    /** Stops the path search running in the background, for when this won't be updated again. */
+    public void terminateSearch() {
+        if (pathSearchJob != null) {
+            pathSearchJob.terminate();
+        }
+    }
+
     @Override
     public boolean canLoadFromNBT() {
         return true;
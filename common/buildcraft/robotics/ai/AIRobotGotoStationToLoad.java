@@ -9,6 +9,7 @@ import buildcraft.api.robots.AIRobot;
 import buildcraft.api.robots.DockingStation;
 import buildcraft.api.robots.EntityRobotBase;
 import buildcraft.robotics.IStationFilter;
+import buildcraft.robotics.StationMap;
 
 public class AIRobotGotoStationToLoad extends AIRobot {
 
@@ -46,5 +47,10 @@ public class AIRobotGotoStationToLoad extends AIRobot {
             return AIRobotLoad.load(robot, station, filter, quantity, false);
         }
 
+        @Override
+        public StationMap.Feature getRequiredFeature() {
+            return StationMap.Feature.ITEMS;
+        }
+
     }
 }
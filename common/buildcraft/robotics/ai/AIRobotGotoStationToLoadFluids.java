@@ -9,6 +9,7 @@ import buildcraft.api.robots.AIRobot;
 import buildcraft.api.robots.DockingStation;
 import buildcraft.api.robots.EntityRobotBase;
 import buildcraft.robotics.IStationFilter;
+import buildcraft.robotics.StationMap;
 
 public class AIRobotGotoStationToLoadFluids extends AIRobot {
 
@@ -44,5 +45,10 @@ public class AIRobotGotoStationToLoadFluids extends AIRobot {
             return AIRobotLoadFluids.load(robot, station, filter, false) > 0;
         }
 
+        @Override
+        public StationMap.Feature getRequiredFeature() {
+            return StationMap.Feature.FLUIDS;
+        }
+
     }
 }
@@ -8,6 +8,7 @@ import buildcraft.api.robots.AIRobot;
 import buildcraft.api.robots.DockingStation;
 import buildcraft.api.robots.EntityRobotBase;
 import buildcraft.robotics.IStationFilter;
+import buildcraft.robotics.StationMap;
 
 public class AIRobotGotoStationToUnload extends AIRobot {
 
@@ -33,6 +34,11 @@ public class AIRobotGotoStationToUnload extends AIRobot {
         public boolean matches(DockingStation station) {
             return AIRobotUnload.unload(robot, station, false);
         }
+
+        @Override
+        public StationMap.Feature getRequiredFeature() {
+            return StationMap.Feature.ITEMS;
+        }
     }
 
 }
@@ -8,6 +8,7 @@ import buildcraft.api.robots.AIRobot;
 import buildcraft.api.robots.DockingStation;
 import buildcraft.api.robots.EntityRobotBase;
 import buildcraft.robotics.IStationFilter;
+import buildcraft.robotics.StationMap;
 
 public class AIRobotGotoStationToUnloadFluids extends AIRobot {
 
@@ -35,5 +36,10 @@ public class AIRobotGotoStationToUnloadFluids extends AIRobot {
             return AIRobotUnloadFluids.unload(robot, station, false) > 0;
         }
 
+        @Override
+        public StationMap.Feature getRequiredFeature() {
+            return StationMap.Feature.FLUIDS;
+        }
+
     }
 }
@@ -8,6 +8,7 @@ import buildcraft.api.robots.AIRobot;
 import buildcraft.api.robots.DockingStation;
 import buildcraft.api.robots.EntityRobotBase;
 import buildcraft.robotics.IStationFilter;
+import buildcraft.robotics.StationMap;
 
 public class AIRobotRecharge extends AIRobot {
 
@@ -27,6 +28,11 @@ public class AIRobotRecharge extends AIRobot {
             public boolean matches(DockingStation station) {
                 return station.providesPower();
             }
+
+            @Override
+            public StationMap.Feature getRequiredFeature() {
+                return StationMap.Feature.POWER;
+            }
         }, null));
     }
 
@@ -2,6 +2,7 @@ package buildcraft.robotics.ai;
 
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Random;
 
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.BlockPos;
@@ -35,11 +36,13 @@ public class AIRobotSearchBlock extends AIRobot {
         if (!random) {
             blockIter = new BlockScannerExpanding().iterator();
         } else {
+            // The scanner is used by the search thread, so it can't share the world's random
+            Random rand = new Random(iRobot.worldObj.rand.nextLong());
             if (zone != null) {
                 BlockPos pos = new BlockPos(iRobot);
-                blockIter = new BlockScannerZoneRandom(pos, iRobot.worldObj.rand, zone).iterator();
+                blockIter = new BlockScannerZoneRandom(pos, rand, zone).iterator();
             } else {
-                blockIter = new BlockScannerRandom(iRobot.worldObj.rand, 64).iterator();
+                blockIter = new BlockScannerRandom(rand, 64).iterator();
             }
         }
         blockFound = null;
@@ -49,8 +52,9 @@ public class AIRobotSearchBlock extends AIRobot {
 
     @Override
     public void start() {
-        blockScanner = new PathFindingSearch(robot.worldObj, new BlockPos(robot), blockIter, pathFound, maxDistanceToEnd, 96, zone);
-        blockScannerJob = new IterableAlgorithmRunner(blockScanner);
+        BlockPos start = new BlockPos(robot);
+        blockScanner = new PathFindingSearch(robot.worldObj, start, blockIter, pathFound, maxDistanceToEnd, 96, zone);
+        blockScannerJob = new IterableAlgorithmRunner(blockScanner, robot.worldObj, start);
         blockScannerJob.start();
     }
 
@@ -63,6 +67,8 @@ public class AIRobotSearchBlock extends AIRobot {
             return;
         }
 
+        blockScanner.update();
+
         if (blockScannerJob.isDone()) {
             path = blockScanner.getResult();
 
@@ -79,6 +85,11 @@ public class AIRobotSearchBlock extends AIRobot {
 
     @Override
     public void end() {
+        terminateSearch();
+    }
+
+    /** Stops the search running in the background, for when this won't be updated again. */
+    public void terminateSearch() {
         if (blockScannerJob != null) {
             blockScannerJob.terminate();
         }
@@ -10,7 +10,7 @@ import buildcraft.api.core.IZone;
 import buildcraft.api.robots.AIRobot;
 import buildcraft.api.robots.EntityRobotBase;
 import buildcraft.core.lib.utils.IEntityFilter;
-import buildcraft.core.lib.utils.Utils;
+import buildcraft.robotics.EntityQuery;
 
 public class AIRobotSearchEntity extends AIRobot {
 
@@ -19,14 +19,21 @@ public class AIRobotSearchEntity extends AIRobot {
     private float maxRange;
     private IZone zone;
     private IEntityFilter filter;
+    private Class<? extends Entity> type;
 
     public AIRobotSearchEntity(EntityRobotBase iRobot) {
         super(iRobot);
     }
 
     public AIRobotSearchEntity(EntityRobotBase iRobot, IEntityFilter iFilter, float iMaxRange, IZone iZone) {
+        this(iRobot, Entity.class, iFilter, iMaxRange, iZone);
+    }
+
+    /** @param iType The class of every entity that the filter matches, so that the others can be skipped. */
+    public AIRobotSearchEntity(EntityRobotBase iRobot, Class<? extends Entity> iType, IEntityFilter iFilter, float iMaxRange, IZone iZone) {
         this(iRobot);
 
+        type = iType;
         maxRange = iMaxRange;
         zone = iZone;
         filter = iFilter;
@@ -34,34 +41,12 @@ public class AIRobotSearchEntity extends AIRobot {
 
     @Override
     public void start() {
-        double previousDistance = Double.MAX_VALUE;
-
-        for (Object o : robot.worldObj.loadedEntityList) {
-            Entity e = (Entity) o;
-
-            if (!e.isDead && filter.matches(e) && (zone == null || zone.contains(Utils.getVec(e))) && (!robot.isKnownUnreachable(e))) {
-                double dx = e.posX - robot.posX;
-                double dy = e.posY - robot.posY;
-                double dz = e.posZ - robot.posZ;
-
-                double sqrDistance = dx * dx + dy * dy + dz * dz;
-                double maxDistance = maxRange * maxRange;
-
-                if (sqrDistance >= maxDistance) {
-                    continue;
-                } else {
-                    if (target == null) {
-                        previousDistance = sqrDistance;
-                        target = e;
-                    } else {
-                        if (sqrDistance < previousDistance) {
-                            previousDistance = sqrDistance;
-                            target = e;
-                        }
-                    }
-                }
+        target = EntityQuery.findClosest(robot.worldObj, robot.posX, robot.posY, robot.posZ, maxRange, zone, type, new IEntityFilter() {
+            @Override
+            public boolean matches(Entity entity) {
+                return !robot.isKnownUnreachable(entity) && filter.matches(entity);
             }
-        }
+        });
 
         terminate();
     }
@@ -4,12 +4,16 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.robotics.ai;
 
+import net.minecraft.util.BlockPos;
+
 import buildcraft.api.core.IZone;
 import buildcraft.api.robots.AIRobot;
 import buildcraft.api.robots.DockingStation;
 import buildcraft.api.robots.EntityRobotBase;
+import buildcraft.api.robots.IRobotRegistry;
 import buildcraft.core.lib.utils.Utils;
 import buildcraft.robotics.IStationFilter;
+import buildcraft.robotics.RobotRegistry;
 import buildcraft.robotics.statements.ActionStationForbidRobot;
 
 public class AIRobotSearchStation extends AIRobot {
@@ -37,40 +41,42 @@ public class AIRobotSearchStation extends AIRobot {
             return;
         }
 
-        double potentialStationDistance = Float.MAX_VALUE;
-        DockingStation potentialStation = null;
+        IStationFilter accepted = new IStationFilter() {
+            @Override
+            public boolean matches(DockingStation station) {
+                if (station.isTaken() && station.robotIdTaking() != robot.getRobotId()) {
+                    return false;
+                }
 
-        for (DockingStation station : robot.getRegistry().getStations()) {
-            if (!station.isInitialized()) {
-                continue;
-            }
+                if (zone != null && !zone.contains(Utils.convert(station.getPos()))) {
+                    return false;
+                }
 
-            if (station.isTaken() && station.robotIdTaking() != robot.getRobotId()) {
-                continue;
+                return filter.matches(station) && !ActionStationForbidRobot.isForbidden(station, robot);
             }
+        };
 
-            if (zone != null && !zone.contains(Utils.convert(station.getPos()))) {
-                continue;
-            }
+        IRobotRegistry registry = robot.getRegistry();
+        BlockPos pos = Utils.getPos(robot);
+        if (registry instanceof RobotRegistry) {
+            targetStation = ((RobotRegistry) registry).findClosestStation(pos, filter.getRequiredFeature(), accepted);
+        } else {
+            double potentialStationDistance = Float.MAX_VALUE;
 
-            if (filter.matches(station)) {
-                if (ActionStationForbidRobot.isForbidden(station, robot)) {
+            for (DockingStation station : registry.getStations()) {
+                if (!station.isInitialized() || !accepted.matches(station)) {
                     continue;
                 }
 
-                double distance = Utils.getPos(robot).distanceSq(station.getPos());
+                double distance = pos.distanceSq(station.getPos());
 
-                if (potentialStation == null || distance < potentialStationDistance) {
-                    potentialStation = station;
+                if (targetStation == null || distance < potentialStationDistance) {
+                    targetStation = station;
                     potentialStationDistance = distance;
                 }
             }
         }
 
-        if (potentialStation != null) {
-            targetStation = potentialStation;
-        }
-
         terminate();
     }
 
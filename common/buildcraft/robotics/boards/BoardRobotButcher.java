@@ -41,7 +41,7 @@ public class BoardRobotButcher extends RedstoneBoardRobot {
                 }
             }));
         } else {
-            startDelegateAI(new AIRobotSearchEntity(robot, new IEntityFilter() {
+            startDelegateAI(new AIRobotSearchEntity(robot, EntityAnimal.class, new IEntityFilter() {
                 @Override
                 public boolean matches(Entity entity) {
                     return entity instanceof EntityAnimal;
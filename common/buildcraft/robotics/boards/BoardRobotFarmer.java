@@ -54,6 +54,11 @@ public class BoardRobotFarmer extends RedstoneBoardRobot {
                 public boolean matches(World world, BlockPos pos) {
                     return isDirt.get(world, pos) && !robot.getRegistry().isTaken(new ResourceIdBlock(pos)) && isAirAbove(world, pos);
                 }
+
+                @Override
+                public String getRequiredProperty() {
+                    return "dirt";
+                }
             }));
         }
     }
@@ -31,10 +31,16 @@ public abstract class BoardRobotGenericSearchBlock extends RedstoneBoardRobot {
         super(iRobot);
     }
 
-    /** This function has to be derived in a thread safe manner, as it may be called from parallel jobs. In particular,
-     * world should not be directly used, only through WorldProperty class and subclasses. */
+    /** Called from the thread that the world is ticked on, for the blocks that have the
+     * {@link #getExpectedProperty() expected property}. */
     public abstract boolean isExpectedBlock(World world, BlockPos pos);
 
+    /** @return The name of a world property that every expected block has, or null. The search only looks at the
+     *         blocks that have it, without reading the world. */
+    public String getExpectedProperty() {
+        return null;
+    }
+
     @Override
     public void update() {
         updateFilter();
@@ -48,6 +54,11 @@ public abstract class BoardRobotGenericSearchBlock extends RedstoneBoardRobot {
                     return false;
                 }
             }
+
+            @Override
+            public String getRequiredProperty() {
+                return getExpectedProperty();
+            }
         }));
     }
 
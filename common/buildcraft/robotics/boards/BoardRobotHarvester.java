@@ -31,7 +31,12 @@ public class BoardRobotHarvester extends BoardRobotGenericSearchBlock {
 
     @Override
     public boolean isExpectedBlock(World world, BlockPos pos) {
-        return BuildCraftAPI.getWorldProperty("harvestable").get(world, pos);
+        return BuildCraftAPI.getWorldProperty(getExpectedProperty()).get(world, pos);
+    }
+
+    @Override
+    public String getExpectedProperty() {
+        return "harvestable";
     }
 
     @Override
@@ -5,6 +5,7 @@
 package buildcraft.robotics.boards;
 
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLiving;
 import net.minecraft.entity.monster.IMob;
 import net.minecraft.entity.passive.EntityWolf;
 import net.minecraft.item.ItemStack;
@@ -42,7 +43,7 @@ public class BoardRobotKnight extends RedstoneBoardRobot {
                 }
             }));
         } else {
-            startDelegateAI(new AIRobotSearchEntity(robot, new IEntityFilter() {
+            startDelegateAI(new AIRobotSearchEntity(robot, EntityLiving.class, new IEntityFilter() {
                 @Override
                 public boolean matches(Entity entity) {
                     return (entity instanceof IMob) || (entity instanceof EntityWolf && ((EntityWolf) entity).isAngry());
@@ -31,7 +31,12 @@ public class BoardRobotLeaveCutter extends BoardRobotGenericBreakBlock {
 
     @Override
     public boolean isExpectedBlock(World world, BlockPos pos) {
-        return BuildCraftAPI.getWorldProperty("leaves").get(world, pos);
+        return BuildCraftAPI.getWorldProperty(getExpectedProperty()).get(world, pos);
+    }
+
+    @Override
+    public String getExpectedProperty() {
+        return "leaves";
     }
 
 }
@@ -35,6 +35,11 @@ public class BoardRobotLumberjack extends BoardRobotGenericBreakBlock {
 
     @Override
     public boolean isExpectedBlock(World world, BlockPos pos) {
-        return BuildCraftAPI.getWorldProperty("wood").get(world, pos);
+        return BuildCraftAPI.getWorldProperty(getExpectedProperty()).get(world, pos);
+    }
+
+    @Override
+    public String getExpectedProperty() {
+        return "wood";
     }
 }
@@ -54,7 +54,12 @@ public class BoardRobotMiner extends BoardRobotGenericBreakBlock {
 
     @Override
     public boolean isExpectedBlock(World world, BlockPos pos) {
-        return BuildCraftAPI.getWorldProperty("ore@hardness=" + Math.min(MAX_HARVEST_LEVEL, harvestLevel)).get(world, pos);
+        return BuildCraftAPI.getWorldProperty(getExpectedProperty()).get(world, pos);
+    }
+
+    @Override
+    public String getExpectedProperty() {
+        return "ore@hardness=" + Math.min(MAX_HARVEST_LEVEL, harvestLevel);
     }
 
 }
@@ -59,6 +59,11 @@ public class BoardRobotPlanter extends RedstoneBoardRobot {
                     return !BuildCraftAPI.getWorldProperty("replaceable").get(world, pos) && isPlantable(itemStack, world, pos) && !robot
                             .getRegistry().isTaken(new ResourceIdBlock(pos));
                 }
+
+                @Override
+                public String getRequiredProperty() {
+                    return "solid";
+                }
             };
             startDelegateAI(new AIRobotSearchAndGotoBlock(robot, true, blockFilter, 1));
         }
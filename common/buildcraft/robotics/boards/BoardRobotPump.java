@@ -64,6 +64,11 @@ public class BoardRobotPump extends RedstoneBoardRobot {
                         return false;
                     }
                 }
+
+                @Override
+                public String getRequiredProperty() {
+                    return "fluidSource";
+                }
             }));
         }
     }
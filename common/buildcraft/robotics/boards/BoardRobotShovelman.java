@@ -30,7 +30,12 @@ public class BoardRobotShovelman extends BoardRobotGenericBreakBlock {
 
     @Override
     public boolean isExpectedBlock(World world, BlockPos pos) {
-        return BuildCraftAPI.getWorldProperty("shoveled").get(world, pos);
+        return BuildCraftAPI.getWorldProperty(getExpectedProperty()).get(world, pos);
+    }
+
+    @Override
+    public String getExpectedProperty() {
+        return "shoveled";
     }
 
 }
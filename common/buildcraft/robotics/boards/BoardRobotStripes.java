@@ -50,6 +50,12 @@ public class BoardRobotStripes extends RedstoneBoardRobot {
                 public boolean matches(World world, BlockPos pos) {
                     return world.getBlockState(pos).getBlock().isAir(world, pos) && !robot.getRegistry().isTaken(new ResourceIdBlock(pos));
                 }
+
+                @Override
+                public String getRequiredProperty() {
+                    // Air is always soft
+                    return "soft";
+                }
             }));
         }
     }
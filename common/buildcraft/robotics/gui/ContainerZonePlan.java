@@ -4,6 +4,10 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.robotics.gui;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
 import net.minecraft.block.material.MapColor;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.inventory.Slot;
@@ -12,6 +16,7 @@ import net.minecraftforge.fml.relauncher.Side;
 
 import buildcraft.BuildCraftCore;
 import buildcraft.BuildCraftRobotics;
+import buildcraft.api.core.BCLog;
 import buildcraft.core.lib.gui.BuildCraftContainer;
 import buildcraft.core.lib.gui.slots.SlotOutput;
 import buildcraft.core.lib.network.command.CommandWriter;
@@ -21,12 +26,17 @@ import buildcraft.core.lib.render.DynamicTextureBC;
 import buildcraft.core.lib.utils.NetworkUtils;
 import buildcraft.robotics.TileZonePlan;
 import buildcraft.robotics.ZonePlan;
+import buildcraft.robotics.map.MapRegion;
+import buildcraft.robotics.map.MapTileCache;
+import buildcraft.robotics.map.MapUtils;
 import buildcraft.robotics.map.MapWorld;
 
 import io.netty.buffer.ByteBuf;
 
 public class ContainerZonePlan extends BuildCraftContainer implements ICommandReceiver {
-    private static final int MAX_PACKET_LENGTH = 30000;
+    /** The most tiles that are sent for a single request. */
+    private static final int MAX_TILES = 256;
+    private static final MapTileCache TILES = new MapTileCache(512);
 
     public DynamicTextureBC mapTexture;
     public ZonePlan currentAreaSelection;
@@ -34,6 +44,10 @@ public class ContainerZonePlan extends BuildCraftContainer implements ICommandRe
 
     private TileZonePlan map;
 
+    private int viewX, viewZ;
+    private float viewBlocksPerPixel = 1;
+    private boolean mapChanged = false;
+
     public ContainerZonePlan(EntityPlayer player, TileZonePlan iZonePlan) {
         super(player, 0);
 
@@ -90,13 +104,8 @@ public class ContainerZonePlan extends BuildCraftContainer implements ICommandRe
                 currentAreaSelection = new ZonePlan();
                 currentAreaSelection.readData(stream);
                 gui.refreshSelectedArea();
-            } else if ("receiveImage".equals(command)) {
-                int size = stream.readUnsignedMedium();
-                int pos = stream.readUnsignedMedium();
-
-                for (int i = 0; i < Math.min(size - pos, MAX_PACKET_LENGTH); ++i) {
-                    mapTexture.colorMap[pos + i] = 0xFF000000 | MapColor.mapColorArray[stream.readUnsignedByte()].colorValue;
-                }
+            } else if ("receiveTile".equals(command)) {
+                receiveTile(stream);
             }
         } else if (side.isServer()) {
             if ("loadArea".equals(command)) {
@@ -112,47 +121,168 @@ public class ContainerZonePlan extends BuildCraftContainer implements ICommandRe
                 ZonePlan plan = new ZonePlan();
                 plan.readData(stream);
                 map.setArea(index, plan);
-            } else if ("computeMap".equals(command)) {
-                computeMap(stream.readInt(), stream.readInt(), stream.readUnsignedShort(), stream.readUnsignedShort(), stream.readFloat(),
-                        (EntityPlayer) sender);
+            } else if ("requestTiles".equals(command)) {
+                sendTiles(stream, (EntityPlayer) sender);
             } else if ("setName".equals(command)) {
                 map.mapName = NetworkUtils.readUTF(stream);
             }
         }
     }
 
-    private void computeMap(int cx, int cz, int width, int height, float blocksPerPixel, EntityPlayer player) {
-        final byte[] textureData = new byte[width * height];
+    /** @return The tile level to show the map at, with the most detail that isn't more than is shown. */
+    private static int getLevel(float blocksPerPixel) {
+        int level = 0;
+        while (level < MapRegion.TILE_LEVELS - 1 && (2 << level) <= blocksPerPixel) {
+            level++;
+        }
+        return level;
+    }
+
+    private int getMapStartX() {
+        return map.chunkStartX << 4;
+    }
+
+    private int getMapStartZ() {
+        return map.chunkStartZ << 4;
+    }
+
+    private int getDimension() {
+        return map.getWorld().provider.getDimensionId();
+    }
+
+    /** Shows the map around the given block, and asks the server for the tiles that are needed for it that have not
+     * been sent yet, or have changed since. */
+    public void requestMap(int cx, int cz, float blocksPerPixel) {
+        viewX = cx;
+        viewZ = cz;
+        viewBlocksPerPixel = blocksPerPixel;
+        mapChanged = true;
+
+        final int level = getLevel(blocksPerPixel);
+        int startX = Math.round(cx - mapTexture.width * blocksPerPixel / 2);
+        int startZ = Math.round(cz - mapTexture.height * blocksPerPixel / 2);
+        int minX = Math.max(startX, getMapStartX());
+        int minZ = Math.max(startZ, getMapStartZ());
+        int maxX = Math.min(Math.round(startX + mapTexture.width * blocksPerPixel), getMapStartX() + TileZonePlan.RESOLUTION - 1);
+        int maxZ = Math.min(Math.round(startZ + mapTexture.height * blocksPerPixel), getMapStartZ() + TileZonePlan.RESOLUTION - 1);
+        if (minX > maxX || minZ > maxZ) {
+            return;
+        }
 
-        MapWorld w = BuildCraftRobotics.manager.getWorld(map.getWorld());
-        int startX = Math.round(cx - width * blocksPerPixel / 2);
-        int startZ = Math.round(cz - height * blocksPerPixel / 2);
-        int mapStartX = map.chunkStartX << 4;
-        int mapStartZ = map.chunkStartZ << 4;
+        final List<long[]> tiles = new ArrayList<long[]>();
+        for (int regionX = minX >> 8; regionX <= maxX >> 8; regionX++) {
+            for (int regionZ = minZ >> 8; regionZ <= maxZ >> 8; regionZ++) {
+                MapTileCache.Tile tile = TILES.get(getDimension(), level, regionX, regionZ);
+                tiles.add(new long[] { regionX, regionZ, tile != null ? tile.version : -1 });
+            }
+        }
 
-        for (int i = 0; i < width; ++i) {
-            for (int j = 0; j < height; ++j) {
-                int x = Math.round(startX + i * blocksPerPixel);
-                int z = Math.round(startZ + j * blocksPerPixel);
+        BuildCraftCore.instance.sendToServer(new PacketCommand(this, "requestTiles", new CommandWriter() {
+            @Override
+            public void write(ByteBuf data) {
+                data.writeByte(level);
+                data.writeShort(tiles.size());
+                for (long[] tile : tiles) {
+                    data.writeInt((int) tile[0]);
+                    data.writeInt((int) tile[1]);
+                    data.writeLong(tile[2]);
+                }
+            }
+        }));
+    }
+
+    private void receiveTile(ByteBuf stream) {
+        int level = stream.readUnsignedByte();
+        int regionX = stream.readInt();
+        int regionZ = stream.readInt();
+        long version = stream.readLong();
+        byte[] compressed = new byte[stream.readUnsignedMedium()];
+        stream.readBytes(compressed);
+
+        if (level >= MapRegion.TILE_LEVELS) {
+            return;
+        }
+        int size = MapRegion.getTileSize(level);
+        try {
+            TILES.put(getDimension(), level, regionX, regionZ, new MapTileCache.Tile(version, MapUtils.decompress(compressed, size * size)));
+            mapChanged = true;
+        } catch (DataFormatException e) {
+            BCLog.logger.warn("Received a broken zone map tile", e);
+        }
+    }
+
+    /** Draws the map again from the tiles that have been received, if anything has changed since it was last
+     * drawn. */
+    public void redrawMap() {
+        if (!mapChanged) {
+            return;
+        }
+        mapChanged = false;
+
+        int level = getLevel(viewBlocksPerPixel);
+        int size = MapRegion.getTileSize(level);
+        int dimension = getDimension();
+        int startX = Math.round(viewX - mapTexture.width * viewBlocksPerPixel / 2);
+        int startZ = Math.round(viewZ - mapTexture.height * viewBlocksPerPixel / 2);
+        int mapStartX = getMapStartX();
+        int mapStartZ = getMapStartZ();
+
+        for (int j = 0; j < mapTexture.height; ++j) {
+            int z = Math.round(startZ + j * viewBlocksPerPixel);
+            for (int i = 0; i < mapTexture.width; ++i) {
+                int x = Math.round(startX + i * viewBlocksPerPixel);
                 int ix = x - mapStartX;
                 int iz = z - mapStartZ;
+                int color = MapColor.airColor.colorIndex;
 
                 if (ix >= 0 && iz >= 0 && ix < TileZonePlan.RESOLUTION && iz < TileZonePlan.RESOLUTION) {
-                    textureData[i + j * width] = (byte) BuildCraftRobotics.manager.getWorld(map.getWorld()).getColor(x, z);
+                    MapTileCache.Tile tile = TILES.get(dimension, level, x >> 8, z >> 8);
+                    if (tile != null) {
+                        color = tile.pixels[((z & 255) >> level) * size + ((x & 255) >> level)] & 0xFF;
+                    }
                 }
+                mapTexture.colorMap[i + j * mapTexture.width] = 0xFF000000 | MapColor.mapColorArray[color].colorValue;
             }
         }
+    }
 
-        final int len = MAX_PACKET_LENGTH;
+    private void sendTiles(ByteBuf stream, EntityPlayer player) {
+        final int level = stream.readUnsignedByte();
+        int count = stream.readUnsignedShort();
+        if (level >= MapRegion.TILE_LEVELS) {
+            return;
+        }
 
-        for (int i = 0; i < textureData.length; i += len) {
-            final int pos = i;
-            BuildCraftCore.instance.sendToPlayer(player, new PacketCommand(this, "receiveImage", new CommandWriter() {
+        MapWorld world = BuildCraftRobotics.manager.getWorld(map.getWorld());
+        int size = MapRegion.getTileSize(level);
+        byte[] pixels = new byte[size * size];
+        int minRegionX = getMapStartX() >> 8;
+        int minRegionZ = getMapStartZ() >> 8;
+        int maxRegionX = (getMapStartX() + TileZonePlan.RESOLUTION - 1) >> 8;
+        int maxRegionZ = (getMapStartZ() + TileZonePlan.RESOLUTION - 1) >> 8;
+
+        for (int i = 0; i < count; i++) {
+            final int regionX = stream.readInt();
+            final int regionZ = stream.readInt();
+            long known = stream.readLong();
+            if (i >= MAX_TILES || regionX < minRegionX || regionX > maxRegionX || regionZ < minRegionZ || regionZ > maxRegionZ) {
+                continue;
+            }
+
+            final long version = world.getTile(regionX, regionZ, level, pixels);
+            if (version == -1 || version == known) {
+                continue;
+            }
+            final byte[] compressed = MapUtils.compress(pixels);
+            BuildCraftCore.instance.sendToPlayer(player, new PacketCommand(this, "receiveTile", new CommandWriter() {
                 @Override
                 public void write(ByteBuf data) {
-                    data.writeMedium(textureData.length);
-                    data.writeMedium(pos);
-                    data.writeBytes(textureData, pos, Math.min(textureData.length - pos, len));
+                    data.writeByte(level);
+                    data.writeInt(regionX);
+                    data.writeInt(regionZ);
+                    data.writeLong(version);
+                    data.writeMedium(compressed.length);
+                    data.writeBytes(compressed);
                 }
             }));
         }
@@ -41,6 +41,7 @@ import io.netty.buffer.ByteBuf;
 public class GuiZonePlan extends GuiAdvancedInterface {
 
     private static final ResourceLocation TMP_TEXTURE = new ResourceLocation("buildcraftrobotics:textures/gui/zone_planner_gui.png");
+    private static final int REFRESH_TICKS = 40;
 
     private int mapWidth = 213;
     private int mapHeight = 100;
@@ -63,6 +64,7 @@ public class GuiZonePlan extends GuiAdvancedInterface {
     private float blocksPerPixel = 1.0f;
     private int cx;
     private int cz;
+    private int ticksSinceUpload = 0;
 
     private AreaSlot colorSelected = null;
 
@@ -154,16 +156,18 @@ public class GuiZonePlan extends GuiAdvancedInterface {
     }
 
     private void uploadMap() {
-        BuildCraftCore.instance.sendToServer(new PacketCommand(getContainer(), "computeMap", new CommandWriter() {
-            @Override
-            public void write(ByteBuf data) {
-                data.writeInt(cx);
-                data.writeInt(cz);
-                data.writeShort(getContainer().mapTexture.width);
-                data.writeShort(getContainer().mapTexture.height);
-                data.writeFloat(blocksPerPixel);
-            }
-        }));
+        ticksSinceUpload = 0;
+        getContainer().requestMap(cx, cz, blocksPerPixel);
+    }
+
+    @Override
+    public void updateScreen() {
+        super.updateScreen();
+
+        // Picks up the tiles of regions that were still loading, and any that have changed
+        if (++ticksSinceUpload >= REFRESH_TICKS) {
+            uploadMap();
+        }
     }
 
     private boolean isFullscreen() {
@@ -186,6 +190,7 @@ public class GuiZonePlan extends GuiAdvancedInterface {
             mapYMin = (height - getContainer().mapTexture.height) / 2;
         }
 
+        getContainer().redrawMap();
         getContainer().mapTexture.draw(mapXMin, mapYMin, zLevel);
 
         GL11.glPushAttrib(GL11.GL_ENABLE_BIT);
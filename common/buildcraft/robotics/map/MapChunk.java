@@ -1,11 +1,10 @@
 package buildcraft.robotics.map;
 
-import net.minecraft.block.Block;
 import net.minecraft.block.material.MapColor;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.util.BlockPos;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 import buildcraft.api.core.BCLog;
 
@@ -13,7 +12,7 @@ public class MapChunk {
     private static final int VERSION = 1;
 
     private int x, z;
-    private byte[] data;
+    private volatile byte[] data;
 
     public MapChunk(int x, int z) {
         this.x = x;
@@ -21,6 +20,12 @@ public class MapChunk {
         data = new byte[256];
     }
 
+    public MapChunk(int x, int z, byte[] data) {
+        this.x = x;
+        this.z = z;
+        this.data = data;
+    }
+
     public MapChunk(NBTTagCompound compound) {
         readFromNBT(compound);
     }
@@ -37,32 +42,52 @@ public class MapChunk {
         return (int) data[((z & 15) << 4) | (x & 15)];
     }
 
+    /** @return A copy of the colour of every column, which can be read from another thread. */
+    public synchronized byte[] copyData() {
+        return data.clone();
+    }
+
+    /** Works out the colour of every column from the top block that has one. Only reads the height map and the blocks
+     * from the top of each column down to that block, straight from the sections of the chunk, so it doesn't have to
+     * look up every block through the chunk. The colours are worked out before any of them is changed, so a copy never
+     * has some old and some new colours. */
     public void update(Chunk chunk) {
-        for (int bz = 0; bz < 16; bz++) {
-            for (int bx = 0; bx < 16; bx++) {
-                int y = chunk.getHeightValue(bx, bz);
-                int color = MapColor.airColor.colorIndex;
+        byte[] colors = new byte[256];
+        int[] heights = chunk.getHeightMap();
+        ExtendedBlockStorage[] sections = chunk.getBlockStorageArray();
+
+        for (int i = 0; i < 256; i++) {
+            int bx = i & 15;
+            int bz = i >> 4;
+            int y = heights[i];
+            int color = MapColor.airColor.colorIndex;
+
+            if (y < 0 || y > 255) {
+                y = 255;
+            }
 
-                if (y < 0) {
-                    y = 255;
+            while (y >= 0) {
+                ExtendedBlockStorage section = sections[y >> 4];
+                if (section == null) {
+                    // Empty sections are all air
+                    y = (y & ~15) - 1;
+                    continue;
                 }
 
-                Block b;
-                IBlockState state;
-
-                while (y >= 0) {
-                    state = chunk.getBlockState(new BlockPos(bx, y, bz));
-                    b = state.getBlock();
-
-                    color = b.getMapColor(state) != null ? b.getMapColor(state).colorIndex : MapColor.airColor.colorIndex;
-                    if (color != MapColor.airColor.colorIndex) {
-                        break;
-                    }
-                    y--;
+                IBlockState state = section.get(bx, y & 15, bz);
+                MapColor mapColor = state.getBlock().getMapColor(state);
+                if (mapColor != null && mapColor.colorIndex != MapColor.airColor.colorIndex) {
+                    color = mapColor.colorIndex;
+                    break;
                 }
-
-                data[(bz << 4) | bx] = (byte) color;
+                y--;
             }
+
+            colors[i] = (byte) color;
+        }
+
+        synchronized (this) {
+            data = colors;
         }
     }
 
@@ -2,6 +2,8 @@ package buildcraft.robotics.map;
 
 import java.io.File;
 import java.util.Date;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.HashBiMap;
 
@@ -19,11 +21,16 @@ import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.relauncher.Side;
 
+import buildcraft.api.core.BCLog;
 import buildcraft.core.lib.utils.Utils;
 
+/** Keeps the map of every world up to date. Its thread loads the regions of the maps in the background, and saves the
+ * chunks that have been mapped every {@link #SAVE_DELAY} milliseconds. */
 public class MapManager implements Runnable {
     private static final int UPDATE_DELAY = 60000;
+    private static final int SAVE_DELAY = 30000;
     private final HashBiMap<World, MapWorld> worldMap = HashBiMap.create();
+    private final LinkedBlockingDeque<Runnable> tasks = new LinkedBlockingDeque<Runnable>();
     private final File location;
     private boolean stop = false;
     private long lastSaveTime;
@@ -34,7 +41,22 @@ public class MapManager implements Runnable {
 
     public void stop() {
         stop = true;
-        saveAllWorlds();
+        synchronized (worldMap) {
+            for (MapWorld world : worldMap.values()) {
+                world.close();
+            }
+        }
+    }
+
+    /** Runs the given task on the thread of this manager.
+     *
+     * @param first True to run it before the tasks that are already queued. */
+    void queue(Runnable task, boolean first) {
+        if (first) {
+            tasks.addFirst(task);
+        } else {
+            tasks.addLast(task);
+        }
     }
 
     public MapWorld getWorld(World world) {
@@ -44,7 +66,7 @@ public class MapManager implements Runnable {
 
         if (!worldMap.containsKey(world)) {
             synchronized (worldMap) {
-                worldMap.put(world, new MapWorld(world, location));
+                worldMap.put(world, new MapWorld(world, location, this));
             }
         }
         return worldMap.get(world);
@@ -57,13 +79,6 @@ public class MapManager implements Runnable {
         return world.getUpdateTime(x, z) < updateTime || !world.hasChunk(x, z);
     }
 
-    private void updateChunk(World rworld, Chunk chunk, boolean force) {
-        MapWorld world = getWorld(rworld);
-        if (world != null && (force || doUpdate(world, chunk))) {
-            world.updateChunk(chunk);
-        }
-    }
-
     private void updateChunkDelayed(World rworld, Chunk chunk, boolean force, byte time) {
         MapWorld world = getWorld(rworld);
         if (world != null && (force || doUpdate(world, chunk))) {
@@ -84,7 +99,7 @@ public class MapManager implements Runnable {
     @SubscribeEvent
     public void worldUnloaded(WorldEvent.Unload event) {
         if (worldMap.containsKey(event.world)) {
-            worldMap.get(event.world).save();
+            worldMap.get(event.world).close();
             synchronized (worldMap) {
                 worldMap.remove(event.world);
             }
@@ -98,7 +113,10 @@ public class MapManager implements Runnable {
 
     @SubscribeEvent
     public void chunkUnloaded(ChunkEvent.Unload event) {
-        updateChunk(event.world, event.getChunk(), false);
+        MapWorld world = getWorld(event.world);
+        if (world != null) {
+            world.updateUnloadingChunk(event.getChunk(), doUpdate(world, event.getChunk()));
+        }
     }
 
     @SubscribeEvent
@@ -108,7 +126,7 @@ public class MapManager implements Runnable {
         if (world != null && doUpdate(world, chunk)) {
             int hv = placeEvent.world.getHeight(placeEvent.pos).getY();
             if (placeEvent.pos.getY() >= (hv - 3)) {
-                world.updateChunk(chunk);
+                world.updateChunkDelayed(chunk, (byte) 0);
             }
         }
     }
@@ -120,7 +138,7 @@ public class MapManager implements Runnable {
         if (world != null && doUpdate(world, chunk)) {
             int hv = placeEvent.world.getHeight(placeEvent.pos).getY();
             if (placeEvent.pos.getY() >= (hv - 3)) {
-                world.updateChunk(chunk);
+                world.updateChunkDelayed(chunk, (byte) 0);
             }
         }
     }
@@ -138,18 +156,26 @@ public class MapManager implements Runnable {
         lastSaveTime = (new Date()).getTime();
 
         while (!stop) {
+            Runnable task;
+            try {
+                task = tasks.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (task != null) {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    BCLog.logger.warn("Zone map task failed", e);
+                }
+            }
+
             long now = (new Date()).getTime();
 
-            if (now - lastSaveTime > 120000) {
+            if (now - lastSaveTime > SAVE_DELAY) {
                 saveAllWorlds();
                 lastSaveTime = now;
             }
-
-            try {
-                Thread.sleep(4000);
-            } catch (Exception e) {
-
-            }
         }
     }
 
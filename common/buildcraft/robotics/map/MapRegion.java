@@ -1,5 +1,9 @@
 package buildcraft.robotics.map;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.minecraft.block.material.MapColor;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.IntHashMap;
 
@@ -8,8 +12,24 @@ import buildcraft.api.core.INBTStoreable;
 import gnu.trove.map.hash.TIntObjectHashMap;
 
 public class MapRegion implements INBTStoreable {
+    /** The number of tile levels: level n has a pixel for every 2^n by 2^n blocks. */
+    public static final int TILE_LEVELS = 4;
+    private static final byte AIR = (byte) MapColor.airColor.colorIndex;
+    /** Versions are never reused, even after a restart, so that a client never keeps a tile that has changed. */
+    private static final AtomicLong NEXT_VERSION = new AtomicLong(System.currentTimeMillis() << 16);
+
     private final IntHashMap chunks = new IntHashMap();
     private final int x, z;
+    /** The colours of the region, downsampled for each level, or null for the levels that haven't been asked for. */
+    private final byte[][] tiles = new byte[TILE_LEVELS][];
+    /** A bit for each chunk that has changed since each tile was last built. */
+    private final long[][] dirtyChunks = new long[TILE_LEVELS][4];
+    private long version = NEXT_VERSION.getAndIncrement();
+    /** True once the chunks that were saved have been read. */
+    private volatile boolean loaded = false;
+    /** True once something has asked for this region, rather than it just being loaded in case it is needed. Only
+     * accessed by {@link MapWorld} while holding the lock on its regions. */
+    boolean requested = false;
 
     public MapRegion(int x, int z) {
         this.x = x;
@@ -24,11 +44,20 @@ public class MapRegion implements INBTStoreable {
         return z;
     }
 
-    public boolean hasChunk(int x, int z) {
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized boolean hasChunk(int x, int z) {
         return chunks.containsItem((z << 4) | x);
     }
 
-    public MapChunk getChunk(int x, int z) {
+    /** @return The given chunk, or null if it hasn't been mapped. */
+    public synchronized MapChunk findChunk(int x, int z) {
+        return (MapChunk) chunks.lookup((z << 4) | x);
+    }
+
+    public synchronized MapChunk getChunk(int x, int z) {
         int id = (z << 4) | x;
         MapChunk chunk = (MapChunk) chunks.lookup(id);
         if (chunk == null) {
@@ -38,9 +67,120 @@ public class MapRegion implements INBTStoreable {
         return chunk;
     }
 
+    /** Adds the chunks that were saved, except for those that have been mapped again since this was created.
+     *
+     * @param data The colours of each chunk, by (z << 4) | x, or null for the chunks that were never mapped. */
+    public synchronized void load(byte[][] data) {
+        for (int i = 0; i < 256; i++) {
+            if (data[i] != null && !chunks.containsItem(i)) {
+                chunks.addKey(i, new MapChunk(i & 15, i >> 4, data[i]));
+                markDirty(i & 15, i >> 4);
+            }
+        }
+        loaded = true;
+    }
+
+    /** Rebuilds the parts of the tiles that the given chunk covers when they are next asked for. */
+    public synchronized void markDirty(int x, int z) {
+        int index = (z << 4) | x;
+        for (long[] dirty : dirtyChunks) {
+            dirty[index >> 6] |= 1L << (index & 63);
+        }
+        version = NEXT_VERSION.getAndIncrement();
+    }
+
+    public static int getTileSize(int level) {
+        return 256 >> level;
+    }
+
+    /** Copies the tile of the given level, after bringing it up to date.
+     *
+     * @param pixels The array to copy it to, which must have {@link #getTileSize(int)} squared entries, by (z * size) +
+     *            x.
+     * @return The version of the tile, which changes whenever any of its pixels might have. */
+    public synchronized long getTile(int level, byte[] pixels) {
+        updateTile(level);
+        System.arraycopy(tiles[level], 0, pixels, 0, pixels.length);
+        return version;
+    }
+
+    private void updateTile(int level) {
+        if (level > 0) {
+            updateTile(level - 1);
+        }
+        boolean all = tiles[level] == null;
+        if (all) {
+            int size = getTileSize(level);
+            tiles[level] = new byte[size * size];
+        }
+
+        long[] dirty = dirtyChunks[level];
+        for (int i = 0; i < 256; i++) {
+            if (all || (dirty[i >> 6] & (1L << (i & 63))) != 0) {
+                updateTile(level, i & 15, i >> 4);
+            }
+        }
+        Arrays.fill(dirty, 0);
+    }
+
+    /** Rebuilds the part of a tile that a chunk covers. Each pixel of a level above 0 is the first of the four pixels
+     * under it on the level below that has been mapped as something other than air, so that the map doesn't get
+     * emptier when zooming out. */
+    private void updateTile(int level, int chunkX, int chunkZ) {
+        byte[] tile = tiles[level];
+        int size = getTileSize(level);
+        int pixels = 16 >> level;
+        int startX = chunkX * pixels;
+        int startZ = chunkZ * pixels;
+
+        if (level == 0) {
+            MapChunk chunk = (MapChunk) chunks.lookup((chunkZ << 4) | chunkX);
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    tile[(startZ + z) * size + startX + x] = (byte) (chunk != null ? chunk.getColor(x, z) : AIR);
+                }
+            }
+            return;
+        }
+
+        byte[] below = tiles[level - 1];
+        int belowSize = size * 2;
+        for (int z = startZ; z < startZ + pixels; z++) {
+            for (int x = startX; x < startX + pixels; x++) {
+                int first = (z * 2) * belowSize + x * 2;
+                byte color = below[first];
+                if (color == AIR) {
+                    color = below[first + 1];
+                }
+                if (color == AIR) {
+                    color = below[first + belowSize];
+                }
+                if (color == AIR) {
+                    color = below[first + belowSize + 1];
+                }
+                tile[z * size + x] = color;
+            }
+        }
+    }
+
+    /** @return A copy of the colours of each chunk, by (z << 4) | x, or null for the chunks that have not been
+     *         mapped. */
+    public synchronized byte[][] copyData() {
+        byte[][] data = new byte[256][];
+        for (int i = 0; i < 256; i++) {
+            MapChunk chunk = (MapChunk) chunks.lookup(i);
+            if (chunk != null) {
+                data[i] = chunk.copyData();
+            }
+        }
+        return data;
+    }
+
     @Override
-    public void readFromNBT(NBTTagCompound tag) {
+    public synchronized void readFromNBT(NBTTagCompound tag) {
         chunks.clearMap();
+        Arrays.fill(tiles, null);
+        version = NEXT_VERSION.getAndIncrement();
 
         if (tag != null) {
             for (int i = 0; i < 256; i++) {
@@ -53,7 +193,7 @@ public class MapRegion implements INBTStoreable {
     }
 
     @Override
-    public void writeToNBT(NBTTagCompound tag) {
+    public synchronized void writeToNBT(NBTTagCompound tag) {
         for (int i = 0; i < 256; i++) {
             MapChunk chunk = (MapChunk) chunks.lookup(i);
             if (chunk != null) {
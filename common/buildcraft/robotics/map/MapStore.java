@@ -0,0 +1,290 @@
+package buildcraft.robotics.map;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import net.minecraft.util.LongHashMap;
+import net.minecraft.world.ChunkCoordIntPair;
+
+import buildcraft.api.core.BCLog;
+
+/** Stores the colours of every mapped chunk of a world in a single file, with a slot of {@link #CHUNK_SIZE} bytes for
+ * each chunk. The file is a list of regions of 16 by 16 chunks, in the order that they were first written. Each region
+ * has a small header saying where it is and which of its chunks have been mapped, followed by the slots of all of its
+ * chunks. So a chunk is always written to the same place, and a whole region is read at once.
+ * <p>
+ * Every write goes to a journal first, which is synced to the disk before any of it is written to the file, and emptied
+ * once the file has been synced as well. If the game stops in the middle of a write, the journal is written to the file
+ * again when it is next opened, or ignored if it was not written completely, so the file never has half of a write in
+ * it. */
+public class MapStore {
+    public static final int CHUNK_SIZE = 256;
+
+    private static final int FILE_MAGIC = 0x42434D50;
+    private static final int REGION_MAGIC = 0x42435247;
+    private static final int JOURNAL_MAGIC = 0x42434A4E;
+    private static final int VERSION = 1;
+
+    private static final int FILE_HEADER_SIZE = 16;
+    /** The magic number, x, z, a spare int, then a bit for each chunk that has been mapped, and padding. */
+    private static final int REGION_HEADER_SIZE = 64;
+    private static final int PRESENT_OFFSET = 16;
+    private static final int REGION_SIZE = REGION_HEADER_SIZE + 256 * CHUNK_SIZE;
+    /** x, z, index, then the colours. */
+    private static final int JOURNAL_ENTRY_SIZE = 12 + CHUNK_SIZE;
+
+    private final RandomAccessFile dataFile, journalFile;
+    private final FileChannel data, journal;
+    private final LongHashMap regions = new LongHashMap();
+    private long size;
+    private boolean closed = false;
+
+    /** Opens the store in the given folder, creating it if it doesn't exist, and finishes the last write if the game
+     * stopped part way through it. */
+    public MapStore(File directory) throws IOException {
+        dataFile = new RandomAccessFile(new File(directory, "map.bcmap"), "rw");
+        journalFile = new RandomAccessFile(new File(directory, "map.journal"), "rw");
+        data = dataFile.getChannel();
+        journal = journalFile.getChannel();
+
+        try {
+            readRegions();
+            replayJournal();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /** One chunk to write. */
+    public static final class Slot {
+        public final int regionX, regionZ;
+        /** (z << 4) | x, within the region. */
+        public final int index;
+        public final byte[] colors;
+
+        public Slot(int regionX, int regionZ, int index, byte[] colors) {
+            if (colors.length != CHUNK_SIZE) {
+                throw new IllegalArgumentException("A chunk has " + CHUNK_SIZE + " colours, not " + colors.length);
+            }
+            this.regionX = regionX;
+            this.regionZ = regionZ;
+            this.index = index;
+            this.colors = colors;
+        }
+    }
+
+    private static final class Region {
+        private final long offset;
+        private final long[] present = new long[4];
+
+        private Region(long offset) {
+            this.offset = offset;
+        }
+
+        private boolean has(int index) {
+            return (present[index >> 6] & (1L << (index & 63))) != 0;
+        }
+    }
+
+    /** Reads every chunk of a region that has been mapped.
+     *
+     * @param colors Set to the colours of each chunk, by (z << 4) | x, for the chunks that have been mapped.
+     * @return False if no chunk of the region has been mapped. */
+    public synchronized boolean readRegion(int x, int z, byte[][] colors) throws IOException {
+        Region region = closed ? null : (Region) regions.getValueByKey(ChunkCoordIntPair.chunkXZ2Int(x, z));
+        if (region == null) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(256 * CHUNK_SIZE);
+        readFully(data, buffer, region.offset + REGION_HEADER_SIZE);
+        for (int i = 0; i < 256; i++) {
+            if (region.has(i)) {
+                colors[i] = new byte[CHUNK_SIZE];
+                buffer.position(i * CHUNK_SIZE);
+                buffer.get(colors[i]);
+            }
+        }
+        return true;
+    }
+
+    /** Writes the given chunks, and only returns once they are safely on the disk. */
+    public synchronized void write(Collection<Slot> slots) throws IOException {
+        if (closed) {
+            throw new IOException("The map store has been closed");
+        }
+        if (slots.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 + slots.size() * JOURNAL_ENTRY_SIZE + 8);
+        buffer.putInt(JOURNAL_MAGIC);
+        buffer.putInt(slots.size());
+        for (Slot slot : slots) {
+            buffer.putInt(slot.regionX);
+            buffer.putInt(slot.regionZ);
+            buffer.putInt(slot.index);
+            buffer.put(slot.colors);
+        }
+        buffer.putLong(checksum(buffer.array(), buffer.position()));
+        buffer.flip();
+
+        journal.truncate(0);
+        writeFully(journal, buffer, 0);
+        journal.force(false);
+
+        apply(slots);
+    }
+
+    public synchronized void close() {
+        closed = true;
+        try {
+            dataFile.close();
+            journalFile.close();
+        } catch (IOException e) {
+            BCLog.logger.warn("Failed to close the map store", e);
+        }
+    }
+
+    private void apply(Collection<Slot> slots) throws IOException {
+        for (Slot slot : slots) {
+            Region region = getOrAddRegion(slot.regionX, slot.regionZ);
+            writeFully(data, ByteBuffer.wrap(slot.colors), region.offset + REGION_HEADER_SIZE + slot.index * CHUNK_SIZE);
+
+            if (!region.has(slot.index)) {
+                int word = slot.index >> 6;
+                region.present[word] |= 1L << (slot.index & 63);
+                ByteBuffer bits = ByteBuffer.allocate(8);
+                bits.putLong(0, region.present[word]);
+                writeFully(data, bits, region.offset + PRESENT_OFFSET + word * 8);
+            }
+        }
+        data.force(false);
+        journal.truncate(0);
+    }
+
+    private Region getOrAddRegion(int x, int z) throws IOException {
+        long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        Region region = (Region) regions.getValueByKey(key);
+        if (region == null) {
+            ByteBuffer header = ByteBuffer.allocate(REGION_SIZE);
+            header.putInt(REGION_MAGIC);
+            header.putInt(x);
+            header.putInt(z);
+            header.rewind();
+            region = new Region(size);
+            writeFully(data, header, size);
+            size += REGION_SIZE;
+            regions.add(key, region);
+        }
+        return region;
+    }
+
+    private void readRegions() throws IOException {
+        size = data.size();
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        if (size < FILE_HEADER_SIZE) {
+            header.putInt(FILE_MAGIC);
+            header.putInt(VERSION);
+            header.rewind();
+            data.truncate(0);
+            writeFully(data, header, 0);
+            data.force(false);
+            size = FILE_HEADER_SIZE;
+            return;
+        }
+
+        readFully(data, header, 0);
+        if (header.getInt(0) != FILE_MAGIC) {
+            throw new IOException("Not a zone map file");
+        }
+        if (header.getInt(4) > VERSION) {
+            throw new IOException("Unsupported zone map version: " + header.getInt(4));
+        }
+
+        ByteBuffer regionHeader = ByteBuffer.allocate(REGION_HEADER_SIZE);
+        long offset = FILE_HEADER_SIZE;
+        for (; offset + REGION_SIZE <= size; offset += REGION_SIZE) {
+            regionHeader.clear();
+            readFully(data, regionHeader, offset);
+            if (regionHeader.getInt(0) != REGION_MAGIC) {
+                break;
+            }
+            Region region = new Region(offset);
+            for (int i = 0; i < 4; i++) {
+                region.present[i] = regionHeader.getLong(PRESENT_OFFSET + i * 8);
+            }
+            regions.add(ChunkCoordIntPair.chunkXZ2Int(regionHeader.getInt(4), regionHeader.getInt(8)), region);
+        }
+
+        if (offset != size) {
+            // Regions are only added by a write, which is still in the journal if it didn't finish
+            BCLog.logger.info("Removing a partly written region from the end of the zone map");
+            data.truncate(offset);
+            size = offset;
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        long length = journal.size();
+        if (length == 0) {
+            return;
+        }
+
+        List<Slot> slots = null;
+        if (length >= 16 && length <= Integer.MAX_VALUE) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            readFully(journal, buffer, 0);
+            int count = buffer.getInt(4);
+            if (buffer.getInt(0) == JOURNAL_MAGIC && count >= 0 && 16L + (long) count * JOURNAL_ENTRY_SIZE == length
+                && buffer.getLong((int) length - 8) == checksum(buffer.array(), (int) length - 8)) {
+                slots = new ArrayList<Slot>(count);
+                buffer.position(8);
+                for (int i = 0; i < count; i++) {
+                    int x = buffer.getInt();
+                    int z = buffer.getInt();
+                    int index = buffer.getInt();
+                    byte[] colors = new byte[CHUNK_SIZE];
+                    buffer.get(colors);
+                    slots.add(new Slot(x, z, index & 255, colors));
+                }
+            }
+        }
+
+        if (slots != null) {
+            BCLog.logger.info("Finishing the last write to the zone map");
+            apply(slots);
+        } else {
+            // The game stopped while the journal was being written, so the file was never touched
+            journal.truncate(0);
+        }
+    }
+
+    private static long checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
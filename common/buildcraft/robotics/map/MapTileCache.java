@@ -0,0 +1,54 @@
+package buildcraft.robotics.map;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The map tiles (see {@link MapRegion#getTile(int, byte[])}) that a client has been sent, with their versions, so
+ * that the server only sends them again once they have changed. Only the tiles of one dimension are kept, and the
+ * ones that were used longest ago are dropped once there are too many. */
+public class MapTileCache {
+    private final int maxTiles;
+    private final LinkedHashMap<Long, Tile> tiles;
+    private int dimension = Integer.MIN_VALUE;
+
+    public MapTileCache(final int maxTiles) {
+        this.maxTiles = maxTiles;
+        this.tiles = new LinkedHashMap<Long, Tile>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest) {
+                return size() > MapTileCache.this.maxTiles;
+            }
+        };
+    }
+
+    public static final class Tile {
+        public final long version;
+        /** By (z * size) + x, see {@link MapRegion#getTileSize(int)}. */
+        public final byte[] pixels;
+
+        public Tile(long version, byte[] pixels) {
+            this.version = version;
+            this.pixels = pixels;
+        }
+    }
+
+    private static long getKey(int level, int regionX, int regionZ) {
+        return ((long) level << 60) | ((regionX & 0x3FFFFFFFL) << 30) | (regionZ & 0x3FFFFFFFL);
+    }
+
+    /** @return The tile, or null if it hasn't been sent. */
+    public synchronized Tile get(int dimension, int level, int regionX, int regionZ) {
+        if (dimension != this.dimension) {
+            return null;
+        }
+        return tiles.get(getKey(level, regionX, regionZ));
+    }
+
+    public synchronized void put(int dimension, int level, int regionX, int regionZ, Tile tile) {
+        if (dimension != this.dimension) {
+            tiles.clear();
+            this.dimension = dimension;
+        }
+        tiles.put(getKey(level, regionX, regionZ), tile);
+    }
+}
@@ -0,0 +1,112 @@
+package buildcraft.robotics.map;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.util.LongHashMap;
+
+/** The chunks that are waiting to be mapped, each for a number of ticks. Waiting chunks are kept in a timing wheel,
+ * with a slot for each of the next {@link #MAX_DELAY} ticks, so a tick only looks at the chunks that are due then
+ * rather than at every waiting chunk. Due chunks are then taken in the order that they became due, as many per tick as
+ * the world wants to map.
+ * <p>
+ * A chunk is only ever queued once: queueing it again while it is waiting brings it forward if that makes it due
+ * sooner, and otherwise only changes what is mapped when it is due. */
+public class MapUpdateQueue<T> {
+    public static final int MAX_DELAY = 127;
+    private static final int SLOTS = MAX_DELAY + 1;
+
+    private final List<List<Entry<T>>> wheel = new ArrayList<List<Entry<T>>>(SLOTS);
+    private final ArrayDeque<Entry<T>> due = new ArrayDeque<Entry<T>>();
+    private final LongHashMap entries = new LongHashMap();
+    private long time = 0;
+    private int size = 0;
+
+    public MapUpdateQueue() {
+        for (int i = 0; i < SLOTS; i++) {
+            wheel.add(new ArrayList<Entry<T>>());
+        }
+    }
+
+    private static final class Entry<T> {
+        private final long id;
+        private T value;
+        private long dueTime;
+        private boolean isDue = false;
+
+        private Entry(long id) {
+            this.id = id;
+        }
+    }
+
+    /** @param delay The number of ticks to wait for, up to {@link #MAX_DELAY}, or 0 to be due straight away. */
+    @SuppressWarnings("unchecked")
+    public synchronized void queue(long id, T value, int delay) {
+        delay = Math.max(0, Math.min(MAX_DELAY, delay));
+        Entry<T> entry = (Entry<T>) entries.getValueByKey(id);
+        if (entry == null) {
+            entry = new Entry<T>(id);
+            entries.add(id, entry);
+            size++;
+        } else if (entry.isDue || entry.dueTime <= time + delay) {
+            entry.value = value;
+            return;
+        }
+
+        entry.value = value;
+        entry.dueTime = time + delay;
+        if (delay == 0) {
+            entry.isDue = true;
+            due.add(entry);
+        } else {
+            // If it was already waiting, it is left in its old slot too, and skipped when that comes round
+            wheel.get((int) (entry.dueTime % SLOTS)).add(entry);
+        }
+    }
+
+    /** Moves on to the next tick, making the chunks that were waiting for it due. */
+    public synchronized void tick() {
+        time++;
+        List<Entry<T>> slot = wheel.get((int) (time % SLOTS));
+        for (Entry<T> entry : slot) {
+            if (!entry.isDue && entry.dueTime == time && entries.getValueByKey(entry.id) == entry) {
+                entry.isDue = true;
+                due.add(entry);
+            }
+        }
+        slot.clear();
+    }
+
+    /** Stops waiting for the given chunk. If it was waiting in a slot of the wheel it is skipped when that comes round.
+     *
+     * @return What would have been mapped, or null if the chunk wasn't waiting or due. */
+    @SuppressWarnings("unchecked")
+    public synchronized T remove(long id) {
+        Entry<T> entry = (Entry<T>) entries.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isDue) {
+            due.remove(entry);
+        }
+        size--;
+        return entry.value;
+    }
+
+    /** @return The chunk that has been due the longest, or null if none are due. */
+    public synchronized T poll() {
+        Entry<T> entry = due.poll();
+        if (entry == null) {
+            return null;
+        }
+        entries.remove(entry.id);
+        size--;
+        return entry.value;
+    }
+
+    /** @return The number of chunks that are waiting or due. */
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -1,25 +1,61 @@
 package buildcraft.robotics.map;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
 public final class MapUtils {
     private MapUtils() {
 
     }
 
     public static long getIDFromCoords(int x, int z) {
-        return ((x & 0xFFFFFF) << 24) | (z & 0xFFFFFF);
+        return ((long) (x & 0xFFFFFF) << 24) | (z & 0xFFFFFF);
     }
 
     public static int getXFromID(long id) {
-        return (int) (id >> 24);
+        return ((int) (id >> 24) << 8) >> 8;
     }
 
     public static int getZFromID(long id) {
-        int z = (int) (id & 0xFFFFFF);
-        if (z >= 0x800000) {
-            return -(z ^ 0xFFFFFF);
-        } else {
-            return z;
+        return ((int) id << 8) >> 8;
+    }
+
+    public static byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 4 + 16);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return output.toByteArray();
+    }
+
+    /** @param length The length of the data before it was compressed.
+     * @throws DataFormatException If the data is not what {@link #compress(byte[])} gives, or is not the right
+     *             length. */
+    public static byte[] decompress(byte[] compressed, int length) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        // One more byte than is needed, to tell if there is too much data
+        byte[] data = new byte[length + 1];
+        int read = 0;
+        try {
+            while (read < data.length && !inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary()) {
+                read += inflater.inflate(data, read, data.length - read);
+            }
+            if (read != length || !inflater.finished()) {
+                throw new DataFormatException("Expected " + length + " bytes");
+            }
+        } finally {
+            inflater.end();
         }
+        return Arrays.copyOf(data, length);
     }
 
 }
@@ -1,35 +1,46 @@
 package buildcraft.robotics.map;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
+import net.minecraft.block.material.MapColor;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.LongHashMap;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 
+import buildcraft.api.core.BCLog;
 import buildcraft.core.lib.utils.NBTUtils;
 
 import gnu.trove.map.hash.TLongLongHashMap;
 import gnu.trove.set.hash.TLongHashSet;
 
+/** The map of a world, as shown on zone plans. It is saved in a {@link MapStore}, and regions are only read from that on
+ * the thread of the {@link MapManager}: asking for a region that hasn't been loaded yet queues it to be loaded, along
+ * with the regions around it, and gives an empty region until then. The chunks that have been mapped since the last
+ * save are written by the manager every so often, and when the world is unloaded. */
 public class MapWorld {
+    /** The most chunks that are mapped in a tick, so that lots of chunks loading at once doesn't slow the world down. */
+    private static final int MAX_UPDATES_PER_TICK = 8;
+
     private final LongHashMap regionMap;
-    private final HashMap<Chunk, Integer> timeToUpdate = new HashMap<Chunk, Integer>();
+    private final MapUpdateQueue<Chunk> updates = new MapUpdateQueue<Chunk>();
     private final TLongLongHashMap regionUpdateTime;
     private final TLongHashSet updatedChunks;
     private final File location;
+    private final MapManager manager;
+    private MapStore store;
+    private volatile boolean closed = false;
 
-    public MapWorld(World world, File location) {
+    public MapWorld(World world, File location, MapManager manager) {
         regionMap = new LongHashMap();
         regionUpdateTime = new TLongLongHashMap();
         updatedChunks = new TLongHashSet();
+        this.manager = manager;
 
         String saveFolder = world.provider.getSaveFolder();
         if (saveFolder == null) {
@@ -41,40 +52,114 @@ public class MapWorld {
         } catch (Exception e) {
             e.printStackTrace();
         }
+
+        try {
+            store = new MapStore(this.location);
+        } catch (IOException e) {
+            BCLog.logger.error("Failed to open the zone map of " + saveFolder + ", it will not be saved", e);
+        }
     }
 
     private MapRegion getRegion(int x, int z) {
+        synchronized (regionMap) {
+            return requestRegion(x, z, true);
+        }
+    }
+
+    /** Must be called while holding the lock on the regions.
+     *
+     * @param needed False if the region is only being loaded in case it is needed soon, so should be loaded after the
+     *            ones that are needed now. */
+    private MapRegion requestRegion(int x, int z, boolean needed) {
         long id = MapUtils.getIDFromCoords(x, z);
         MapRegion region = (MapRegion) regionMap.getValueByKey(id);
         if (region == null) {
             region = new MapRegion(x, z);
+            regionMap.add(id, region);
+            queueLoad(region, needed);
+        } else if (needed && !region.requested && !region.isLoaded()) {
+            // It was only being prefetched, so move it to the front
+            queueLoad(region, true);
+        }
 
-            // Check in the location first
-            File target = new File(location, "r" + x + "," + z + ".nbt");
-            if (target.exists()) {
-                try {
-                    FileInputStream f = new FileInputStream(target);
-                    byte[] data = new byte[(int) target.length()];
-                    f.read(data);
-                    f.close();
-
-                    NBTTagCompound nbt = NBTUtils.load(data);
-                    if (nbt != null) {
-                        region.readFromNBT(nbt);
+        if (needed && !region.requested) {
+            region.requested = true;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (dx != 0 || dz != 0) {
+                        requestRegion(x + dx, z + dz, false);
                     }
-                } catch (Exception e) {
-                    e.printStackTrace();
                 }
             }
-
-            regionMap.add(id, region);
         }
         return region;
     }
 
-    private MapChunk getChunk(int x, int z) {
-        MapRegion region = getRegion(x >> 4, z >> 4);
-        return region.getChunk(x & 15, z & 15);
+    /** Loads the regions that the given area of chunks covers in the background, if they haven't been already. */
+    public void prefetch(int chunkX, int chunkZ, int chunksX, int chunksZ) {
+        synchronized (regionMap) {
+            for (int x = chunkX >> 4; x <= (chunkX + chunksX - 1) >> 4; x++) {
+                for (int z = chunkZ >> 4; z <= (chunkZ + chunksZ - 1) >> 4; z++) {
+                    requestRegion(x, z, false);
+                }
+            }
+        }
+    }
+
+    private void queueLoad(final MapRegion region, boolean needed) {
+        manager.queue(new Runnable() {
+            @Override
+            public void run() {
+                load(region);
+            }
+        }, needed);
+    }
+
+    /** Only called on the thread of the manager. */
+    private void load(MapRegion region) {
+        if (closed || region.isLoaded()) {
+            return;
+        }
+        byte[][] data = new byte[256][];
+        try {
+            if (store == null || !store.readRegion(region.getX(), region.getZ(), data)) {
+                importRegion(region.getX(), region.getZ(), data);
+            }
+        } catch (IOException e) {
+            BCLog.logger.warn("Failed to load the zone map region " + region.getX() + "," + region.getZ(), e);
+        }
+        region.load(data);
+    }
+
+    /** Reads a region from the file that it was saved in before there was a {@link MapStore}, and moves it into the
+     * store. */
+    private void importRegion(int x, int z, byte[][] data) throws IOException {
+        File target = new File(location, "r" + x + "," + z + ".nbt");
+        if (!target.exists()) {
+            return;
+        }
+
+        NBTTagCompound nbt = NBTUtils.load(Files.readAllBytes(target.toPath()));
+        if (nbt == null) {
+            return;
+        }
+        MapRegion old = new MapRegion(x, z);
+        old.readFromNBT(nbt);
+        byte[][] oldData = old.copyData();
+
+        List<MapStore.Slot> slots = new ArrayList<MapStore.Slot>();
+        for (int i = 0; i < 256; i++) {
+            if (oldData[i] != null) {
+                data[i] = oldData[i];
+                slots.add(new MapStore.Slot(x, z, i, oldData[i]));
+            }
+        }
+        if (store != null) {
+            store.write(slots);
+            if (!target.delete()) {
+                BCLog.logger.warn("Failed to delete " + target + " after moving it into the zone map");
+            }
+        }
     }
 
     public boolean hasChunk(int x, int z) {
@@ -82,67 +167,107 @@ public class MapWorld {
         return region.hasChunk(x & 15, z & 15);
     }
 
-    public void save() {
+    /** Writes every chunk that has been mapped since the last save. */
+    public synchronized void save() {
+        if (closed) {
+            return;
+        }
         long[] chunkList;
         synchronized (updatedChunks) {
             chunkList = updatedChunks.toArray();
             updatedChunks.clear();
         }
+        if (store == null || chunkList.length == 0) {
+            return;
+        }
 
+        List<MapStore.Slot> slots = new ArrayList<MapStore.Slot>(chunkList.length);
         for (long id : chunkList) {
-            MapRegion region = (MapRegion) regionMap.getValueByKey(id);
-            if (region == null) {
-                continue;
+            int x = MapUtils.getXFromID(id);
+            int z = MapUtils.getZFromID(id);
+            MapRegion region;
+            synchronized (regionMap) {
+                region = (MapRegion) regionMap.getValueByKey(MapUtils.getIDFromCoords(x >> 4, z >> 4));
+            }
+            MapChunk chunk = region != null ? region.findChunk(x & 15, z & 15) : null;
+            if (chunk != null) {
+                slots.add(new MapStore.Slot(x >> 4, z >> 4, ((z & 15) << 4) | (x & 15), chunk.copyData()));
             }
+        }
 
-            NBTTagCompound output = new NBTTagCompound();
-            region.writeToNBT(output);
-            byte[] data = NBTUtils.save(output);
-            File file = new File(location, "r" + MapUtils.getXFromID(id) + "," + MapUtils.getZFromID(id) + ".nbt");
-
-            try {
-                FileOutputStream f = new FileOutputStream(file);
-                f.write(data);
-                f.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+        try {
+            store.write(slots);
+        } catch (IOException e) {
+            BCLog.logger.warn("Failed to save the zone map", e);
+            synchronized (updatedChunks) {
+                updatedChunks.addAll(chunkList);
             }
         }
     }
 
+    /** Saves the map, and stops it from being loaded or saved again. */
+    public synchronized void close() {
+        save();
+        closed = true;
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    /** @return The colour of the given column, or that of air if it hasn't been mapped or its region is still being
+     *         loaded. */
     public int getColor(int x, int z) {
-        MapChunk chunk = getChunk(x >> 4, z >> 4);
-        return chunk.getColor(x & 15, z & 15);
+        MapChunk chunk = getRegion(x >> 8, z >> 8).findChunk((x >> 4) & 15, (z >> 4) & 15);
+        return chunk != null ? chunk.getColor(x & 15, z & 15) : MapColor.airColor.colorIndex;
     }
 
+    /** Copies a tile of a region (see {@link MapRegion#getTile(int, byte[])}).
+     *
+     * @return The version of the tile, or -1 if the region is still being loaded. */
+    public long getTile(int regionX, int regionZ, int level, byte[] pixels) {
+        MapRegion region = getRegion(regionX, regionZ);
+        return region.isLoaded() ? region.getTile(level, pixels) : -1;
+    }
+
+    /** Maps the chunks that are due, up to {@link #MAX_UPDATES_PER_TICK} of them. The rest wait for the next tick. */
     public void tick() {
-        if (timeToUpdate.size() > 0) {
-            synchronized (timeToUpdate) {
-                Set<Chunk> chunks = new HashSet<Chunk>();
-                chunks.addAll(timeToUpdate.keySet());
-                for (Chunk c : chunks) {
-                    int v = timeToUpdate.get(c);
-                    if (v > 1) {
-                        timeToUpdate.put(c, v - 1);
-                    } else {
-                        try {
-                            updateChunk(c);
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
+        updates.tick();
+        for (int i = 0; i < MAX_UPDATES_PER_TICK; i++) {
+            Chunk chunk = updates.poll();
+            if (chunk == null) {
+                break;
             }
+            tryUpdateChunk(chunk);
+        }
+    }
+
+    /** Maps a chunk that is being unloaded straight away, rather than leaving it in the queue (which would keep it from
+     * being garbage collected until its turn came), and drops any update that was waiting for it.
+     *
+     * @param force True to map it even if no update was waiting for it. */
+    public void updateUnloadingChunk(Chunk chunk, boolean force) {
+        boolean waiting = updates.remove(MapUtils.getIDFromCoords(chunk.xPosition, chunk.zPosition)) != null;
+        if (waiting || force) {
+            tryUpdateChunk(chunk);
+        }
+    }
+
+    private void tryUpdateChunk(Chunk chunk) {
+        try {
+            updateChunk(chunk);
+        } catch (Exception e) {
+            BCLog.logger.warn("Failed to map the chunk " + chunk.xPosition + "," + chunk.zPosition + " for the zone map", e);
         }
     }
 
     public void updateChunk(Chunk rchunk) {
         long id = MapUtils.getIDFromCoords(rchunk.xPosition, rchunk.zPosition);
-        MapChunk chunk = getChunk(rchunk.xPosition, rchunk.zPosition);
+        MapRegion region = getRegion(rchunk.xPosition >> 4, rchunk.zPosition >> 4);
+        MapChunk chunk = region.getChunk(rchunk.xPosition & 15, rchunk.zPosition & 15);
         chunk.update(rchunk);
-        updatedChunks.add(id);
-        synchronized (timeToUpdate) {
-            timeToUpdate.remove(rchunk);
+        region.markDirty(rchunk.xPosition & 15, rchunk.zPosition & 15);
+        synchronized (updatedChunks) {
+            updatedChunks.add(id);
         }
         regionUpdateTime.put(id, (new Date()).getTime());
     }
@@ -151,9 +276,8 @@ public class MapWorld {
         return regionUpdateTime.get(MapUtils.getIDFromCoords(x, z));
     }
 
+    /** Maps the given chunk after the given number of ticks, or as soon as there is time to if that is 0. */
     public void updateChunkDelayed(Chunk chunk, byte time) {
-        synchronized (timeToUpdate) {
-            timeToUpdate.put(chunk, (int) time);
-        }
+        updates.queue(MapUtils.getIDFromCoords(chunk.xPosition, chunk.zPosition), chunk, time);
     }
 }
@@ -51,6 +51,14 @@ public class FacadePluggable extends PipePluggable implements IFacadePluggable {
         return other.state != state || other.transparent != transparent || other.renderAsHollow != renderAsHollow;
     }
 
+    @Override
+    public boolean writeRenderKey(ByteBuf data) {
+        IBlockState current = getCurrentState();
+        data.writeInt(current == null ? -1 : Block.getStateId(current));
+        data.writeBoolean(isHollow());
+        return true;
+    }
+
     @Override
     public void writeToNBT(NBTTagCompound nbt) {
         if (states != null) {
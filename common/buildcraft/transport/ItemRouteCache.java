@@ -0,0 +1,110 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.transport;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.EnumFacing;
+
+/** Remembers the possible destinations that {@link PipeTransportItems#resolveDestination(TravelingItem)} found for an
+ * item, keyed by the side the item came in from, its colour and its item, damage and NBT. This is a small direct-mapped
+ * table: looking up a route never allocates, and an entry is simply overwritten when another route hashes to the same
+ * slot.
+ * <p>
+ * Entries are thrown away by {@link #invalidate()} whenever anything that the route depends on changes, including when
+ * an item could not be put into the inventory it was routed to. They also expire after {@link #TIMEOUT} ticks in case a
+ * change was not noticed (for example an inventory filling up without refusing an item yet). */
+public class ItemRouteCache {
+    public static final int TIMEOUT = 40;
+    private static final int SIZE = 32;
+    private static final EnumFacing[] NO_DESTINATIONS = new EnumFacing[0];
+
+    private final int[] hashes = new int[SIZE];
+    private final byte[] inputs = new byte[SIZE];
+    private final byte[] colors = new byte[SIZE];
+    private final ItemStack[] stacks = new ItemStack[SIZE];
+    private final EnumFacing[][] destinations = new EnumFacing[SIZE][];
+    private final boolean[] shuffle = new boolean[SIZE];
+    private final long[] expiry = new long[SIZE];
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /** @return The slot of the cached route for the given item, or -1 if it was not cached. */
+    public int find(TravelingItem item, long now) {
+        int hash = hash(item);
+        int slot = hash & (SIZE - 1);
+        if (matches(slot, hash, item) && expiry[slot] > now) {
+            hits++;
+            return slot;
+        }
+        misses++;
+        return -1;
+    }
+
+    /** @return One of the destinations of the route in the given slot, picked the same way that
+     *         {@link PipeTransportItems#resolveDestination(TravelingItem)} would, or null if the route had none. */
+    public EnumFacing pick(int slot, Random rand) {
+        EnumFacing[] faces = destinations[slot];
+        if (faces.length == 0) {
+            return null;
+        }
+        return shuffle[slot] ? faces[rand.nextInt(faces.length)] : faces[0];
+    }
+
+    public void put(TravelingItem item, List<EnumFacing> faces, boolean shuffleFaces, long now) {
+        int hash = hash(item);
+        int slot = hash & (SIZE - 1);
+        hashes[slot] = hash;
+        inputs[slot] = (byte) item.input.ordinal();
+        colors[slot] = (byte) (item.color == null ? -1 : item.color.ordinal());
+        stacks[slot] = item.getItemStack().copy();
+        destinations[slot] = faces.isEmpty() ? NO_DESTINATIONS : faces.toArray(new EnumFacing[faces.size()]);
+        shuffle[slot] = shuffleFaces;
+        expiry[slot] = now + TIMEOUT;
+    }
+
+    public void invalidate() {
+        Arrays.fill(stacks, null);
+        Arrays.fill(destinations, null);
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private boolean matches(int slot, int hash, TravelingItem item) {
+        ItemStack cached = stacks[slot];
+        if (cached == null || hashes[slot] != hash) {
+            return false;
+        }
+        if (inputs[slot] != item.input.ordinal()) {
+            return false;
+        }
+        if (colors[slot] != (item.color == null ? -1 : item.color.ordinal())) {
+            return false;
+        }
+        ItemStack stack = item.getItemStack();
+        return cached.getItem() == stack.getItem() && cached.getItemDamage() == stack.getItemDamage() && ItemStack.areItemStackTagsEqual(cached,
+                stack);
+    }
+
+    private static int hash(TravelingItem item) {
+        ItemStack stack = item.getItemStack();
+        int hash = System.identityHashCode(stack.getItem());
+        hash = 31 * hash + stack.getItemDamage();
+        hash = 31 * hash + (stack.hasTagCompound() ? stack.getTagCompound().hashCode() : 0);
+        hash = 31 * hash + item.input.ordinal();
+        hash = 31 * hash + (item.color == null ? -1 : item.color.ordinal());
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -38,8 +38,7 @@ import buildcraft.transport.pipes.events.PipeEvent;
 import buildcraft.transport.statements.ActionValve.ValveState;
 
 public abstract class Pipe<T extends PipeTransport> implements IDropControlInventory, IPipe, Comparable<Pipe<?>> {
-    // TODO: Change this to EventBusProviderASM!
-    private static final IEventBusProvider<PipeEvent> eventProvider = PipeEventBus.Provider.INSTANCE;
+    private static final IEventBusProvider<PipeEvent> eventProvider = PipeEventBusASM.Provider.INSTANCE;
 
     public int[] signalStrength = new int[] { 0, 0, 0, 0 };
     public TileGenericPipe container;
@@ -51,6 +50,7 @@ public abstract class Pipe<T extends PipeTransport> implements IDropControlInven
 
     private boolean initialized = false;
     private boolean scheduleWireUpdate;
+    private int actionSignature = 0;
 
     private ArrayList<ActionState> actionStates = new ArrayList<ActionState>();
 
@@ -140,6 +140,12 @@ public abstract class Pipe<T extends PipeTransport> implements IDropControlInven
                 }
             }
 
+            int signature = computeActionSignature();
+            if (signature != actionSignature) {
+                actionSignature = signature;
+                notifyActionsChanged();
+            }
+
             if (scheduleWireUpdate) {
                 updateSignalState();
             }
@@ -433,6 +439,40 @@ public abstract class Pipe<T extends PipeTransport> implements IDropControlInven
 
     protected void actionsActivated(Collection<StatementSlot> actions) {}
 
+    /** @return A hash of every action that is currently active on the gates of this pipe. */
+    private int computeActionSignature() {
+        int signature = 0;
+        for (int i = 0; i < gates.length; i++) {
+            Gate gate = gates[i];
+            if (gate == null) {
+                continue;
+            }
+            List<StatementSlot> active = gate.activeActions;
+            for (int j = 0; j < active.size(); j++) {
+                StatementSlot slot = active.get(j);
+                signature = 31 * signature + i;
+                signature = 31 * signature + System.identityHashCode(slot.statement);
+                signature = 31 * signature + System.identityHashCode(slot.parameters);
+            }
+        }
+        return signature;
+    }
+
+    /** Tells the transport of this pipe, and of every neighbouring pipe (as actions can open or close the sides of this
+     * pipe), that the active actions changed. */
+    private void notifyActionsChanged() {
+        transport.onActionsChanged();
+        for (EnumFacing face : EnumFacing.VALUES) {
+            TileEntity tile = container.getTile(face);
+            if (tile instanceof IPipeTile) {
+                Pipe<?> neighbour = (Pipe<?>) ((IPipeTile) tile).getPipe();
+                if (neighbour != null && neighbour.transport != null) {
+                    neighbour.transport.onActionsChanged();
+                }
+            }
+        }
+    }
+
     public TileGenericPipe getContainer() {
         return container;
     }
@@ -60,7 +60,7 @@ public class PipeEventBus implements IEventBus<PipeEvent> {
     }
 
     private static final EventHandlerCompare COMPARATOR = new EventHandlerCompare();
-    private static final HashSet<Object> globalHandlers = new HashSet<Object>();
+    static final HashSet<Object> globalHandlers = new HashSet<Object>();
 
     private final HashSet<Object> registeredHandlers = new HashSet<Object>();
     private final HashMap<Object, Map<Method, Class<? extends PipeEvent>>> handlerMethods = Maps.newHashMap();
@@ -0,0 +1,219 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.transport;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import buildcraft.core.lib.event.HandlerGenerator;
+import buildcraft.core.lib.event.IEventBus;
+import buildcraft.core.lib.event.IEventBusProvider;
+import buildcraft.core.lib.event.IEventHandler;
+import buildcraft.core.lib.event.IEventHandlerProvider;
+import buildcraft.transport.pipes.events.PipeEvent;
+import buildcraft.transport.pipes.events.PipeEventPriority;
+
+/** A drop-in replacement for {@link PipeEventBus} that calls every "eventHandler" method through a class generated by
+ * {@link HandlerGenerator}, rather than through reflection. Handlers are stored in one array per event class, and these
+ * arrays are replaced (never modified) whenever a handler is registered or unregistered, so firing an event never
+ * allocates and handlers can safely be changed while an event is being fired. */
+public class PipeEventBusASM implements IEventBus<PipeEvent> {
+    public enum Provider implements IEventBusProvider<PipeEvent> {
+        INSTANCE;
+
+        @Override
+        public IEventBus<PipeEvent> newBus() {
+            return new PipeEventBusASM();
+        }
+    }
+
+    private static final HandlerEntry[] NO_HANDLERS = new HandlerEntry[0];
+
+    /** Every handler method found in a given class, in declaration order. Shared between all buses. */
+    private static final Map<Class<?>, List<HandlerMethod>> classMethods = new ConcurrentHashMap<>();
+
+    private final Map<Object, List<HandlerEntry>> registeredHandlers = Maps.newHashMap();
+    private final Map<Class<? extends PipeEvent>, HandlerEntry[]> eventHandlers = Maps.newHashMap();
+
+    public PipeEventBusASM() {
+        for (Object o : PipeEventBus.globalHandlers) {
+            registerHandler(o);
+        }
+    }
+
+    @Override
+    public void registerHandler(Object handler) {
+        if (registeredHandlers.containsKey(handler)) {
+            return;
+        }
+
+        List<HandlerEntry> entries = Lists.newArrayList();
+        for (HandlerMethod method : getHandlerMethods(handler.getClass())) {
+            HandlerEntry entry = new HandlerEntry(method, method.provider.createNewHandler(handler));
+            entries.add(entry);
+            addEntry(entry);
+        }
+        registeredHandlers.put(handler, entries);
+    }
+
+    @Override
+    public void unregisterHandler(Object handler) {
+        List<HandlerEntry> entries = registeredHandlers.remove(handler);
+        if (entries == null) {
+            return;
+        }
+
+        for (HandlerEntry entry : entries) {
+            removeEntry(entry);
+        }
+    }
+
+    @Override
+    public void handleEvent(PipeEvent event) {
+        HandlerEntry[] handlers = eventHandlers.get(event.getClass());
+        if (handlers == null) {
+            return;
+        }
+        for (HandlerEntry entry : handlers) {
+            entry.handler.handle(event);
+        }
+    }
+
+    private void addEntry(HandlerEntry entry) {
+        Class<? extends PipeEvent> eventType = entry.method.eventType;
+        HandlerEntry[] old = eventHandlers.get(eventType);
+        if (old == null) {
+            old = NO_HANDLERS;
+        }
+
+        // Insert after every handler with an equal or higher priority, the same order that PipeEventBus uses
+        int index = 0;
+        while (index < old.length && old[index].method.priority >= entry.method.priority) {
+            index++;
+        }
+
+        HandlerEntry[] handlers = new HandlerEntry[old.length + 1];
+        System.arraycopy(old, 0, handlers, 0, index);
+        handlers[index] = entry;
+        System.arraycopy(old, index, handlers, index + 1, old.length - index);
+        eventHandlers.put(eventType, handlers);
+    }
+
+    private void removeEntry(HandlerEntry entry) {
+        Class<? extends PipeEvent> eventType = entry.method.eventType;
+        HandlerEntry[] old = eventHandlers.get(eventType);
+        if (old == null) {
+            return;
+        }
+
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] == entry) {
+                if (old.length == 1) {
+                    eventHandlers.remove(eventType);
+                } else {
+                    HandlerEntry[] handlers = new HandlerEntry[old.length - 1];
+                    System.arraycopy(old, 0, handlers, 0, i);
+                    System.arraycopy(old, i + 1, handlers, i, old.length - i - 1);
+                    eventHandlers.put(eventType, handlers);
+                }
+                return;
+            }
+        }
+    }
+
+    private static List<HandlerMethod> getHandlerMethods(Class<?> clazz) {
+        List<HandlerMethod> methods = classMethods.get(clazz);
+        if (methods == null) {
+            methods = findHandlerMethods(clazz);
+            classMethods.put(clazz, methods);
+        }
+        return methods;
+    }
+
+    private static List<HandlerMethod> findHandlerMethods(Class<?> clazz) {
+        List<HandlerMethod> methods = Lists.newArrayList();
+        // Uses the same rules as PipeEventBus: only methods declared directly in the class are looked at.
+        for (Method m : clazz.getDeclaredMethods()) {
+            if (!"eventHandler".equals(m.getName())) {
+                continue;
+            }
+            Class<?>[] parameters = m.getParameterTypes();
+            if (parameters.length != 1 || !PipeEvent.class.isAssignableFrom(parameters[0])) {
+                continue;
+            }
+            Class<? extends PipeEvent> eventType = parameters[0].asSubclass(PipeEvent.class);
+            PipeEventPriority p = m.getAnnotation(PipeEventPriority.class);
+            int priority = p != null ? p.priority() : 0;
+
+            IEventHandlerProvider<PipeEvent> provider;
+            if (HandlerGenerator.canGenerate(m)) {
+                provider = HandlerGenerator.getProvider(m, eventType);
+            } else {
+                // Generated classes live in a different class loader, so they cannot call non-public methods.
+                m.setAccessible(true);
+                provider = new ReflectiveProvider(m);
+            }
+            methods.add(new HandlerMethod(eventType, priority, provider));
+        }
+        return Collections.unmodifiableList(methods);
+    }
+
+    private static final class HandlerMethod {
+        private final Class<? extends PipeEvent> eventType;
+        private final int priority;
+        private final IEventHandlerProvider<PipeEvent> provider;
+
+        private HandlerMethod(Class<? extends PipeEvent> eventType, int priority, IEventHandlerProvider<PipeEvent> provider) {
+            this.eventType = eventType;
+            this.priority = priority;
+            this.provider = provider;
+        }
+    }
+
+    private static final class HandlerEntry {
+        private final HandlerMethod method;
+        private final IEventHandler<PipeEvent> handler;
+
+        private HandlerEntry(HandlerMethod method, IEventHandler<PipeEvent> handler) {
+            this.method = method;
+            this.handler = handler;
+        }
+    }
+
+    private static final class ReflectiveProvider implements IEventHandlerProvider<PipeEvent> {
+        private final Method method;
+
+        private ReflectiveProvider(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public IEventHandler<PipeEvent> createNewHandler(final Object obj) {
+            return new IEventHandler<PipeEvent>() {
+                @Override
+                public void handle(PipeEvent event) {
+                    try {
+                        method.invoke(obj, event);
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    } catch (InvocationTargetException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        } else if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw new RuntimeException(cause);
+                    }
+                }
+            };
+        }
+    }
+}
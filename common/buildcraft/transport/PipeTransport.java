@@ -83,10 +83,17 @@ public abstract class PipeTransport {
 
     public void onNeighborChange(EnumFacing direction) {}
 
+    /** Called whenever the actions that are active on the gates of this pipe, or of a neighbouring pipe, change. */
+    public void onActionsChanged() {}
+
     public void onBlockPlaced() {}
 
     public void initialize() {}
 
+    /** Called when the pipe is removed from the world, either because it was broken or because its chunk was
+     * unloaded. */
+    public void onUnload() {}
+
     public boolean inputOpen(EnumFacing from) {
         return inputsOpen[from.ordinal()];
     }
@@ -5,6 +5,7 @@
 package buildcraft.transport;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.LinkedList;
@@ -19,6 +20,7 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.BlockPos;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.EnumFacing.Axis;
 import net.minecraft.util.Vec3;
@@ -29,12 +31,12 @@ import buildcraft.BuildCraftTransport;
 import buildcraft.api.core.BCLog;
 import buildcraft.api.tiles.IDebuggable;
 import buildcraft.api.transport.IPipeTile;
-import buildcraft.core.DefaultProps;
 import buildcraft.core.lib.inventory.Transactor;
 import buildcraft.core.lib.utils.BlockUtils;
 import buildcraft.core.lib.utils.Utils;
+import buildcraft.transport.network.ItemStackDictionary;
 import buildcraft.transport.network.PacketPipeTransportItemStackRequest;
-import buildcraft.transport.network.PacketPipeTransportTraveler;
+import buildcraft.transport.network.TravelerUpdate;
 import buildcraft.transport.pipes.bc8.PipeTransportItem_BC8;
 import buildcraft.transport.pipes.events.PipeEventItem;
 import buildcraft.transport.utils.TransportUtils;
@@ -44,7 +46,12 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
     public static final int MAX_PIPE_STACKS = PipeTransportItem_BC8.MAX_PIPE_STACKS;
     public static final int MAX_PIPE_ITEMS = PipeTransportItem_BC8.MAX_PIPE_ITEMS;
     public boolean allowBouncing = false;
-    public final TravelerSet items = new TravelerSet(this);
+    private static final double MIDDLE_DISTANCE = 0.3;
+    private static final double END_DISTANCE = 0.5;
+    private static final double OUT_OF_BOUNDS_DISTANCE = 1;
+
+    public final TravelerStore items = new TravelerStore(this);
+    private final ItemRouteCache routeCache = new ItemRouteCache();
 
     @Override
     public IPipeTile.PipeType getPipeType() {
@@ -60,8 +67,10 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
     }
 
     protected void defaultReadjustSpeed(TravelingItem item, float slowdownAmount) {
-        float speed = item.getSpeed();
+        item.setSpeed(slowDown(item.getSpeed(), slowdownAmount));
+    }
 
+    private static float slowDown(float speed, float slowdownAmount) {
         if (speed > TransportConstants.PIPE_MAX_SPEED) {
             speed = TransportConstants.PIPE_MAX_SPEED;
         }
@@ -74,7 +83,7 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
             speed = TransportConstants.PIPE_MIN_SPEED;
         }
 
-        item.setSpeed(speed);
+        return speed;
     }
 
     private void readjustPosition(TravelingItem item) {
@@ -90,16 +99,29 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
     }
 
     public void injectItem(TravelingItem item, EnumFacing inputOrientation) {
+        injectItem(item, inputOrientation, false);
+    }
+
+    /** @param fromPipe True if the item was passed on by the pipe next to this one, which clients do by themselves. If
+     *            the item then goes where {@link #predictOutput(TravelingItem)} and {@link #predictSpeed(float)} say it
+     *            will, players that already know about the item don't need to be told about it. */
+    private void injectItem(TravelingItem item, EnumFacing inputOrientation, boolean fromPipe) {
         if (item.isCorrupted()) {
             // Safe guard - if for any reason the item is corrupted at this
             // stage, avoid adding it to the pipe to avoid further exceptions.
             return;
         }
 
+        float previousSpeed = item.getSpeed();
         item.reset();
         item.input = inputOrientation;
 
-        readjustSpeed(item);
+        if (fromPipe && container.getWorld().isRemote && BuildCraftTransport.predictItemMotion) {
+            // The same as the server assumes for predictable updates. If it isn't, the server sends the speed
+            item.setSpeed(predictSpeed(previousSpeed));
+        } else {
+            readjustSpeed(item);
+        }
         readjustPosition(item);
 
         PipeEventItem.Entered event = new PipeEventItem.Entered(container.pipe, item);
@@ -110,12 +132,16 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
 
         if (!container.getWorld().isRemote) {
             item.output = resolveDestination(item);
+        } else if (fromPipe) {
+            item.output = predictOutput(item);
         }
 
         items.add(item);
 
         if (!container.getWorld().isRemote) {
-            sendTravelerPacket(item, false);
+            boolean predictable = fromPipe && BuildCraftTransport.predictItemMotion && item.output != null && item.output == predictOutput(item)
+                && item.getSpeed() == predictSpeed(previousSpeed);
+            sendTravelerPacket(item, false, predictable);
 
             int itemStackCount = getNumberOfStacks();
 
@@ -172,25 +198,116 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
         }
 
         items.unscheduleRemoval(item);
+        items.refresh(item);
 
         if (!container.getWorld().isRemote) {
-            sendTravelerPacket(item, true);
+            sendTravelerPacket(item, true, false);
+        }
+    }
+
+    /** Works out where an item that was passed on from the previous pipe will go next, using only what clients know
+     * about this pipe: if it is connected to exactly one other side then the item will go there.
+     *
+     * @return The predicted output, or null if this pipe is a junction or a dead end. */
+    public EnumFacing predictOutput(TravelingItem item) {
+        if (item.input == null) {
+            return null;
+        }
+        EnumFacing output = null;
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (face == item.input.getOpposite() || !container.renderState.pipeConnectionMatrix.isConnected(face)) {
+                continue;
+            }
+            if (output != null) {
+                return null;
+            }
+            output = face;
         }
+        return output;
+    }
+
+    /** @return The speed that an item going at the given speed would have after entering a pipe that doesn't change
+     *         the speed of items itself. */
+    public static float predictSpeed(float speed) {
+        return slowDown(speed, TransportConstants.PIPE_SLOWDOWN_SPEED);
     }
 
     public EnumFacing resolveDestination(TravelingItem data) {
-        List<EnumFacing> validDestinations = getPossibleMovements(data);
+        if (!canCacheRoute(data)) {
+            List<EnumFacing> validDestinations = getPossibleMovements(data);
+
+            if (validDestinations.isEmpty()) {
+                return null;
+            }
+
+            return validDestinations.get(0);
+        }
 
-        if (validDestinations.isEmpty()) {
+        long now = container.getWorld().getTotalWorldTime();
+        int cached = routeCache.find(data, now);
+        if (cached >= 0) {
+            // Finding the destinations would have done this
+            data.blacklist.add(data.input.getOpposite());
+            return routeCache.pick(cached, container.getWorld().rand);
+        }
+
+        PipeEventItem.FindDest event = findDestinations(data);
+        if (event.cacheable) {
+            routeCache.put(data, event.destinations, event.shuffle, now);
+        }
+
+        if (event.destinations.isEmpty()) {
             return null;
+        } else if (event.shuffle) {
+            return event.destinations.get(container.getWorld().rand.nextInt(event.destinations.size()));
         }
+        return event.destinations.get(0);
+    }
+
+    /** Only items which the pipe hasn't bounced back before, and that have nothing that could change how they are
+     * routed other than their item, colour and input side, can use the route cache. */
+    private boolean canCacheRoute(TravelingItem item) {
+        if (item.input == null || item.getItemStack() == null || item.hasExtraData()) {
+            return false;
+        }
+        if (item.getInsertionHandler() != TravelingItem.DEFAULT_INSERTION_HANDLER) {
+            return false;
+        }
+        return item.blacklist.isEmpty() || (item.blacklist.size() == 1 && item.blacklist.contains(item.input.getOpposite()));
+    }
 
-        return validDestinations.get(0);
+    /** Throws away every cached route. This should be called whenever something that changes where items go changes,
+     * such as a neighbour, a pluggable, a gate action or a filter. */
+    public void invalidateRouteCache() {
+        routeCache.invalidate();
+    }
+
+    @Override
+    public void onNeighborChange(EnumFacing direction) {
+        super.onNeighborChange(direction);
+        routeCache.invalidate();
+    }
+
+    @Override
+    public void onActionsChanged() {
+        super.onActionsChanged();
+        routeCache.invalidate();
     }
 
     /** Returns a list of all possible movements, that is to say adjacent implementers of IPipeEntry or
      * TileEntityChest. */
     public List<EnumFacing> getPossibleMovements(TravelingItem item) {
+        PipeEventItem.FindDest event = findDestinations(item);
+        List<EnumFacing> result = event.destinations;
+
+        if (event.shuffle) {
+            Collections.shuffle(result);
+        }
+
+        return result;
+    }
+
+    private PipeEventItem.FindDest findDestinations(TravelingItem item) {
         LinkedList<EnumFacing> result = new LinkedList<EnumFacing>();
 
         item.blacklist.add(item.input.getOpposite());
@@ -213,11 +330,7 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
             }
         }
 
-        if (event.shuffle) {
-            Collections.shuffle(result);
-        }
-
-        return result;
+        return event;
     }
 
     private boolean canReceivePipeObjects(EnumFacing o, TravelingItem item) {
@@ -253,26 +366,35 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
     private void moveSolids() {
         items.flush();
 
+        BlockPos pos = container.getPos();
+        double middleX = pos.getX() + 0.5;
+        double middleY = pos.getY() + 0.5;
+        double middleZ = pos.getZ() + 0.5;
+
         items.iterating = true;
-        for (TravelingItem item : items) {
+        // Nothing is added to or removed from the store while iterating, so the slots don't move around
+        for (int slot = 0; slot < items.size(); slot++) {
+            TravelingItem item = items.get(slot);
             if (item.getContainer() != this.container) {
                 items.scheduleRemoval(item);
                 continue;
             }
 
-            EnumFacing face = item.toCenter ? item.input : item.output;
-            item.movePosition(Utils.convert(face, item.getSpeed()));
+            items.move(slot);
+            double distance = items.distanceTo(slot, middleX, middleY, middleZ);
 
-            if ((item.toCenter && middleReached(item)) || outOfBounds(item)) {
+            if ((item.toCenter && distance < MIDDLE_DISTANCE) || distance > OUT_OF_BOUNDS_DISTANCE) {
                 if (item.isCorrupted()) {
                     items.remove(item);
+                    releaseTraveler(item);
                     continue;
                 }
 
                 item.toCenter = false;
 
                 // Reajusting to the middle
-                item.pos = Utils.convert(container.getPos()).add(new Vec3(0.5, TransportUtils.getPipeFloorOf(item.getItemStack()), 0.5));
+                items.setPosition(slot, middleX, pos.getY() + TransportUtils.getPipeFloorOf(item.getItemStack()), middleZ);
+                items.syncPosition(slot);
 
                 if (item.output == null) {
                     if (items.scheduleRemoval(item)) {
@@ -282,21 +404,25 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
                     PipeEventItem.ReachedCenter event = new PipeEventItem.ReachedCenter(container.pipe, item);
                     container.pipe.eventBus.handleEvent(event);
                 }
+                items.setDirection(slot, item.output);
 
-            } else if (!item.toCenter && endReached(item)) {
+            } else if (!item.toCenter && distance > END_DISTANCE) {
                 if (item.isCorrupted()) {
                     items.remove(item);
+                    releaseTraveler(item);
                     continue;
                 }
 
                 if (item.output == null) {
                     // TODO: Figure out why this is actually happening.
                     items.scheduleRemoval(item);
+                    releaseTraveler(item);
                     BCLog.logger.warn("Glitched item [Output direction UNKNOWN] removed from world @ " + container.getPos().getX() + ", " + container
                             .getPos().getY() + ", " + container.getPos().getZ() + "!");
                     continue;
                 }
 
+                items.syncPosition(slot);
                 TileEntity tile = container.getTile(item.output, true);
 
                 PipeEventItem.ReachedEnd event = new PipeEventItem.ReachedEnd(container.pipe, item, tile);
@@ -317,7 +443,7 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
         if (tile instanceof IPipeTile) {
             Pipe<?> pipe = (Pipe<?>) ((IPipeTile) tile).getPipe();
             if (BlockGenericPipe.isValid(pipe) && pipe.transport instanceof PipeTransportItems) {
-                ((PipeTransportItems) pipe.transport).injectItem(item, item.output);
+                ((PipeTransportItems) pipe.transport).injectItem(item, item.output, true);
                 return true;
             }
         }
@@ -335,10 +461,15 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
                 }
 
                 if (item.getItemStack().stackSize > 0) {
+                    // The inventory is full or refused the item, so the routes that led here are out of date
+                    routeCache.invalidate();
                     reverseItem(item);
+                } else {
+                    releaseTraveler(item);
                 }
             }
         } else {
+            routeCache.invalidate();
             dropItem(item);
         }
     }
@@ -348,6 +479,8 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
             return;
         }
 
+        releaseTraveler(item);
+
         PipeEventItem.DropItem event = new PipeEventItem.DropItem(container.pipe, item, item.toEntityItem());
         container.pipe.eventBus.handleEvent(event);
 
@@ -369,18 +502,18 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
 
     protected boolean middleReached(TravelingItem item) {
         //float middleLimit = item.getSpeed() * 1.01F;
-        return Utils.convertMiddle(container.getPos()).subtract(item.pos).lengthVector() < 0.3;
+        return Utils.convertMiddle(container.getPos()).subtract(item.pos).lengthVector() < MIDDLE_DISTANCE;
     }
 
     protected boolean endReached(TravelingItem item) {
-        return item.pos.distanceTo(Utils.convertMiddle(container.getPos())) > 0.5;
+        return item.pos.distanceTo(Utils.convertMiddle(container.getPos())) > END_DISTANCE;
         // return item.pos.xCoord > container.getPos().getX() + 1 || item.pos.xCoord < container.x() || item.pos.yCoord
         // > container.y() + 1
         // || item.pos.yCoord < container.y() || item.pos.zCoord > container.z() + 1 || item.pos.zCoord < container.z();
     }
 
     protected boolean outOfBounds(TravelingItem item) {
-        return item.pos.distanceTo(Utils.convertMiddle(container.getPos())) > 1;
+        return item.pos.distanceTo(Utils.convertMiddle(container.getPos())) > OUT_OF_BOUNDS_DISTANCE;
         // return item.pos.xCoord > container.x() + 2 || item.pos.xCoord < container.x() - 1 || item.pos.yCoord >
         // container.y() + 2
         // || item.pos.yCoord < container.y() - 1 || item.pos.zCoord > container.z() + 2 || item.pos.zCoord <
@@ -421,6 +554,7 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
 
         NBTTagList nbttaglist = new NBTTagList();
 
+        items.syncPositions();
         for (TravelingItem item : items) {
             NBTTagCompound dataTag = new NBTTagCompound();
             nbttaglist.appendTag(dataTag);
@@ -432,57 +566,63 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
 
     protected void doWork() {}
 
-    /** Handles a packet describing a stack of items inside a pipe.
+    /** Handles an update describing a stack of items inside a pipe.
      *
-     * @param packet */
-    public void handleTravelerPacket(PacketPipeTransportTraveler packet) {
-        TravelingItem item = TravelingItem.clientCache.get(packet.getTravelingEntityId());
+     * @param update */
+    public void handleTravelerUpdate(TravelerUpdate update) {
+        TravelingItem item = TravelingItem.clientCache.get(update.id);
 
         if (item == null) {
-            item = TravelingItem.make(packet.getTravelingEntityId());
+            item = TravelingItem.make(update.id);
         }
 
-        if (item.getContainer() != container) {
-            items.add(item);
+        if (update.stackId >= 0) {
+            item.setItemStack(ItemStackDictionary.getClientStack(update.stackId));
         }
 
-        if (packet.forceStackRefresh() || item.getItemStack() == null) {
-            BuildCraftTransport.instance.sendToServer(new PacketPipeTransportItemStackRequest(container, packet));
+        if (item.getItemStack() == null) {
+            // This client has lost track of the item, so the server won't send its stack again by itself
+            BuildCraftTransport.instance.sendToServer(new PacketPipeTransportItemStackRequest(container, update.id));
         }
 
-        item.pos = packet.getItemPos();
+        item.pos = update.itemPos;
 
-        item.setSpeed(packet.getSpeed());
+        if (update.hasSpeed) {
+            item.setSpeed(update.speed);
+        }
 
         item.toCenter = true;
-        item.input = packet.getInputOrientation();
-        item.output = packet.getOutputOrientation();
-        item.color = packet.getColor();
+        item.input = update.input;
+        item.output = update.output;
+        if (update.hasColor) {
+            item.color = update.color;
+        }
+
+        // The store copies the position, speed and direction of the item, so this has to happen after they are set
+        if (item.getContainer() != container) {
+            items.add(item);
+        } else {
+            items.refresh(item);
+        }
     }
 
-    private void sendTravelerPacket(TravelingItem data, boolean forceStackRefresh) {
-        PacketPipeTransportTraveler packet = new PacketPipeTransportTraveler(container, data, forceStackRefresh);
-        BuildCraftTransport.instance.sendToPlayers(packet, container.getWorld(), container.getPos(), DefaultProps.PIPE_CONTENTS_RENDER_DIST);
+    private void sendTravelerPacket(TravelingItem data, boolean forceStackRefresh, boolean predictable) {
+        BuildCraftTransport.travelerSyncBatcher.queue(container, data, forceStackRefresh, predictable);
     }
 
-    public int getNumberOfStacks() {
-        int num = 0;
-        for (TravelingItem item : items) {
-            if (!item.ignoreWeight()) {
-                num++;
-            }
+    /** Lets players forget about an item that has left the pipe network, as its id will be given to another one. */
+    private void releaseTraveler(TravelingItem item) {
+        if (!container.getWorld().isRemote) {
+            BuildCraftTransport.travelerSyncBatcher.release(container.getWorld(), item.id);
         }
-        return num;
+    }
+
+    public int getNumberOfStacks() {
+        return items.getNumberOfStacks();
     }
 
     public int getNumberOfItems() {
-        int num = 0;
-        for (TravelingItem item : items) {
-            if (!item.ignoreWeight() && item.getItemStack() != null) {
-                num += item.getItemStack().stackSize;
-            }
-        }
-        return num;
+        return items.getNumberOfItems();
     }
 
     protected void neighborChange() {}
@@ -507,12 +647,50 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
     /** Group all items that are similar, that is to say same dmg, same id, same nbt and no contribution controlling
      * them */
     public void groupEntities() {
-        for (TravelingItem item : items) {
+        int size = items.size();
+        if (size < 2) {
+            return;
+        }
+
+        // Sort the slots by their grouping hash (in the upper 32 bits) so only items with the same hash are compared
+        long[] buckets = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < size; slot++) {
+            TravelingItem item = items.get(slot);
+            if (!item.isCorrupted() && !item.hasExtraData()) {
+                buckets[count++] = ((long) item.getGroupingHash() << 32) | slot;
+            }
+        }
+        Arrays.sort(buckets, 0, count);
+
+        int start = 0;
+        while (start < count) {
+            int end = start + 1;
+            while (end < count && (buckets[end] >>> 32) == (buckets[start] >>> 32)) {
+                end++;
+            }
+            groupBucket(buckets, start, end);
+            start = end;
+        }
+    }
+
+    private void groupBucket(long[] buckets, int start, int end) {
+        for (int i = start; i < end; i++) {
+            int slot = (int) buckets[i];
+            TravelingItem item = items.get(slot);
             if (item.isCorrupted()) {
                 continue;
             }
-            for (TravelingItem otherItem : items) {
+            for (int j = start; j < end; j++) {
+                int otherSlot = (int) buckets[j];
+                TravelingItem otherItem = items.get(otherSlot);
+                ItemStack otherStack = otherItem.getItemStack();
+                if (i == j || otherStack == null || otherStack.stackSize >= otherStack.getMaxStackSize()) {
+                    continue;
+                }
                 if (item.tryMergeInto(otherItem)) {
+                    items.updateStackSize(slot);
+                    items.updateStackSize(otherSlot);
                     break;
                 }
             }
@@ -524,6 +702,7 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
         groupEntities();
 
         for (TravelingItem item : items) {
+            releaseTraveler(item);
             if (!item.isCorrupted()) {
                 container.pipe.dropItem(item.getItemStack());
             }
@@ -557,6 +736,10 @@ public class PipeTransportItems extends PipeTransport implements IDebuggable {
         left.add("");
         left.add("PipeTransportItems");
         left.add("- Items: " + getNumberOfStacks() + "/" + MAX_PIPE_STACKS + " (" + getNumberOfItems() + "/" + MAX_PIPE_ITEMS + ")");
+        long lookups = routeCache.getHits() + routeCache.getMisses();
+        left.add("- Route cache: " + routeCache.getHits() + "/" + lookups + " hits (" + (lookups == 0 ? 0 : routeCache.getHits() * 100 / lookups)
+            + "%)");
+        items.syncPositions();
         for (TravelingItem item : items) {
             left.add("");
             left.add("  - " + item.itemStack);
@@ -59,17 +59,30 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
     private boolean needsInit = true;
 
     private int[] powerQuery = new int[6];
+    private final int[] transferQuery = new int[6];
 
     private long currentDate;
     private double[] internalPower = new double[6];
 
     private SafeTimeTracker tracker = new SafeTimeTracker(2 * BuildCraftCore.updateFactor);
+    /** The last power update that was sent, to tell if the next one changes anything. */
+    private PacketPowerUpdate lastUpdate;
 
     /** Used at the client to show flow properly */
     public double[] clientDisplayFlow = new double[6];
     public Vec3 clientDisplayFlowCentre = Utils.VEC_ZERO;
     public long clientLastDisplayTime = 0;
 
+    /** The network that this pipe is part of, only used if {@link BuildCraftTransport#useNetworkSolver} is enabled. */
+    PowerNetwork network;
+    /** The power pipes connected to each side when the network was found. */
+    final PipeTransportPower[] networkNeighbours = new PipeTransportPower[6];
+    /** The state of the current pass of the network solver, see {@link PowerNetwork#solve(long)}. */
+    final int[] solverDemand = new int[6];
+    PipeTransportPower solverParent;
+    int solverInput;
+    double solverNeed, solverAvailable;
+
     public PipeTransportPower() {
         for (int i = 0; i < 6; ++i) {
             powerQuery[i] = 0;
@@ -144,6 +157,39 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
     public void onNeighborChange(EnumFacing side) {
         super.onNeighborChange(side);
         updateTile(side);
+        if (network != null && findNetworkNeighbour(side) != networkNeighbours[side.ordinal()]) {
+            network.invalidate();
+        }
+    }
+
+    @Override
+    public void onUnload() {
+        if (network != null) {
+            network.invalidate();
+            network = null;
+        }
+    }
+
+    /** @return The power pipe that this pipe is connected to on the given side, if that pipe is connected back. */
+    PipeTransportPower findNetworkNeighbour(EnumFacing side) {
+        if (!container.isPipeConnected(side) || !container.getWorld().isBlockLoaded(container.getPos().offset(side))) {
+            return null;
+        }
+        TileEntity tile = container.getTile(side);
+        if (!(tile instanceof TileGenericPipe) || tile.isInvalid()) {
+            return null;
+        }
+        TileGenericPipe pipe = (TileGenericPipe) tile;
+        if (!BlockGenericPipe.isValid(pipe.pipe) || !(pipe.pipe.transport instanceof PipeTransportPower) || !pipe.isPipeConnected(side
+                .getOpposite())) {
+            return null;
+        }
+        return (PipeTransportPower) pipe.pipe.transport;
+    }
+
+    /** @return True if this pipe has not been removed or unloaded, so it can still be part of a network. */
+    boolean isInWorld() {
+        return container != null && !container.isInvalid() && container.pipe != null && container.pipe.transport == this;
     }
 
     private void updateTile(EnumFacing side) {
@@ -161,7 +207,7 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
         providers[o] = getEnergyProvider(o);
     }
 
-    private void init() {
+    void init() {
         if (needsInit) {
             needsInit = false;
             for (EnumFacing side : EnumFacing.VALUES) {
@@ -181,21 +227,39 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
         return CompatHooks.INSTANCE.getEnergyProvider(tiles[side]);
     }
 
+    /** Forgets about any neighbouring tiles that have been removed since the last tick.
+     * 
+     * @return True if one of them was a pipe. */
+    boolean refreshTiles() {
+        boolean pipeRemoved = false;
+        for (EnumFacing side : EnumFacing.VALUES) {
+            if (tiles[side.ordinal()] != null && tiles[side.ordinal()].isInvalid()) {
+                pipeRemoved |= tiles[side.ordinal()] instanceof IPipeTile;
+                updateTile(side);
+            }
+        }
+        return pipeRemoved;
+    }
+
     @Override
     public void updateEntity() {
         if (container.getWorld().isRemote) {
             return;
         }
 
+        if (BuildCraftTransport.useNetworkSolver) {
+            if (network == null || !network.isValid()) {
+                network = PowerNetwork.discover(this);
+            }
+            network.solve(container.getWorld().getTotalWorldTime());
+            return;
+        }
+
         step();
 
         init();
 
-        for (EnumFacing side : EnumFacing.VALUES) {
-            if (tiles[side.ordinal()] != null && tiles[side.ordinal()].isInvalid()) {
-                updateTile(side);
-            }
-        }
+        refreshTiles();
 
         // FIXME: LEFT OVER FROM MERGE! LOOK AT THIS!
         Arrays.fill(displayFlow, (short) 0);
@@ -234,18 +298,7 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
                                 displayFlow[i] = 1;
                                 displayFlow[j] = -1;
                             } else {
-                                int iWatts = (int) watts;
-                                if (ep instanceof IEnergyHandler) {
-                                    IEnergyHandler handler = (IEnergyHandler) ep;
-                                    if (handler.canConnectEnergy(EnumFacing.values()[j].getOpposite())) {
-                                        iWatts = handler.receiveEnergy(EnumFacing.values()[j].getOpposite(), iWatts, false);
-                                    }
-                                } else if (ep instanceof IEnergyReceiver) {
-                                    IEnergyReceiver handler = (IEnergyReceiver) ep;
-                                    if (handler.canConnectEnergy(EnumFacing.values()[j].getOpposite())) {
-                                        iWatts = handler.receiveEnergy(EnumFacing.values()[j].getOpposite(), iWatts, false);
-                                    }
-                                }
+                                int iWatts = sendToReceiver(j, (int) watts);
 
                                 internalPower[i] -= iWatts;
                                 dbgEnergyOutput[j] += iWatts;
@@ -263,56 +316,15 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
             }
         }
 
-        short highestPower = 0;
-        for (int i = 0; i < 6; i++) {
-            powerAverage[i].tick();
-            displayPower[i] = (short) Math.round(powerAverage[i].getAverage());
-            if (displayPower[i] > highestPower) {
-                highestPower = displayPower[i];
-            }
-        }
-
-        overload += highestPower > (maxPower * 0.95F) ? 1 : -1;
-        if (overload < 0) {
-            overload = 0;
-        }
-        if (overload > OVERLOAD_TICKS) {
-            overload = OVERLOAD_TICKS;
-        }
-
         // Compute the tiles requesting energy that are not power pipes
         for (EnumFacing dir : EnumFacing.VALUES) {
-            if (!outputOpen(dir)) {
-                continue;
-            }
-
-            Object tile = providers[dir.ordinal()];
-
-            if (tile instanceof IPipeTile && ((IPipeTile) tile).getPipe() != null && ((Pipe<?>) ((IPipeTile) tile)
-                    .getPipe()).transport instanceof PipeTransportPower) {
-                continue;
-            }
-            if (tile instanceof IEnergyHandler) {
-                IEnergyHandler handler = (IEnergyHandler) tile;
-                if (handler.canConnectEnergy(dir.getOpposite())) {
-                    int request = handler.receiveEnergy(dir.getOpposite(), this.maxPower, true);
-                    if (request > 0) {
-                        requestEnergy(dir, request);
-                    }
-                }
-            } else if (tile instanceof IEnergyReceiver) {
-                IEnergyReceiver handler = (IEnergyReceiver) tile;
-                if (handler.canConnectEnergy(dir.getOpposite())) {
-                    int request = handler.receiveEnergy(dir.getOpposite(), this.maxPower, true);
-                    if (request > 0) {
-                        requestEnergy(dir, request);
-                    }
-                }
+            int request = getReceiverDemand(dir.ordinal());
+            if (request > 0) {
+                requestEnergy(dir, request);
             }
         }
 
         // Sum the amount of energy requested on each side
-        int[] transferQuery = new int[6];
         for (int i = 0; i < 6; ++i) {
             transferQuery[i] = 0;
             if (!inputOpen(EnumFacing.getFront(i))) {
@@ -341,6 +353,29 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
             }
         }
 
+        updateDisplay();
+    }
+
+    /** Averages the power that went through each side over the last few ticks, and sends it to the clients every now
+     * and then. */
+    void updateDisplay() {
+        short highestPower = 0;
+        for (int i = 0; i < 6; i++) {
+            powerAverage[i].tick();
+            displayPower[i] = (short) Math.round(powerAverage[i].getAverage());
+            if (displayPower[i] > highestPower) {
+                highestPower = displayPower[i];
+            }
+        }
+
+        overload += highestPower > (maxPower * 0.95F) ? 1 : -1;
+        if (overload < 0) {
+            overload = 0;
+        }
+        if (overload > OVERLOAD_TICKS) {
+            overload = OVERLOAD_TICKS;
+        }
+
         if (tracker.markTimeIfDelay(container.getWorld())) {
             PacketPowerUpdate packet = new PacketPowerUpdate(container);
             packet.displayPower = new short[6];
@@ -351,17 +386,100 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
                 val *= POWER_STAGES;
                 packet.displayPower[i] = (short) val;
             }
-            packet.displayFlow = displayFlow;
+            packet.displayFlow = displayFlow.clone();
             packet.overload = isOverloaded();
+            // Only repeats can be dropped, so the latest change always reaches the client
+            packet.droppable = lastUpdate != null && packet.displaysSameAs(lastUpdate);
+            lastUpdate = packet;
             BuildCraftTransport.instance.sendToPlayersNear(packet, container);
         }
     }
 
+    /** @return How much energy the tile on the given side would accept, if it is not a power pipe. */
+    int getReceiverDemand(int side) {
+        EnumFacing dir = EnumFacing.VALUES[side];
+        if (!outputOpen(dir)) {
+            return 0;
+        }
+
+        Object tile = providers[side];
+
+        if (tile instanceof IPipeTile && ((IPipeTile) tile).getPipe() != null && ((Pipe<?>) ((IPipeTile) tile)
+                .getPipe()).transport instanceof PipeTransportPower) {
+            return 0;
+        }
+        if (tile instanceof IEnergyHandler) {
+            IEnergyHandler handler = (IEnergyHandler) tile;
+            if (handler.canConnectEnergy(dir.getOpposite())) {
+                return handler.receiveEnergy(dir.getOpposite(), this.maxPower, true);
+            }
+        } else if (tile instanceof IEnergyReceiver) {
+            IEnergyReceiver handler = (IEnergyReceiver) tile;
+            if (handler.canConnectEnergy(dir.getOpposite())) {
+                return handler.receiveEnergy(dir.getOpposite(), this.maxPower, true);
+            }
+        }
+        return 0;
+    }
+
+    /** Gives energy to the tile on the given side, if it is not a power pipe.
+     * 
+     * @return How much of it was accepted. */
+    int sendToReceiver(int side, int amount) {
+        EnumFacing from = EnumFacing.VALUES[side].getOpposite();
+        Object ep = providers[side];
+        if (ep instanceof IEnergyHandler) {
+            IEnergyHandler handler = (IEnergyHandler) ep;
+            if (handler.canConnectEnergy(from)) {
+                return handler.receiveEnergy(from, amount, false);
+            }
+        } else if (ep instanceof IEnergyReceiver) {
+            IEnergyReceiver handler = (IEnergyReceiver) ep;
+            if (handler.canConnectEnergy(from)) {
+                return handler.receiveEnergy(from, amount, false);
+            }
+        }
+        return amount;
+    }
+
+    /** Takes all of the power that was given to this pipe during the last tick, for the network solver. The side that
+     * most of it came in through is remembered as the {@link #solverInput}. */
+    double takeStoredPower() {
+        double total = 0, most = 0;
+        solverInput = -1;
+        for (int i = 0; i < 6; i++) {
+            if (internalPower[i] > most) {
+                most = internalPower[i];
+                solverInput = i;
+            }
+            total += internalPower[i];
+            internalPower[i] = 0;
+        }
+        return total;
+    }
+
+    /** Keeps power that the network solver couldn't hand out until the next tick. */
+    void storePower(double power) {
+        internalNextPower[solverInput < 0 ? 0 : solverInput] += power;
+    }
+
+    /** Records power that the network solver moved out through the given side, for the display. */
+    void recordFlow(int side, double power) {
+        int watts = (int) Math.ceil(power);
+        powerAverage[side].push(watts);
+        displayFlow[side] = -1;
+        dbgEnergyOutput[side] += watts;
+        if (solverInput >= 0) {
+            powerAverage[solverInput].push(watts);
+            displayFlow[solverInput] = 1;
+        }
+    }
+
     public boolean isOverloaded() {
         return overload >= OVERLOAD_TICKS;
     }
 
-    private void step() {
+    void step() {
         if (container != null && container.getWorld() != null && currentDate != container.getWorld().getTotalWorldTime()) {
             currentDate = container.getWorld().getTotalWorldTime();
 
@@ -369,8 +487,10 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
             Arrays.fill(dbgEnergyOffered, 0);
             Arrays.fill(dbgEnergyOutput, 0);
 
+            int[] query = powerQuery;
             powerQuery = nextPowerQuery;
-            nextPowerQuery = new int[6];
+            nextPowerQuery = query;
+            Arrays.fill(nextPowerQuery, 0);
 
             double[] next = internalPower;
             internalPower = internalNextPower;
@@ -423,13 +543,23 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
     public void requestEnergy(EnumFacing from, int amount) {
         step();
 
+        nextPowerQuery[from.ordinal()] += queryEnergy(from, amount);
+    }
+
+    /** @return How much of the requested energy this pipe is willing to pass on through the given side. */
+    int queryEnergy(EnumFacing from, int amount) {
         if (this.container.pipe instanceof IPipeTransportPowerHook) {
-            nextPowerQuery[from.ordinal()] += ((IPipeTransportPowerHook) this.container.pipe).requestEnergy(from, amount);
+            return ((IPipeTransportPowerHook) this.container.pipe).requestEnergy(from, amount);
         } else {
-            nextPowerQuery[from.ordinal()] += amount;
+            return amount;
         }
     }
 
+    /** @return The fraction of the power given to this pipe that reaches the other side. */
+    double getLossFactor() {
+        return BuildCraftTransport.usePipeLoss ? 1.0F - powerResistance : 1.0;
+    }
+
     @Override
     public void initialize() {
         currentDate = container.getWorld().getTotalWorldTime();
@@ -510,6 +640,9 @@ public class PipeTransportPower extends PipeTransport implements IDebuggable {
             int ord = face.ordinal();
             left.add(" - " + face.getName2() + " " + displayPower[ord] + "RF");
         }
+        if (network != null) {
+            left.add("- Network: " + network.size() + " pipes");
+        }
         // left.add("- internalPower: " + Arrays.toString(internalPower) + " <- " + Arrays.toString(internalNextPower));
         // left.add("- powerQuery: " + Arrays.toString(powerQuery) + " <- " + Arrays.toString(nextPowerQuery));
         // left.add("- energy: IN " + Arrays.toString(dbgEnergyInput) + ", OUT " + Arrays.toString(dbgEnergyOutput));
@@ -0,0 +1,230 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.transport;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import net.minecraft.util.EnumFacing;
+
+/** A connected group of kinesis pipes that moves power from the pipes holding it to every receiver in the group in a
+ * single pass per tick, instead of each pipe passing it on to its neighbours one tick at a time. Only used if
+ * {@link buildcraft.BuildCraftTransport#useNetworkSolver} is enabled.
+ * <p>
+ * The pipes of a network and the connections between them are found once, and kept until one of the pipes is removed,
+ * unloaded or connected to a different pipe. Each tick the pipes are then:
+ * <ol>
+ * <li>Ordered breadth first from every pipe that holds power or that can take it in (wooden pipes), so that every pipe
+ * is fed by its closest source.</li>
+ * <li>Walked from the far end back towards the sources, adding up the power wanted by each receiver and limiting it to
+ * the capacity of every pipe on the way, grossed up by the loss of each pipe if pipe loss is enabled. Wooden pipes are
+ * asked for power the same way as they are by their neighbours without the solver.</li>
+ * <li>Walked from the sources towards the receivers, splitting the power of each pipe between its sides in proportion
+ * to what they asked for, the same way that a single pipe splits it.</li>
+ * </ol>
+ * Power that could not be handed out stays in the pipe that held it until the next tick. */
+public class PowerNetwork {
+    private final List<PipeTransportPower> pipes;
+    /** The pipes of the current pass, in the order that they were reached. */
+    private final PipeTransportPower[] order;
+    private boolean valid = true;
+    private long lastSolved = Long.MIN_VALUE;
+
+    private PowerNetwork(List<PipeTransportPower> pipes) {
+        this.pipes = pipes;
+        this.order = new PipeTransportPower[pipes.size()];
+    }
+
+    /** Finds every pipe connected to the given one, and makes them all part of a new network. */
+    public static PowerNetwork discover(PipeTransportPower start) {
+        List<PipeTransportPower> pipes = Lists.newArrayList();
+        Set<PipeTransportPower> found = Sets.newIdentityHashSet();
+        pipes.add(start);
+        found.add(start);
+
+        for (int i = 0; i < pipes.size(); i++) {
+            PipeTransportPower pipe = pipes.get(i);
+            pipe.init();
+            for (EnumFacing side : EnumFacing.VALUES) {
+                PipeTransportPower neighbour = pipe.findNetworkNeighbour(side);
+                pipe.networkNeighbours[side.ordinal()] = neighbour;
+                if (neighbour != null && found.add(neighbour)) {
+                    pipes.add(neighbour);
+                }
+            }
+        }
+
+        PowerNetwork network = new PowerNetwork(pipes);
+        for (PipeTransportPower pipe : pipes) {
+            if (pipe.network != null && pipe.network != network) {
+                pipe.network.invalidate();
+            }
+            pipe.network = network;
+        }
+        return network;
+    }
+
+    public void invalidate() {
+        valid = false;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public int size() {
+        return pipes.size();
+    }
+
+    /** Moves power through the whole network, if that has not already been done during the given tick. */
+    public void solve(long now) {
+        if (lastSolved == now) {
+            return;
+        }
+        lastSolved = now;
+
+        for (PipeTransportPower pipe : pipes) {
+            if (!pipe.isInWorld() || pipe.refreshTiles()) {
+                invalidate();
+            }
+        }
+        if (!valid) {
+            return;
+        }
+
+        int count = findSources();
+        reach(count);
+        requestPower();
+        sendPower();
+
+        for (PipeTransportPower pipe : pipes) {
+            pipe.updateDisplay();
+        }
+    }
+
+    /** Resets every pipe, and puts the pipes that hold or take in power at the start of the order.
+     *
+     * @return The number of sources. */
+    private int findSources() {
+        int count = 0;
+        for (PipeTransportPower pipe : pipes) {
+            pipe.step();
+            Arrays.fill(pipe.displayFlow, (short) 0);
+            Arrays.fill(pipe.solverDemand, 0);
+            pipe.solverParent = null;
+            pipe.solverNeed = 0;
+            pipe.solverAvailable = pipe.takeStoredPower();
+
+            if (pipe.solverAvailable > 0 || pipe.container.pipe instanceof IPipeTransportPowerHook) {
+                pipe.solverParent = pipe;
+                order[count++] = pipe;
+            }
+        }
+        return count;
+    }
+
+    /** Adds every pipe that can be reached from the sources to the order, breadth first. */
+    private void reach(int sources) {
+        int count = sources;
+        for (int i = 0; i < count; i++) {
+            PipeTransportPower pipe = order[i];
+            for (EnumFacing side : EnumFacing.VALUES) {
+                PipeTransportPower neighbour = pipe.networkNeighbours[side.ordinal()];
+                if (neighbour != null && neighbour.solverParent == null && pipe.outputOpen(side) && neighbour.inputOpen(side.getOpposite())) {
+                    neighbour.solverParent = pipe;
+                    neighbour.solverInput = side.getOpposite().ordinal();
+                    order[count++] = neighbour;
+                }
+            }
+        }
+        Arrays.fill(order, count, order.length, null);
+    }
+
+    /** Works out how much power every side of every reached pipe wants, from the far end back to the sources. */
+    private void requestPower() {
+        for (int i = order.length - 1; i >= 0; i--) {
+            PipeTransportPower pipe = order[i];
+            if (pipe == null) {
+                continue;
+            }
+
+            int total = 0;
+            for (EnumFacing side : EnumFacing.VALUES) {
+                int s = side.ordinal();
+                if (s == pipe.solverInput && pipe.solverParent != pipe) {
+                    continue;
+                }
+                PipeTransportPower neighbour = pipe.networkNeighbours[s];
+                int wanted;
+                if (neighbour != null) {
+                    wanted = neighbour.solverParent == pipe ? (int) Math.ceil(neighbour.solverNeed) : 0;
+                } else {
+                    wanted = pipe.getReceiverDemand(s);
+                }
+                if (wanted > 0) {
+                    wanted = pipe.queryEnergy(side, wanted);
+                    pipe.nextPowerQuery[s] += wanted;
+                    pipe.solverDemand[s] = wanted;
+                    total += wanted;
+                }
+            }
+
+            pipe.solverNeed = Math.min(total, pipe.maxPower) / pipe.getLossFactor();
+        }
+    }
+
+    /** Hands out the power of every pipe to its sides, from the sources towards the receivers. */
+    private void sendPower() {
+        for (int i = 0; i < order.length; i++) {
+            PipeTransportPower pipe = order[i];
+            if (pipe == null) {
+                break;
+            }
+
+            double available = pipe.solverAvailable;
+            int unusedQuery = 0;
+            for (int s = 0; s < 6; s++) {
+                unusedQuery += pipe.solverDemand[s];
+            }
+
+            if (available > 0 && unusedQuery > 0) {
+                for (int s = 0; s < 6 && unusedQuery > 0; s++) {
+                    int query = pipe.solverDemand[s];
+                    if (query <= 0) {
+                        continue;
+                    }
+                    double watts = Math.min(available * query / unusedQuery, available);
+                    unusedQuery -= query;
+
+                    double used;
+                    PipeTransportPower neighbour = pipe.networkNeighbours[s];
+                    if (neighbour != null) {
+                        double received = Math.min(watts * neighbour.getLossFactor(), neighbour.maxPower - neighbour.solverAvailable);
+                        if (received <= 0) {
+                            continue;
+                        }
+                        neighbour.solverAvailable += received;
+                        neighbour.dbgEnergyOffered[neighbour.solverInput] += watts;
+                        neighbour.dbgEnergyInput[neighbour.solverInput] += received;
+                        used = received / neighbour.getLossFactor();
+                    } else {
+                        used = pipe.sendToReceiver(s, (int) watts);
+                    }
+
+                    available -= used;
+                    pipe.recordFlow(s, used);
+                }
+            }
+
+            if (available > 0) {
+                pipe.storePower(available);
+            }
+        }
+    }
+}
@@ -325,6 +325,7 @@ public class TileGenericPipe extends TileEntity implements IFluidHandler, IPipeT
 
         if (pipe != null) {
             pipe.invalidate();
+            pipe.transport.onUnload();
         }
 
         sideProperties.invalidate();
@@ -609,11 +610,21 @@ public class TileGenericPipe extends TileEntity implements IFluidHandler, IPipeT
     public void scheduleNeighborChange() {
         blockNeighborChange = true;
         blockNeighborChangedSides = 0x3F;
+        invalidateRouteCache();
     }
 
     public void scheduleNeighborChange(EnumPipePart part) {
         blockNeighborChange = true;
         blockNeighborChangedSides |= part == EnumPipePart.CENTER ? 0x3F : (1 << part.ordinal());
+        invalidateRouteCache();
+    }
+
+    /** Neighbour changes are only handled after the pipe has moved its items, so routes that went through the changed
+     * neighbour are thrown away straight away. */
+    private void invalidateRouteCache() {
+        if (pipe != null && pipe.transport instanceof PipeTransportItems) {
+            ((PipeTransportItems) pipe.transport).invalidateRouteCache();
+        }
     }
 
     @Override
@@ -888,6 +899,7 @@ public class TileGenericPipe extends TileEntity implements IFluidHandler, IPipeT
     public void onChunkUnload() {
         if (pipe != null) {
             pipe.onChunkUnload();
+            pipe.transport.onUnload();
         }
     }
 
@@ -987,6 +999,7 @@ public class TileGenericPipe extends TileEntity implements IFluidHandler, IPipeT
             pipe.eventBus.registerHandler(pluggable);
             pluggable.onAttachedPipe(this, direction);
         }
+        invalidateRouteCache();
         notifyBlockChanged();
         return true;
     }
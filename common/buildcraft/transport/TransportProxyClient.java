@@ -19,6 +19,7 @@ import buildcraft.transport.render.FacadeItemModel;
 import buildcraft.transport.render.FacadePluggableModel;
 import buildcraft.transport.render.GateItemModel;
 import buildcraft.transport.render.GatePluggableModel;
+import buildcraft.transport.render.PipeModelCache;
 import buildcraft.transport.render.tile.PipeRendererTESR;
 
 public class TransportProxyClient extends TransportProxy {
@@ -50,6 +51,7 @@ public class TransportProxyClient extends TransportProxy {
         MinecraftForge.EVENT_BUS.register(LensPluggableModel.INSTANCE);
         MinecraftForge.EVENT_BUS.register(PlugPluggableModel.INSTANCE);
         MinecraftForge.EVENT_BUS.register(PowerAdapterModel.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(PipeModelCache.INSTANCE);
         MinecraftForge.EVENT_BUS.register(FluidRenderer.INSTANCE);
     }
 
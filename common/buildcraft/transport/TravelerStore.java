@@ -0,0 +1,387 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.transport;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.Lists;
+
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.Vec3;
+
+import buildcraft.core.lib.utils.IntIntHashMap;
+
+/** Holds every {@link TravelingItem} inside a single item pipe. The position, speed and movement direction of each item
+ * are kept in parallel arrays so that moving every item each tick can be done in place, without allocating a new
+ * {@link Vec3} per item. While an item is in this store the arrays are the real values: {@link TravelingItem#pos} is
+ * only updated by {@link #syncPosition(int)} whenever something outside of the pipe needs to read it.
+ * <p>
+ * Additions and removals made while {@link #iterating} is true are deferred until the next {@link #flush()}, and
+ * removals swap the last item into the removed slot, so slot indices are only stable between flushes. */
+public class TravelerStore implements Iterable<TravelingItem> {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int LOAD_DELAY = 10;
+    private static final byte NO_DIRECTION = -1;
+    private static final int NO_WEIGHT = -1;
+
+    public boolean iterating;
+
+    private final PipeTransportItems transport;
+    /** Maps {@link TravelingItem#id} to the slot it is stored in. */
+    private final IntIntHashMap slots = new IntIntHashMap(INITIAL_CAPACITY, -1);
+    private final List<TravelingItem> toLoad = Lists.newArrayList();
+    private final List<TravelingItem> toAdd = Lists.newArrayList();
+
+    private TravelingItem[] travelers = new TravelingItem[INITIAL_CAPACITY];
+    private double[] posX = new double[INITIAL_CAPACITY];
+    private double[] posY = new double[INITIAL_CAPACITY];
+    private double[] posZ = new double[INITIAL_CAPACITY];
+    private float[] speed = new float[INITIAL_CAPACITY];
+    /** The ordinal of the {@link EnumFacing} that each item is moving in, or {@link #NO_DIRECTION} */
+    private byte[] direction = new byte[INITIAL_CAPACITY];
+    private boolean[] removing = new boolean[INITIAL_CAPACITY];
+    /** The stack size that each item was counted with, or {@link #NO_WEIGHT} if it {@link TravelingItem#ignoreWeight()} */
+    private int[] weight = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private int stackCount = 0;
+    private int itemCount = 0;
+    private int removalCount = 0;
+    private int delay = 0;
+
+    public TravelerStore(PipeTransportItems transport) {
+        this.transport = transport;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(TravelingItem item) {
+        return slots.containsKey(item.id);
+    }
+
+    /** @return The item in the given slot, from 0 (inclusive) to {@link #size()} (exclusive). */
+    public TravelingItem get(int slot) {
+        return travelers[slot];
+    }
+
+    public double getX(int slot) {
+        return posX[slot];
+    }
+
+    public double getY(int slot) {
+        return posY[slot];
+    }
+
+    public double getZ(int slot) {
+        return posZ[slot];
+    }
+
+    public float getSpeed(int slot) {
+        return speed[slot];
+    }
+
+    /** @return The number of non-empty stacks in this store that don't {@link TravelingItem#ignoreWeight()}. Stacks that
+     *         have been merged into another one stop counting straight away, rather than when they are removed. */
+    public int getNumberOfStacks() {
+        return stackCount;
+    }
+
+    /** @return The total stack size of every item in this store that doesn't {@link TravelingItem#ignoreWeight()}. */
+    public int getNumberOfItems() {
+        return itemCount;
+    }
+
+    public boolean add(TravelingItem item) {
+        if (iterating) {
+            if (toAdd.contains(item)) {
+                return false;
+            }
+            return toAdd.add(item);
+        }
+        item.setContainer(transport.container);
+        int slot = slots.get(item.id);
+        if (slot >= 0) {
+            travelers[slot] = item;
+            load(slot, item);
+            uncount(slot);
+            count(slot, item);
+            return false;
+        }
+        ensureCapacity(size + 1);
+        slot = size++;
+        travelers[slot] = item;
+        removing[slot] = false;
+        load(slot, item);
+        count(slot, item);
+        slots.put(item.id, slot);
+        return true;
+    }
+
+    public boolean remove(TravelingItem item) {
+        if (iterating) {
+            return scheduleRemoval(item);
+        }
+        int slot = slots.get(item.id);
+        if (slot < 0) {
+            return false;
+        }
+        removeAt(slot);
+        return true;
+    }
+
+    /** Re-reads the position, speed and direction of an item that is already in this store, after they have been
+     * changed directly on the item. */
+    public void refresh(TravelingItem item) {
+        int slot = slots.get(item.id);
+        if (slot >= 0) {
+            load(slot, item);
+            uncount(slot);
+            count(slot, item);
+        }
+    }
+
+    /** Re-reads the stack size of an item that is already in this store, after its stack was changed directly. */
+    public void updateStackSize(TravelingItem item) {
+        int slot = slots.get(item.id);
+        if (slot >= 0) {
+            updateStackSize(slot);
+        }
+    }
+
+    /** Re-reads the stack size of the item in the given slot, after its stack was changed directly. */
+    public void updateStackSize(int slot) {
+        uncount(slot);
+        count(slot, travelers[slot]);
+    }
+
+    /** Moves the item in the given slot along its current direction by its current speed. */
+    public void move(int slot) {
+        byte dir = direction[slot];
+        if (dir == NO_DIRECTION) {
+            return;
+        }
+        EnumFacing face = EnumFacing.VALUES[dir];
+        float s = speed[slot];
+        posX[slot] += face.getFrontOffsetX() * s;
+        posY[slot] += face.getFrontOffsetY() * s;
+        posZ[slot] += face.getFrontOffsetZ() * s;
+    }
+
+    public double distanceTo(int slot, double x, double y, double z) {
+        double dx = posX[slot] - x;
+        double dy = posY[slot] - y;
+        double dz = posZ[slot] - z;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    public void setPosition(int slot, double x, double y, double z) {
+        posX[slot] = x;
+        posY[slot] = y;
+        posZ[slot] = z;
+    }
+
+    public void setDirection(int slot, EnumFacing face) {
+        direction[slot] = face == null ? NO_DIRECTION : (byte) face.ordinal();
+    }
+
+    /** Copies the position of the item in the given slot back into {@link TravelingItem#pos}. */
+    public void syncPosition(int slot) {
+        travelers[slot].pos = new Vec3(posX[slot], posY[slot], posZ[slot]);
+    }
+
+    /** Copies the position of every item back into {@link TravelingItem#pos}. */
+    public void syncPositions() {
+        for (int i = 0; i < size; i++) {
+            syncPosition(i);
+        }
+    }
+
+    public void scheduleLoad(TravelingItem item) {
+        delay = LOAD_DELAY;
+        toLoad.add(item);
+    }
+
+    /** @return True if the item was not already scheduled to be removed. */
+    public boolean scheduleRemoval(TravelingItem item) {
+        int slot = slots.get(item.id);
+        if (slot < 0) {
+            return toAdd.remove(item);
+        }
+        if (removing[slot]) {
+            return false;
+        }
+        removing[slot] = true;
+        removalCount++;
+        return true;
+    }
+
+    public boolean unscheduleRemoval(TravelingItem item) {
+        int slot = slots.get(item.id);
+        if (slot < 0 || !removing[slot]) {
+            return false;
+        }
+        removing[slot] = false;
+        removalCount--;
+        return true;
+    }
+
+    public void flush() {
+        loadScheduledItems();
+        addScheduledItems();
+        removeScheduledItems();
+    }
+
+    public void clear() {
+        if (iterating) {
+            for (int i = 0; i < size; i++) {
+                scheduleRemoval(travelers[i]);
+            }
+        } else {
+            Arrays.fill(travelers, 0, size, null);
+            slots.clear();
+            size = 0;
+            removalCount = 0;
+            stackCount = 0;
+            itemCount = 0;
+        }
+    }
+
+    @Override
+    public Iterator<TravelingItem> iterator() {
+        return new Iterator<TravelingItem>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public TravelingItem next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return travelers[next++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private void loadScheduledItems() {
+        if (toLoad.isEmpty()) {
+            return;
+        }
+        if (delay > 0) {
+            delay--;
+            return;
+        }
+        for (TravelingItem item : toLoad) {
+            add(item);
+        }
+        toLoad.clear();
+    }
+
+    private void addScheduledItems() {
+        if (toAdd.isEmpty()) {
+            return;
+        }
+        for (TravelingItem item : toAdd) {
+            add(item);
+        }
+        toAdd.clear();
+    }
+
+    private void removeScheduledItems() {
+        // Go backwards, as removing swaps the last item into the removed slot
+        for (int i = size - 1; i >= 0 && removalCount > 0; i--) {
+            if (removing[i]) {
+                travelers[i].cleanup();
+                removeAt(i);
+            }
+        }
+    }
+
+    private void load(int slot, TravelingItem item) {
+        if (item.pos != null) {
+            posX[slot] = item.pos.xCoord;
+            posY[slot] = item.pos.yCoord;
+            posZ[slot] = item.pos.zCoord;
+        } else if (transport.container != null) {
+            posX[slot] = transport.container.getPos().getX() + 0.5;
+            posY[slot] = transport.container.getPos().getY() + 0.5;
+            posZ[slot] = transport.container.getPos().getZ() + 0.5;
+        }
+        speed[slot] = item.getSpeed();
+        setDirection(slot, item.toCenter ? item.input : item.output);
+    }
+
+    private void count(int slot, TravelingItem item) {
+        if (item.ignoreWeight()) {
+            weight[slot] = NO_WEIGHT;
+            return;
+        }
+        weight[slot] = item.getItemStack() == null ? 0 : Math.max(0, item.getItemStack().stackSize);
+        if (weight[slot] > 0) {
+            stackCount++;
+            itemCount += weight[slot];
+        }
+    }
+
+    private void uncount(int slot) {
+        if (weight[slot] > 0) {
+            stackCount--;
+            itemCount -= weight[slot];
+        }
+    }
+
+    private void removeAt(int slot) {
+        if (removing[slot]) {
+            removalCount--;
+        }
+        uncount(slot);
+        slots.remove(travelers[slot].id);
+        int last = --size;
+        if (slot != last) {
+            travelers[slot] = travelers[last];
+            posX[slot] = posX[last];
+            posY[slot] = posY[last];
+            posZ[slot] = posZ[last];
+            speed[slot] = speed[last];
+            direction[slot] = direction[last];
+            removing[slot] = removing[last];
+            weight[slot] = weight[last];
+            slots.put(travelers[slot].id, slot);
+        }
+        travelers[last] = null;
+        removing[last] = false;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= travelers.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, travelers.length * 2);
+        travelers = Arrays.copyOf(travelers, newLength);
+        posX = Arrays.copyOf(posX, newLength);
+        posY = Arrays.copyOf(posY, newLength);
+        posZ = Arrays.copyOf(posZ, newLength);
+        speed = Arrays.copyOf(speed, newLength);
+        direction = Arrays.copyOf(direction, newLength);
+        removing = Arrays.copyOf(removing, newLength);
+        weight = Arrays.copyOf(weight, newLength);
+    }
+}
@@ -255,6 +255,20 @@ public class TravelingItem {
         return StackHelper.canStacksMerge(itemStack, otherItem.itemStack);
     }
 
+    /** @return A hash of everything that {@link #canBeGroupedWith(TravelingItem)} compares, so items that can be grouped
+     *         together always have the same hash. */
+    public int getGroupingHash() {
+        int hash = itemStack == null || itemStack.getItem() == null ? 0 : System.identityHashCode(itemStack.getItem());
+        if (itemStack != null) {
+            hash = 31 * hash + itemStack.getItemDamage();
+            hash = 31 * hash + (itemStack.hasTagCompound() ? itemStack.getTagCompound().hashCode() : 0);
+        }
+        hash = 31 * hash + (toCenter ? 1 : 0);
+        hash = 31 * hash + (output == null ? -1 : output.ordinal());
+        hash = 31 * hash + (color == null ? -1 : color.ordinal());
+        return hash;
+    }
+
     public boolean tryMergeInto(TravelingItem otherItem) {
         if (!canBeGroupedWith(otherItem)) {
             return false;
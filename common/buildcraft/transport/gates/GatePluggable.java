@@ -117,6 +117,18 @@ public class GatePluggable extends PipePluggable {
         return false;
     }
 
+    @Override
+    public boolean writeRenderKey(ByteBuf buf) {
+        buf.writeByte(material.ordinal());
+        buf.writeByte(logic.ordinal());
+        buf.writeBoolean(isLit);
+        buf.writeShort(expansions.length);
+        for (IGateExpansion expansion : expansions) {
+            buf.writeShort(GateExpansions.getExpansionID(expansion));
+        }
+        return true;
+    }
+
     @Override
     public ItemStack[] getDropItems(IPipeTile pipe) {
         ItemStack gate = ItemGate.makeGateItem(material, logic);
@@ -0,0 +1,112 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.transport.network;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+/** The stacks that have been sent to a single client, so that a {@link TravelerUpdate} only has to include a small id
+ * instead of the whole stack, and the client never has to ask the server for it.
+ * <p>
+ * The server keeps one dictionary per player, holding at most {@link #CAPACITY} stacks in least recently used order.
+ * When a new stack is needed and the dictionary is full the least recently used stack is evicted, and its id is given
+ * to the new stack. The definition of the new stack (sent before any update that uses it) tells the client to evict the
+ * old one, so the client holds exactly the same set of stacks without tracking anything itself. */
+public class ItemStackDictionary {
+    public static final int CAPACITY = 512;
+
+    /** Every stack that this client has been sent, by id. Only used on the client. */
+    private static final ItemStack[] clientStacks = new ItemStack[CAPACITY];
+
+    private final LinkedHashMap<StackKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Incremented for every definition, so that a reused id can be told apart from the stack it used to be. */
+    private int nextSerial = 1;
+
+    /** @return The entry of the given stack, or null if this client doesn't have it. */
+    public Entry find(ItemStack stack) {
+        return entries.get(new StackKey(stack));
+    }
+
+    /** Adds a stack that this client doesn't have yet, evicting the least recently used stack if this is full. The
+     * definition in the returned entry has to be sent before its id is used. */
+    public Entry add(ItemStack stack) {
+        int id;
+        if (entries.size() < CAPACITY) {
+            id = entries.size();
+        } else {
+            Iterator<Entry> eldest = entries.values().iterator();
+            id = eldest.next().id;
+            eldest.remove();
+        }
+
+        // The stacks of traveling items are modified directly, so the dictionary needs its own copy
+        ItemStack copy = stack.copy();
+        Entry entry = new Entry(id, nextSerial++, copy);
+        entries.put(new StackKey(copy), entry);
+        return entry;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Called on the client when a definition is received, replacing whichever stack had the id before. */
+    public static void setClientStack(int id, ItemStack stack) {
+        clientStacks[id] = stack;
+    }
+
+    /** @return A copy of the stack with the given id on the client, or null if it has not been defined. */
+    public static ItemStack getClientStack(int id) {
+        ItemStack stack = clientStacks[id];
+        return stack == null ? null : stack.copy();
+    }
+
+    public static final class Entry {
+        public final int id;
+        /** Unique to this definition, even if the id is reused later on. */
+        public final int serial;
+        public final ItemStack stack;
+
+        private Entry(int id, int serial, ItemStack stack) {
+            this.id = id;
+            this.serial = serial;
+            this.stack = stack;
+        }
+    }
+
+    /** An item, damage, stack size and NBT. */
+    private static final class StackKey {
+        private final ItemStack stack;
+        private final int hash;
+
+        private StackKey(ItemStack stack) {
+            this.stack = stack;
+            Item item = stack.getItem();
+            int h = System.identityHashCode(item);
+            h = 31 * h + stack.getItemDamage();
+            h = 31 * h + stack.stackSize;
+            h = 31 * h + (stack.hasTagCompound() ? stack.getTagCompound().hashCode() : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof StackKey)) {
+                return false;
+            }
+            StackKey other = (StackKey) obj;
+            return hash == other.hash && stack.getItem() == other.stack.getItem() && stack.getItemDamage() == other.stack.getItemDamage()
+                && stack.stackSize == other.stack.stackSize && ItemStack.areItemStackTagsEqual(stack, other.stack);
+        }
+    }
+}
@@ -10,6 +10,9 @@ import net.minecraft.world.World;
 
 import buildcraft.core.lib.network.base.Packet;
 import buildcraft.core.lib.utils.NetworkUtils;
+import buildcraft.transport.Pipe;
+import buildcraft.transport.PipeTransportItems;
+import buildcraft.transport.TileGenericPipe;
 import buildcraft.transport.TravelingItem;
 
 import io.netty.buffer.ByteBuf;
@@ -54,6 +57,12 @@ public class PacketPipeTransportItemStack extends Packet {
         TravelingItem item = TravelingItem.clientCache.get(entityId);
         if (item != null) {
             item.setItemStack(stack);
+            if (item.getContainer() instanceof TileGenericPipe) {
+                Pipe<?> pipe = ((TileGenericPipe) item.getContainer()).pipe;
+                if (pipe != null && pipe.transport instanceof PipeTransportItems) {
+                    ((PipeTransportItems) pipe.transport).items.updateStackSize(item);
+                }
+            }
         }
     }
 }
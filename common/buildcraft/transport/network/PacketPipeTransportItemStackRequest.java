@@ -23,9 +23,9 @@ public class PacketPipeTransportItemStackRequest extends Packet {
 
     }
 
-    public PacketPipeTransportItemStackRequest(TileGenericPipe tile, PacketPipeTransportTraveler packet) {
+    public PacketPipeTransportItemStackRequest(TileGenericPipe tile, int travelerID) {
         this.tempWorld = tile.getWorld();
-        this.travelerID = packet.getTravelingEntityId();
+        this.travelerID = travelerID;
     }
 
     @Override
@@ -51,6 +51,11 @@ public class PacketPipeTransportItemStackRequest extends Packet {
 
     @Override
     public void applyData(World world, EntityPlayer player) {
+        // The client has either lost track of this item or been told to refresh it, so it may not know its speed or
+        // colour any more either
+        if (BuildCraftTransport.travelerSyncBatcher != null) {
+            BuildCraftTransport.travelerSyncBatcher.forget(player, travelerID);
+        }
         sendDataToPlayer(player);
     }
 }
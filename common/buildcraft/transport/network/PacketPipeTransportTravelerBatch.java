@@ -0,0 +1,200 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.transport.network;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.MathHelper;
+import net.minecraft.util.Vec3;
+import net.minecraft.world.World;
+
+import buildcraft.core.lib.network.base.Packet;
+import buildcraft.core.lib.utils.NetworkUtils;
+import buildcraft.transport.PipeTransportItems;
+import buildcraft.transport.TileGenericPipe;
+
+import io.netty.buffer.ByteBuf;
+
+/** Every {@link TravelerUpdate} for the pipes in a single 16x16x16 chunk section over one tick. The pipe of each update
+ * is written as an offset into the section and the item position as an offset from the pipe, and the speed, colour and
+ * stack are only written if the player was not already sent the same value for that item. Stacks are written as
+ * {@link ItemStackDictionary} ids, and stacks that the player doesn't have yet are defined right before the first
+ * update that uses them. */
+public class PacketPipeTransportTravelerBatch extends Packet {
+    public static final byte FIELD_SPEED = 1;
+    public static final byte FIELD_COLOR = 2;
+    public static final byte FIELD_STACK = 4;
+    /** The stack of the update has to be defined before it is used. Only valid together with {@link #FIELD_STACK}. */
+    public static final byte FIELD_DEFINE = 8;
+
+    /** Item positions are written as fixed point shorts with this many steps per block. */
+    private static final double POSITION_SCALE = 1024;
+    private static final int LOCAL_SPEED = 0x1000;
+    private static final int LOCAL_COLOR = 0x2000;
+    private static final int LOCAL_STACK = 0x4000;
+    private static final int LOCAL_DEFINE = 0x8000;
+
+    public int sectionX, sectionY, sectionZ;
+    public List<TravelerUpdate> updates;
+    /** Which of the optional fields ({@link #FIELD_SPEED}, {@link #FIELD_COLOR}, {@link #FIELD_STACK},
+     * {@link #FIELD_DEFINE}) are written for each update. */
+    private byte[] fields;
+    /** The dictionary entry of the stack of each update that has {@link #FIELD_STACK} set. */
+    private ItemStackDictionary.Entry[] stacks;
+
+    public PacketPipeTransportTravelerBatch() {}
+
+    public PacketPipeTransportTravelerBatch(World world, int sectionX, int sectionY, int sectionZ, List<TravelerUpdate> updates, byte[] fields,
+            ItemStackDictionary.Entry[] stacks) {
+        super(world.provider.getDimensionId());
+        this.tempWorld = world;
+        this.sectionX = sectionX;
+        this.sectionY = sectionY;
+        this.sectionZ = sectionZ;
+        this.updates = updates;
+        this.fields = fields;
+        this.stacks = stacks;
+    }
+
+    @Override
+    public void writeData(ByteBuf data) {
+        super.writeData(data);
+        data.writeInt(sectionX);
+        data.writeByte(sectionY);
+        data.writeInt(sectionZ);
+        data.writeShort(updates.size());
+
+        for (int i = 0; i < updates.size(); i++) {
+            TravelerUpdate update = updates.get(i);
+            BlockPos pipe = update.pipePos;
+
+            int local = ((pipe.getX() & 15) << 8) | ((pipe.getY() & 15) << 4) | (pipe.getZ() & 15);
+            if ((fields[i] & FIELD_SPEED) != 0) {
+                local |= LOCAL_SPEED;
+            }
+            if ((fields[i] & FIELD_COLOR) != 0) {
+                local |= LOCAL_COLOR;
+            }
+            if ((fields[i] & FIELD_STACK) != 0) {
+                local |= LOCAL_STACK;
+            }
+            if ((fields[i] & FIELD_DEFINE) != 0) {
+                local |= LOCAL_DEFINE;
+            }
+            data.writeShort(local);
+
+            data.writeShort(encode(update.itemPos.xCoord - pipe.getX()));
+            data.writeShort(encode(update.itemPos.yCoord - pipe.getY()));
+            data.writeShort(encode(update.itemPos.zCoord - pipe.getZ()));
+
+            data.writeShort(update.id);
+
+            int out = update.output == null ? 6 : update.output.ordinal();
+            int in = update.input == null ? 6 : update.input.ordinal();
+            data.writeByte((out & 7) | ((in & 7) << 3));
+
+            if ((local & LOCAL_SPEED) != 0) {
+                data.writeFloat(update.speed);
+            }
+            if ((local & LOCAL_COLOR) != 0) {
+                data.writeByte(update.color != null ? update.color.ordinal() : -1);
+            }
+            if ((local & LOCAL_STACK) != 0) {
+                data.writeShort(stacks[i].id);
+                if ((local & LOCAL_DEFINE) != 0) {
+                    NetworkUtils.writeStack(data, stacks[i].stack);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void readData(ByteBuf data) {
+        super.readData(data);
+        sectionX = data.readInt();
+        sectionY = data.readByte();
+        sectionZ = data.readInt();
+        int count = data.readUnsignedShort();
+
+        updates = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            TravelerUpdate update = new TravelerUpdate();
+
+            int local = data.readUnsignedShort();
+            int x = (sectionX << 4) | ((local >> 8) & 15);
+            int y = (sectionY << 4) | ((local >> 4) & 15);
+            int z = (sectionZ << 4) | (local & 15);
+            update.pipePos = new BlockPos(x, y, z);
+
+            update.itemPos = new Vec3(x + decode(data.readShort()), y + decode(data.readShort()), z + decode(data.readShort()));
+
+            update.id = data.readShort();
+
+            int flags = data.readUnsignedByte();
+            int in = (flags >> 3) & 7;
+            update.input = in == 6 ? null : EnumFacing.getFront(in);
+            int out = flags & 7;
+            update.output = out == 6 ? null : EnumFacing.getFront(out);
+
+            update.hasSpeed = (local & LOCAL_SPEED) != 0;
+            if (update.hasSpeed) {
+                update.speed = data.readFloat();
+            }
+            update.hasColor = (local & LOCAL_COLOR) != 0;
+            if (update.hasColor) {
+                byte c = data.readByte();
+                update.color = c == -1 ? null : EnumDyeColor.byMetadata(c);
+            }
+            if ((local & LOCAL_STACK) != 0) {
+                update.stackId = data.readUnsignedShort();
+                if ((local & LOCAL_DEFINE) != 0) {
+                    update.stackDefinition = NetworkUtils.readStack(data);
+                }
+            }
+
+            updates.add(update);
+        }
+    }
+
+    private static short encode(double offset) {
+        return (short) MathHelper.clamp_int((int) Math.round(offset * POSITION_SCALE), Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    private static double decode(short value) {
+        return value / POSITION_SCALE;
+    }
+
+    @Override
+    public void applyData(World world, EntityPlayer player) {
+        for (TravelerUpdate update : updates) {
+            if (update.stackDefinition != null) {
+                ItemStackDictionary.setClientStack(update.stackId, update.stackDefinition);
+            }
+
+            if (world.isAirBlock(update.pipePos)) {
+                continue;
+            }
+
+            TileEntity entity = world.getTileEntity(update.pipePos);
+            if (!(entity instanceof TileGenericPipe)) {
+                continue;
+            }
+
+            TileGenericPipe pipe = (TileGenericPipe) entity;
+            if (pipe.pipe == null || !(pipe.pipe.transport instanceof PipeTransportItems)) {
+                continue;
+            }
+
+            ((PipeTransportItems) pipe.pipe.transport).handleTravelerUpdate(update);
+        }
+    }
+}
@@ -4,6 +4,8 @@
  * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
 package buildcraft.transport.network;
 
+import java.util.Arrays;
+
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.world.World;
@@ -19,6 +21,8 @@ public class PacketPowerUpdate extends PacketCoordinates {
     public boolean overload;
     public short[] displayPower;
     public short[] displayFlow;
+    /** Only set on the server, for a packet that shows the same as the one sent before it. */
+    public boolean droppable;
 
     public PacketPowerUpdate() {}
 
@@ -26,6 +30,22 @@ public class PacketPowerUpdate extends PacketCoordinates {
         super(tile);
     }
 
+    @Override
+    public Object getMergeKey() {
+        return pos;
+    }
+
+    @Override
+    public boolean isDroppable() {
+        // Dropping the last change would leave the client showing the wrong power until the next one
+        return droppable;
+    }
+
+    /** @return True if this shows the same power, flow and overload as the given packet. */
+    public boolean displaysSameAs(PacketPowerUpdate other) {
+        return overload == other.overload && Arrays.equals(displayPower, other.displayPower) && Arrays.equals(displayFlow, other.displayFlow);
+    }
+
     @Override
     public void readData(ByteBuf data) {
         super.readData(data);
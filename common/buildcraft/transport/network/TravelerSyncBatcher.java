@@ -0,0 +1,261 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.transport.network;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.google.common.collect.Lists;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.management.PlayerManager;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import buildcraft.BuildCraftTransport;
+import buildcraft.core.lib.utils.IntIntHashMap;
+import buildcraft.transport.TravelingItem;
+
+/** Collects every {@link TravelerUpdate} queued during a world tick, and at the end of the tick sends a single
+ * {@link PacketPipeTransportTravelerBatch} per chunk section to each player that is watching the chunk, instead of one
+ * packet per item per pipe.
+ * <p>
+ * The speed, colour and stack last sent to each player are remembered per item id, so they are only sent again when
+ * they change. The speed is also sent with every update that isn't predictable, as the client may have changed it.
+ * Stacks are sent through a separate {@link ItemStackDictionary} for each player, so a stack that the player has
+ * already seen on another item only costs an id. If a client has forgotten an item it asks for the stack, which calls
+ * {@link #forget(EntityPlayer, int)} so that the next update for it is complete. Items that leave the pipe network
+ * are {@link #release(World, int) released}, which forgets them for every player at the end of the tick, as their id
+ * will be reused by another item later on.
+ * <p>
+ * Updates that are {@link TravelerUpdate#predictable} are not sent to players that were sent the previous update for
+ * the same item, as their client will have made the same move itself. Any player that isn't watching the chunk of an
+ * update is assumed to have lost track of the item. */
+public class TravelerSyncBatcher {
+    /** Never returned by {@link Float#floatToIntBits(float)}, as that collapses every NaN into a single value. */
+    private static final int NO_SPEED = 0x7fc00001;
+    private static final int NO_COLOR = Integer.MIN_VALUE;
+    private static final int NO_STACK = 0;
+
+    private final Map<Integer, Map<Long, List<TravelerUpdate>>> pending = new HashMap<>();
+    private final Map<EntityPlayer, SentValues> sent = new WeakHashMap<>();
+    private final Map<Integer, List<Integer>> released = new HashMap<>();
+
+    public void queue(TileEntity pipe, TravelingItem item, boolean forceStackRefresh, boolean predictable) {
+        World world = pipe.getWorld();
+        if (world.isRemote) {
+            return;
+        }
+
+        int dimId = world.provider.getDimensionId();
+        Map<Long, List<TravelerUpdate>> sections = pending.get(dimId);
+        if (sections == null) {
+            sections = new HashMap<>();
+            pending.put(dimId, sections);
+        }
+
+        BlockPos pos = pipe.getPos();
+        long key = sectionKey(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+        List<TravelerUpdate> updates = sections.get(key);
+        if (updates == null) {
+            updates = Lists.newArrayList();
+            sections.put(key, updates);
+        }
+        updates.add(new TravelerUpdate(pos, item, forceStackRefresh, predictable));
+    }
+
+    /** Makes sure that the next update sent to the given player for the given item includes every field. */
+    public void forget(EntityPlayer player, int travelerId) {
+        SentValues values = sent.get(player);
+        if (values != null) {
+            values.forget(travelerId);
+        }
+    }
+
+    /** Forgets the given item for every player once the updates queued this tick have been sent. This should be called
+     * whenever an item leaves the pipe network, such as when it is put into an inventory or dropped. */
+    public void release(World world, int travelerId) {
+        int dimId = world.provider.getDimensionId();
+        List<Integer> ids = released.get(dimId);
+        if (ids == null) {
+            ids = Lists.newArrayList();
+            released.put(dimId, ids);
+        }
+        ids.add(travelerId);
+    }
+
+    @SubscribeEvent
+    public void tick(TickEvent.WorldTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || event.world.isRemote) {
+            return;
+        }
+
+        int dimId = event.world.provider.getDimensionId();
+        sendPending(event.world, pending.get(dimId));
+
+        List<Integer> ids = released.get(dimId);
+        if (ids != null && !ids.isEmpty()) {
+            for (SentValues values : sent.values()) {
+                for (int id : ids) {
+                    values.forget(id);
+                }
+            }
+            ids.clear();
+        }
+    }
+
+    private void sendPending(World world, Map<Long, List<TravelerUpdate>> sections) {
+        if (sections == null || sections.isEmpty()) {
+            return;
+        }
+
+        PlayerManager manager = ((WorldServer) world).getPlayerManager();
+        for (EntityPlayer player : world.playerEntities) {
+            if (!(player instanceof EntityPlayerMP)) {
+                continue;
+            }
+            SentValues values = getSentValues(player);
+            for (Map.Entry<Long, List<TravelerUpdate>> entry : sections.entrySet()) {
+                long key = entry.getKey();
+                int sectionX = sectionX(key);
+                int sectionZ = sectionZ(key);
+                List<TravelerUpdate> updates = entry.getValue();
+                if (!manager.isPlayerWatchingChunk((EntityPlayerMP) player, sectionX, sectionZ)) {
+                    for (TravelerUpdate update : updates) {
+                        values.forget(update.id);
+                    }
+                    continue;
+                }
+
+                List<TravelerUpdate> toSend = updates;
+                byte[] fields = new byte[updates.size()];
+                ItemStackDictionary.Entry[] stacks = new ItemStackDictionary.Entry[updates.size()];
+                int count = 0;
+                for (int i = 0; i < updates.size(); i++) {
+                    TravelerUpdate update = updates.get(i);
+                    if (update.predictable && values.isUpToDate(update)) {
+                        values.remember(update);
+                        if (toSend == updates) {
+                            toSend = Lists.newArrayList(updates.subList(0, i));
+                        }
+                        continue;
+                    }
+                    if (toSend != updates) {
+                        toSend.add(update);
+                    }
+                    fields[count] = values.diff(update, stacks, count);
+                    count++;
+                }
+
+                if (count > 0) {
+                    PacketPipeTransportTravelerBatch packet = new PacketPipeTransportTravelerBatch(world, sectionX, sectionY(key), sectionZ, toSend,
+                            fields, stacks);
+                    BuildCraftTransport.instance.sendToPlayer(player, packet);
+                }
+            }
+        }
+
+        sections.clear();
+    }
+
+    private SentValues getSentValues(EntityPlayer player) {
+        SentValues values = sent.get(player);
+        if (values == null) {
+            values = new SentValues();
+            sent.put(player, values);
+        }
+        return values;
+    }
+
+    private static long sectionKey(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    private static int sectionX(long key) {
+        return (int) (key >> 38);
+    }
+
+    private static int sectionY(long key) {
+        return (int) (key << 52 >> 52);
+    }
+
+    private static int sectionZ(long key) {
+        return (int) (key << 26 >> 38);
+    }
+
+    /** The speed, colour and stack that a single player was last sent for each item id. */
+    private static class SentValues {
+        private final IntIntHashMap speeds = new IntIntHashMap(NO_SPEED);
+        private final IntIntHashMap colors = new IntIntHashMap(NO_COLOR);
+        /** The {@link ItemStackDictionary.Entry#serial} of the stack last sent for each item id. */
+        private final IntIntHashMap stackSerials = new IntIntHashMap(NO_STACK);
+        private final ItemStackDictionary dictionary = new ItemStackDictionary();
+
+        /** @param stacks Where the dictionary entry of the stack is put, if the stack has to be sent.
+         * @return The fields of the update that differ from the last ones sent, which are then remembered. */
+        private byte diff(TravelerUpdate update, ItemStackDictionary.Entry[] stacks, int index) {
+            byte fields = 0;
+            int speed = Float.floatToIntBits(update.speed);
+            // Clients change the speed of items moving between pipes themselves, so it is always sent unless the
+            // client will have worked it out the same way
+            if (speeds.put(update.id, speed) != speed || !update.predictable) {
+                fields |= PacketPipeTransportTravelerBatch.FIELD_SPEED;
+            }
+            int color = colorOf(update);
+            if (colors.put(update.id, color) != color) {
+                fields |= PacketPipeTransportTravelerBatch.FIELD_COLOR;
+            }
+            if (update.stack != null) {
+                ItemStackDictionary.Entry entry = dictionary.find(update.stack);
+                if (entry == null) {
+                    entry = dictionary.add(update.stack);
+                    fields |= PacketPipeTransportTravelerBatch.FIELD_DEFINE;
+                }
+                if (stackSerials.put(update.id, entry.serial) != entry.serial || update.forceStackRefresh) {
+                    fields |= PacketPipeTransportTravelerBatch.FIELD_STACK;
+                    stacks[index] = entry;
+                }
+            }
+            return fields;
+        }
+
+        /** @return True if this player knows about the item and has the same colour and stack for it. A lens or lapis pipe
+         *         can recolour an item whose move is otherwise predictable. */
+        private boolean isUpToDate(TravelerUpdate update) {
+            if (!speeds.containsKey(update.id) || colors.get(update.id) != colorOf(update)) {
+                return false;
+            }
+            if (update.stack == null) {
+                return true;
+            }
+            ItemStackDictionary.Entry entry = dictionary.find(update.stack);
+            return entry != null && stackSerials.get(update.id) == entry.serial;
+        }
+
+        /** Records an update that the client will have worked out for itself. */
+        private void remember(TravelerUpdate update) {
+            speeds.put(update.id, Float.floatToIntBits(update.speed));
+            colors.put(update.id, colorOf(update));
+        }
+
+        private static int colorOf(TravelerUpdate update) {
+            return update.color == null ? -1 : update.color.ordinal();
+        }
+
+        private void forget(int id) {
+            speeds.remove(id);
+            colors.remove(id);
+            stackSerials.remove(id);
+        }
+    }
+}
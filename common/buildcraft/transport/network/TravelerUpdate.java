@@ -0,0 +1,59 @@
+/** Copyright (c) 2011-2015, SpaceToad and the BuildCraft Team http://www.mod-buildcraft.com
+ * <p/>
+ * BuildCraft is distributed under the terms of the Minecraft Mod Public License 1.0, or MMPL. Please check the contents
+ * of the license located in http://www.mod-buildcraft.com/MMPL-1.0.txt */
+package buildcraft.transport.network;
+
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.Vec3;
+
+import buildcraft.transport.TravelingItem;
+
+/** The state of a single {@link TravelingItem} as it enters a pipe, sent to clients as part of a
+ * {@link PacketPipeTransportTravelerBatch}. On the server this is a copy of the item taken when the update was queued,
+ * as the item keeps moving before the batch is sent. */
+public class TravelerUpdate {
+    /** The pipe that the item is in. */
+    public BlockPos pipePos;
+    public int id;
+    public Vec3 itemPos;
+    public EnumFacing input;
+    public EnumFacing output;
+    public float speed;
+    public EnumDyeColor color;
+    /** False if the client should keep the speed it already has for this item. Only set on the client. */
+    public boolean hasSpeed = true;
+    /** False if the client should keep the colour it already has for this item. Only set on the client. */
+    public boolean hasColor = true;
+    /** The stack of the item. Only set on the server, where it is the stack of the item itself rather than a copy. */
+    public ItemStack stack;
+    /** The {@link ItemStackDictionary} id of the stack of the item, or -1 if the client should keep the stack it already
+     * has for this item. Only set on the client. */
+    public int stackId = -1;
+    /** The stack that {@link #stackId} has to be defined as before it is used, if the client doesn't have it yet. Only
+     * set on the client. */
+    public ItemStack stackDefinition;
+    /** True if the stack has to be sent even if this player was already sent the same stack for this item. */
+    public boolean forceStackRefresh;
+    /** True if clients that already know about this item will have moved it into this pipe the same way by themselves.
+     * Only set on the server. */
+    public boolean predictable;
+
+    public TravelerUpdate() {}
+
+    public TravelerUpdate(BlockPos pipePos, TravelingItem item, boolean forceStackRefresh, boolean predictable) {
+        this.pipePos = pipePos;
+        this.id = item.id;
+        this.itemPos = item.pos;
+        this.input = item.input;
+        this.output = item.output;
+        this.speed = item.getSpeed();
+        this.color = item.color;
+        this.stack = item.getItemStack();
+        this.forceStackRefresh = forceStackRefresh;
+        this.predictable = predictable;
+    }
+}
@@ -77,6 +77,7 @@ public class PipeItemsDaizuli extends Pipe<PipeTransportItems> implements ISeria
         if (color != c.ordinal()) {
             this.color = c.ordinal();
             container.scheduleRenderUpdate();
+            transport.invalidateRouteCache();
         }
     }
 
@@ -44,6 +44,7 @@ public class PipeItemsDiamond extends Pipe<PipeTransportItems> implements IDiamo
         @Override
         public void markDirty() {
             super.markDirty();
+            transport.invalidateRouteCache();
 
             for (int i = 0; i < 6; i++) {
                 filterCounts[i] = 0;
@@ -116,6 +117,8 @@ public class PipeItemsDiamond extends Pipe<PipeTransportItems> implements IDiamo
                         event.destinations.clear();
                         event.destinations.add(dir);
                         event.shuffle = false;
+                        // The next matching item might go to a different filter
+                        event.cacheable = false;
                         return true;
                     }
                 }
@@ -16,6 +16,7 @@ import buildcraft.api.properties.BuildCraftProperties;
 import buildcraft.api.tools.IToolWrench;
 import buildcraft.core.lib.TileBuffer;
 import buildcraft.transport.Pipe;
+import buildcraft.transport.PipeTransportItems;
 
 public abstract class PipeLogicIron {
 
@@ -91,6 +92,9 @@ public abstract class PipeLogicIron {
         if (ordinal != oldOrdinal && isValidFacing(facing)) {
             pipe.container.getWorld().setBlockState(pipe.container.getPos(), state.withProperty(BuildCraftProperties.GENERIC_PIPE_DATA, ordinal));
             pipe.container.scheduleRenderUpdate();
+            if (pipe.transport instanceof PipeTransportItems) {
+                ((PipeTransportItems) pipe.transport).invalidateRouteCache();
+            }
             return true;
         }
         return false;
@@ -61,6 +61,10 @@ public abstract class PipeEventItem extends PipeEvent {
     public static class FindDest extends PipeEventItem {
         public final List<EnumFacing> destinations;
         public boolean shuffle = true;
+        /** Set this to false if the destinations depend on anything other than the item, its colour, its input side,
+         * the neighbours of the pipe, its pluggables and its gate actions (for example round-robin state), so that the
+         * pipe won't cache the result. */
+        public boolean cacheable = true;
 
         public FindDest(Pipe<?> pipe, TravelingItem item, List<EnumFacing> destinations) {
             super(pipe, item);
@@ -123,6 +123,12 @@ public class LensPluggable extends PipePluggable {
         return other.dyeColor != dyeColor || other.isFilter != isFilter;
     }
 
+    @Override
+    public boolean writeRenderKey(ByteBuf data) {
+        writeData(data);
+        return true;
+    }
+
     private void color(TravelingItem item) {
         if ((item.toCenter && item.input.getOpposite() == side) || (!item.toCenter && item.output == side)) {
             item.color = dyeColor;
@@ -74,4 +74,9 @@ public class PlugPluggable extends PipePluggable {
     public boolean requiresRenderUpdate(PipePluggable o) {
         return false;
     }
+
+    @Override
+    public boolean writeRenderKey(ByteBuf data) {
+        return true;
+    }
 }
@@ -131,4 +131,9 @@ public class PowerAdapterPluggable extends PipePluggable implements IEnergyHandl
     public boolean requiresRenderUpdate(PipePluggable o) {
         return false;
     }
+
+    @Override
+    public boolean writeRenderKey(ByteBuf data) {
+        return true;
+    }
 }
@@ -68,17 +68,31 @@ public class PipeBlockModel extends BuildCraftBakedModel implements ISmartBlockM
             return defaultModel();// Thats not good. Just return a cobblestone structure pipe centre model
         }
 
+        EnumWorldBlockLayer layer = MinecraftForgeClient.getRenderLayer();
+        TextureAtlasSprite particle = pipe.getIconProvider().getIcon(pipe.getIconIndex(null));
+
+        PipeModelCache.Key key = PipeModelCache.createKey(layer, render, pluggable, pipe.getIconProvider(), particle);
+        PipeBlockModel model = key == null ? null : PipeModelCache.INSTANCE.get(key);
+        if (model == null) {
+            model = bake(layer, render, pluggable, pipe, particle);
+            if (key != null) {
+                PipeModelCache.INSTANCE.put(key, model);
+            }
+        }
+        return model;
+    }
+
+    /** Bakes the model of a pipe for the given layer, without looking in the {@link PipeModelCache}. */
+    public static PipeBlockModel bake(EnumWorldBlockLayer layer, PipeRenderState render, PipePluggableState pluggable, Pipe<?> pipe,
+            TextureAtlasSprite particle) {
         List<BakedQuad> quads = Lists.newArrayList();
 
-        EnumWorldBlockLayer layer = MinecraftForgeClient.getRenderLayer();
         if (layer == EnumWorldBlockLayer.CUTOUT) {
             renderCutoutPass(render, pluggable, pipe, quads);
         } else if (layer == EnumWorldBlockLayer.TRANSLUCENT) {
             renderTranslucentPass(render, pluggable, pipe, quads);
         }
 
-        TextureAtlasSprite particle = pipe.getIconProvider().getIcon(pipe.getIconIndex(null));
-
         return new PipeBlockModel(ImmutableList.copyOf(quads), particle, DefaultVertexFormats.BLOCK);
     }
 
@@ -0,0 +1,124 @@
+package buildcraft.transport.render;
+
+import java.util.Arrays;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.util.EnumWorldBlockLayer;
+
+import net.minecraftforge.client.event.TextureStitchEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+import buildcraft.api.core.IIconProvider;
+import buildcraft.api.transport.PipeManager;
+import buildcraft.api.transport.pluggable.PipePluggable;
+import buildcraft.transport.PipePluggableState;
+import buildcraft.transport.PipeRenderState;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/** Holds the baked models of pipes, so that every pipe that looks the same shares a single model instead of baking it
+ * again whenever its chunk is rendered. A pipe looks the same as another if it has the same {@link PipeRenderState}
+ * (connections, textures, glass colour and wires), the same pluggables on each side (as written by
+ * {@link PipePluggable#writeRenderKey(ByteBuf)}) and the same icons.
+ * <p>
+ * Chunks are rendered by several threads at once, so this is a concurrent cache that holds at most {@link #MAX_MODELS}
+ * models. It is emptied whenever the textures are stitched, as the models refer to the old sprites. */
+public class PipeModelCache {
+    public static final PipeModelCache INSTANCE = new PipeModelCache();
+    public static final int MAX_MODELS = 4096;
+
+    private static final ThreadLocal<ByteBuf> KEY_BUFFERS = new ThreadLocal<ByteBuf>() {
+        @Override
+        protected ByteBuf initialValue() {
+            return Unpooled.buffer(64);
+        }
+    };
+
+    private final Cache<Key, PipeBlockModel> models = CacheBuilder.newBuilder().maximumSize(MAX_MODELS).build();
+
+    private PipeModelCache() {}
+
+    /** @return The key of the model of a pipe, or null if the pipe has a pluggable whose model can't be shared. */
+    public static Key createKey(EnumWorldBlockLayer layer, PipeRenderState render, PipePluggableState pluggable, IIconProvider icons,
+            TextureAtlasSprite particle) {
+        ByteBuf data = KEY_BUFFERS.get();
+        data.clear();
+
+        render.writeData(data);
+        for (PipePluggable plug : pluggable.getPluggables()) {
+            if (plug == null) {
+                data.writeShort(0);
+            } else {
+                data.writeShort(PipeManager.pipePluggables.indexOf(plug.getClass()) + 1);
+                if (!plug.writeRenderKey(data)) {
+                    return null;
+                }
+            }
+        }
+
+        byte[] bytes = new byte[data.readableBytes()];
+        data.readBytes(bytes);
+        return new Key(layer, icons, particle, bytes);
+    }
+
+    /** @return The model with the given key, or null if it has not been baked yet. */
+    public PipeBlockModel get(Key key) {
+        return models.getIfPresent(key);
+    }
+
+    public void put(Key key, PipeBlockModel model) {
+        models.put(key, model);
+    }
+
+    public void clear() {
+        models.invalidateAll();
+    }
+
+    public long size() {
+        return models.size();
+    }
+
+    @SubscribeEvent
+    public void textureStitch(TextureStitchEvent.Pre event) {
+        clear();
+    }
+
+    public static final class Key {
+        private final EnumWorldBlockLayer layer;
+        private final IIconProvider icons;
+        private final TextureAtlasSprite particle;
+        private final byte[] data;
+        private final int hash;
+
+        private Key(EnumWorldBlockLayer layer, IIconProvider icons, TextureAtlasSprite particle, byte[] data) {
+            this.layer = layer;
+            this.icons = icons;
+            this.particle = particle;
+            this.data = data;
+            int h = Arrays.hashCode(data);
+            h = 31 * h + (layer == null ? -1 : layer.ordinal());
+            h = 31 * h + System.identityHashCode(icons);
+            h = 31 * h + System.identityHashCode(particle);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && layer == other.layer && icons == other.icons && particle == other.particle && Arrays.equals(data,
+                    other.data);
+        }
+    }
+}
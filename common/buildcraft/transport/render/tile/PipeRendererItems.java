@@ -23,6 +23,7 @@ import buildcraft.core.lib.utils.Utils;
 import buildcraft.transport.Pipe;
 import buildcraft.transport.PipeIconProvider;
 import buildcraft.transport.PipeTransportItems;
+import buildcraft.transport.TravelerStore;
 import buildcraft.transport.TravelingItem;
 
 public class PipeRendererItems {
@@ -50,22 +51,16 @@ public class PipeRendererItems {
 
         float light = pipe.container.getWorld().getLightBrightness(pipe.container.getPos());
 
-        int count = 0;
-        for (TravelingItem item : pipe.transport.items) {
-            if (count >= MAX_ITEMS_TO_RENDER) {
-                break;
-            }
-
-            if (item == null || item.pos == null) {
-                continue;
-            }
+        TravelerStore items = pipe.transport.items;
+        int count = Math.min(items.size(), MAX_ITEMS_TO_RENDER);
+        for (int slot = 0; slot < count; slot++) {
+            TravelingItem item = items.get(slot);
 
             EnumFacing face = item.toCenter ? item.input : item.output;
-            Vec3 motion = Utils.convert(face, item.getSpeed() * f);
+            Vec3 motion = Utils.convert(face, items.getSpeed(slot) * f);
 
-            doRenderItem(item, x + item.pos.xCoord - pipe.container.getPos().getX() + motion.xCoord, y + item.pos.yCoord - pipe.container.getPos()
-                    .getY() + motion.yCoord, z + item.pos.zCoord - pipe.container.getPos().getZ() + motion.zCoord, light, item.color);
-            count++;
+            doRenderItem(item, x + items.getX(slot) - pipe.container.getPos().getX() + motion.xCoord, y + items.getY(slot) - pipe.container
+                    .getPos().getY() + motion.yCoord, z + items.getZ(slot) - pipe.container.getPos().getZ() + motion.zCoord, light, item.color);
         }
 
         GL11.glPopMatrix();
@@ -0,0 +1,172 @@
+package buildcraft.test.builders;
+
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import net.minecraft.util.BlockPos;
+
+import buildcraft.builders.QuarryColumnIndex;
+import buildcraft.builders.QuarryColumnIndex.ColumnBlock;
+
+/** Mines the first {@link #MINED} blocks out of a synthetic world of stone under hills of air, with some water and
+ * bedrock mixed in, comparing the {@link QuarryColumnIndex} with the old visit list that was rebuilt from the top down
+ * whenever it ran out, and that looked up the column above every target for changes. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QuarryColumnIndexBenchmark {
+    private static final int HEIGHT = 80;
+    private static final int TOP = HEIGHT - 1;
+    private static final int MINED = 8192;
+    private static final ColumnBlock[] BLOCKS = ColumnBlock.values();
+
+    @Param({ "16", "64" })
+    public int size;
+
+    private byte[] terrain;
+    private StubWorld world;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        Random rand = new Random(size);
+        terrain = new byte[size * HEIGHT * size];
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                int surface = 40 + (x * 7 + z * 13) % 9;
+                for (int y = 0; y < HEIGHT; y++) {
+                    ColumnBlock block;
+                    if (y == 0 || (y < 5 && rand.nextInt(3) == 0)) {
+                        block = ColumnBlock.STOP;
+                    } else if (y > surface || rand.nextInt(50) == 0) {
+                        block = ColumnBlock.SKIP;
+                    } else {
+                        block = ColumnBlock.MINE;
+                    }
+                    terrain[index(x, y, z)] = (byte) block.ordinal();
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        world = new StubWorld(terrain.clone());
+    }
+
+    private int index(int x, int y, int z) {
+        return (x * HEIGHT + y) * size + z;
+    }
+
+    @Benchmark
+    public int index() {
+        QuarryColumnIndex index = new QuarryColumnIndex(world, 0, 0, size, size, TOP, 1);
+        int mined = 0;
+        while (mined < MINED) {
+            BlockPos next = index.next();
+            if (next == null) {
+                break;
+            }
+            world.mine(next.getX(), next.getY(), next.getZ());
+            index.onBlockChanged(next.getX(), next.getY(), next.getZ());
+            mined++;
+        }
+        return mined;
+    }
+
+    @Benchmark
+    public int rescan() {
+        LinkedList<int[]> visitList = new LinkedList<>();
+        int mined = 0;
+        while (mined < MINED) {
+            boolean updated = false;
+            if (visitList.isEmpty()) {
+                createColumnVisitList(visitList);
+                updated = true;
+            }
+            if (visitList.isEmpty()) {
+                break;
+            }
+
+            int[] next = visitList.removeFirst();
+            if (!updated) {
+                for (int y = next[1] + 1; y < TOP; y++) {
+                    if (world.getColumnBlock(next[0], y, next[2]) == ColumnBlock.MINE) {
+                        createColumnVisitList(visitList);
+                        updated = true;
+                        next = null;
+                        break;
+                    }
+                }
+            }
+            if (updated && next == null) {
+                if (visitList.isEmpty()) {
+                    break;
+                }
+                next = visitList.removeFirst();
+            }
+
+            world.mine(next[0], next[1], next[2]);
+            mined++;
+        }
+        return mined;
+    }
+
+    /** The same search as the quarry used to do. */
+    private void createColumnVisitList(LinkedList<int[]> visitList) {
+        visitList.clear();
+        boolean[][] blockedColumns = new boolean[size][size];
+
+        for (int searchY = TOP; searchY >= 1; --searchY) {
+            int startX = searchY % 2 == 0 ? 0 : size - 1;
+            int endX = searchY % 2 == 0 ? size : -1;
+            int incX = searchY % 2 == 0 ? 1 : -1;
+
+            for (int searchX = startX; searchX != endX; searchX += incX) {
+                boolean forwards = searchX % 2 == searchY % 2;
+                int startZ = forwards ? 0 : size - 1;
+                int endZ = forwards ? size : -1;
+                int incZ = forwards ? 1 : -1;
+
+                for (int searchZ = startZ; searchZ != endZ; searchZ += incZ) {
+                    if (!blockedColumns[searchX][searchZ]) {
+                        BlockPos pos = new BlockPos(searchX, searchY, searchZ);
+                        ColumnBlock block = world.getColumnBlock(pos.getX(), pos.getY(), pos.getZ());
+
+                        if (block == ColumnBlock.STOP) {
+                            blockedColumns[searchX][searchZ] = true;
+                        } else if (block == ColumnBlock.MINE) {
+                            visitList.add(new int[] { searchX, searchY, searchZ });
+                        }
+
+                        if (visitList.size() > size * size * 2) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private final class StubWorld implements QuarryColumnIndex.IColumnSource {
+        private final byte[] blocks;
+
+        private StubWorld(byte[] blocks) {
+            this.blocks = blocks;
+        }
+
+        @Override
+        public ColumnBlock getColumnBlock(int x, int y, int z) {
+            return BLOCKS[blocks[index(x, y, z)]];
+        }
+
+        private void mine(int x, int y, int z) {
+            blocks[index(x, y, z)] = (byte) ColumnBlock.SKIP.ordinal();
+        }
+    }
+}
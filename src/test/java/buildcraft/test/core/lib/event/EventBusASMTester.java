@@ -0,0 +1,61 @@
+package buildcraft.test.core.lib.event;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import buildcraft.core.lib.event.EventBusProviderASM;
+import buildcraft.core.lib.event.IEventBus;
+import buildcraft.test.core.lib.event.EventBusBenchmark.BenchHandler;
+import buildcraft.test.core.lib.event.EventBusBenchmark.IBenchEvent;
+import buildcraft.test.core.lib.event.EventBusBenchmark.IBenchTick;
+import buildcraft.test.core.lib.event.EventBusBenchmark.Listener;
+import buildcraft.test.core.lib.event.EventBusBenchmark.Tick;
+
+public class EventBusASMTester {
+    private static final EventBusProviderASM<IBenchEvent> PROVIDER = new EventBusProviderASM<IBenchEvent>(IBenchEvent.class, BenchHandler.class);
+
+    public static class Registering {
+        public final IEventBus<IBenchEvent> bus;
+        public final Listener added = new Listener();
+
+        public Registering(IEventBus<IBenchEvent> bus) {
+            this.bus = bus;
+        }
+
+        @BenchHandler
+        public void onTick(IBenchTick tick) {
+            bus.registerHandler(added);
+            bus.unregisterHandler(this);
+        }
+    }
+
+    @Test
+    public void testDispatchByInterface() {
+        IEventBus<IBenchEvent> bus = PROVIDER.newBus();
+        Listener listener = new Listener();
+        bus.registerHandler(listener);
+        bus.handleEvent(new Tick());
+        bus.handleEvent(new IBenchEvent() {});
+        assertEquals(1, listener.ticks);
+        assertEquals(0, listener.others);
+
+        bus.unregisterHandler(listener);
+        bus.handleEvent(new Tick());
+        assertEquals(1, listener.ticks);
+    }
+
+    @Test
+    public void testRegisterDuringDispatch() {
+        IEventBus<IBenchEvent> bus = PROVIDER.newBus();
+        Registering registering = new Registering(bus);
+        bus.registerHandler(registering);
+
+        // Handlers added while firing only see the next event
+        bus.handleEvent(new Tick());
+        assertEquals(0, registering.added.ticks);
+
+        bus.handleEvent(new Tick());
+        assertEquals(1, registering.added.ticks);
+    }
+}
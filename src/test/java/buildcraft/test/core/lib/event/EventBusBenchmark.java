@@ -0,0 +1,108 @@
+package buildcraft.test.core.lib.event;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multimap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import buildcraft.core.lib.event.EventBusProviderASM;
+import buildcraft.core.lib.event.EventProviderASM;
+import buildcraft.core.lib.event.IEventBus;
+import buildcraft.core.lib.event.IEventHandler;
+
+/** Measures events/sec of {@link buildcraft.core.lib.event.EventBusASM} against the old dispatch strategy, which copied
+ * every handler into a new list each time an event was fired. Run with "-prof gc" to see the bytes allocated per
+ * event. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EventBusBenchmark {
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    public @interface BenchHandler {}
+
+    public interface IBenchEvent {}
+
+    public interface IBenchTick extends IBenchEvent {}
+
+    public interface IBenchOther extends IBenchEvent {}
+
+    public static class Tick implements IBenchTick {}
+
+    public static class Listener {
+        public int ticks, others;
+
+        @BenchHandler
+        public void onTick(IBenchTick tick) {
+            ticks++;
+        }
+
+        @BenchHandler
+        public void onOther(IBenchOther other) {
+            others++;
+        }
+    }
+
+    @Param({ "copying", "snapshot" })
+    public String bus;
+
+    @Param({ "1", "8" })
+    public int listeners;
+
+    private IEventBus<IBenchEvent> eventBus;
+    private final Tick tick = new Tick();
+
+    @Setup
+    public void setup() {
+        EventBusProviderASM<IBenchEvent> provider = new EventBusProviderASM<IBenchEvent>(IBenchEvent.class, BenchHandler.class);
+        eventBus = "snapshot".equals(bus) ? provider.newBus() : new CopyingEventBus(provider);
+        for (int i = 0; i < listeners; i++) {
+            eventBus.registerHandler(new Listener());
+        }
+    }
+
+    @Benchmark
+    public void fire(Blackhole bh) {
+        eventBus.handleEvent(tick);
+        bh.consume(tick);
+    }
+
+    /** The dispatch strategy that EventBusASM used before it kept snapshots. */
+    private static class CopyingEventBus implements IEventBus<IBenchEvent> {
+        private final Multimap<Object, IEventHandler<IBenchEvent>> handlers = HashMultimap.create();
+        private final EventBusProviderASM<IBenchEvent> provider;
+
+        CopyingEventBus(EventBusProviderASM<IBenchEvent> provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public void registerHandler(Object handler) {
+            EventProviderASM<IBenchEvent> eventProvider = provider.getProviderFor(handler.getClass());
+            handlers.putAll(handler, eventProvider.getNewHandlerSet(handler));
+        }
+
+        @Override
+        public void unregisterHandler(Object handler) {
+            handlers.removeAll(handler);
+        }
+
+        @Override
+        public void handleEvent(IBenchEvent event) {
+            for (IEventHandler<IBenchEvent> handler : ImmutableList.copyOf(handlers.values())) {
+                handler.handle(event);
+            }
+        }
+    }
+}
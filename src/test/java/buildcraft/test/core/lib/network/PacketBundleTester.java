@@ -0,0 +1,74 @@
+package buildcraft.test.core.lib.network;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.BlockPos;
+
+import buildcraft.core.lib.network.base.ChannelHandler;
+import buildcraft.core.lib.network.base.Packet;
+import buildcraft.core.lib.network.base.PacketBundle;
+import buildcraft.core.lib.network.command.CommandWriter;
+import buildcraft.core.lib.network.command.PacketCommand;
+import buildcraft.core.proxy.CoreProxy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class PacketBundleTester {
+    private static PacketCommand command(int x, String name, final int payload) {
+        TileEntity tile = new TileEntity() {};
+        tile.setPos(new BlockPos(x, 64, -x));
+        return new PacketCommand(tile, name, new CommandWriter() {
+            @Override
+            public void write(ByteBuf data) {
+                data.writeInt(payload);
+            }
+        });
+    }
+
+    @Test
+    public void testCommandsRoundTrip() throws Exception {
+        if (CoreProxy.proxy == null) {
+            CoreProxy.proxy = new CoreProxy();
+        }
+        ChannelHandler handler = new ChannelHandler();
+        ChannelHandlerContext ctx = new EmbeddedChannel(new ChannelInboundHandlerAdapter()).pipeline().firstContext();
+
+        List<Packet> sent = Lists.<Packet> newArrayList(command(1, "first", 100), command(2, "second", 200));
+        ByteBuf data = Unpooled.buffer();
+        handler.encodeInto(ctx, new PacketBundle(sent), data);
+
+        PacketBundle received = new PacketBundle();
+        handler.decodeInto(ctx, data, received);
+        assertEquals(0, data.readableBytes());
+        assertEquals(2, received.getPackets().size());
+
+        // Commands read their target and payload lazily, after the whole bundle has been read
+        PacketCommand first = (PacketCommand) received.getPackets().get(0);
+        PacketCommand second = (PacketCommand) received.getPackets().get(1);
+        assertEquals("first", first.command);
+        assertEquals("second", second.command);
+
+        assertEquals(1, first.stream.readInt());
+        assertEquals(64, first.stream.readInt());
+        assertEquals(-1, first.stream.readInt());
+        assertEquals(100, first.stream.readInt());
+        assertEquals(0, first.stream.readableBytes());
+
+        assertEquals(2, second.stream.readInt());
+        assertEquals(64, second.stream.readInt());
+        assertEquals(-2, second.stream.readInt());
+        assertEquals(200, second.stream.readInt());
+        assertEquals(0, second.stream.readableBytes());
+    }
+}
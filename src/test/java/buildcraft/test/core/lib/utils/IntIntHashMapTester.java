@@ -0,0 +1,48 @@
+package buildcraft.test.core.lib.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.Random;
+
+import com.google.common.collect.Maps;
+
+import org.junit.Test;
+
+import buildcraft.core.lib.utils.IntIntHashMap;
+
+public class IntIntHashMapTester {
+    @Test
+    public void testMissing() {
+        IntIntHashMap map = new IntIntHashMap(-1);
+        assertEquals(-1, map.get(4));
+        assertEquals(-1, map.remove(4));
+        assertEquals(-1, map.put(4, 7));
+        assertEquals(7, map.get(4));
+        assertEquals(7, map.put(4, 8));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testAgainstHashMap() {
+        Random rand = new Random(42);
+        IntIntHashMap map = new IntIntHashMap(-1);
+        Map<Integer, Integer> expected = Maps.newHashMap();
+        for (int i = 0; i < 200000; i++) {
+            int key = rand.nextInt(500) - 250;
+            if (rand.nextBoolean()) {
+                int value = rand.nextInt(1000);
+                Integer old = expected.put(key, value);
+                assertEquals(old == null ? -1 : old, map.put(key, value));
+            } else {
+                Integer old = expected.remove(key);
+                assertEquals(old == null ? -1 : old, map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = -250; key < 250; key++) {
+            Integer value = expected.get(key);
+            assertEquals(value == null ? -1 : value, map.get(key));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package buildcraft.test.core.lib.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import buildcraft.core.lib.utils.LongArrayDeque;
+
+public class LongArrayDequeTester {
+    @Test(expected = NoSuchElementException.class)
+    public void testEmpty() {
+        new LongArrayDeque().pollFirst();
+    }
+
+    @Test
+    public void testAgainstArrayDeque() {
+        Random rand = new Random(42);
+        LongArrayDeque deque = new LongArrayDeque(4);
+        Deque<Long> expected = new ArrayDeque<>();
+        for (int i = 0; i < 200000; i++) {
+            int op = rand.nextInt(expected.isEmpty() ? 2 : 6);
+            long value = rand.nextLong();
+            switch (op) {
+                case 0:
+                    expected.addFirst(value);
+                    deque.addFirst(value);
+                    break;
+                case 1:
+                    expected.addLast(value);
+                    deque.addLast(value);
+                    break;
+                case 2:
+                    assertEquals((long) expected.peekFirst(), deque.peekFirst());
+                    break;
+                case 3:
+                    assertEquals((long) expected.peekLast(), deque.peekLast());
+                    break;
+                case 4:
+                    assertEquals((long) expected.pollFirst(), deque.pollFirst());
+                    break;
+                default:
+                    assertEquals((long) expected.pollLast(), deque.pollLast());
+                    break;
+            }
+            assertEquals(expected.size(), deque.size());
+        }
+        while (!expected.isEmpty()) {
+            assertEquals((long) expected.pollFirst(), deque.pollFirst());
+        }
+        assertTrue(deque.isEmpty());
+    }
+}
@@ -0,0 +1,51 @@
+package buildcraft.test.core.lib.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+import org.junit.Test;
+
+import buildcraft.core.lib.utils.LongHashSet;
+
+public class LongHashSetTester {
+    @Test
+    public void testBasic() {
+        LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(4));
+        assertFalse(set.remove(4));
+        assertTrue(set.add(4));
+        assertFalse(set.add(4));
+        assertTrue(set.contains(4));
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertEquals(2, set.size());
+        assertTrue(set.remove(4));
+        assertEquals(1, set.size());
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testAgainstHashSet() {
+        Random rand = new Random(42);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = Sets.newHashSet();
+        for (int i = 0; i < 200000; i++) {
+            // Spread the keys out the same way that packed block positions are
+            long key = ((long) (rand.nextInt(32) - 16) << 38) | ((long) rand.nextInt(16) << 26) | (rand.nextInt(32) - 16 & 0x3FFFFFF);
+            if (rand.nextBoolean()) {
+                assertEquals(expected.add(key), set.add(key));
+            } else {
+                assertEquals(expected.remove(key), set.remove(key));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (Long key : expected) {
+            assertTrue(set.contains(key));
+        }
+    }
+}
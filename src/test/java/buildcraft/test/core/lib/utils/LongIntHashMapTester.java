@@ -0,0 +1,54 @@
+package buildcraft.test.core.lib.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.Random;
+
+import com.google.common.collect.Maps;
+
+import org.junit.Test;
+
+import buildcraft.core.lib.utils.LongIntHashMap;
+
+public class LongIntHashMapTester {
+    @Test
+    public void testMissing() {
+        LongIntHashMap map = new LongIntHashMap(-1);
+        assertEquals(-1, map.get(4L << 38));
+        assertEquals(-1, map.remove(4L << 38));
+        assertEquals(-1, map.put(4L << 38, 7));
+        assertEquals(7, map.get(4L << 38));
+        assertEquals(-1, map.get(4L));
+        assertEquals(7, map.put(4L << 38, 8));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testAgainstHashMap() {
+        Random rand = new Random(42);
+        long[] pool = new long[500];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = rand.nextLong();
+        }
+
+        LongIntHashMap map = new LongIntHashMap(-1);
+        Map<Long, Integer> expected = Maps.newHashMap();
+        for (int i = 0; i < 200000; i++) {
+            long key = pool[rand.nextInt(pool.length)];
+            if (rand.nextBoolean()) {
+                int value = rand.nextInt(1000);
+                Integer old = expected.put(key, value);
+                assertEquals(old == null ? -1 : old, map.put(key, value));
+            } else {
+                Integer old = expected.remove(key);
+                assertEquals(old == null ? -1 : old, map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key : pool) {
+            Integer value = expected.get(key);
+            assertEquals(value == null ? -1 : value, map.get(key));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package buildcraft.test.core.lib.utils;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import net.minecraft.util.BlockPos;
+
+import buildcraft.core.lib.utils.IBlockPassability;
+import buildcraft.core.lib.utils.PathFinding;
+
+/** Finds a path from one corner of a 64x64x64 area to the other, through open air, through caves of random blocks that
+ * have been smoothed out, or through a maze of one block wide corridors on a single layer. Runs in throughput mode so
+ * that the "nodes" counter reads as nodes expanded per second; add {@code -prof gc} to see how much each search
+ * allocates. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PathFindingBenchmark {
+    private static final int SIZE = 64;
+
+    @Param({ "open", "cave", "maze" })
+    public String terrain;
+
+    private boolean[] passable;
+    private IBlockPassability blocks;
+    private BlockPos start, end;
+
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        passable = new boolean[SIZE * SIZE * SIZE];
+        Random rand = new Random(SIZE);
+        if ("open".equals(terrain)) {
+            for (int x = 0; x < SIZE; x++) {
+                for (int y = 1; y < SIZE; y++) {
+                    for (int z = 0; z < SIZE; z++) {
+                        passable[index(x, y, z)] = true;
+                    }
+                }
+            }
+            start = new BlockPos(1, 1, 1);
+            end = new BlockPos(SIZE - 2, SIZE - 2, SIZE - 2);
+        } else if ("cave".equals(terrain)) {
+            for (int i = 0; i < passable.length; i++) {
+                passable[i] = rand.nextInt(100) < 55;
+            }
+            for (int pass = 0; pass < 2; pass++) {
+                smooth();
+            }
+            start = new BlockPos(1, 1, 1);
+            end = new BlockPos(SIZE - 2, SIZE - 2, SIZE - 2);
+            // Make sure that there is a way through
+            int x = start.getX(), y = start.getY(), z = start.getZ();
+            while (x != end.getX() || y != end.getY() || z != end.getZ()) {
+                passable[index(x, y, z)] = true;
+                int axis = rand.nextInt(3);
+                if (axis == 0 && x != end.getX()) {
+                    x++;
+                } else if (axis == 1 && y != end.getY()) {
+                    y++;
+                } else if (axis == 2 && z != end.getZ()) {
+                    z++;
+                }
+            }
+            passable[index(x, y, z)] = true;
+        } else {
+            maze(rand, SIZE / 2);
+            start = new BlockPos(1, SIZE / 2, 1);
+            end = new BlockPos(SIZE - 3, SIZE / 2, SIZE - 3);
+        }
+
+        blocks = new IBlockPassability() {
+            @Override
+            public boolean isPassable(int x, int y, int z) {
+                return x >= 0 && y >= 0 && z >= 0 && x < SIZE && y < SIZE && z < SIZE && passable[index(x, y, z)];
+            }
+        };
+    }
+
+    private static int index(int x, int y, int z) {
+        return (x * SIZE + y) * SIZE + z;
+    }
+
+    /** Makes every block the same as most of the blocks around it. */
+    private void smooth() {
+        boolean[] smoothed = new boolean[passable.length];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    int open = 0, total = 0;
+                    for (int dx = -1; dx <= 1; dx++) {
+                        for (int dy = -1; dy <= 1; dy++) {
+                            for (int dz = -1; dz <= 1; dz++) {
+                                int nx = x + dx, ny = y + dy, nz = z + dz;
+                                if (nx >= 0 && ny >= 0 && nz >= 0 && nx < SIZE && ny < SIZE && nz < SIZE) {
+                                    total++;
+                                    open += passable[index(nx, ny, nz)] ? 1 : 0;
+                                }
+                            }
+                        }
+                    }
+                    smoothed[index(x, y, z)] = open * 2 > total;
+                }
+            }
+        }
+        passable = smoothed;
+    }
+
+    /** Carves a maze into the given layer, with corridors at every odd x and z. */
+    private void maze(Random rand, int y) {
+        int cells = (SIZE - 1) / 2;
+        boolean[] visited = new boolean[cells * cells];
+        int[] stack = new int[cells * cells];
+        int depth = 0;
+        stack[depth++] = 0;
+        visited[0] = true;
+        passable[index(1, y, 1)] = true;
+        int[] order = { 0, 1, 2, 3 };
+        while (depth > 0) {
+            int cell = stack[depth - 1];
+            int cx = cell / cells, cz = cell % cells;
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = rand.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            boolean moved = false;
+            for (int direction : order) {
+                int nx = cx + (direction == 0 ? 1 : direction == 1 ? -1 : 0);
+                int nz = cz + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+                if (nx < 0 || nz < 0 || nx >= cells || nz >= cells || visited[nx * cells + nz]) {
+                    continue;
+                }
+                visited[nx * cells + nz] = true;
+                passable[index(cx + nx + 1, y, cz + nz + 1)] = true;
+                passable[index(nx * 2 + 1, y, nz * 2 + 1)] = true;
+                stack[depth++] = nx * cells + nz;
+                moved = true;
+                break;
+            }
+            if (!moved) {
+                depth--;
+            }
+        }
+    }
+
+    @Benchmark
+    public int search(Nodes counter) {
+        PathFinding pathFinding = new PathFinding(blocks, start, end);
+        while (!pathFinding.isDone()) {
+            pathFinding.iterate();
+        }
+        counter.nodes += pathFinding.getNodesExpanded();
+        return pathFinding.getResult().size();
+    }
+}
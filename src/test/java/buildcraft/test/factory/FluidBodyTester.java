@@ -0,0 +1,111 @@
+package buildcraft.test.factory;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.junit.Test;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.BlockPos;
+
+import net.minecraftforge.fluids.Fluid;
+
+import buildcraft.factory.FluidBody;
+import buildcraft.factory.FluidScan;
+
+public class FluidBodyTester {
+    private static final Fluid LAKE_FLUID = new Fluid("lake", null, null);
+
+    /** A body in a lake that is only a set of positions, rather than part of a world. */
+    private static class LakeBody extends FluidBody {
+        private final Set<BlockPos> lake;
+
+        public LakeBody(Set<BlockPos> lake, BlockPos aim, List<FluidScan> group) {
+            super(null, aim, LAKE_FLUID, group);
+            this.lake = lake;
+            // The same as FluidScanner.acquireBody does for a new body
+            visit(aim);
+            acquire();
+            group.add(this);
+        }
+
+        @Override
+        protected IBlockState getBlockState(BlockPos pos) {
+            return null;
+        }
+
+        @Override
+        protected boolean isFluid(BlockPos pos, IBlockState state) {
+            return lake.contains(pos);
+        }
+
+        @Override
+        protected boolean canTake(BlockPos pos, IBlockState state) {
+            return lake.contains(pos);
+        }
+
+        @Override
+        protected boolean isComplete() {
+            return false;
+        }
+    }
+
+    private static Set<BlockPos> createLake(int size) {
+        Set<BlockPos> lake = Sets.newHashSet();
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                lake.add(new BlockPos(x, 60, z));
+            }
+        }
+        return lake;
+    }
+
+    @Test
+    public void testPumpsStartingTogetherShareABody() {
+        Set<BlockPos> lake = createLake(32);
+
+        // Both pumps start in the same tick, before either scan has reached the other pump
+        List<FluidScan> scans = Lists.newArrayList();
+        LakeBody first = new LakeBody(lake, new BlockPos(0, 60, 0), scans);
+        LakeBody second = new LakeBody(lake, new BlockPos(31, 60, 31), scans);
+        assertNotSame(first, second);
+        assertFalse(first.contains(new BlockPos(31, 60, 31)));
+
+        int visited = 0;
+        while (!first.isDone() || !second.isDone()) {
+            for (FluidScan scan : scans) {
+                if (!scan.isDone()) {
+                    visited += scan.step(64);
+                }
+            }
+        }
+
+        FluidBody shared = first.resolve();
+        assertSame(shared, second.resolve());
+        assertTrue(first.isCancelled() != second.isCancelled());
+        assertEquals(2, shared.getUsers());
+
+        // The lake was not scanned twice over
+        assertTrue("Visited " + visited + " blocks", visited < 2 * 5 * lake.size());
+
+        Set<BlockPos> polled = Sets.newHashSet();
+        BlockPos pos;
+        while ((pos = shared.pollHighest()) != null) {
+            assertTrue(lake.contains(pos));
+            polled.add(pos);
+        }
+        assertEquals(lake.size(), polled.size());
+
+        // Releasing through the body that was merged away still counts
+        FluidBody merged = first.isCancelled() ? first : second;
+        merged.release();
+        assertFalse(shared.isCancelled());
+        shared.release();
+        assertTrue(shared.isCancelled());
+    }
+}
@@ -0,0 +1,160 @@
+package buildcraft.test.robotics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.ClassInheritanceMultiMap;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.world.ChunkCoordIntPair;
+
+import buildcraft.core.lib.utils.IEntityFilter;
+import buildcraft.robotics.EntityQuery;
+
+/** Spreads entities over 64 by 64 chunks, a quarter of which are what a robot is looking for, and finds the closest
+ * one that the filter matches to points all over the area, comparing {@link EntityQuery} with the old scan through
+ * every loaded entity. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EntityQueryBenchmark {
+    private static final int CHUNKS = 64;
+    private static final int QUERIES = 64;
+
+    @Param({ "1000", "10000", "50000" })
+    public int entities;
+
+    @Param({ "64", "250" })
+    public float range;
+
+    private final List<Entity> loadedEntityList = new ArrayList<>();
+    private final LongHashMap chunkMap = new LongHashMap();
+    private double[][] queries;
+    private EntityQuery.IChunkSource chunks;
+
+    private final IEntityFilter filter = new IEntityFilter() {
+        @Override
+        public boolean matches(Entity entity) {
+            // Some targets are already taken by other robots
+            return entity instanceof Target && entity.getEntityId() % 3 != 0;
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        Random rand = new Random(entities);
+        for (int i = 0; i < entities; i++) {
+            Entity entity = rand.nextInt(4) == 0 ? new Target() : new Other();
+            entity.posX = rand.nextDouble() * CHUNKS * 16;
+            entity.posY = 60 + rand.nextGaussian() * 8;
+            entity.posZ = rand.nextDouble() * CHUNKS * 16;
+            loadedEntityList.add(entity);
+
+            int chunkX = (int) entity.posX >> 4;
+            int chunkZ = (int) entity.posZ >> 4;
+            long key = ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+            @SuppressWarnings("unchecked")
+            ClassInheritanceMultiMap<Entity>[] sections = (ClassInheritanceMultiMap<Entity>[]) chunkMap.getValueByKey(key);
+            if (sections == null) {
+                sections = newSections();
+                chunkMap.add(key, sections);
+            }
+            sections[Math.max(0, Math.min(15, (int) entity.posY >> 4))].add(entity);
+        }
+
+        queries = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = new double[] { rand.nextDouble() * CHUNKS * 16, 64, rand.nextDouble() * CHUNKS * 16 };
+        }
+
+        chunks = new EntityQuery.IChunkSource() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public ClassInheritanceMultiMap<Entity>[] getEntityLists(int chunkX, int chunkZ) {
+                if (chunkX < 0 || chunkZ < 0 || chunkX >= CHUNKS || chunkZ >= CHUNKS) {
+                    return null;
+                }
+                ClassInheritanceMultiMap<Entity>[] sections = (ClassInheritanceMultiMap<Entity>[]) chunkMap.getValueByKey(ChunkCoordIntPair
+                        .chunkXZ2Int(chunkX, chunkZ));
+                if (sections == null) {
+                    // A loaded chunk without any entities
+                    sections = newSections();
+                    chunkMap.add(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ), sections);
+                }
+                return sections;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ClassInheritanceMultiMap<Entity>[] newSections() {
+        ClassInheritanceMultiMap<Entity>[] sections = new ClassInheritanceMultiMap[16];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new ClassInheritanceMultiMap<>(Entity.class);
+        }
+        return sections;
+    }
+
+    @Benchmark
+    public int query() {
+        int found = 0;
+        for (double[] query : queries) {
+            if (EntityQuery.findClosest(chunks, query[0], query[1], query[2], range, null, Target.class, filter) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int scan() {
+        int found = 0;
+        for (double[] query : queries) {
+            Entity target = null;
+            double previousDistance = Double.MAX_VALUE;
+            for (Entity e : loadedEntityList) {
+                if (!e.isDead && filter.matches(e)) {
+                    double dx = e.posX - query[0];
+                    double dy = e.posY - query[1];
+                    double dz = e.posZ - query[2];
+                    double sqrDistance = dx * dx + dy * dy + dz * dz;
+                    if (sqrDistance < range * range && sqrDistance < previousDistance) {
+                        previousDistance = sqrDistance;
+                        target = e;
+                    }
+                }
+            }
+            if (target != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private abstract static class BenchEntity extends Entity {
+        private BenchEntity() {
+            super(null);
+        }
+
+        @Override
+        protected void entityInit() {}
+
+        @Override
+        protected void readEntityFromNBT(NBTTagCompound tag) {}
+
+        @Override
+        protected void writeEntityToNBT(NBTTagCompound tag) {}
+    }
+
+    private static final class Target extends BenchEntity {}
+
+    private static final class Other extends BenchEntity {}
+}
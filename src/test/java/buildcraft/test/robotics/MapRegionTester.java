@@ -0,0 +1,114 @@
+package buildcraft.test.robotics;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+import org.junit.Test;
+
+import buildcraft.robotics.map.MapRegion;
+import buildcraft.robotics.map.MapUtils;
+
+public class MapRegionTester {
+    /** Maps some of the chunks of a region, with some air in each one. */
+    private static byte[][] randomChunks(Random rand, int percent) {
+        byte[][] data = new byte[256][];
+        for (int i = 0; i < 256; i++) {
+            if (rand.nextInt(100) < percent) {
+                data[i] = new byte[256];
+                for (int j = 0; j < 256; j++) {
+                    data[i][j] = (byte) (rand.nextInt(3) == 0 ? 0 : 1 + rand.nextInt(35));
+                }
+            }
+        }
+        return data;
+    }
+
+    /** The colour of a pixel, worked out from the chunks rather than from the level below. */
+    private static int expected(byte[][] data, int level, int x, int z) {
+        if (level == 0) {
+            byte[] chunk = data[((z >> 4) << 4) | (x >> 4)];
+            return chunk == null ? 0 : chunk[((z & 15) << 4) | (x & 15)];
+        }
+        for (int i = 0; i < 4; i++) {
+            int color = expected(data, level - 1, x * 2 + (i & 1), z * 2 + (i >> 1));
+            if (color != 0) {
+                return color;
+            }
+        }
+        return 0;
+    }
+
+    private static byte[] getTile(MapRegion region, int level) {
+        int size = MapRegion.getTileSize(level);
+        byte[] pixels = new byte[size * size];
+        region.getTile(level, pixels);
+        return pixels;
+    }
+
+    @Test
+    public void testTiles() {
+        byte[][] data = randomChunks(new Random(1), 60);
+        MapRegion region = new MapRegion(0, 0);
+        region.load(data);
+
+        for (int level = MapRegion.TILE_LEVELS - 1; level >= 0; level--) {
+            int size = MapRegion.getTileSize(level);
+            byte[] tile = getTile(region, level);
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    assertEquals(expected(data, level, x, z), tile[z * size + x]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate() {
+        Random rand = new Random(2);
+        byte[][] first = randomChunks(rand, 30);
+        byte[][] second = randomChunks(rand, 30);
+        byte[][] both = new byte[256][];
+        for (int i = 0; i < 256; i++) {
+            both[i] = first[i] != null ? first[i] : second[i];
+        }
+
+        MapRegion region = new MapRegion(3, -4);
+        region.load(first);
+        long[] versions = new long[MapRegion.TILE_LEVELS];
+        for (int level = 0; level < MapRegion.TILE_LEVELS; level++) {
+            int size = MapRegion.getTileSize(level);
+            versions[level] = region.getTile(level, new byte[size * size]);
+        }
+
+        // Only adds the chunks that weren't mapped, like the region being loaded after some of it was mapped
+        region.load(second);
+        MapRegion fresh = new MapRegion(3, -4);
+        fresh.load(both);
+        for (int level = 0; level < MapRegion.TILE_LEVELS; level++) {
+            int size = MapRegion.getTileSize(level);
+            assertTrue(versions[level] != region.getTile(level, new byte[size * size]));
+            assertTrue(Arrays.equals(getTile(fresh, level), getTile(region, level)));
+        }
+    }
+
+    @Test
+    public void testCompress() throws DataFormatException {
+        byte[] tile = getTile(regionOf(randomChunks(new Random(3), 50)), 0);
+        byte[] compressed = MapUtils.compress(tile);
+        assertTrue(Arrays.equals(tile, MapUtils.decompress(compressed, tile.length)));
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void testDecompressWrongLength() throws DataFormatException {
+        MapUtils.decompress(MapUtils.compress(new byte[100]), 99);
+    }
+
+    private static MapRegion regionOf(byte[][] data) {
+        MapRegion region = new MapRegion(0, 0);
+        region.load(data);
+        return region;
+    }
+}
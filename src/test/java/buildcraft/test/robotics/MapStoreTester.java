@@ -0,0 +1,135 @@
+package buildcraft.test.robotics;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import buildcraft.robotics.map.MapStore;
+
+public class MapStoreTester {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] colors(int seed) {
+        byte[] colors = new byte[MapStore.CHUNK_SIZE];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = (byte) (seed * 31 + i);
+        }
+        return colors;
+    }
+
+    private static List<MapStore.Slot> slots(int regionX, int regionZ, int... indices) {
+        List<MapStore.Slot> slots = new ArrayList<MapStore.Slot>();
+        for (int index : indices) {
+            slots.add(new MapStore.Slot(regionX, regionZ, index, colors(regionX * 7 + regionZ * 13 + index)));
+        }
+        return slots;
+    }
+
+    private static void assertRegion(MapStore store, int regionX, int regionZ, int... indices) throws IOException {
+        byte[][] colors = new byte[256][];
+        assertTrue(store.readRegion(regionX, regionZ, colors));
+        int found = 0;
+        for (byte[] chunk : colors) {
+            if (chunk != null) {
+                found++;
+            }
+        }
+        assertEquals(indices.length, found);
+        for (int index : indices) {
+            assertTrue(Arrays.equals(colors(regionX * 7 + regionZ * 13 + index), colors[index]));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        MapStore store = new MapStore(folder.getRoot());
+        assertFalse(store.readRegion(0, 0, new byte[256][]));
+        store.close();
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        MapStore store = new MapStore(folder.getRoot());
+        store.write(slots(0, 0, 0, 17, 255));
+        store.write(slots(-3, 5, 128));
+        store.write(slots(0, 0, 17, 18));
+        assertRegion(store, 0, 0, 0, 17, 18, 255);
+        store.close();
+
+        store = new MapStore(folder.getRoot());
+        assertRegion(store, 0, 0, 0, 17, 18, 255);
+        assertRegion(store, -3, 5, 128);
+        assertFalse(store.readRegion(5, -3, new byte[256][]));
+        store.close();
+    }
+
+    @Test
+    public void testTornJournalIgnored() throws IOException {
+        MapStore store = new MapStore(folder.getRoot());
+        store.write(slots(1, 1, 3));
+        store.close();
+
+        RandomAccessFile journal = new RandomAccessFile(new File(folder.getRoot(), "map.journal"), "rw");
+        journal.write(new byte[] { 0x42, 0x43, 0x4A, 0x4E, 0, 0, 0, 1, 1, 2, 3 });
+        journal.close();
+
+        store = new MapStore(folder.getRoot());
+        assertRegion(store, 1, 1, 3);
+        store.write(slots(1, 1, 4));
+        assertRegion(store, 1, 1, 3, 4);
+        store.close();
+    }
+
+    @Test
+    public void testJournalReplayed() throws IOException {
+        new MapStore(folder.getRoot()).close();
+
+        // A write that was synced to the journal, but never made it to the file
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 12 + MapStore.CHUNK_SIZE);
+        buffer.putInt(0x42434A4E).putInt(1);
+        buffer.putInt(-1).putInt(2).putInt(40).put(colors(-1 * 7 + 2 * 13 + 40));
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        RandomAccessFile journal = new RandomAccessFile(new File(folder.getRoot(), "map.journal"), "rw");
+        journal.write(buffer.array());
+        journal.close();
+
+        MapStore store = new MapStore(folder.getRoot());
+        assertRegion(store, -1, 2, 40);
+        store.close();
+        assertEquals(0, new File(folder.getRoot(), "map.journal").length());
+    }
+
+    @Test
+    public void testPartialRegionRemoved() throws IOException {
+        MapStore store = new MapStore(folder.getRoot());
+        store.write(slots(2, 2, 10));
+        store.close();
+
+        File file = new File(folder.getRoot(), "map.bcmap");
+        long length = file.length();
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        data.setLength(length + 1000);
+        data.close();
+
+        store = new MapStore(folder.getRoot());
+        assertEquals(length, file.length());
+        assertRegion(store, 2, 2, 10);
+        store.write(slots(4, 4, 20));
+        assertRegion(store, 4, 4, 20);
+        store.close();
+    }
+}
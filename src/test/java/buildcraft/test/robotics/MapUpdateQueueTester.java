@@ -0,0 +1,105 @@
+package buildcraft.test.robotics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import buildcraft.robotics.map.MapUpdateQueue;
+
+public class MapUpdateQueueTester {
+    private static void tick(MapUpdateQueue<String> queue, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            queue.tick();
+        }
+    }
+
+    @Test
+    public void testDelays() {
+        MapUpdateQueue<String> queue = new MapUpdateQueue<String>();
+        queue.queue(1, "a", 3);
+        queue.queue(2, "b", 1);
+        queue.queue(3, "c", 0);
+        assertEquals(3, queue.size());
+
+        assertEquals("c", queue.poll());
+        assertNull(queue.poll());
+
+        tick(queue, 1);
+        assertEquals("b", queue.poll());
+        tick(queue, 1);
+        assertNull(queue.poll());
+        tick(queue, 1);
+        assertEquals("a", queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testDueChunksWait() {
+        MapUpdateQueue<String> queue = new MapUpdateQueue<String>();
+        for (int i = 0; i < 10; i++) {
+            queue.queue(i, "chunk" + i, 2);
+        }
+        tick(queue, 2);
+        for (int i = 0; i < 4; i++) {
+            assertEquals("chunk" + i, queue.poll());
+        }
+
+        // The rest stay due, ahead of anything that becomes due later
+        queue.queue(100, "late", 1);
+        tick(queue, 1);
+        for (int i = 4; i < 10; i++) {
+            assertEquals("chunk" + i, queue.poll());
+        }
+        assertEquals("late", queue.poll());
+    }
+
+    @Test
+    public void testQueueAgain() {
+        MapUpdateQueue<String> queue = new MapUpdateQueue<String>();
+        queue.queue(1, "old", 5);
+        queue.queue(1, "new", 50);
+        assertEquals(1, queue.size());
+
+        // Stays due at the earlier time, but maps the newer value
+        tick(queue, 5);
+        assertEquals("new", queue.poll());
+        assertNull(queue.poll());
+
+        queue.queue(2, "slow", 100);
+        queue.queue(2, "fast", 0);
+        assertEquals("fast", queue.poll());
+        tick(queue, 100);
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testRemove() {
+        MapUpdateQueue<String> queue = new MapUpdateQueue<String>();
+        queue.queue(1, "waiting", 5);
+        queue.queue(2, "due", 0);
+        assertEquals("waiting", queue.remove(1));
+        assertEquals("due", queue.remove(2));
+        assertNull(queue.remove(3));
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+
+        // Queueing it again isn't mixed up with the old slot in the wheel
+        queue.queue(1, "again", 10);
+        tick(queue, 5);
+        assertNull(queue.poll());
+        tick(queue, 5);
+        assertEquals("again", queue.poll());
+    }
+
+    @Test
+    public void testWrapAround() {
+        MapUpdateQueue<String> queue = new MapUpdateQueue<String>();
+        tick(queue, 200);
+        queue.queue(7, "far", 1000);
+        tick(queue, MapUpdateQueue.MAX_DELAY - 1);
+        assertNull(queue.poll());
+        tick(queue, 1);
+        assertEquals("far", queue.poll());
+    }
+}
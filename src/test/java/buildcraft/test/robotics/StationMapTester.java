@@ -0,0 +1,102 @@
+package buildcraft.test.robotics;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.api.robots.DockingStation;
+import buildcraft.api.statements.StatementSlot;
+import buildcraft.robotics.IStationFilter;
+import buildcraft.robotics.StationMap;
+
+public class StationMapTester {
+    private static class TestStation extends DockingStation {
+        private final boolean power;
+
+        public TestStation(BlockPos pos, boolean power) {
+            super(pos, EnumFacing.UP);
+            this.power = power;
+        }
+
+        @Override
+        public Iterable<StatementSlot> getActiveActions() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean providesPower() {
+            return power;
+        }
+    }
+
+    private static final IStationFilter ANY = new IStationFilter() {
+        @Override
+        public boolean matches(DockingStation station) {
+            return true;
+        }
+    };
+
+    @Test
+    public void testEmpty() {
+        StationMap map = new StationMap();
+        assertNull(map.findClosest(new BlockPos(0, 64, 0), null, ANY));
+    }
+
+    @Test
+    public void testAgainstScan() {
+        Random rand = new Random(42);
+        StationMap map = new StationMap();
+        List<TestStation> stations = Lists.newArrayList();
+        for (int i = 0; i < 300; i++) {
+            // Mostly close together, with a few far away
+            int spread = i % 10 == 0 ? 5000 : 200;
+            TestStation station = new TestStation(new BlockPos(rand.nextInt(spread * 2) - spread, rand.nextInt(256), rand.nextInt(spread * 2)
+                - spread), rand.nextInt(4) == 0);
+            stations.add(station);
+            map.add(station);
+        }
+        assertEquals(300, map.size());
+
+        for (int i = 0; i < 200; i++) {
+            if (i % 4 == 0) {
+                TestStation removed = stations.remove(rand.nextInt(stations.size()));
+                map.remove(removed);
+            }
+            BlockPos pos = new BlockPos(rand.nextInt(6000) - 3000, rand.nextInt(256), rand.nextInt(6000) - 3000);
+            final int parity = rand.nextInt(3);
+            IStationFilter filter = new IStationFilter() {
+                @Override
+                public boolean matches(DockingStation station) {
+                    return parity == 2 || (station.getPos().getX() & 1) == parity;
+                }
+            };
+            StationMap.Feature feature = rand.nextBoolean() ? StationMap.Feature.POWER : null;
+
+            double expected = Double.MAX_VALUE;
+            for (TestStation station : stations) {
+                if ((feature == null || station.providesPower()) && filter.matches(station)) {
+                    expected = Math.min(expected, pos.distanceSq(station.getPos()));
+                }
+            }
+
+            DockingStation found = map.findClosest(pos, feature, filter);
+            if (expected == Double.MAX_VALUE) {
+                assertNull(found);
+            } else {
+                assertNotNull(found);
+                assertTrue(stations.contains(found));
+                assertEquals(expected, pos.distanceSq(found.getPos()), 0);
+            }
+        }
+        assertEquals(stations.size(), map.size());
+    }
+}
@@ -0,0 +1,88 @@
+package buildcraft.test.transport;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import net.minecraft.init.Bootstrap;
+import net.minecraft.init.Items;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.Vec3;
+
+import buildcraft.transport.PipeTransportItems;
+import buildcraft.transport.TravelingItem;
+
+/** Fills a pipe with mixed stacks and groups them, comparing {@link PipeTransportItems#groupEntities()} with the old
+ * nested loop over every pair of items. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GroupEntitiesBenchmark {
+    @Param({ "64", "128", "256", "512" })
+    public int stacks;
+
+    private Item[] types;
+    private PipeTransportItems transport;
+    private int nextId = 0;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        Bootstrap.register();
+        types = new Item[] { Items.iron_ingot, Items.gold_ingot, Items.diamond, Items.coal, Items.redstone, Items.dye, Items.bone,
+            Items.string };
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        Random rand = new Random(stacks);
+        transport = new PipeTransportItems();
+        for (int i = 0; i < stacks; i++) {
+            ItemStack stack = new ItemStack(types[rand.nextInt(types.length)], 1 + rand.nextInt(32), rand.nextInt(2));
+            TravelingItem item = new BenchItem(nextId++);
+            item.pos = new Vec3(0.5, 0.5, 0.5);
+            item.setItemStack(stack);
+            item.input = EnumFacing.WEST;
+            item.output = EnumFacing.EAST;
+            transport.items.add(item);
+        }
+    }
+
+    @Benchmark
+    public int bucketed() {
+        transport.groupEntities();
+        return transport.getNumberOfStacks();
+    }
+
+    @Benchmark
+    public int nested() {
+        for (TravelingItem item : transport.items) {
+            if (item.isCorrupted()) {
+                continue;
+            }
+            for (TravelingItem otherItem : transport.items) {
+                if (item.tryMergeInto(otherItem)) {
+                    break;
+                }
+            }
+        }
+        int num = 0;
+        for (TravelingItem item : transport.items) {
+            if (!item.isCorrupted()) {
+                num++;
+            }
+        }
+        return num;
+    }
+
+    private static class BenchItem extends TravelingItem {
+        BenchItem(int id) {
+            super(id);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package buildcraft.test.transport;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import buildcraft.core.lib.event.IEventBus;
+import buildcraft.transport.PipeEventBus;
+import buildcraft.transport.PipeEventBusASM;
+import buildcraft.transport.pipes.events.PipeEvent;
+import buildcraft.transport.pipes.events.PipeEventItem;
+import buildcraft.transport.pipes.events.PipeEventPriority;
+
+/** Compares firing the per-item pipe events through the reflective {@link PipeEventBus} and the generated
+ * {@link PipeEventBusASM}. Run with "-prof gc" to see the allocation rate of each. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PipeEventBusBenchmark {
+    @Param({ "reflect", "asm" })
+    public String bus;
+
+    private IEventBus<PipeEvent> eventBus;
+    private PipeEventItem.AdjustSpeed adjustSpeed;
+    private PipeEventItem.ReachedCenter reachedCenter;
+    private PipeEventItem.ReachedEnd reachedEnd;
+
+    @Setup
+    public void setup() {
+        eventBus = "asm".equals(bus) ? new PipeEventBusASM() : new PipeEventBus();
+        eventBus.registerHandler(new SpeedHandler());
+        eventBus.registerHandler(new CenterHandler());
+        adjustSpeed = new PipeEventItem.AdjustSpeed(null, null);
+        reachedCenter = new PipeEventItem.ReachedCenter(null, null);
+        reachedEnd = new PipeEventItem.ReachedEnd(null, null, null);
+    }
+
+    @Benchmark
+    public void fireHandled(Blackhole bh) {
+        adjustSpeed.handled = false;
+        eventBus.handleEvent(adjustSpeed);
+        eventBus.handleEvent(reachedCenter);
+        bh.consume(adjustSpeed.handled);
+    }
+
+    @Benchmark
+    public void fireUnhandled(Blackhole bh) {
+        eventBus.handleEvent(reachedEnd);
+        bh.consume(reachedEnd.handled);
+    }
+
+    public static class SpeedHandler {
+        @PipeEventPriority(priority = 10)
+        public void eventHandler(PipeEventItem.AdjustSpeed event) {
+            event.handled = true;
+        }
+    }
+
+    public static class CenterHandler {
+        public int count;
+
+        public void eventHandler(PipeEventItem.AdjustSpeed event) {
+            count++;
+        }
+
+        public void eventHandler(PipeEventItem.ReachedCenter event) {
+            count++;
+        }
+    }
+}
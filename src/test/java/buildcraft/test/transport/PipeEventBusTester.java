@@ -0,0 +1,67 @@
+package buildcraft.test.transport;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import buildcraft.transport.PipeEventBusASM;
+import buildcraft.transport.pipes.events.PipeEventItem;
+import buildcraft.transport.pipes.events.PipeEventPriority;
+
+public class PipeEventBusTester {
+    private final List<String> calls = Lists.newArrayList();
+
+    public class Low {
+        @PipeEventPriority(priority = -10)
+        public void eventHandler(PipeEventItem.AdjustSpeed event) {
+            calls.add("low");
+        }
+    }
+
+    public class High {
+        @PipeEventPriority(priority = 10)
+        public void eventHandler(PipeEventItem.AdjustSpeed event) {
+            calls.add("high");
+        }
+    }
+
+    class Hidden {
+        void eventHandler(PipeEventItem.AdjustSpeed event) {
+            calls.add("hidden");
+        }
+    }
+
+    @Test
+    public void testPriorityOrder() {
+        PipeEventBusASM bus = new PipeEventBusASM();
+        bus.registerHandler(new Low());
+        bus.registerHandler(new Hidden());
+        bus.registerHandler(new High());
+        bus.handleEvent(new PipeEventItem.AdjustSpeed(null, null));
+        assertEquals(Lists.newArrayList("high", "hidden", "low"), calls);
+    }
+
+    @Test
+    public void testUnregister() {
+        PipeEventBusASM bus = new PipeEventBusASM();
+        High high = new High();
+        bus.registerHandler(high);
+        bus.registerHandler(high);
+        bus.handleEvent(new PipeEventItem.AdjustSpeed(null, null));
+        bus.unregisterHandler(high);
+        bus.handleEvent(new PipeEventItem.AdjustSpeed(null, null));
+        assertEquals(Lists.newArrayList("high"), calls);
+    }
+
+    @Test
+    public void testExactEventClass() {
+        PipeEventBusASM bus = new PipeEventBusASM();
+        bus.registerHandler(new High());
+        bus.handleEvent(new PipeEventItem.ReachedCenter(null, null));
+        assertTrue(calls.isEmpty());
+    }
+}
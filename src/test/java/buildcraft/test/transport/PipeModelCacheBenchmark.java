@@ -0,0 +1,112 @@
+package buildcraft.test.transport;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.EnumWorldBlockLayer;
+
+import buildcraft.api.core.IIconProvider;
+import buildcraft.transport.PipePluggableState;
+import buildcraft.transport.PipeRenderState;
+import buildcraft.transport.render.PipeBlockModel;
+import buildcraft.transport.render.PipeModelCache;
+
+/** Meshes a 32x32x32 grid of pipes through the {@link PipeModelCache}, where pipes of the same type are connected to
+ * each other in clusters and some clusters are stained. Baking a model needs the client's renderer, so a miss stores an
+ * empty model instead: "cold" starts from an empty cache and counts the models that would have been baked, while "warm"
+ * re-meshes the grid with every model already cached. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PipeModelCacheBenchmark {
+    private static final int SIZE = 32;
+    private static final int TYPES = 4;
+
+    private PipeRenderState[] states;
+    private final PipePluggableState pluggables = new PipePluggableState();
+    private TextureAtlasSprite particle;
+    private IIconProvider icons;
+    private PipeBlockModel empty;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        particle = new TextureAtlasSprite("bench") {};
+        icons = new IIconProvider() {
+            @Override
+            public TextureAtlasSprite getIcon(int iconIndex) {
+                return particle;
+            }
+        };
+        empty = new PipeBlockModel();
+
+        Random rand = new Random(SIZE);
+        boolean[] filled = new boolean[SIZE * SIZE * SIZE];
+        for (int i = 0; i < filled.length; i++) {
+            filled[i] = rand.nextInt(5) < 3;
+        }
+
+        int count = 0;
+        for (boolean f : filled) {
+            count += f ? 1 : 0;
+        }
+        states = new PipeRenderState[count];
+
+        int index = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    if (!filled[(x * SIZE + y) * SIZE + z]) {
+                        continue;
+                    }
+                    int type = type(x, y, z);
+                    PipeRenderState state = new PipeRenderState();
+                    for (EnumFacing face : EnumFacing.VALUES) {
+                        int ox = x + face.getFrontOffsetX(), oy = y + face.getFrontOffsetY(), oz = z + face.getFrontOffsetZ();
+                        boolean inside = ox >= 0 && oy >= 0 && oz >= 0 && ox < SIZE && oy < SIZE && oz < SIZE;
+                        boolean connected = inside && filled[(ox * SIZE + oy) * SIZE + oz] && type(ox, oy, oz) == type;
+                        state.pipeConnectionMatrix.setConnected(face, connected);
+                        state.setExtension(face, 0);
+                        state.textureMatrix.setIconIndex(face, type);
+                    }
+                    state.textureMatrix.setIconIndex(null, type);
+                    state.setGlassColor((byte) (((x >> 3) + (z >> 3)) % 8 == 0 ? type : -1));
+                    states[index++] = state;
+                }
+            }
+        }
+    }
+
+    private static int type(int x, int y, int z) {
+        return ((x >> 3) + (y >> 3) + (z >> 3)) % TYPES;
+    }
+
+    @Benchmark
+    public int cold() {
+        PipeModelCache.INSTANCE.clear();
+        return mesh();
+    }
+
+    @Benchmark
+    public int warm() {
+        return mesh();
+    }
+
+    private int mesh() {
+        int baked = 0;
+        for (PipeRenderState state : states) {
+            PipeModelCache.Key key = PipeModelCache.createKey(EnumWorldBlockLayer.CUTOUT, state, pluggables, icons, particle);
+            if (PipeModelCache.INSTANCE.get(key) == null) {
+                PipeModelCache.INSTANCE.put(key, empty);
+                baked++;
+            }
+        }
+        return baked;
+    }
+}